@@ -16,9 +16,13 @@
  */
 package com.money.manager.ex;
 
+import android.annotation.TargetApi;
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.content.UriMatcher;
 import android.database.Cursor;
 //import net.sqlcipher.database.SQLiteDatabase;
@@ -26,21 +30,37 @@ import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteQueryBuilder;
 import android.net.Uri;
+import android.os.Build;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
 import android.text.TextUtils;
 import android.util.Log;
 
 import com.money.manager.ex.budget.BudgetQuery;
 import com.money.manager.ex.core.ExceptionHandler;
+import com.money.manager.ex.currency.CurrencyHistoryRepository;
 import com.money.manager.ex.currency.CurrencyRepository;
+import com.money.manager.ex.currency.ExchangeRateStore;
+import com.money.manager.ex.database.CashFlowForecastStore;
+import com.money.manager.ex.database.CategoryHierarchyStore;
+import com.money.manager.ex.database.CategorySuggestions;
+import com.money.manager.ex.database.ChangeCounter;
 import com.money.manager.ex.database.Dataset;
 import com.money.manager.ex.database.DatasetType;
+import com.money.manager.ex.database.LookupIndexStore;
 import com.money.manager.ex.database.MmexOpenHelper;
+import com.money.manager.ex.database.MonthlySummary;
 import com.money.manager.ex.database.QueryAccountBills;
+import com.money.manager.ex.database.RecentPayees;
 import com.money.manager.ex.database.QueryAllData;
 import com.money.manager.ex.database.QueryBillDeposits;
 import com.money.manager.ex.database.QueryCategorySubCategory;
 import com.money.manager.ex.database.QueryReportIncomeVsExpenses;
+import com.money.manager.ex.database.ReportResultCache;
 import com.money.manager.ex.database.SQLDataSet;
+import com.money.manager.ex.database.TableChangeListener;
+import com.money.manager.ex.database.TransactionSearchIndex;
+import com.money.manager.ex.database.TransactionSnapshotStore;
 import com.money.manager.ex.database.ViewMobileData;
 import com.money.manager.ex.datalayer.AccountRepository;
 import com.money.manager.ex.datalayer.AccountTransactionRepository;
@@ -57,14 +77,23 @@ import com.money.manager.ex.datalayer.SplitRecurringCategoriesRepository;
 import com.money.manager.ex.datalayer.StockRepository;
 import com.money.manager.ex.datalayer.SubcategoryRepository;
 import com.money.manager.ex.dropbox.DropboxHelper;
+import com.money.manager.ex.notifications.RecurringTransactionScheduler;
+import com.money.manager.ex.widget.WidgetSnapshotStore;
 import com.money.manager.ex.datalayer.StockHistoryRepository;
 
 import org.apache.commons.lang3.StringUtils;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.TreeSet;
 
 /**
  * MmexContentProvider is the extension of the base class of Android
@@ -80,6 +109,24 @@ public class MmexContentProvider
     // object map for the definition of the objects referenced in the URI
     private static Map<Integer, Object> mapContent = new HashMap<>();
     private static String mAuthority;
+    /**
+     * Uris changed during a batch on the current thread. Notified once the batch completes.
+     * Null when no batch is running.
+     */
+    private final ThreadLocal<LinkedHashSet<Uri>> mBatchChanges = new ThreadLocal<>();
+    /**
+     * Transactions changed in the database transaction running on the current thread. They are
+     * patched into the transaction snapshot only after the commit.
+     */
+    private final ThreadLocal<HashSet<Integer>> mChangedTransactions = new ThreadLocal<>();
+    /**
+     * Listeners of the changes, by table name in upper case.
+     */
+    private static final Map<String, List<TableChangeListener>> mTableChangeListeners = new HashMap<>();
+    private static final List<TableChangeListener> mAllTableChangeListeners = new ArrayList<>();
+    private MonthlySummary mMonthlySummary;
+    private TransactionSearchIndex mSearchIndex;
+    private CategorySuggestions mCategorySuggestions;
 
     public MmexContentProvider() {
         super();
@@ -94,6 +141,45 @@ public class MmexContentProvider
         MmexContentProvider.mAuthority = mAuthority;
     }
 
+    /**
+     * Register a listener of the changes in its tables. A listener is only added once.
+     */
+    public static synchronized void addTableChangeListener(TableChangeListener listener) {
+        if (mAllTableChangeListeners.contains(listener)) return;
+        mAllTableChangeListeners.add(listener);
+
+        for (String table : listener.getTables()) {
+            String key = table.toUpperCase(Locale.US);
+            List<TableChangeListener> listeners = mTableChangeListeners.get(key);
+            if (listeners == null) {
+                listeners = new ArrayList<>();
+                mTableChangeListeners.put(key, listeners);
+            }
+            listeners.add(listener);
+        }
+    }
+
+    /**
+     * Drop the data of all the listeners, i.e. when a different database is opened.
+     */
+    public static void invalidateTableChangeListeners() {
+        for (TableChangeListener listener : getTableChangeListeners(null)) {
+            listener.invalidate();
+        }
+    }
+
+    /**
+     * @param table Name of the table. All the listeners if null.
+     */
+    private static synchronized List<TableChangeListener> getTableChangeListeners(String table) {
+        if (table == null) return new ArrayList<>(mAllTableChangeListeners);
+
+        List<TableChangeListener> listeners = mTableChangeListeners.get(table.toUpperCase(Locale.US));
+        return listeners == null
+            ? Collections.<TableChangeListener>emptyList()
+            : new ArrayList<>(listeners);
+    }
+
     @Override
     public boolean onCreate() {
         Context context = getContext();
@@ -109,6 +195,7 @@ public class MmexContentProvider
             new BudgetRepository(context),
             new CategoryRepository(context),
             new CurrencyRepository(context),
+            new CurrencyHistoryRepository(context),
             new InfoRepository(context),
             new PayeeRepository(context),
             new RecurringTransactionRepository(context),
@@ -134,13 +221,44 @@ public class MmexContentProvider
             // put map in the object being added in UriMatcher
             mapContent.put(i, objMoneyManager.get(i));
         }
+
+        // in-memory data derived from the tables.
+        addTableChangeListener(TransactionSnapshotStore.getInstance());
+        addTableChangeListener(CategoryHierarchyStore.getInstance());
+        addTableChangeListener(RecentPayees.getInstance());
+        addTableChangeListener(CashFlowForecastStore.getInstance());
+        addTableChangeListener(ExchangeRateStore.getInstance());
+        for (TableChangeListener listener : LookupIndexStore.getInstance().getListeners()) {
+            addTableChangeListener(listener);
+        }
+        addTableChangeListener(RecurringTransactionScheduler.getInstance());
         return false;
     }
 
     @Override
     public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
         try {
-            return query_internal(uri, projection, selection, selectionArgs, sortOrder);
+            return query_internal(uri, projection, selection, selectionArgs, sortOrder, null);
+        } catch (Exception e) {
+            Context context = getContext();
+            ExceptionHandler handler = new ExceptionHandler(context, this);
+            handler.handle(e, "content provider.query " + uri);
+        }
+        return null;
+    }
+
+    /**
+     * Query that can be cancelled while it runs, i.e. by a cursor loader that is restarted.
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
+                        String sortOrder, CancellationSignal cancellationSignal) {
+        try {
+            return query_internal(uri, projection, selection, selectionArgs, sortOrder, cancellationSignal);
+        } catch (OperationCanceledException e) {
+            // expected. The caller handles the cancellation.
+            throw e;
         } catch (Exception e) {
             Context context = getContext();
             ExceptionHandler handler = new ExceptionHandler(context, this);
@@ -168,10 +286,26 @@ public class MmexContentProvider
                     try {
                         MmexOpenHelper databaseHelper = MmexOpenHelper.getInstance(getContext());
 
-                        id = databaseHelper.getWritableDatabase()
-                                .insertOrThrow(dataset.getSource(), null, values);
-                        //database.setTransactionSuccessful();
+                        SQLiteDatabase database = databaseHelper.getWritableDatabase();
+                        boolean transaction = beginChange(database);
+                        boolean committed = false;
+                        try {
+                            long changeCount = getChangeCount(database, dataset);
+                            id = database.insertOrThrow(dataset.getSource(), null, values);
+                            if (id > 0) {
+                                updateSummaryAfterInsert(database, dataset, id, values);
+                            }
+                            advanceChangeCount(database, dataset, changeCount);
+                            if (transaction) database.setTransactionSuccessful();
+                            committed = true;
+                        } finally {
+                            if (transaction) endChange(database, committed);
+                        }
+                        if (id > 0) {
+                            dataInserted(dataset.getSource(), id, values);
+                        }
                     } catch (Exception e) {
+                        failBatch(e);
                         ExceptionHandler handler = new ExceptionHandler(getContext(), this);
                         handler.handle(e, "inserting: " + e.getMessage());
                     }
@@ -186,10 +320,7 @@ public class MmexContentProvider
 
         if (id > 0) {
             // notify the data inserted
-            getContext().getContentResolver().notifyChange(uri, null);
-
-            // notify dropbox of the data changes
-            DropboxHelper.notifyDataChanged();
+            notifyChange(uri);
         }
 
         // return Uri with the primary key of the inserted record.
@@ -214,8 +345,41 @@ public class MmexContentProvider
                     logUpdate(dataset, values, whereClause, whereArgs);
 
                     try {
-                        rowsUpdate = database.update(dataset.getSource(), values, whereClause, whereArgs);
+                        boolean transaction = beginChange(database);
+                        boolean committed = false;
+                        try {
+                            long changeCount = getChangeCount(database, dataset);
+                            List<Integer> summaryTransactions = getSummaryTransactions(database, dataset,
+                                whereClause, whereArgs);
+                            TreeSet<Integer> summaryMonths = getSummaryMonths(database, summaryTransactions);
+                            List<Integer> searchTransactions = getSearchTransactions(database, dataset,
+                                whereClause, whereArgs);
+                            List<CategorySuggestions.Observation> suggestions = getSuggestionObservations(database,
+                                summaryTransactions);
+
+                            rowsUpdate = database.update(dataset.getSource(), values, whereClause, whereArgs);
+
+                            if (rowsUpdate > 0 && summaryTransactions != null) {
+                                // The date may have changed.
+                                summaryMonths.addAll(getSummaryMonths(database, summaryTransactions));
+                                updateSummary(database, summaryMonths);
+                                updateSnapshot(database, summaryTransactions);
+                                updateSearchIndex(database, summaryTransactions);
+                                updateSuggestions(database, suggestions, summaryTransactions);
+                            }
+                            if (rowsUpdate > 0) {
+                                // renamed payees and categories
+                                updateSearchIndex(database, searchTransactions);
+                            }
+                            advanceChangeCount(database, dataset, changeCount);
+                            if (transaction) database.setTransactionSuccessful();
+                            committed = true;
+                        } finally {
+                            if (transaction) endChange(database, committed);
+                        }
+                        dataChanged(dataset.getSource());
                     } catch (Exception ex) {
+                        failBatch(ex);
                         ExceptionHandler handler = new ExceptionHandler(getContext(), this);
                         handler.handle(ex, "updating: " + ex.getMessage());
                     }
@@ -229,9 +393,7 @@ public class MmexContentProvider
 
         if (rowsUpdate > 0) {
             // notify update
-            getContext().getContentResolver().notifyChange(uri, null);
-            // notify dropbox data changed
-            DropboxHelper.notifyDataChanged();
+            notifyChange(uri);
         }
 
         // return rows modified
@@ -260,13 +422,37 @@ public class MmexContentProvider
                     logDelete(dataset, selection, selectionArgs);
                     try {
                         MmexOpenHelper databaseHelper = MmexOpenHelper.getInstance(getContext());
-                        rowsDelete = databaseHelper.getWritableDatabase()
-                                .delete(dataset.getSource(), selection, selectionArgs);
-
-                        // committed
-                        //if (BuildConfig.DEBUG) Log.d(LOGCAT, "database set transaction successful");
-                        //database.setTransactionSuccessful();
+                        SQLiteDatabase database = databaseHelper.getWritableDatabase();
+                        boolean transaction = beginChange(database);
+                        boolean committed = false;
+                        try {
+                            long changeCount = getChangeCount(database, dataset);
+                            List<Integer> summaryTransactions = getSummaryTransactions(database, dataset,
+                                selection, selectionArgs);
+                            TreeSet<Integer> summaryMonths = getSummaryMonths(database, summaryTransactions);
+                            List<Integer> searchTransactions = getSearchTransactions(database, dataset,
+                                selection, selectionArgs);
+                            List<CategorySuggestions.Observation> suggestions = getSuggestionObservations(database,
+                                summaryTransactions);
+
+                            rowsDelete = database.delete(dataset.getSource(), selection, selectionArgs);
+
+                            if (rowsDelete > 0) {
+                                updateSummary(database, summaryMonths);
+                                updateSnapshot(database, summaryTransactions);
+                                updateSearchIndex(database, summaryTransactions);
+                                updateSearchIndex(database, searchTransactions);
+                                updateSuggestions(database, suggestions, summaryTransactions);
+                            }
+                            advanceChangeCount(database, dataset, changeCount);
+                            if (transaction) database.setTransactionSuccessful();
+                            committed = true;
+                        } finally {
+                            if (transaction) endChange(database, committed);
+                        }
+                        dataChanged(dataset.getSource());
                     } catch (Exception e) {
+                        failBatch(e);
                         ExceptionHandler handler = new ExceptionHandler(getContext(), this);
                         handler.handle(e, "insert");
                     }
@@ -278,13 +464,59 @@ public class MmexContentProvider
             throw new IllegalArgumentException("Object ret of mapContent is not istance of dataset");
         }
         // delete notify
-        getContext().getContentResolver().notifyChange(uri, null);
-        // notify dropbox data changed
-        DropboxHelper.notifyDataChanged();
+        notifyChange(uri);
 
         return rowsDelete;
     }
 
+    /**
+     * Applies all the operations in a single database transaction. The change notifications
+     * are sent once per Uri after the transaction is committed, so the observers (loaders)
+     * reload only once for the whole batch.
+     */
+    @Override
+    public ContentProviderResult[] applyBatch(ArrayList<ContentProviderOperation> operations)
+        throws OperationApplicationException {
+
+        SQLiteDatabase database = MmexOpenHelper.getInstance(getContext()).getWritableDatabase();
+        LinkedHashSet<Uri> changes = new LinkedHashSet<>();
+        mBatchChanges.set(changes);
+        HashSet<Integer> transactions = new HashSet<>();
+        mChangedTransactions.set(transactions);
+
+        ContentProviderResult[] results;
+        boolean committed = false;
+        database.beginTransaction();
+        try {
+            results = super.applyBatch(operations);
+            database.setTransactionSuccessful();
+            committed = true;
+        } catch (BatchFailedException e) {
+            throw new OperationApplicationException(e.getMessage(), e.getCause());
+        } finally {
+            database.endTransaction();
+            mBatchChanges.remove();
+            mChangedTransactions.remove();
+            if (!committed) {
+                invalidateTableChangeListeners();
+            }
+        }
+
+        // patch the transaction snapshot once for the whole batch.
+        patchSnapshot(database, transactions);
+
+        for (Uri uri : changes) {
+            reportDataChanged(uri);
+            getContext().getContentResolver().notifyChange(uri, null);
+        }
+        if (!changes.isEmpty()) {
+            // notify dropbox data changed
+            DropboxHelper.notifyDataChanged();
+        }
+
+        return results;
+    }
+
     /**
      * Prepare statement SQL from data set object
      *
@@ -362,6 +594,272 @@ public class MmexContentProvider
         return null;
     }
 
+    private MonthlySummary getMonthlySummary() {
+        if (mMonthlySummary == null) {
+            mMonthlySummary = new MonthlySummary(getContext());
+        }
+        return mMonthlySummary;
+    }
+
+    /**
+     * @return Ids of the transactions affected by the change, if the dataset is the source of
+     * the monthly summary. Null otherwise.
+     */
+    private List<Integer> getSummaryTransactions(SQLiteDatabase database, Dataset dataset,
+                                                 String where, String[] whereArgs) {
+        MonthlySummary summary = getMonthlySummary();
+        if (!summary.isSourceTable(dataset.getSource())) return null;
+
+        return summary.getAffectedTransactions(database, dataset.getSource(), where, whereArgs);
+    }
+
+    private TreeSet<Integer> getSummaryMonths(SQLiteDatabase database, List<Integer> transactionIds) {
+        return getMonthlySummary().getMonthsFor(database, transactionIds);
+    }
+
+    private void updateSummaryAfterInsert(SQLiteDatabase database, Dataset dataset, long id,
+                                          ContentValues values) {
+        MonthlySummary summary = getMonthlySummary();
+        if (!summary.isSourceTable(dataset.getSource())) return;
+
+        Integer transactionId = summary.isTransactionsTable(dataset.getSource())
+            ? Integer.valueOf((int) id)
+            : values.getAsInteger("TRANSID");
+        if (transactionId == null) return;
+
+        List<Integer> transactionIds = Arrays.asList(transactionId);
+        updateSummary(database, getSummaryMonths(database, transactionIds));
+        updateSnapshot(database, transactionIds);
+        updateSearchIndex(database, transactionIds);
+        if (summary.isTransactionsTable(dataset.getSource())) {
+            updateSuggestions(database, new ArrayList<CategorySuggestions.Observation>(), transactionIds);
+        }
+    }
+
+    private void updateSummary(SQLiteDatabase database, TreeSet<Integer> months) {
+        try {
+            getMonthlySummary().refreshMonths(database, months);
+        } catch (Exception e) {
+            setDirty(database, MonthlySummary.TABLE_NAME);
+            getMonthlySummary().rebuildLater();
+            ExceptionHandler handler = new ExceptionHandler(getContext(), this);
+            handler.handle(e, "updating monthly summary");
+        }
+    }
+
+    /**
+     * Within a batch, a failed operation aborts the whole batch instead of returning an empty
+     * result, so the operations that depend on it (i.e. back references to an inserted id) are
+     * not applied and the batch is rolled back.
+     */
+    private void failBatch(Exception e) {
+        if (mBatchChanges.get() == null) return;
+
+        throw new BatchFailedException(e);
+    }
+
+    /**
+     * Start a transaction for a single change, so that the change, the updates of the derived
+     * tables and the change counter are committed together. A batch already runs in one.
+     * @return True if a transaction was started.
+     */
+    private boolean beginChange(SQLiteDatabase database) {
+        if (mBatchChanges.get() != null) return false;
+
+        database.beginTransaction();
+        mChangedTransactions.set(new HashSet<Integer>());
+        return true;
+    }
+
+    /**
+     * End the transaction of a single change. The transaction snapshot is patched only if the
+     * change was committed; after a rollback it still matches the database.
+     */
+    private void endChange(SQLiteDatabase database, boolean committed) {
+        HashSet<Integer> transactions = mChangedTransactions.get();
+        try {
+            database.endTransaction();
+        } finally {
+            mChangedTransactions.remove();
+        }
+
+        if (committed) {
+            patchSnapshot(database, transactions);
+        }
+    }
+
+    /**
+     * @return The change counter before a change of the dataset, if it is a source of the
+     * derived tables.
+     */
+    private long getChangeCount(SQLiteDatabase database, Dataset dataset) {
+        if (!ChangeCounter.isSourceTable(dataset.getSource())) return 0;
+
+        try {
+            return ChangeCounter.get(database);
+        } catch (Exception e) {
+            ExceptionHandler handler = new ExceptionHandler(getContext(), this);
+            handler.handle(e, "reading change counter");
+            return -1;
+        }
+    }
+
+    /**
+     * The derived tables have been updated after a change of the dataset and are in sync,
+     * unless they were out of sync before or their update failed.
+     */
+    private void advanceChangeCount(SQLiteDatabase database, Dataset dataset, long previous) {
+        if (!ChangeCounter.isSourceTable(dataset.getSource())) return;
+
+        try {
+            ChangeCounter.advance(database, previous);
+        } catch (Exception e) {
+            ExceptionHandler handler = new ExceptionHandler(getContext(), this);
+            handler.handle(e, "updating change counter");
+        }
+    }
+
+    /**
+     * Mark a derived table out of sync after its update failed. It is rebuilt when the
+     * database is opened.
+     */
+    private void setDirty(SQLiteDatabase database, String name) {
+        try {
+            ChangeCounter.setDirty(database, name);
+        } catch (Exception e) {
+            ExceptionHandler handler = new ExceptionHandler(getContext(), this);
+            handler.handle(e, "marking " + name + " out of sync");
+        }
+    }
+
+    private TransactionSearchIndex getSearchIndex() {
+        if (mSearchIndex == null) {
+            mSearchIndex = new TransactionSearchIndex(getContext());
+        }
+        return mSearchIndex;
+    }
+
+    /**
+     * @return Ids of the transactions that use the payees or categories being changed.
+     * Null if the dataset is not a lookup source of the search index.
+     */
+    private List<Integer> getSearchTransactions(SQLiteDatabase database, Dataset dataset,
+                                                String where, String[] whereArgs) {
+        return getSearchIndex().getAffectedTransactions(database, dataset.getSource(), where, whereArgs);
+    }
+
+    private void updateSearchIndex(SQLiteDatabase database, Collection<Integer> transactionIds) {
+        try {
+            getSearchIndex().refreshTransactions(database, transactionIds);
+        } catch (Exception e) {
+            setDirty(database, TransactionSearchIndex.TABLE_NAME);
+            getSearchIndex().rebuildLater();
+            ExceptionHandler handler = new ExceptionHandler(getContext(), this);
+            handler.handle(e, "updating search index");
+        }
+    }
+
+    private CategorySuggestions getCategorySuggestions() {
+        if (mCategorySuggestions == null) {
+            mCategorySuggestions = new CategorySuggestions(getContext());
+        }
+        return mCategorySuggestions;
+    }
+
+    /**
+     * @return What the given transactions contribute to the category suggestions. Read before
+     * the change so that it can be taken out afterwards.
+     */
+    private List<CategorySuggestions.Observation> getSuggestionObservations(SQLiteDatabase database,
+                                                                            List<Integer> transactionIds) {
+        return getCategorySuggestions().load(database, transactionIds);
+    }
+
+    private void updateSuggestions(SQLiteDatabase database, List<CategorySuggestions.Observation> before,
+                                   Collection<Integer> transactionIds) {
+        if (transactionIds == null || transactionIds.isEmpty()) return;
+
+        try {
+            CategorySuggestions suggestions = getCategorySuggestions();
+            suggestions.update(database, before, suggestions.load(database, transactionIds));
+        } catch (Exception e) {
+            setDirty(database, CategorySuggestions.COUNTER_NAME);
+            getCategorySuggestions().rebuildLater();
+            ExceptionHandler handler = new ExceptionHandler(getContext(), this);
+            handler.handle(e, "updating category suggestions");
+        }
+    }
+
+    /**
+     * Collect the changed transactions, to be patched into the snapshot after the commit.
+     */
+    private void updateSnapshot(SQLiteDatabase database, Collection<Integer> transactionIds) {
+        if (transactionIds == null || transactionIds.isEmpty()) return;
+
+        HashSet<Integer> changedTransactions = mChangedTransactions.get();
+        if (changedTransactions != null) {
+            changedTransactions.addAll(transactionIds);
+            return;
+        }
+
+        patchSnapshot(database, transactionIds);
+    }
+
+    private void patchSnapshot(SQLiteDatabase database, Collection<Integer> transactionIds) {
+        if (transactionIds == null || transactionIds.isEmpty()) return;
+
+        try {
+            TransactionSnapshotStore.getInstance().patch(database, transactionIds);
+        } catch (Exception e) {
+            TransactionSnapshotStore.getInstance().invalidate();
+            ExceptionHandler handler = new ExceptionHandler(getContext(), this);
+            handler.handle(e, "updating transaction snapshot");
+        }
+    }
+
+    private void dataInserted(String table, long id, ContentValues values) {
+        for (TableChangeListener listener : getTableChangeListeners(table)) {
+            listener.dataInserted(getContext(), table, id, values);
+        }
+    }
+
+    private void dataChanged(String table) {
+        for (TableChangeListener listener : getTableChangeListeners(table)) {
+            listener.dataChanged(getContext(), table);
+        }
+    }
+
+    private void notifyChange(Uri uri) {
+        // the widgets redraw from a snapshot, refreshed once the changes settle.
+        WidgetSnapshotStore.dataChanged(getContext());
+
+        LinkedHashSet<Uri> batchChanges = mBatchChanges.get();
+        if (batchChanges != null) {
+            // within a batch. Notify after commit.
+            batchChanges.add(uri);
+            return;
+        }
+
+        reportDataChanged(uri);
+        getContext().getContentResolver().notifyChange(uri, null);
+        // notify dropbox data changed
+        DropboxHelper.notifyDataChanged();
+    }
+
+    /**
+     * Drop the cached report results that read the changed table, or the tables derived from it.
+     * Call after the change is committed, so that a report read in the meantime is not cached.
+     */
+    private void reportDataChanged(Uri uri) {
+        String table = ((Dataset) getObjectFromUri(uri)).getSource();
+        if (ChangeCounter.isSourceTable(table)) {
+            ReportResultCache.dataChanged(table, MonthlySummary.TABLE_NAME, TransactionSearchIndex.TABLE_NAME,
+                CategorySuggestions.TABLE_NAME);
+        } else {
+            ReportResultCache.dataChanged(table);
+        }
+    }
+
     private void logTableInsert(Dataset dataset, ContentValues values) {
         String log = "INSERT INTO " + dataset.getSource();
         if (values != null) {
@@ -370,7 +868,8 @@ public class MmexContentProvider
         if (BuildConfig.DEBUG) Log.d(LOGCAT, log);
     }
 
-    private Cursor query_internal(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder){
+    private Cursor query_internal(Uri uri, String[] projection, String selection, String[] selectionArgs,
+                                  String sortOrder, CancellationSignal cancellationSignal) {
         if (BuildConfig.DEBUG) Log.d(LOGCAT, "Query URI: " + uri);
 
         // find object from uri
@@ -396,16 +895,23 @@ public class MmexContentProvider
             switch (dataset.getType()) {
                 case QUERY:
                     String query = prepareQuery(dataset.getSource(), projection, selection, sortOrder);
-                    cursor = database.rawQuery(query, selectionArgs);
+                    cursor = cancellationSignal == null
+                        ? database.rawQuery(query, selectionArgs)
+                        : database.rawQuery(query, selectionArgs, cancellationSignal);
                     break;
                 case SQL:
-                    cursor = database.rawQuery(selection, selectionArgs);
+                    cursor = cancellationSignal == null
+                        ? database.rawQuery(selection, selectionArgs)
+                        : database.rawQuery(selection, selectionArgs, cancellationSignal);
                     break;
                 case TABLE:
                 case VIEW:
                     SQLiteQueryBuilder queryBuilder = new SQLiteQueryBuilder();
                     queryBuilder.setTables(dataset.getSource());
-                    cursor = queryBuilder.query(database, projection, selection, selectionArgs, null, null, sortOrder);
+                    cursor = cancellationSignal == null
+                        ? queryBuilder.query(database, projection, selection, selectionArgs, null, null, sortOrder)
+                        : queryBuilder.query(database, projection, selection, selectionArgs, null, null,
+                            sortOrder, null, cancellationSignal);
                     break;
                 default:
                     throw new IllegalArgumentException("Type of dataset not defined");
@@ -486,4 +992,15 @@ public class MmexContentProvider
 //                    if (BuildConfig.DEBUG) Log.d(LOGCAT, "database begin transaction");
         if (BuildConfig.DEBUG) Log.d(LOGCAT, log);
     }
+
+    /**
+     * Thrown by a failed operation within a batch. See {@link #failBatch(Exception)}.
+     */
+    private static class BatchFailedException
+        extends RuntimeException {
+
+        BatchFailedException(Exception cause) {
+            super(cause.getMessage(), cause);
+        }
+    }
 }
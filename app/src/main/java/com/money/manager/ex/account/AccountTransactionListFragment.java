@@ -19,6 +19,7 @@ package com.money.manager.ex.account;
 import android.content.Context;
 import android.content.Intent;
 import android.database.Cursor;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.preference.PreferenceManager;
 import android.support.v4.app.Fragment;
@@ -53,8 +54,11 @@ import com.money.manager.ex.common.MmexCursorLoader;
 import com.money.manager.ex.core.DefinedDateRange;
 import com.money.manager.ex.core.DefinedDateRangeName;
 import com.money.manager.ex.core.DefinedDateRanges;
+import com.money.manager.ex.core.ExceptionHandler;
 import com.money.manager.ex.currency.CurrencyService;
+import com.money.manager.ex.database.CashFlowForecastStore;
 import com.money.manager.ex.database.ITransactionEntity;
+import com.money.manager.ex.database.TransactionSnapshot;
 import com.money.manager.ex.database.WhereStatementGenerator;
 import com.money.manager.ex.domainmodel.Account;
 import com.money.manager.ex.transactions.CheckingTransactionEditActivity;
@@ -512,6 +516,8 @@ public class AccountTransactionListFragment
         this.viewHolder.txtAccountBalance = (TextView) this.viewHolder.listHeader.findViewById(R.id.textViewAccountBalance);
         this.viewHolder.txtAccountReconciled = (TextView) this.viewHolder.listHeader.findViewById(R.id.textViewAccountReconciled);
         this.viewHolder.txtAccountDifference = (TextView) this.viewHolder.listHeader.findViewById(R.id.textViewDifference);
+        this.viewHolder.rowAccountProjected = (ViewGroup) this.viewHolder.listHeader.findViewById(R.id.tableRowAccountProjected);
+        this.viewHolder.txtAccountProjected = (TextView) this.viewHolder.listHeader.findViewById(R.id.textViewAccountProjected);
         // favorite icon
         this.viewHolder.imgAccountFav = (ImageView) this.viewHolder.listHeader.findViewById(R.id.imageViewAccountFav);
 
@@ -720,9 +726,44 @@ public class AccountTransactionListFragment
                 mAccount.getCurrencyId(), mAccountReconciled));
             this.viewHolder.txtAccountDifference.setText(currencyService.getCurrencyFormatted(
                 mAccount.getCurrencyId(), mAccountReconciled.subtract(mAccountBalance)));
+
+            loadProjectedBalance();
         }
     }
 
+    /**
+     * Show the lowest projected balance of the account, from the cash flow forecast, in the
+     * header. The forecast is built in the background on first use.
+     */
+    private void loadProjectedBalance() {
+        final Context context = getActivity().getApplicationContext();
+        final Integer accountId = mAccountId;
+        final Integer currencyId = mAccount.getCurrencyId();
+
+        new AsyncTask<Void, Void, Long>() {
+            @Override
+            protected Long doInBackground(Void... params) {
+                try {
+                    return CashFlowForecastStore.getInstance().get(context).getMinimumBalance(accountId);
+                } catch (Exception e) {
+                    ExceptionHandler handler = new ExceptionHandler(context, this);
+                    handler.handle(e, "loading projected balance");
+                }
+                return null;
+            }
+
+            @Override
+            protected void onPostExecute(Long units) {
+                if (units == null || !isAdded() || !accountId.equals(mAccountId)) return;
+
+                CurrencyService currencyService = new CurrencyService(context);
+                viewHolder.txtAccountProjected.setText(currencyService.getCurrencyFormatted(
+                    currencyId, TransactionSnapshot.toMoney(units)));
+                viewHolder.rowAccountProjected.setVisibility(View.VISIBLE);
+            }
+        }.execute();
+    }
+
     /**
      * Select the current account in the accounts dropdown.
      */
@@ -27,6 +27,8 @@ public class AccountTransactionsListViewHolder {
     public TextView txtAccountBalance;
     public TextView txtAccountReconciled;
     public TextView  txtAccountDifference;
+    public ViewGroup rowAccountProjected;
+    public TextView txtAccountProjected;
     public ImageView imgAccountFav;
     public ImageView imgGotoAccount;
     public ViewGroup listHeader;
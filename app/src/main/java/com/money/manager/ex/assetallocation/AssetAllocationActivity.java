@@ -38,6 +38,8 @@ import com.money.manager.ex.core.UIHelper;
 import com.money.manager.ex.currency.list.CurrencyListActivity;
 import com.money.manager.ex.currency.CurrencyService;
 import com.money.manager.ex.domainmodel.AssetClass;
+import com.money.manager.ex.investment.events.HoldingChangedEvent;
+import com.money.manager.ex.investment.events.PriceDownloadedEvent;
 import com.money.manager.ex.servicelayer.AssetAllocationService;
 import com.shamanland.fonticon.FontIconDrawable;
 
@@ -45,6 +47,8 @@ import org.greenrobot.eventbus.EventBus;
 import org.greenrobot.eventbus.Subscribe;
 import org.parceler.Parcels;
 
+import java.util.HashMap;
+
 /**
  * Asset Allocation view.
  */
@@ -54,8 +58,14 @@ public class AssetAllocationActivity
 
     private static final int LOADER_ASSET_ALLOCATION = 1;
     private static final String KEY_ASSET_ALLOCATION = "assetAllocation";
+    private static final String KEY_ACCOUNT_CURRENCIES = "accountCurrencies";
 
     private AssetClass assetAllocation;
+    private AssetAllocationModel mModel;
+    /**
+     * The service that loaded the asset allocation, used by the model.
+     */
+    private AssetAllocationService mService;
     LoaderManager.LoaderCallbacks<AssetClass> mLoaderCallbacks;
 
     @Override
@@ -74,6 +84,10 @@ public class AssetAllocationActivity
         if (savedInstanceState != null) {
             // use existing asset allocation
             this.assetAllocation = Parcels.unwrap(savedInstanceState.getParcelable(KEY_ASSET_ALLOCATION));
+            // with the account currencies used to load it, not to read them again on updates.
+            AssetAllocationService service = new AssetAllocationService(this);
+            service.setAccountCurrencies((HashMap<Integer, Integer>) savedInstanceState.getSerializable(KEY_ACCOUNT_CURRENCIES));
+            createModel(service);
         } else {
             // Load asset allocation
             // Ref: http://developer.android.com/guide/components/loaders.html
@@ -87,6 +101,9 @@ public class AssetAllocationActivity
         super.onSaveInstanceState(outState);
 
         outState.putParcelable(KEY_ASSET_ALLOCATION, Parcels.wrap(this.assetAllocation));
+        if (mService != null) {
+            outState.putSerializable(KEY_ACCOUNT_CURRENCIES, mService.getAccountCurrencies());
+        }
     }
 
     @Override
@@ -172,6 +189,30 @@ public class AssetAllocationActivity
         getSupportLoaderManager().restartLoader(LOADER_ASSET_ALLOCATION, null, mLoaderCallbacks);
     }
 
+    /**
+     * A single quote arrived. Update only the affected part of the allocation.
+     */
+    @Subscribe
+    public void onEvent(PriceDownloadedEvent event) {
+        if (mModel == null) return;
+
+        if (mModel.updatePrice(event.symbol, event.price)) {
+            refreshDataInFragment(this.assetAllocation);
+        }
+    }
+
+    @Subscribe
+    public void onEvent(HoldingChangedEvent event) {
+        if (mModel == null) return;
+
+        boolean changed = event.deleted
+            ? mModel.removeHolding(event.stockId)
+            : mModel.updateHolding(event.stock);
+        if (changed) {
+            refreshDataInFragment(this.assetAllocation);
+        }
+    }
+
     @Subscribe
     public void onEvent(AssetClassSelectedEvent event) {
         AssetAllocationService service = new AssetAllocationService(this);
@@ -195,6 +236,18 @@ public class AssetAllocationActivity
         finish();
     }
 
+    /**
+     * @param service The service that loaded the asset allocation, with the account currencies.
+     */
+    private void createModel(AssetAllocationService service) {
+        mService = service;
+        if (this.assetAllocation == null || service == null) {
+            mModel = null;
+            return;
+        }
+        mModel = new AssetAllocationModel(this.assetAllocation, service);
+    }
+
     private void refreshDataInFragment(AssetClass assetAllocation) {
         // find the currently displayed fragment
         AssetAllocationFragment fragment = (AssetAllocationFragment) UIHelpers.getVisibleFragment(this);
@@ -227,6 +280,8 @@ public class AssetAllocationActivity
             @Override
             public void onLoadFinished(Loader<AssetClass> loader, final AssetClass data) {
                 AssetAllocationActivity.this.assetAllocation = data;
+                // structural changes come through the loader and rebuild the model.
+                createModel(((AssetAllocationLoader) loader).getService());
 
                 // Create handler to perform showing of fragment(s).
                 Handler h = new Handler(Looper.getMainLooper());
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.assetallocation;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import com.money.manager.ex.datalayer.AccountRepository;
+import com.money.manager.ex.datalayer.AssetClassRepository;
+import com.money.manager.ex.datalayer.AssetClassStockRepository;
+import com.money.manager.ex.datalayer.StockRepository;
+import com.money.manager.ex.domainmodel.AssetClass;
+import com.money.manager.ex.domainmodel.AssetClassStock;
+import com.money.manager.ex.domainmodel.Stock;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Loads all the data required for the Asset Allocation in a fixed number of queries
+ * (asset classes, stock links, linked stocks, account currencies). The stocks are then
+ * attached to the asset classes in memory, regardless of the number of classes.
+ */
+public class AssetAllocationBulkLoader {
+
+    public AssetAllocationBulkLoader(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    private Context context;
+    private HashMap<Integer, AssetClass> mAssetClasses;
+    private HashMap<Integer, List<AssetClassStock>> mLinksByClass;
+    private HashMap<String, List<Stock>> mStocksBySymbol;
+    private HashMap<Integer, Integer> mAccountCurrencies;
+
+    /**
+     * Runs all the queries. Call before accessing any of the data.
+     */
+    public void load() {
+        loadAssetClasses();
+        loadLinks();
+        loadStocks();
+
+        AccountRepository accountRepository = new AccountRepository(getContext());
+        mAccountCurrencies = accountRepository.loadCurrencyIds();
+    }
+
+    public Context getContext() {
+        return this.context;
+    }
+
+    /**
+     * @return Map of all asset classes by their id. The hierarchy is not assigned.
+     */
+    public HashMap<Integer, AssetClass> getAssetClasses() {
+        return mAssetClasses;
+    }
+
+    /**
+     * @return Map of Account Id / Currency Id for all accounts.
+     */
+    public HashMap<Integer, Integer> getAccountCurrencies() {
+        return mAccountCurrencies;
+    }
+
+    /**
+     * Attach the stock links and stocks to the leaf asset classes. No database access.
+     * @param allocation List of asset classes with the children already assigned.
+     */
+    public void assignStocks(List<AssetClass> allocation) {
+        for (AssetClass assetClass : allocation) {
+            if (assetClass.getChildren().size() > 0) {
+                // Group. Load values for child elements.
+                assignStocks(assetClass.getChildren());
+            } else {
+                assignStocks(assetClass);
+            }
+        }
+    }
+
+    // Private
+
+    private void assignStocks(AssetClass assetClass) {
+        // No child elements. This is the actual allocation.
+        assetClass.setType(ItemType.Allocation);
+
+        List<AssetClassStock> links = mLinksByClass.get(assetClass.getId());
+        if (links == null) links = new ArrayList<>();
+        assetClass.setStockLinks(links);
+
+        List<Stock> stocks = new ArrayList<>();
+        HashSet<String> symbols = new HashSet<>();
+        for (AssetClassStock link : links) {
+            // the same symbol may be linked more than once
+            if (!symbols.add(link.getStockSymbol())) continue;
+
+            List<Stock> linked = mStocksBySymbol.get(link.getStockSymbol());
+            if (linked == null) continue;
+
+            stocks.addAll(linked);
+        }
+        assetClass.setStocks(stocks);
+    }
+
+    private void loadAssetClasses() {
+        mAssetClasses = new HashMap<>();
+
+        AssetClassRepository repo = new AssetClassRepository(getContext());
+        Cursor c = repo.openCursor(null, null, null, AssetClass.PARENTID);
+        if (c == null) return;
+
+        while (c.moveToNext()) {
+            AssetClass ac = AssetClass.from(c);
+            mAssetClasses.put(ac.getId(), ac);
+        }
+        c.close();
+    }
+
+    private void loadLinks() {
+        mLinksByClass = new HashMap<>();
+
+        AssetClassStockRepository repo = new AssetClassStockRepository(getContext());
+        List<AssetClassStock> links = repo.loadAll();
+        if (links == null) return;
+
+        for (AssetClassStock link : links) {
+            List<AssetClassStock> classLinks = mLinksByClass.get(link.getAssetClassId());
+            if (classLinks == null) {
+                classLinks = new ArrayList<>();
+                mLinksByClass.put(link.getAssetClassId(), classLinks);
+            }
+            classLinks.add(link);
+        }
+    }
+
+    private void loadStocks() {
+        mStocksBySymbol = new HashMap<>();
+
+        StockRepository repo = new StockRepository(getContext());
+        List<Stock> stocks = repo.loadLinkedToAssetClasses();
+        if (stocks == null) return;
+
+        for (Stock stock : stocks) {
+            List<Stock> symbolStocks = mStocksBySymbol.get(stock.getSymbol());
+            if (symbolStocks == null) {
+                symbolStocks = new ArrayList<>();
+                mStocksBySymbol.put(stock.getSymbol(), symbolStocks);
+            }
+            symbolStocks.add(stock);
+        }
+    }
+}
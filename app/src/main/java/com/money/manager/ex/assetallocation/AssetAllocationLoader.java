@@ -38,6 +38,11 @@ public class AssetAllocationLoader
     }
 
     private AssetClass mData;
+    /**
+     * The service that did the last load, with the account currencies and the currencies
+     * already loaded.
+     */
+    private volatile AssetAllocationService mService;
 
     /****************************************************/
     /** (1) A task that performs the asynchronous load **/
@@ -47,9 +52,18 @@ public class AssetAllocationLoader
     public AssetClass loadInBackground() {
         AssetAllocationService service = new AssetAllocationService(getContext());
         AssetClass result = service.loadAssetAllocation();
+        mService = service;
         return result;
     }
 
+    /**
+     * @return The service that loaded the asset allocation. Use it to keep the allocation up to
+     * date, as it does not need to read the account currencies again.
+     */
+    public AssetAllocationService getService() {
+        return mService;
+    }
+
     /********************************************************/
     /** (2) Deliver the results to the registered listener **/
     /********************************************************/
@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.assetallocation;
+
+import com.money.manager.ex.domainmodel.AssetClass;
+import com.money.manager.ex.domainmodel.AssetClassStock;
+import com.money.manager.ex.domainmodel.Stock;
+import com.money.manager.ex.servicelayer.AssetAllocationService;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+
+import info.javaperformance.money.Money;
+import info.javaperformance.money.MoneyFactory;
+
+/**
+ * In-memory Asset Allocation that is kept up to date on price and holding changes without
+ * reloading. Only the affected allocations are re-valued and the difference is propagated
+ * to their ancestors. The derived values (set value, current allocation, difference) depend
+ * on the portfolio total so they are refreshed with a single arithmetic pass over the tree.
+ * Structural edits (asset classes, links) still require a full load.
+ */
+public class AssetAllocationModel {
+
+    /**
+     * @param assetAllocation Fully calculated asset allocation, as returned by the service.
+     * @param service Service that loaded the asset allocation, used for currency conversion and
+     *                calculations. Its account currencies are reused, see
+     *                {@link AssetAllocationService#getAccountCurrencies()}.
+     */
+    public AssetAllocationModel(AssetClass assetAllocation, AssetAllocationService service) {
+        mAssetAllocation = assetAllocation;
+        mService = service;
+
+        mParents = new IdentityHashMap<>();
+        mAllocationsBySymbol = new HashMap<>();
+        index(assetAllocation);
+    }
+
+    private AssetClass mAssetAllocation;
+    private AssetAllocationService mService;
+    private IdentityHashMap<AssetClass, AssetClass> mParents;
+    /**
+     * Allocations (leaf asset classes) by the linked stock symbol.
+     */
+    private HashMap<String, List<AssetClass>> mAllocationsBySymbol;
+
+    public AssetClass getAssetAllocation() {
+        return mAssetAllocation;
+    }
+
+    /**
+     * Apply a new price to all the holdings of the given symbol.
+     * @param symbol Stock symbol
+     * @param price New price
+     * @return Indicator whether the asset allocation has been changed.
+     */
+    public boolean updatePrice(String symbol, Money price) {
+        List<AssetClass> allocations = mAllocationsBySymbol.get(symbol);
+        if (allocations == null) return false;
+
+        for (AssetClass allocation : allocations) {
+            for (Stock stock : allocation.getStocks()) {
+                if (symbol.equals(stock.getSymbol())) {
+                    stock.setCurrentPrice(price);
+                }
+            }
+            revalue(allocation);
+        }
+
+        refreshDerivedValues();
+        return true;
+    }
+
+    /**
+     * Apply an inserted or updated holding (stock record).
+     * @param stock Saved stock record.
+     * @return Indicator whether the asset allocation has been changed.
+     */
+    public boolean updateHolding(Stock stock) {
+        // The symbol may have changed so take the holding out of its previous allocations first.
+        boolean changed = detachHolding(stock.getId());
+
+        List<AssetClass> allocations = mAllocationsBySymbol.get(stock.getSymbol());
+        if (allocations != null) {
+            for (AssetClass allocation : allocations) {
+                allocation.addStock(stock);
+                revalue(allocation);
+            }
+            changed = true;
+        }
+
+        if (changed) {
+            refreshDerivedValues();
+        }
+        return changed;
+    }
+
+    /**
+     * Apply a deleted holding.
+     * @param stockId Id of the deleted stock record.
+     * @return Indicator whether the asset allocation has been changed.
+     */
+    public boolean removeHolding(int stockId) {
+        boolean changed = detachHolding(stockId);
+        if (changed) {
+            refreshDerivedValues();
+        }
+        return changed;
+    }
+
+    // Private
+
+    private void index(AssetClass parent) {
+        for (AssetClass child : parent.getChildren()) {
+            mParents.put(child, parent);
+
+            if (child.getType() == ItemType.Allocation) {
+                for (AssetClassStock link : child.getStockLinks()) {
+                    List<AssetClass> allocations = mAllocationsBySymbol.get(link.getStockSymbol());
+                    if (allocations == null) {
+                        allocations = new ArrayList<>();
+                        mAllocationsBySymbol.put(link.getStockSymbol(), allocations);
+                    }
+                    if (!allocations.contains(child)) {
+                        allocations.add(child);
+                    }
+                }
+            }
+
+            index(child);
+        }
+    }
+
+    private boolean detachHolding(Integer stockId) {
+        if (stockId == null) return false;
+
+        boolean changed = false;
+
+        for (List<AssetClass> allocations : mAllocationsBySymbol.values()) {
+            for (AssetClass allocation : allocations) {
+                boolean removed = false;
+                Iterator<Stock> iterator = allocation.getStocks().iterator();
+                while (iterator.hasNext()) {
+                    if (stockId.equals(iterator.next().getId())) {
+                        iterator.remove();
+                        removed = true;
+                    }
+                }
+                if (removed) {
+                    revalue(allocation);
+                    changed = true;
+                }
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Recalculate the current value of the allocation and propagate the difference to
+     * all the ancestors.
+     */
+    private void revalue(AssetClass allocation) {
+        Money previous = allocation.getCurrentValue();
+        if (previous == null) previous = MoneyFactory.fromDouble(0);
+
+        Money current = mService.sumStockValues(allocation.getStocks());
+        allocation.setCurrentValue(current);
+
+        Money delta = current.subtract(previous);
+        if (delta.isZero()) return;
+
+        AssetClass parent = mParents.get(allocation);
+        while (parent != null) {
+            parent.setCurrentValue(parent.getCurrentValue().add(delta));
+            parent = mParents.get(parent);
+        }
+    }
+
+    private void refreshDerivedValues() {
+        // The root is a group, so its totals are recalculated from the children as well.
+        refreshDerivedValues(mAssetAllocation, mAssetAllocation.getCurrentValue());
+    }
+
+    private void refreshDerivedValues(AssetClass item, Money portfolioValue) {
+        if (item.getType() == ItemType.Group) {
+            Money value = MoneyFactory.fromDouble(0);
+            Money currentAllocation = MoneyFactory.fromDouble(0);
+            Money difference = MoneyFactory.fromDouble(0);
+
+            for (AssetClass child : item.getChildren()) {
+                refreshDerivedValues(child, portfolioValue);
+
+                value = value.add(child.getValue());
+                currentAllocation = currentAllocation.add(child.getCurrentAllocation());
+                difference = difference.add(child.getDifference());
+            }
+
+            item.setValue(value);
+            item.setCurrentAllocation(currentAllocation);
+            item.setDifference(difference);
+            return;
+        }
+
+        // Allocation or Cash.
+        if (portfolioValue.isZero()) {
+            Money zero = MoneyFactory.fromDouble(0);
+            item.setValue(zero);
+            item.setCurrentAllocation(zero);
+            item.setDifference(item.getCurrentValue());
+            return;
+        }
+
+        Money setValue = mService.calculateSetValue(portfolioValue, item.getAllocation());
+        item.setValue(setValue);
+        item.setCurrentAllocation(mService.calculateCurrentAllocation(item.getCurrentValue(), portfolioValue));
+        item.setDifference(item.getCurrentValue().subtract(setValue));
+    }
+}
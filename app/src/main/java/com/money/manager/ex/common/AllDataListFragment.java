@@ -18,12 +18,15 @@ package com.money.manager.ex.common;
 
 import android.app.Activity;
 import android.content.ContentValues;
+import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.database.Cursor;
 import android.database.DatabaseUtils;
 import android.graphics.Typeface;
+import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.Handler;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.LoaderManager;
 import android.support.v4.app.LoaderManager.LoaderCallbacks;
@@ -53,6 +56,8 @@ import com.money.manager.ex.Constants;
 import com.money.manager.ex.core.ExceptionHandler;
 import com.money.manager.ex.core.TransactionTypes;
 import com.money.manager.ex.currency.CurrencyService;
+import com.money.manager.ex.currency.ExchangeRateEngine;
+import com.money.manager.ex.currency.ExchangeRateStore;
 import com.money.manager.ex.database.ITransactionEntity;
 import com.money.manager.ex.datalayer.AccountTransactionRepository;
 import com.money.manager.ex.datalayer.Query;
@@ -64,6 +69,8 @@ import com.money.manager.ex.transactions.CheckingTransactionEditActivity;
 import com.money.manager.ex.R;
 import com.money.manager.ex.servicelayer.qif.QifExport;
 import com.money.manager.ex.transactions.EditTransactionActivityConstants;
+import com.money.manager.ex.search.IncrementalSearch;
+import com.money.manager.ex.search.IncrementalSearchLoader;
 import com.money.manager.ex.search.SearchActivity;
 import com.money.manager.ex.adapter.AllDataAdapter;
 import com.money.manager.ex.adapter.AllDataAdapter.TypeCursor;
@@ -118,6 +125,10 @@ public class AllDataListFragment
     public static final String KEY_ARGUMENTS_SORT = "SearchResultFragment:ArgumentsSort";
 
     private static final String LOGCAT = AllDataListFragment.class.getSimpleName();
+    /**
+     * Wait for a pause in typing before the search results are filtered.
+     */
+    private static final long SEARCH_DELAY_MILLIS = 300;
 
     public int AccountId = Constants.NOT_SET;
     private LinearLayout footer;
@@ -129,6 +140,20 @@ public class AllDataListFragment
     private View mListHeader = null;
     private Bundle mArguments;
     private boolean mShowFooter = false;
+    private IncrementalSearch mIncrementalSearch;
+    /**
+     * Text typed in the search view, when searching as you type. Null otherwise.
+     */
+    private String mSearchText;
+    private final Handler mSearchHandler = new Handler();
+    private final Runnable mSearchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (isAdded()) {
+                loadData();
+            }
+        }
+    };
 
     @Override
     public void onActivityCreated(Bundle savedInstanceState) {
@@ -224,8 +249,10 @@ public class AllDataListFragment
     public Loader<Cursor> onCreateLoader(int id, Bundle args) {
         if (getSearchResultFragmentLoaderCallbacks() != null)
             getSearchResultFragmentLoaderCallbacks().onCreateLoader(id, args);
-        //animation
-        setListShown(false);
+        //animation. Keep the current results visible while typing.
+        if (mSearchText == null) {
+            setListShown(false);
+        }
 
         switch (id) {
             case ID_LOADER_ALL_DATA_DETAIL:
@@ -252,6 +279,15 @@ public class AllDataListFragment
                         .where(selection, null)
                         .orderBy(sort);
 
+                if (mIncrementalSearch != null) {
+                    if (!TextUtils.isEmpty(mSearchText)) {
+                        return new IncrementalSearchLoader(getActivity(), allData.getUri(), query,
+                            mSearchText, mIncrementalSearch);
+                    }
+                    // The data changes are not tracked without the search text. Do not refine
+                    // the kept result when the user types again.
+                    mIncrementalSearch.reset();
+                }
                 return new MmexCursorLoader(getActivity(), allData.getUri(), query);
         }
         return null;
@@ -302,6 +338,26 @@ public class AllDataListFragment
 
     // End loader event handlers
 
+    @Override
+    protected boolean onPreQueryTextChange(String newText) {
+        if (mIncrementalSearch == null) {
+            return super.onPreQueryTextChange(newText);
+        }
+
+        // Searching as you type. Reload once the typing pauses; restarting the loader cancels
+        // the query that is still running.
+        mSearchText = newText;
+        mSearchHandler.removeCallbacks(mSearchRunnable);
+        mSearchHandler.postDelayed(mSearchRunnable, SEARCH_DELAY_MILLIS);
+        return true;
+    }
+
+    @Override
+    protected boolean isSearchWithWildcards() {
+        // the incremental search matches words on the full-text index.
+        return mIncrementalSearch == null;
+    }
+
     /**
      * Add options to the action bar of the host activity.
      * This is not called in ActionBar Activity, i.e. Search.
@@ -357,6 +413,7 @@ public class AllDataListFragment
 
     @Override
     public void onDestroy() {
+        mSearchHandler.removeCallbacks(mSearchRunnable);
         if (mMultiChoiceModeListener != null)
             mMultiChoiceModeListener.onDestroyActionMode(null);
         super.onDestroy();
@@ -541,6 +598,15 @@ public class AllDataListFragment
         return mShowHeader;
     }
 
+    /**
+     * Filter the displayed transactions with the text typed in the search view, as the user
+     * types. Call before the options menu is created.
+     */
+    public void enableIncrementalSearch() {
+        mIncrementalSearch = new IncrementalSearch();
+        setShowMenuItemSearch(true);
+    }
+
     /**
      * Start loader into fragment
      */
@@ -616,6 +682,17 @@ public class AllDataListFragment
     private void updateFooter(Cursor data) {
         if (data == null) return;
 
+        // The rates are shared between the refreshes and loaded in the background when they change.
+        ExchangeRateEngine exchangeRates = ExchangeRateStore.getInstance().peek();
+        if (exchangeRates == null && data.getCount() != 0) {
+            loadExchangeRates();
+            return;
+        }
+
+        updateFooter(data, exchangeRates);
+    }
+
+    private void updateFooter(Cursor data, ExchangeRateEngine exchangeRates) {
         String display;
 
         // number of records
@@ -624,25 +701,58 @@ public class AllDataListFragment
         // sum
 
         Money total = MoneyFactory.fromString("0");
+        CurrencyService currencyService = new CurrencyService(getContext());
 
         if (data.getCount() != 0) {
-            total = getTotalFromCursor(data);
+            total = getTotalFromCursor(data, currencyService.getBaseCurrencyId(), exchangeRates);
         }
 
         TextView txtColumn2 = (TextView) this.footer.findViewById(R.id.textViewColumn2);
 
-        CurrencyService currencyService = new CurrencyService(getContext());
         display += currencyService.getBaseCurrencyFormatted(total);
 
         txtColumn2.setText(display);
     }
 
-    private Money getTotalFromCursor(Cursor cursor) {
+    /**
+     * Load the exchange rates in the background and then show the totals of the current data.
+     */
+    private void loadExchangeRates() {
+        final Context context = getActivity().getApplicationContext();
+
+        new AsyncTask<Void, Void, ExchangeRateEngine>() {
+            @Override
+            protected ExchangeRateEngine doInBackground(Void... params) {
+                try {
+                    return ExchangeRateStore.getInstance().get(context);
+                } catch (Exception e) {
+                    ExceptionHandler handler = new ExceptionHandler(context, this);
+                    handler.handle(e, "loading exchange rates");
+                }
+                return null;
+            }
+
+            @Override
+            protected void onPostExecute(ExchangeRateEngine exchangeRates) {
+                if (exchangeRates == null || !isAdded() || getAllDataAdapter() == null) return;
+
+                Cursor data = getAllDataAdapter().getCursor();
+                if (data == null || data.isClosed()) return;
+
+                try {
+                    updateFooter(data, exchangeRates);
+                } catch (Exception e) {
+                    ExceptionHandler handler = new ExceptionHandler(getActivity(), this);
+                    handler.handle(e, "displaying footer");
+                }
+            }
+        }.execute();
+    }
+
+    private Money getTotalFromCursor(Cursor cursor, int baseCurrencyId, ExchangeRateEngine exchangeRates) {
         Money total = MoneyFactory.fromString("0");
         int originalPosition = cursor.getPosition();
         AllDataAdapter adapter = getAllDataAdapter();
-        CurrencyService currencyService = new CurrencyService(getContext());
-        int baseCurrencyId = currencyService.getBaseCurrencyId();
         ContentValues values = new ContentValues();
 
         int currencyId;
@@ -674,7 +784,7 @@ public class AllDataListFragment
                 amount = MoneyFactory.fromString(values.getAsString(adapter.AMOUNT));
             }
 
-            converted = currencyService.doCurrencyExchange(baseCurrencyId, amount, currencyId);
+            converted = exchangeRates.convert(amount, currencyId, baseCurrencyId);
             total = total.add(converted);
         }
 
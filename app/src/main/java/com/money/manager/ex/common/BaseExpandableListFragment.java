@@ -96,7 +96,7 @@ public abstract class BaseExpandableListFragment
         // check search type
         Boolean searchType = PreferenceManager.getDefaultSharedPreferences(getActivity())
                 .getBoolean(getString(PreferenceConstants.PREF_TEXT_SEARCH_TYPE), Boolean.TRUE);
-        if (isShowMenuItemSearch() && !searchType && !isShowTipsWildcard) {
+        if (isShowMenuItemSearch() && isSearchWithWildcards() && !searchType && !isShowTipsWildcard) {
             // show tooltip for wildcard
             TipsDialogFragment tipsDropbox = TipsDialogFragment.getInstance(getActivity().getApplicationContext(), "lookupswildcard");
             if (tipsDropbox != null) {
@@ -241,6 +241,14 @@ public abstract class BaseExpandableListFragment
         return mShowMenuItemSearch;
     }
 
+    /**
+     * @return Indicator whether the search text can contain SQL wildcards. The wildcard tip
+     * is shown only then.
+     */
+    protected boolean isSearchWithWildcards() {
+        return true;
+    }
+
     /**
      *
      * @param mShowMenuItemSearch the mShowMenuItemSearch to set
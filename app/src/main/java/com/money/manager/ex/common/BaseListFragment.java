@@ -117,7 +117,7 @@ public abstract class BaseListFragment
         Boolean searchType = PreferenceManager.getDefaultSharedPreferences(getActivity())
                 .getBoolean(getString(PreferenceConstants.PREF_TEXT_SEARCH_TYPE), Boolean.TRUE);
 
-        if (isShowMenuItemSearch() && !searchType && !isShowTipsWildcard) {
+        if (isShowMenuItemSearch() && isSearchWithWildcards() && !searchType && !isShowTipsWildcard) {
             // show tooltip for wildcard
             TipsDialogFragment tipsDropbox = TipsDialogFragment.getInstance(getActivity().getApplicationContext(), "lookupswildcard");
             if (tipsDropbox != null) {
@@ -194,6 +194,14 @@ public abstract class BaseListFragment
         return true;
     }
 
+    /**
+     * @return Indicator whether the search text can contain SQL wildcards. The wildcard tip
+     * is shown only then.
+     */
+    protected boolean isSearchWithWildcards() {
+        return true;
+    }
+
     @Override
     public void onSaveInstanceState(Bundle outState) {
         outState.putBoolean(KEY_SHOWN_TIPS_WILDCARD, isShowTipsWildcard);
@@ -42,12 +42,12 @@ import com.money.manager.ex.Constants;
 import com.money.manager.ex.R;
 import com.money.manager.ex.adapter.CategoryExpandableListAdapter;
 import com.money.manager.ex.core.ContextMenuIds;
-import com.money.manager.ex.datalayer.Query;
 import com.money.manager.ex.datalayer.SubcategoryRepository;
 import com.money.manager.ex.domainmodel.Category;
 import com.money.manager.ex.domainmodel.Subcategory;
 import com.money.manager.ex.servicelayer.CategoryService;
 import com.money.manager.ex.core.Core;
+import com.money.manager.ex.database.LookupIndex;
 import com.money.manager.ex.database.QueryCategorySubCategory;
 import com.money.manager.ex.database.SQLTypeTransaction;
 import com.money.manager.ex.database.TableCategory;
@@ -70,7 +70,7 @@ import java.util.List;
  */
 public class CategoryListFragment
     extends BaseExpandableListFragment
-    implements LoaderManager.LoaderCallbacks<Cursor> {
+    implements LoaderManager.LoaderCallbacks<LookupIndex> {
 
     public String mAction = Intent.ACTION_EDIT;
     public Integer requestId;
@@ -80,8 +80,6 @@ public class CategoryListFragment
     private static final String KEY_ID_GROUP = "CategorySubCategory:idGroup";
     private static final String KEY_ID_CHILD = "CategorySubCategory:idChild";
     private static final String KEY_CUR_FILTER = "CategorySubCategory:curFilter";
-    // table or query
-    private static QueryCategorySubCategory mQuery;
     private int mLayout;
     private int mIdGroupChecked = ExpandableListView.INVALID_POSITION;
     private int mIdChildChecked = ExpandableListView.INVALID_POSITION;
@@ -91,14 +89,15 @@ public class CategoryListFragment
 
     private ArrayList<Integer> mPositionToExpand;
     private String mCurFilter;
+    /**
+     * All the categories and subcategories. The list is filtered from it while typing.
+     */
+    private LookupIndex mIndex;
 
     @Override
     public void onActivityCreated(Bundle savedInstanceState) {
         super.onActivityCreated(savedInstanceState);
 
-        // create category adapter
-        mQuery = new QueryCategorySubCategory(getActivity());
-
         mCategories = new ArrayList<>();
         mSubCategories = new HashMap<>();
         mPositionToExpand = new ArrayList<>();
@@ -222,11 +221,9 @@ public class CategoryListFragment
 
     @Override
     public boolean onQueryTextChange(String newText) {
-        // Called when the action bar search text has changed.  Update
-        // the search filter, and restart the loader to do a new query
-        // with this filter.
+        // Called when the action bar search text has changed. Filter the loaded categories.
         mCurFilter = !TextUtils.isEmpty(newText) ? newText : null;
-        restartLoader();
+        showCategories();
         return true;
     }
 
@@ -243,41 +240,19 @@ public class CategoryListFragment
     // Data loader
 
     @Override
-    public Loader<Cursor> onCreateLoader(int id, Bundle args) {
+    public Loader<LookupIndex> onCreateLoader(int id, Bundle args) {
         switch (id) {
             case ID_LOADER_CATEGORYSUB:
-                // save id selected
-                if (getExpandableListAdapter() != null && getExpandableListAdapter().getGroupCount() > 0) {
-                    CategoryExpandableListAdapter adapter = (CategoryExpandableListAdapter) getExpandableListAdapter();
-                    mIdGroupChecked = adapter.getIdGroupChecked();
-                    mIdChildChecked = adapter.getIdChildChecked();
-                }
-                // clear arraylist and hashmap
-                mCategories.clear();
-                mSubCategories.clear();
-
-                // load data
-                String whereClause = null;
-                String selectionArgs[] = null;
-                if (!TextUtils.isEmpty(mCurFilter)) {
-                    whereClause = QueryCategorySubCategory.CATEGNAME + " LIKE ? OR "
-                            + QueryCategorySubCategory.SUBCATEGNAME + " LIKE ?";
-                    selectionArgs = new String[]{mCurFilter + "%", mCurFilter + "%"};
-                }
-                Query query = new Query()
-                    .select(mQuery.getAllColumns())
-                    .where(whereClause, selectionArgs)
-                    .orderBy(QueryCategorySubCategory.CATEGNAME + ", " + QueryCategorySubCategory.SUBCATEGNAME);
-
-                return new MmexCursorLoader(getActivity(), mQuery.getUri(), query);
+                return LookupIndexLoader.forCategories(getActivity());
         }
         return null;
     }
 
     @Override
-    public void onLoaderReset(Loader<Cursor> loader) {
+    public void onLoaderReset(Loader<LookupIndex> loader) {
         switch (loader.getId()) {
             case ID_LOADER_CATEGORYSUB:
+                mIndex = null;
                 // clear the data storage collections.
                 mCategories.clear();
                 mSubCategories.clear();
@@ -285,25 +260,21 @@ public class CategoryListFragment
     }
 
     @Override
-    public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
+    public void onLoadFinished(Loader<LookupIndex> loader, LookupIndex data) {
         switch (loader.getId()) {
             case ID_LOADER_CATEGORYSUB:
-                setListAdapter(getAdapter(data));
+                mIndex = data;
+                int count = showCategories();
 
                 if (isResumed()) {
                     setListShown(true);
 
-                    boolean noData = data == null || data.getCount() <= 0;
-                    if (noData && getFloatingActionButton() != null) {
+                    if (count <= 0 && getFloatingActionButton() != null) {
                         getFloatingActionButton().show(true);
                     }
                 } else {
                     setListShownNoAnimation(true);
                 }
-
-                for (int i = 0; i < mPositionToExpand.size(); i++) {
-                    getExpandableListView().expandGroup(mPositionToExpand.get(i));
-                }
         }
     }
 
@@ -361,6 +332,12 @@ public class CategoryListFragment
         }
     }
 
+    @Override
+    protected boolean isSearchWithWildcards() {
+        // the lookup index only takes a leading wildcard, for the "contains" search.
+        return false;
+    }
+
     @Override
     public String getSubTitle() {
         return getString(R.string.categories);
@@ -379,7 +356,7 @@ public class CategoryListFragment
         mPositionToExpand.clear();
         // create core and fixed string filter to highlight
         Core core = new Core(getActivity().getApplicationContext());
-        String filter = mCurFilter != null ? mCurFilter.replace("%", "") : "";
+        String filter = LookupIndex.getSearchText(mCurFilter);
 
         int key = -1;
         List<QueryCategorySubCategory> listSubCategories = null;
@@ -437,6 +414,32 @@ public class CategoryListFragment
 
     // Private
 
+    /**
+     * Show the categories matching the current filter. While filtering, the most used
+     * categories and subcategories come first.
+     * @return Number of displayed rows.
+     */
+    private int showCategories() {
+        if (mIndex == null) return 0;
+
+        // save id selected
+        if (getExpandableListAdapter() != null && getExpandableListAdapter().getGroupCount() > 0) {
+            CategoryExpandableListAdapter adapter = (CategoryExpandableListAdapter) getExpandableListAdapter();
+            mIdGroupChecked = adapter.getIdGroupChecked();
+            mIdChildChecked = adapter.getIdChildChecked();
+        }
+
+        Cursor cursor = mIndex.getCursor(mCurFilter, !TextUtils.isEmpty(mCurFilter));
+        int count = cursor.getCount();
+        setListAdapter(getAdapter(cursor));
+        cursor.close();
+
+        for (int i = 0; i < mPositionToExpand.size(); i++) {
+            getExpandableListView().expandGroup(mPositionToExpand.get(i));
+        }
+        return count;
+    }
+
     /**
      * Restart loader to view data
      */
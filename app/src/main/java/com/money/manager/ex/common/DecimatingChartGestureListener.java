@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.common;
+
+import android.view.MotionEvent;
+
+import com.github.mikephil.charting.charts.BarLineChartBase;
+import com.github.mikephil.charting.listener.ChartTouchListener;
+import com.github.mikephil.charting.listener.OnChartGestureListener;
+import com.money.manager.ex.utils.ChartDecimation;
+
+/**
+ * Keeps a decimated chart readable on zoom. The whole series is reduced to about one point per
+ * pixel, and after every zoom or pan gesture the visible range is added back at full resolution.
+ */
+public abstract class DecimatingChartGestureListener
+    implements OnChartGestureListener {
+
+    public DecimatingChartGestureListener(BarLineChartBase chart) {
+        mChart = chart;
+    }
+
+    private final BarLineChartBase mChart;
+
+    /**
+     * Rebuild the chart entries for the points returned by getPoints. Called on the UI thread
+     * after the visible range has changed.
+     */
+    protected abstract void rebuild();
+
+    /**
+     * @param series Values of each series displayed in the chart. All have the same length.
+     * @return Indices of the points to display for the whole series and the visible range.
+     */
+    public int[] getPoints(double[]... series) {
+        int threshold = getThreshold();
+        int from = 0;
+        int to = series.length > 0 ? series[0].length : 0;
+        if (mChart.getData() != null && mChart.getViewPortHandler().getScaleX() > 1) {
+            from = mChart.getLowestVisibleXIndex();
+            to = mChart.getHighestVisibleXIndex() + 1;
+        }
+
+        int[] result = new int[0];
+        for (double[] values : series) {
+            result = ChartDecimation.merge(result,
+                ChartDecimation.largestTriangleThreeBuckets(values, 0, values.length, threshold));
+            if (from > 0 || to < values.length) {
+                result = ChartDecimation.merge(result,
+                    ChartDecimation.largestTriangleThreeBuckets(values, from, to, threshold));
+            }
+        }
+        return result;
+    }
+
+    public void refresh() {
+        mChart.post(new Runnable() {
+            @Override
+            public void run() {
+                rebuild();
+            }
+        });
+    }
+
+    @Override
+    public void onChartGestureStart(MotionEvent me, ChartTouchListener.ChartGesture lastPerformedGesture) {
+
+    }
+
+    @Override
+    public void onChartGestureEnd(MotionEvent me, ChartTouchListener.ChartGesture lastPerformedGesture) {
+        if (lastPerformedGesture == ChartTouchListener.ChartGesture.PINCH_ZOOM ||
+            lastPerformedGesture == ChartTouchListener.ChartGesture.X_ZOOM ||
+            lastPerformedGesture == ChartTouchListener.ChartGesture.DRAG) {
+            refresh();
+        }
+    }
+
+    @Override
+    public void onChartLongPressed(MotionEvent me) {
+
+    }
+
+    @Override
+    public void onChartDoubleTapped(MotionEvent me) {
+        // the chart zooms in after notifying the listener.
+        refresh();
+    }
+
+    @Override
+    public void onChartSingleTapped(MotionEvent me) {
+
+    }
+
+    @Override
+    public void onChartFling(MotionEvent me1, MotionEvent me2, float velocityX, float velocityY) {
+
+    }
+
+    @Override
+    public void onChartScale(MotionEvent me, float scaleX, float scaleY) {
+
+    }
+
+    @Override
+    public void onChartTranslate(MotionEvent me, float dX, float dY) {
+
+    }
+
+    /**
+     * @return Number of points that fit the chart width.
+     */
+    private int getThreshold() {
+        int width = (int) mChart.getViewPortHandler().contentWidth();
+        if (width <= 0) {
+            width = mChart.getResources().getDisplayMetrics().widthPixels;
+        }
+        return width;
+    }
+}
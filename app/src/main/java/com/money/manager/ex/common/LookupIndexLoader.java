@@ -0,0 +1,119 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.common;
+
+import android.content.Context;
+import android.net.Uri;
+import android.support.v4.content.AsyncTaskLoader;
+
+import com.money.manager.ex.core.ExceptionHandler;
+import com.money.manager.ex.database.LookupIndex;
+import com.money.manager.ex.database.LookupIndexStore;
+import com.money.manager.ex.database.TableCategory;
+import com.money.manager.ex.datalayer.PayeeRepository;
+import com.money.manager.ex.datalayer.SubcategoryRepository;
+
+/**
+ * Loads the lookup index of the payees or of the categories for a picker list. The list is then
+ * filtered from the index while typing, without restarting the loader.
+ * Reloads when the payees or categories change.
+ */
+public class LookupIndexLoader
+    extends AsyncTaskLoader<LookupIndex> {
+
+    public static LookupIndexLoader forPayees(Context context) {
+        return new LookupIndexLoader(context, false,
+            new PayeeRepository(context).getUri());
+    }
+
+    public static LookupIndexLoader forCategories(Context context) {
+        return new LookupIndexLoader(context, true,
+            new TableCategory().getUri(), new SubcategoryRepository(context).getUri());
+    }
+
+    private LookupIndexLoader(Context context, boolean categories, Uri... uris) {
+        super(context);
+
+        mCategories = categories;
+        mUris = uris;
+    }
+
+    private final boolean mCategories;
+    private final Uri[] mUris;
+    private LookupIndex mData;
+    private ForceLoadContentObserver mObserver;
+
+    @Override
+    public LookupIndex loadInBackground() {
+        try {
+            LookupIndexStore store = LookupIndexStore.getInstance();
+            return mCategories
+                ? store.loadCategories(getContext())
+                : store.loadPayees(getContext());
+        } catch (Exception e) {
+            ExceptionHandler handler = new ExceptionHandler(getContext(), this);
+            handler.handle(e, "loading lookup index");
+        }
+        return null;
+    }
+
+    @Override
+    public void deliverResult(LookupIndex data) {
+        if (isReset()) return;
+
+        mData = data;
+
+        if (isStarted()) {
+            super.deliverResult(data);
+        }
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (mData != null) {
+            // Deliver any previously loaded data immediately.
+            deliverResult(mData);
+        }
+
+        if (mObserver == null) {
+            mObserver = new ForceLoadContentObserver();
+            for (Uri uri : mUris) {
+                getContext().getContentResolver().registerContentObserver(uri, true, mObserver);
+            }
+        }
+
+        if (takeContentChanged() || mData == null) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected void onStopLoading() {
+        cancelLoad();
+    }
+
+    @Override
+    protected void onReset() {
+        onStopLoading();
+
+        if (mObserver != null) {
+            getContext().getContentResolver().unregisterContentObserver(mObserver);
+            mObserver = null;
+        }
+        mData = null;
+    }
+}
@@ -22,23 +22,30 @@ import android.os.Parcel;
 import org.parceler.ParcelConverter;
 
 import info.javaperformance.money.Money;
-import info.javaperformance.money.MoneyFactory;
+import info.javaperformance.money.MoneyCodec;
 
 /**
  * Converts Money type to parcel for Parceler.
+ * Uses the compact binary form instead of the decimal string to avoid formatting/parsing
+ * and to keep large split lists well below the Binder transaction limit.
  */
 public class MoneyParcelConverter
     implements ParcelConverter<Money> {
 
     @Override
     public void toParcel(Money input, Parcel parcel) {
-        // store as string
-        parcel.writeString(input.toString());
+        if (input == null) {
+            parcel.writeByteArray(null);
+            return;
+        }
+        parcel.writeByteArray(MoneyCodec.encode(input));
     }
 
     @Override
     public Money fromParcel(Parcel parcel) {
-        String amountString = parcel.readString();
-        return MoneyFactory.fromString(amountString);
+        byte[] encoded = parcel.createByteArray();
+        if (encoded == null) return null;
+
+        return MoneyCodec.decode(encoded);
     }
 }
@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.common;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+
+import com.money.manager.ex.database.Dataset;
+import com.money.manager.ex.database.ReportResultCache;
+import com.money.manager.ex.database.SQLDataSet;
+import com.money.manager.ex.datalayer.Query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Cursor loader for reports. Results are served from the report result cache while the data
+ * has not changed, so that rotations, tab switches and going back and forth between periods
+ * do not re-run the report queries.
+ */
+public class ReportCursorLoader
+    extends MmexCursorLoader {
+
+    public ReportCursorLoader(Context context, Uri uri, Query query) {
+        super(context, uri, query);
+
+        mDataset = null;
+        mObserver = new ForceLoadContentObserver();
+    }
+
+    /**
+     * @param dataset Dataset of a query or view. Its source text names the tables it reads.
+     */
+    public ReportCursorLoader(Context context, Dataset dataset, Query query) {
+        super(context, dataset.getUri(), query);
+
+        mDataset = dataset;
+        mObserver = new ForceLoadContentObserver();
+    }
+
+    private final Dataset mDataset;
+    private final ForceLoadContentObserver mObserver;
+
+    @Override
+    public Cursor loadInBackground() {
+        ReportResultCache cache = ReportResultCache.getInstance();
+        String key = ReportResultCache.createKey(getUri(), getProjection(), getSelection(),
+            getSelectionArgs(), getSortOrder());
+
+        Cursor cursor = cache.get(key);
+        if (cursor != null) {
+            return observe(cursor);
+        }
+
+        long generation = cache.getGeneration();
+        cursor = super.loadInBackground();
+        cache.put(key, generation, getDependencies(), cursor);
+        return cursor;
+    }
+
+    /**
+     * @return The tables the result depends on, from the query text: the source of the dataset
+     * and the statement. Null (all the tables) for a Uri without a known source, as the tables
+     * of a query or view dataset are not named in the statement.
+     */
+    protected Set<String> getDependencies() {
+        List<String> query = new ArrayList<>();
+        if (mDataset != null) {
+            query.add(mDataset.getSource());
+        } else if (!new SQLDataSet().getUri().equals(getUri())) {
+            return null;
+        }
+        query.add(getSelection());
+        query.add(getSortOrder());
+        if (getProjection() != null) {
+            query.addAll(Arrays.asList(getProjection()));
+        }
+        return ReportResultCache.getDependencies(query.toArray(new String[query.size()]));
+    }
+
+    /**
+     * Register the loader for change notifications on a cursor that was not produced by the
+     * content provider.
+     * @param cursor In-memory cursor
+     * @return The same cursor
+     */
+    protected Cursor observe(Cursor cursor) {
+        cursor.setNotificationUri(getContext().getContentResolver(), getUri());
+        cursor.registerContentObserver(mObserver);
+        return cursor;
+    }
+}
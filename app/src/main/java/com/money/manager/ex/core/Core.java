@@ -25,7 +25,6 @@ import android.content.pm.PackageManager;
 import android.content.res.Configuration;
 import android.content.res.Resources;
 import android.content.res.TypedArray;
-import android.database.Cursor;
 import android.graphics.Color;
 import android.os.Environment;
 import android.preference.PreferenceManager;
@@ -45,12 +44,11 @@ import com.money.manager.ex.BuildConfig;
 import com.money.manager.ex.Constants;
 import com.money.manager.ex.MoneyManagerApplication;
 import com.money.manager.ex.R;
+import com.money.manager.ex.database.CategoryHierarchyStore;
 import com.money.manager.ex.database.MmexOpenHelper;
-import com.money.manager.ex.database.TableCategory;
-import com.money.manager.ex.datalayer.SubcategoryRepository;
-import com.money.manager.ex.domainmodel.Category;
+import com.money.manager.ex.database.RecentPayees;
+import com.money.manager.ex.datalayer.PayeeRepository;
 import com.money.manager.ex.domainmodel.Payee;
-import com.money.manager.ex.domainmodel.Subcategory;
 import com.money.manager.ex.settings.AppSettings;
 import com.money.manager.ex.settings.PreferenceConstants;
 import com.shamanland.fonticon.FontIconDrawable;
@@ -308,34 +306,12 @@ public class Core {
      * @return last payee used
      */
     public Payee getLastPayeeUsed() {
-        MmexOpenHelper helper = MmexOpenHelper.getInstance(mContext);
-        Payee payee = null;
-
-        String sql =
-        "SELECT C.TransID, C.TransDate, C.PAYEEID, P.PAYEENAME, P.CATEGID, P.SUBCATEGID " +
-        "FROM CHECKINGACCOUNT_V1 C " +
-        "INNER JOIN PAYEE_V1 P ON C.PAYEEID = P.PAYEEID " +
-        "WHERE C.TransCode <> 'Transfer' " +
-        "ORDER BY C.TransDate DESC, C.TransId DESC " +
-        "LIMIT 1";
-
-        Cursor cursor = helper.getReadableDatabase().rawQuery(sql, null);
-
-        // check if cursor can be open
-        if (cursor != null && cursor.moveToFirst()) {
-            payee = new Payee();
-//            payee.setPayeeId(cursor.getInt(cursor.getColumnIndex(Payee.PAYEEID)));
-//            payee.setPayeeName(cursor.getString(cursor.getColumnIndex(Payee.PAYEENAME)));
-//            payee.setCategId(cursor.getInt(cursor.getColumnIndex(Payee.CATEGID)));
-//            payee.setSubCategId(cursor.getInt(cursor.getColumnIndex(Payee.SUBCATEGID)));
-            payee.loadFromCursor(cursor);
-
-            cursor.close();
-        }
-        //close database
-        //helper.close();
+        // from the maintained list, without querying the transactions.
+        Integer payeeId = RecentPayees.getInstance().getLastPayeeId(mContext);
+        if (payeeId == null) return null;
 
-        return payee;
+        PayeeRepository repo = new PayeeRepository(mContext);
+        return repo.load(payeeId);
     }
 
     /**
@@ -393,48 +369,9 @@ public class Core {
      * @return category : sub-category
      */
     public String getCategSubName(int categoryId, int subCategoryId) {
-        // validation
-        if (categoryId == Constants.NOT_SET && subCategoryId == Constants.NOT_SET) return null;
-
-        String categoryName = null;
-        String subCategoryName, ret;
-        TableCategory category = new TableCategory();
-        // category
-        Cursor cursor = mContext.getContentResolver().query(category.getUri(),
-                null,
-                Category.CATEGID + "=?",
-                new String[]{Integer.toString(categoryId)},
-                null);
-
-        if ((cursor != null) && (cursor.moveToFirst())) {
-            // set category name and sub category name
-            categoryName = cursor.getString(cursor.getColumnIndex(Category.CATEGNAME));
-        }
-        if (cursor != null) {
-            cursor.close();
-        }
-
-        // sub-category
-        SubcategoryRepository repo = new SubcategoryRepository(getContext());
-        cursor = mContext.getContentResolver().query(repo.getUri(),
-                null,
-                Subcategory.SUBCATEGID + "=?",
-                new String[]{Integer.toString(subCategoryId)},
-                null);
-        if ((cursor != null) && (cursor.moveToFirst())) {
-            // set category name and sub category name
-            subCategoryName = cursor.getString(cursor.getColumnIndex(Subcategory.SUBCATEGNAME));
-        } else {
-            subCategoryName = null;
-        }
-        if (cursor != null) {
-            cursor.close();
-        }
-
-        ret = (!TextUtils.isEmpty(categoryName) ? categoryName : "") +
-                (!TextUtils.isEmpty(subCategoryName) ? ":" + subCategoryName : "");
-
-        return ret;
+        // from the cached names, no database access after the first call.
+        return CategoryHierarchyStore.getInstance().get(getContext())
+            .getCategSubName(categoryId, subCategoryId);
     }
 
     /**
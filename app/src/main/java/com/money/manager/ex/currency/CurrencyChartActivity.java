@@ -16,22 +16,40 @@
  */
 package com.money.manager.ex.currency;
 
+import android.content.Context;
 import android.content.Intent;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.view.Menu;
 import android.view.MenuItem;
+import android.view.View;
 import android.widget.ImageView;
 
+import com.github.mikephil.charting.charts.LineChart;
+import com.github.mikephil.charting.data.Entry;
+import com.github.mikephil.charting.data.LineData;
+import com.github.mikephil.charting.data.LineDataSet;
 import com.money.manager.ex.R;
 import com.money.manager.ex.common.BaseFragmentActivity;
+import com.money.manager.ex.common.DecimatingChartGestureListener;
 import com.money.manager.ex.domainmodel.Currency;
+import com.money.manager.ex.domainmodel.CurrencyHistory;
 import com.money.manager.ex.utils.NetworkUtilities;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class CurrencyChartActivity
     extends BaseFragmentActivity {
 
     public static final String BASE_CURRENCY_SYMBOL = "CurrencyChartActivity::BaseCurrencySymbol";
 
+    private LineChart mHistoryChart;
+    private DecimatingChartGestureListener mDecimation;
+    private String mHistoryLabel;
+    private String[] mHistoryDates;
+    private double[] mHistoryRates;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -46,6 +64,8 @@ public class CurrencyChartActivity
             baseCurrencySymbol = intent.getStringExtra(BASE_CURRENCY_SYMBOL);
         }
 
+        // stored rate history
+        loadHistoryChart(currencySymbol, baseCurrencySymbol);
         // load currency chart.
         loadCurrencyChart(currencySymbol, baseCurrencySymbol);
     }
@@ -72,6 +92,73 @@ public class CurrencyChartActivity
         return super.onOptionsItemSelected(item);
     }
 
+    /**
+     * Show the exchange rate history stored in the database, if any. The history is read in
+     * the background. Multi-year histories are decimated to the chart width. Zooming in shows
+     * the visible range in full resolution.
+     */
+    private void loadHistoryChart(final String currencySymbol, final String baseCurrencySymbol) {
+        if (currencySymbol == null) return;
+
+        final Context context = getApplicationContext();
+        new AsyncTask<Void, Void, List<CurrencyHistory>>() {
+            @Override
+            protected List<CurrencyHistory> doInBackground(Void... params) {
+                Currency currency = new CurrencyRepository(context).loadCurrency(currencySymbol);
+                if (currency == null) return null;
+
+                return new CurrencyHistoryRepository(context).loadForCurrency(currency.getCurrencyId());
+            }
+
+            @Override
+            protected void onPostExecute(List<CurrencyHistory> history) {
+                if (isFinishing()) return;
+
+                showHistoryChart(currencySymbol + "/" + baseCurrencySymbol, history);
+            }
+        }.execute();
+    }
+
+    private void showHistoryChart(String label, List<CurrencyHistory> history) {
+        if (history == null || history.size() < 2) return;
+
+        mHistoryLabel = label;
+        mHistoryDates = new String[history.size()];
+        mHistoryRates = new double[history.size()];
+        for (int i = 0; i < history.size(); i++) {
+            mHistoryDates[i] = history.get(i).getDateString();
+            mHistoryRates[i] = history.get(i).getValue().toDouble();
+        }
+
+        mHistoryChart = (LineChart) findViewById(R.id.chartHistory);
+        mHistoryChart.setVisibility(View.VISIBLE);
+        mHistoryChart.setDescription("");
+        mDecimation = new DecimatingChartGestureListener(mHistoryChart) {
+            @Override
+            protected void rebuild() {
+                setHistoryData();
+                mHistoryChart.invalidate();
+            }
+        };
+        mHistoryChart.setOnChartGestureListener(mDecimation);
+
+        setHistoryData();
+        mHistoryChart.invalidate();
+    }
+
+    private void setHistoryData() {
+        ArrayList<Entry> entries = new ArrayList<>();
+        for (int i : mDecimation.getPoints(mHistoryRates)) {
+            entries.add(new Entry((float) mHistoryRates[i], i));
+        }
+
+        LineDataSet dataSet = new LineDataSet(entries, mHistoryLabel);
+        dataSet.setDrawCircles(false);
+        dataSet.setDrawValues(false);
+
+        mHistoryChart.setData(new LineData(mHistoryDates, dataSet));
+    }
+
     private void loadCurrencyChart(String currencySymbol, String baseCurrencySymbol) {
         // do not try to load if no network.
         if (!NetworkUtilities.isOnline(this)) return;
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.currency;
+
+import android.content.Context;
+
+import com.money.manager.ex.database.DatasetType;
+import com.money.manager.ex.datalayer.Query;
+import com.money.manager.ex.datalayer.RepositoryBase;
+import com.money.manager.ex.domainmodel.CurrencyHistory;
+
+import java.util.List;
+
+/**
+ * Currency history. Historical exchange rates to the base currency.
+ */
+public class CurrencyHistoryRepository
+    extends RepositoryBase<CurrencyHistory> {
+
+    private static final String TABLE_NAME = "currencyhistory_v1";
+
+    public CurrencyHistoryRepository(Context context) {
+        super(context, TABLE_NAME, DatasetType.TABLE, "currencyhistory");
+    }
+
+    public enum UpdateType {
+        Online(1),
+        Manual(2);
+
+        UpdateType(int i) {
+            this.type = i;
+        }
+        private int type;
+
+        public int getValue() {
+            return type;
+        }
+    }
+
+    @Override
+    public String[] getAllColumns() {
+        return new String[] { "CURRHISTID AS _id",
+            CurrencyHistory.CURRHISTID, CurrencyHistory.CURRENCYID, CurrencyHistory.CURRDATE,
+            CurrencyHistory.CURRVALUE, CurrencyHistory.CURRUPDTYPE
+        };
+    }
+
+    /**
+     * Loads the complete rate history in one query, sorted by currency and date.
+     * @return list of all history records
+     */
+    public List<CurrencyHistory> loadAll() {
+        Query query = new Query()
+            .select(getAllColumns())
+            .orderBy(CurrencyHistory.CURRENCYID + ", " + CurrencyHistory.CURRDATE);
+
+        return query(CurrencyHistory.class, query);
+    }
+
+    /**
+     * @param currencyId Currency
+     * @return Rate history of the currency, sorted by date.
+     */
+    public List<CurrencyHistory> loadForCurrency(int currencyId) {
+        Query query = new Query()
+            .select(getAllColumns())
+            .where(CurrencyHistory.CURRENCYID + "=?", new String[] { Integer.toString(currencyId) })
+            .orderBy(CurrencyHistory.CURRDATE);
+
+        return query(CurrencyHistory.class, query);
+    }
+}
@@ -17,15 +17,23 @@
 
 package com.money.manager.ex.currency;
 
+import android.content.ContentProviderOperation;
 import android.content.ContentValues;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.database.Cursor;
+import android.os.RemoteException;
 
+import com.money.manager.ex.MmexContentProvider;
 import com.money.manager.ex.core.ExceptionHandler;
 import com.money.manager.ex.database.DatasetType;
 import com.money.manager.ex.datalayer.RepositoryBase;
 import com.money.manager.ex.database.WhereStatementGenerator;
 import com.money.manager.ex.domainmodel.Currency;
+import com.money.manager.ex.domainmodel.CurrencyHistory;
+
+import java.util.ArrayList;
+import java.util.List;
 
 import info.javaperformance.money.Money;
 
@@ -104,6 +112,44 @@ public class CurrencyRepository
         return result;
     }
 
+    /**
+     * Stores the exchange rates and their history records in a single transaction.
+     * An existing history record for the same currency and date is replaced.
+     * @param rates New rates. Currency, date, and value are required.
+     * @return Indicator whether the rates were saved.
+     */
+    public boolean saveExchangeRates(List<CurrencyHistory> rates) {
+        if (rates == null || rates.isEmpty()) return false;
+
+        CurrencyHistoryRepository historyRepository = new CurrencyHistoryRepository(getContext());
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+
+        for (CurrencyHistory rate : rates) {
+            String currencyId = Integer.toString(rate.getCurrencyId());
+
+            operations.add(ContentProviderOperation.newUpdate(getUri())
+                .withValue(Currency.BASECONVRATE, rate.getValue().toString())
+                .withSelection(Currency.CURRENCYID + "=?", new String[] { currencyId })
+                .build());
+            operations.add(ContentProviderOperation.newDelete(historyRepository.getUri())
+                .withSelection(CurrencyHistory.CURRENCYID + "=? AND " + CurrencyHistory.CURRDATE + "=?",
+                    new String[] { currencyId, rate.getDateString() })
+                .build());
+            operations.add(ContentProviderOperation.newInsert(historyRepository.getUri())
+                .withValues(rate.contentValues)
+                .build());
+        }
+
+        try {
+            getContext().getContentResolver().applyBatch(MmexContentProvider.getAuthority(), operations);
+        } catch (RemoteException | OperationApplicationException e) {
+            ExceptionHandler handler = new ExceptionHandler(getContext(), this);
+            handler.handle(e, "saving exchange rates");
+            return false;
+        }
+        return true;
+    }
+
     // private methods
 
     private Currency loadCurrency(String selection, String[] selectionArgs) {
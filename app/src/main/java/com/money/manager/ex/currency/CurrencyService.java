@@ -30,6 +30,7 @@ import com.money.manager.ex.MoneyManagerApplication;
 import com.money.manager.ex.R;
 import com.money.manager.ex.core.FormatUtilities;
 import com.money.manager.ex.core.InfoKeys;
+import com.money.manager.ex.currency.events.ExchangeRatesUpdatedEvent;
 import com.money.manager.ex.datalayer.AccountRepository;
 import com.money.manager.ex.datalayer.Query;
 import com.money.manager.ex.investment.ISecurityPriceUpdater;
@@ -39,9 +40,13 @@ import com.money.manager.ex.servicelayer.InfoService;
 import com.money.manager.ex.core.ExceptionHandler;
 import com.money.manager.ex.domainmodel.Account;
 import com.money.manager.ex.domainmodel.Currency;
+import com.money.manager.ex.domainmodel.CurrencyHistory;
+import com.money.manager.ex.investment.events.PriceDownloadedEvent;
 import com.money.manager.ex.servicelayer.ServiceBase;
 
 import org.apache.commons.lang3.StringUtils;
+import org.greenrobot.eventbus.EventBus;
+import org.joda.time.DateTime;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -321,6 +326,15 @@ public class CurrencyService
         return mRepository;
     }
 
+    /**
+     * Exchange rates prepared for bulk and historical conversions. Shared, see
+     * {@link ExchangeRateStore}. Reads the database on first access.
+     * @return exchange rate engine with the current rates.
+     */
+    public ExchangeRateEngine getExchangeRateEngine() {
+        return ExchangeRateStore.getInstance().get(getContext());
+    }
+
     /**
      * Import all currencies from Android System
      */
@@ -456,6 +470,66 @@ public class CurrencyService
         return updateResult > 0;
     }
 
+    /**
+     * Saves all the downloaded exchange rates, with their history, in one transaction and
+     * raises a single ExchangeRatesUpdatedEvent. Prices that are not exchange rates to the
+     * base currency (i.e. stock prices) are ignored.
+     * @param prices Downloaded prices. Symbols are in the form of USDEUR=X.
+     * @return Number of exchange rates saved.
+     */
+    public int saveExchangeRates(List<PriceDownloadedEvent> prices) {
+        if (prices == null || prices.isEmpty()) return 0;
+
+        String suffix = getExchangeRateSuffix();
+
+        // one query for all the currencies.
+        HashMap<String, Integer> idsByCode = new HashMap<>();
+        List<Currency> currencies = getRepository().query(Currency.class, new Query());
+        if (currencies == null) return 0;
+        for (Currency currency : currencies) {
+            idsByCode.put(currency.getCode(), currency.getCurrencyId());
+        }
+
+        List<CurrencyHistory> rates = new ArrayList<>();
+        for (PriceDownloadedEvent price : prices) {
+            if (price.symbol == null || price.price == null || !price.symbol.endsWith(suffix)) continue;
+
+            String code = price.symbol.substring(0, price.symbol.length() - suffix.length());
+            Integer currencyId = idsByCode.get(code);
+            if (currencyId == null) continue;
+
+            CurrencyHistory rate = new CurrencyHistory();
+            rate.setCurrencyId(currencyId);
+            rate.setDate(price.date != null ? price.date : new DateTime());
+            rate.setValue(price.price);
+            rate.setUpdateType(CurrencyHistoryRepository.UpdateType.Online.getValue());
+            rates.add(rate);
+        }
+
+        if (!getRepository().saveExchangeRates(rates)) return 0;
+
+        // cached values are stale now.
+        mCurrencies.clear();
+
+        EventBus.getDefault().post(new ExchangeRatesUpdatedEvent(rates.size()));
+
+        return rates.size();
+    }
+
+    /**
+     * @param prices Downloaded prices.
+     * @return True if any of the prices is an exchange rate to the base currency.
+     */
+    public boolean containsExchangeRates(List<PriceDownloadedEvent> prices) {
+        if (prices == null) return false;
+
+        String suffix = getExchangeRateSuffix();
+        for (PriceDownloadedEvent price : prices) {
+            if (price.symbol != null && price.symbol.endsWith(suffix)) return true;
+        }
+        return false;
+    }
+
     public void updateExchangeRate(int currencyId) {
         List<Currency> currencies = new ArrayList<>();
         currencies.add(getCurrency(currencyId));
@@ -485,6 +559,13 @@ public class CurrencyService
 
     // Private
 
+    /**
+     * @return Ending of the exchange rate symbols, i.e. EUR=X for the EUR base currency.
+     */
+    private String getExchangeRateSuffix() {
+        return getBaseCurrencyCode() + "=X";
+    }
+
     /**
      * @return a hash map of currency code / currency symbol
      */
@@ -0,0 +1,305 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.currency;
+
+import android.content.Context;
+
+import com.money.manager.ex.Constants;
+import com.money.manager.ex.datalayer.Query;
+import com.money.manager.ex.domainmodel.Currency;
+import com.money.manager.ex.domainmodel.CurrencyHistory;
+import com.money.manager.ex.utils.MyDateTimeUtils;
+
+import org.joda.time.DateTime;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.List;
+
+import info.javaperformance.money.Money;
+import info.javaperformance.money.MoneyFactory;
+
+/**
+ * Exchange rates prepared for fast conversion.
+ * The current cross rates between all currencies are precomputed into a dense matrix, indexed
+ * by the currency position. The historical rates split the time line of each currency into
+ * intervals, one per record, kept as sorted arrays of epoch days and rates. The interval that
+ * contains a date is found with a binary search, so historical conversions of a whole ledger do
+ * not query the database per row. Everything is loaded with two queries; the instance is
+ * immutable and should be recreated after the rates change. Use {@link ExchangeRateStore} for
+ * the current one.
+ */
+public class ExchangeRateEngine {
+
+    /**
+     * Precision of the cross rates. The base rates are stored as REAL (double) so 16 significant
+     * digits is all there is to keep. The precision is relative, so a small cross rate such as
+     * IDR -> BTC keeps its significant digits where a fixed number of decimals would round it to 0.
+     */
+    public static final MathContext RATE_CONTEXT = MathContext.DECIMAL64;
+
+    public ExchangeRateEngine(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    private Context context;
+    /**
+     * Currency id -> position in the arrays. Currency ids are small, sequential numbers.
+     */
+    private int[] mIndexById;
+    /**
+     * Current rate to the base currency.
+     */
+    private BigDecimal[] mBaseRates;
+    /**
+     * Current cross rates, row = from, column = to.
+     */
+    private BigDecimal[] mMatrix;
+    private int mSize;
+    /**
+     * First day of each historical interval, by currency position. Null without history.
+     */
+    private int[][] mHistoryDays;
+    /**
+     * Rate to the base currency in each historical interval, by currency position.
+     */
+    private BigDecimal[][] mHistoryRates;
+
+    /**
+     * Loads the currencies and the complete rate history.
+     * @return this instance, for chaining.
+     */
+    public ExchangeRateEngine load() {
+        CurrencyRepository repo = new CurrencyRepository(getContext());
+        List<Currency> currencies = repo.query(Currency.class, new Query());
+
+        CurrencyHistoryRepository historyRepo = new CurrencyHistoryRepository(getContext());
+
+        return load(currencies, historyRepo.loadAll());
+    }
+
+    /**
+     * Loads the given currencies and rate history.
+     * @param currencies All the currencies.
+     * @param history Historical rates, sorted by currency and date.
+     * @return this instance, for chaining.
+     */
+    public ExchangeRateEngine load(List<Currency> currencies, List<CurrencyHistory> history) {
+        loadCurrentRates(currencies);
+        loadHistory(history);
+
+        return this;
+    }
+
+    public Context getContext() {
+        return this.context;
+    }
+
+    public boolean contains(int currencyId) {
+        return indexOf(currencyId) != Constants.NOT_SET;
+    }
+
+    /**
+     * Convert the amount using the current exchange rates.
+     */
+    public Money convert(Money amount, int fromCurrencyId, int toCurrencyId) {
+        return convert(amount, fromCurrencyId, toCurrencyId, null);
+    }
+
+    /**
+     * Convert the amount using the exchange rates valid on the given date. The rate used is the
+     * latest historical rate on or before the date. Dates before the first historical record use
+     * the earliest known rate. The current rate is used when there is no history for the currency
+     * or the date is null.
+     * @param amount Amount in the source currency.
+     * @param fromCurrencyId Source currency.
+     * @param toCurrencyId Target currency.
+     * @param date Date of the rates. Null for the current rates.
+     * @return Converted amount. The amount as is if either currency is not set.
+     */
+    public Money convert(Money amount, int fromCurrencyId, int toCurrencyId, DateTime date) {
+        if (amount == null || fromCurrencyId == toCurrencyId) return amount;
+        // no currency set, i.e. a transfer without the target currency.
+        if (fromCurrencyId == Constants.NOT_SET || toCurrencyId == Constants.NOT_SET) return amount;
+
+        BigDecimal rate = date == null
+            ? getRate(fromCurrencyId, toCurrencyId)
+            : getRate(fromCurrencyId, toCurrencyId, MyDateTimeUtils.toEpochDay(date));
+        if (rate == null) {
+            throw new IllegalArgumentException("Exchange rate not available for " + fromCurrencyId +
+                " -> " + toCurrencyId);
+        }
+
+        BigDecimal result = amount.toBigDecimal().multiply(rate)
+            .setScale(Constants.DEFAULT_PRECISION, RoundingMode.HALF_UP);
+        return MoneyFactory.fromBigDecimal(result);
+    }
+
+    /**
+     * @return The current cross rate from one currency to another. Null if either currency is unknown.
+     */
+    public BigDecimal getRate(int fromCurrencyId, int toCurrencyId) {
+        int from = indexOf(fromCurrencyId);
+        int to = indexOf(toCurrencyId);
+        if (from == Constants.NOT_SET || to == Constants.NOT_SET) return null;
+
+        return mMatrix[from * mSize + to];
+    }
+
+    /**
+     * @param epochDay Date, see MyDateTimeUtils.toEpochDay.
+     * @return The cross rate valid on the date. Null if either currency is unknown.
+     */
+    public BigDecimal getRate(int fromCurrencyId, int toCurrencyId, int epochDay) {
+        int from = indexOf(fromCurrencyId);
+        int to = indexOf(toCurrencyId);
+        if (from == Constants.NOT_SET || to == Constants.NOT_SET) return null;
+        if (from == to) return BigDecimal.ONE;
+
+        return crossRate(getBaseRate(from, epochDay), getBaseRate(to, epochDay));
+    }
+
+    /**
+     * @return Number of rate intervals of the currency. 1 if it has no history.
+     */
+    public int getIntervalCount(int currencyId) {
+        int index = indexOf(currencyId);
+        if (index == Constants.NOT_SET || mHistoryDays[index] == null) return 1;
+
+        return mHistoryDays[index].length;
+    }
+
+    /**
+     * @param epochDay Date, see MyDateTimeUtils.toEpochDay.
+     * @return The rate interval of the currency that contains the date. Use with
+     * {@link #getIntervalRate(int, int, int)} to convert sums of amounts per interval.
+     */
+    public int getInterval(int currencyId, int epochDay) {
+        int index = indexOf(currencyId);
+        if (index == Constants.NOT_SET) return 0;
+
+        return findInterval(index, epochDay);
+    }
+
+    /**
+     * @param interval Rate interval of the source currency, see {@link #getInterval(int, int)}.
+     * @return The cross rate in the interval. The rate of the target currency is the one valid
+     * on the first day of the interval. Null if either currency is unknown.
+     */
+    public BigDecimal getIntervalRate(int fromCurrencyId, int toCurrencyId, int interval) {
+        int from = indexOf(fromCurrencyId);
+        int to = indexOf(toCurrencyId);
+        if (from == Constants.NOT_SET || to == Constants.NOT_SET) return null;
+        if (mHistoryDays[from] == null) return mMatrix[from * mSize + to];
+        if (from == to) return BigDecimal.ONE;
+
+        return crossRate(mHistoryRates[from][interval], getBaseRate(to, mHistoryDays[from][interval]));
+    }
+
+    // Private
+
+    private void loadCurrentRates(List<Currency> currencies) {
+        int maxId = 0;
+        for (Currency currency : currencies) {
+            maxId = Math.max(maxId, currency.getCurrencyId());
+        }
+
+        mSize = currencies.size();
+        mIndexById = new int[maxId + 1];
+        Arrays.fill(mIndexById, Constants.NOT_SET);
+        mBaseRates = new BigDecimal[mSize];
+
+        for (int i = 0; i < mSize; i++) {
+            Currency currency = currencies.get(i);
+            mIndexById[currency.getCurrencyId()] = i;
+
+            Double rate = currency.getBaseConversionRate();
+            mBaseRates[i] = rate == null ? BigDecimal.ONE : BigDecimal.valueOf(rate);
+        }
+
+        mMatrix = new BigDecimal[mSize * mSize];
+        for (int from = 0; from < mSize; from++) {
+            for (int to = 0; to < mSize; to++) {
+                mMatrix[from * mSize + to] = from == to
+                    ? BigDecimal.ONE
+                    : crossRate(mBaseRates[from], mBaseRates[to]);
+            }
+        }
+    }
+
+    private void loadHistory(List<CurrencyHistory> history) {
+        mHistoryDays = new int[mSize][];
+        mHistoryRates = new BigDecimal[mSize][];
+        if (history == null) return;
+
+        // The records are sorted by currency and date so each currency is a contiguous run.
+        int start = 0;
+        while (start < history.size()) {
+            int currencyId = history.get(start).getCurrencyId();
+            int end = start;
+            while (end < history.size() && history.get(end).getCurrencyId() == currencyId) {
+                end++;
+            }
+
+            int index = indexOf(currencyId);
+            if (index != Constants.NOT_SET) {
+                int[] days = new int[end - start];
+                BigDecimal[] rates = new BigDecimal[end - start];
+                for (int i = start; i < end; i++) {
+                    CurrencyHistory record = history.get(i);
+                    days[i - start] = MyDateTimeUtils.toEpochDay(record.getDateString());
+                    rates[i - start] = record.getValue().toBigDecimal();
+                }
+                mHistoryDays[index] = days;
+                mHistoryRates[index] = rates;
+            }
+
+            start = end;
+        }
+    }
+
+    private int findInterval(int index, int epochDay) {
+        int[] days = mHistoryDays[index];
+        if (days == null) return 0;
+
+        int position = Arrays.binarySearch(days, epochDay);
+        if (position < 0) {
+            // insertion point - 1 is the last record before the date.
+            position = -position - 2;
+        }
+        // before the first record, the earliest known rate is the best estimate.
+        return Math.max(position, 0);
+    }
+
+    private BigDecimal getBaseRate(int index, int epochDay) {
+        if (mHistoryDays[index] == null) return mBaseRates[index];
+
+        return mHistoryRates[index][findInterval(index, epochDay)];
+    }
+
+    private int indexOf(int currencyId) {
+        if (currencyId < 0 || currencyId >= mIndexById.length) return Constants.NOT_SET;
+        return mIndexById[currencyId];
+    }
+
+    private BigDecimal crossRate(BigDecimal fromRate, BigDecimal toRate) {
+        if (toRate.signum() == 0) return BigDecimal.ZERO;
+        return fromRate.divide(toRate, RATE_CONTEXT);
+    }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.currency;
+
+import android.content.Context;
+
+import com.money.manager.ex.database.CachedValue;
+
+/**
+ * Holds the current {@link ExchangeRateEngine}. It is loaded on first use, with two queries, and
+ * dropped when the currencies or the rate history change.
+ */
+public class ExchangeRateStore
+    extends CachedValue<ExchangeRateEngine> {
+
+    private static final String CURRENCIES = "CURRENCYFORMATS_V1";
+    private static final String HISTORY = "CURRENCYHISTORY_V1";
+
+    private static ExchangeRateStore mInstance;
+
+    public static synchronized ExchangeRateStore getInstance() {
+        if (mInstance == null) {
+            mInstance = new ExchangeRateStore();
+        }
+        return mInstance;
+    }
+
+    private ExchangeRateStore() {
+        super(CURRENCIES, HISTORY);
+    }
+
+    @Override
+    protected ExchangeRateEngine read(Context context) {
+        return new ExchangeRateEngine(context).load();
+    }
+}
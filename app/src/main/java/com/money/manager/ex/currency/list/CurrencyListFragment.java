@@ -50,7 +50,7 @@ import com.money.manager.ex.currency.events.ExchangeRateUpdateConfirmedEvent;
 import com.money.manager.ex.datalayer.Query;
 import com.money.manager.ex.domainmodel.Account;
 import com.money.manager.ex.domainmodel.Currency;
-import com.money.manager.ex.investment.events.PriceDownloadedEvent;
+import com.money.manager.ex.investment.events.AllPricesDownloadedEvent;
 import com.money.manager.ex.settings.AppSettings;
 import com.money.manager.ex.utils.ActivityUtils;
 import com.money.manager.ex.utils.MyDatabaseUtils;
@@ -416,9 +416,13 @@ public class CurrencyListFragment
     }
 
     @Subscribe
-    public void onEvent(PriceDownloadedEvent event) {
-        CurrencyUIFeatures ui = new CurrencyUIFeatures(getContext());
-        ui.onPriceDownloaded(event.symbol, event.price, event.date);
+    public void onEvent(AllPricesDownloadedEvent event) {
+        // Save all the rates at once. The list is reloaded once, on the data change notification.
+        int saved = getService().saveExchangeRates(event.prices);
+        if (saved == 0 && getService().containsExchangeRates(event.prices)) {
+            ExceptionHandler handler = new ExceptionHandler(getActivity(), this);
+            handler.showMessage(getString(R.string.error_updating_rates));
+        }
     }
 
     @Subscribe
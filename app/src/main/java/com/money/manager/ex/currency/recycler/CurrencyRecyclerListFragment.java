@@ -47,11 +47,11 @@ import com.money.manager.ex.currency.CurrencyService;
 import com.money.manager.ex.currency.CurrencyUIFeatures;
 import com.money.manager.ex.currency.events.CurrencyDeletionConfirmedEvent;
 import com.money.manager.ex.currency.events.ExchangeRateUpdateConfirmedEvent;
+import com.money.manager.ex.currency.events.ExchangeRatesUpdatedEvent;
 import com.money.manager.ex.currency.list.CurrencyListAdapter;
 import com.money.manager.ex.domainmodel.Account;
 import com.money.manager.ex.domainmodel.Currency;
 import com.money.manager.ex.investment.events.AllPricesDownloadedEvent;
-import com.money.manager.ex.investment.events.PriceDownloadedEvent;
 import com.money.manager.ex.settings.AppSettings;
 import com.money.manager.ex.utils.ActivityUtils;
 import com.money.manager.ex.view.recycler.ContextMenuRecyclerView;
@@ -232,16 +232,17 @@ public class CurrencyRecyclerListFragment
     }
 
     @Subscribe
-    public void onEvent(PriceDownloadedEvent event) {
-        CurrencyUIFeatures ui = new CurrencyUIFeatures(getContext());
-        boolean updated = ui.onPriceDownloaded(event.symbol, event.price, event.date);
-        if (!updated) {
-            //todo: show error msg
+    public void onEvent(AllPricesDownloadedEvent event) {
+        // Save all the rates in one transaction.
+        int saved = getService().saveExchangeRates(event.prices);
+        if (saved == 0 && getService().containsExchangeRates(event.prices)) {
+            ExceptionHandler handler = new ExceptionHandler(getContext(), this);
+            handler.showMessage(getString(R.string.error_updating_rates));
         }
     }
 
     @Subscribe
-    public void onEvent(AllPricesDownloadedEvent event) {
+    public void onEvent(ExchangeRatesUpdatedEvent event) {
         loadData(getAdapter());
         // update ui.
         getAdapter().notifyItemRangeChanged(0, getAdapter().getItemCount());
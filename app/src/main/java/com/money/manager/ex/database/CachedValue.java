@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.database;
+
+import android.content.ContentValues;
+import android.content.Context;
+
+/**
+ * A value derived from the tables, kept in memory. It is read on first use and dropped when
+ * any of its tables changes. A value read while the data changed is not kept, so a reader never
+ * stores a stale value. Readers get the same instance and must not modify it.
+ * @param <T> Type of the value.
+ */
+public abstract class CachedValue<T>
+    implements TableChangeListener {
+
+    /**
+     * Change of the loaded value, see {@link #update(Update)}.
+     */
+    protected interface Update<T> {
+        T apply(T value);
+    }
+
+    /**
+     * @param tables Tables the value is derived from.
+     */
+    protected CachedValue(String... tables) {
+        mTables = tables;
+    }
+
+    private final String[] mTables;
+    private volatile T mValue;
+    /**
+     * Incremented on every change.
+     */
+    private long mGeneration;
+
+    /**
+     * @return The current value, read from the database if required.
+     * Do not call on the main thread.
+     */
+    public T get(Context context) {
+        T value = mValue;
+        if (value != null && isCurrent(value)) return value;
+
+        long generation;
+        synchronized (this) {
+            generation = mGeneration;
+        }
+
+        value = read(context);
+
+        synchronized (this) {
+            if (generation == mGeneration) {
+                mValue = value;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * @return The value if it is loaded, without reading it. Null otherwise.
+     */
+    public T peek() {
+        return mValue;
+    }
+
+    @Override
+    public String[] getTables() {
+        return mTables;
+    }
+
+    @Override
+    public void dataInserted(Context context, String table, long id, ContentValues values) {
+        dataChanged(context, table);
+    }
+
+    @Override
+    public void dataChanged(Context context, String table) {
+        invalidate();
+    }
+
+    @Override
+    public synchronized void invalidate() {
+        mGeneration++;
+        mValue = null;
+    }
+
+    /**
+     * Read the value from the database.
+     */
+    protected abstract T read(Context context);
+
+    /**
+     * @return Indicator whether a loaded value can still be used, i.e. it is from today.
+     */
+    protected boolean isCurrent(T value) {
+        return true;
+    }
+
+    /**
+     * Apply a change of the data to the loaded value, if any, instead of reading it again.
+     * A value being read at the same time is not kept.
+     */
+    protected synchronized void update(Update<T> update) {
+        mGeneration++;
+        T value = mValue;
+        if (value == null) return;
+
+        mValue = update.apply(value);
+    }
+}
@@ -0,0 +1,350 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.money.manager.ex.recurring.transactions.Recurrence;
+import com.money.manager.ex.utils.MyDateTimeUtils;
+
+import java.util.Arrays;
+
+/**
+ * Immutable projection of the account balances, one closing balance per account and day.
+ * The balances start from the current balance of each account and include the transactions
+ * dated in the future and all the occurrences of the recurring transactions (bills and
+ * deposits) within the period. Overdue occurrences are counted on the first day.
+ * The transactions are taken from the {@link TransactionSnapshot}, only the accounts and the
+ * recurring transactions are read from the database.
+ * Amounts are kept in the account currency, as units of {@link TransactionSnapshot#PRECISION}
+ * decimal places, and dates as epoch days.
+ * Use {@link CashFlowForecastStore} to obtain the current instance.
+ */
+public class CashFlowForecast {
+
+    private static final String ACCOUNTS = "SELECT ACCOUNTID, " +
+        "CAST(ROUND(ifnull(INITIALBAL, 0) * 10000) AS INTEGER) FROM ACCOUNTLIST_V1";
+    private static final String SCHEDULES = "SELECT ACCOUNTID, TOACCOUNTID, TRANSCODE, " +
+        "CAST(ROUND(ifnull(TRANSAMOUNT, 0) * 10000) AS INTEGER), " +
+        "CAST(ROUND(ifnull(TOTRANSAMOUNT, 0) * 10000) AS INTEGER), " +
+        "REPEATS, substr(NEXTOCCURRENCEDATE, 1, 10), NUMOCCURRENCES " +
+        "FROM BILLSDEPOSITS_V1 WHERE ifnull(STATUS, '') <> 'V' AND NEXTOCCURRENCEDATE IS NOT NULL";
+
+    /**
+     * Read the forecast for the given period.
+     * @param snapshot Current transactions.
+     * @param startDay First day, as epoch day. Usually today.
+     * @param endDay Last day, inclusive.
+     */
+    public static CashFlowForecast read(SQLiteDatabase db, TransactionSnapshot snapshot, int startDay, int endDay) {
+        Cursor cursor = db.rawQuery(ACCOUNTS, null);
+        int[] accountIds = new int[cursor.getCount()];
+        long[] initialBalances = new long[accountIds.length];
+        try {
+            for (int i = 0; cursor.moveToNext(); i++) {
+                accountIds[i] = cursor.getInt(0);
+                initialBalances[i] = cursor.getLong(1);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        CashFlowForecast result = new CashFlowForecast(startDay, endDay, accountIds);
+        for (int i = 0; i < accountIds.length; i++) {
+            result.add(accountIds[i], startDay, initialBalances[i]);
+        }
+        result.addTransactions(snapshot);
+
+        cursor = db.rawQuery(SCHEDULES, null);
+        try {
+            while (cursor.moveToNext()) {
+                result.addSchedule(cursor);
+            }
+        } finally {
+            cursor.close();
+        }
+
+        result.accumulate();
+        return result;
+    }
+
+    /**
+     * Expand a recurring transaction into its occurrences, with the same rules as entering
+     * them one by one (RecurringTransactionService.moveNextOccurrence), but without date objects.
+     * @param recurrence Recurrence
+     * @param firstDay Next occurrence (payment date), as epoch day.
+     * @param paymentsLeft Payments left for the periodic recurrences, or the number of periods for
+     *                     the "every x" ones.
+     * @param lastDay Last day to expand, inclusive.
+     * @return Epoch days of the occurrences, in ascending order.
+     */
+    public static int[] getOccurrences(Recurrence recurrence, int firstDay, Integer paymentsLeft, int lastDay) {
+        int periods = paymentsLeft == null ? 0 : paymentsLeft;
+        int limit = Integer.MAX_VALUE;
+
+        switch (recurrence) {
+            case ONCE:
+            case IN_X_DAYS:
+            case IN_X_MONTHS:
+                limit = 1;
+                break;
+            case EVERY_X_DAYS:
+            case EVERY_X_MONTHS:
+                break;
+            default:
+                // periodic, 0 means repeat forever.
+                if (periods > 0) limit = periods;
+                break;
+        }
+
+        int[] result = new int[16];
+        int count = 0;
+        int day = firstDay;
+        while (day <= lastDay && count < limit) {
+            if (count == result.length) {
+                result = Arrays.copyOf(result, count * 2);
+            }
+            result[count++] = day;
+
+            int next = getNextDay(recurrence, day, periods);
+            // the occurrence does not move forward, i.e. every 0 days.
+            if (next <= day) break;
+            day = next;
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    CashFlowForecast(int startDay, int endDay, int[] accountIds) {
+        mStartDay = startDay;
+        mEndDay = endDay;
+        mAccountIds = accountIds.clone();
+        Arrays.sort(mAccountIds);
+        mBalances = new long[mAccountIds.length][endDay - startDay + 1];
+    }
+
+    private final int mStartDay;
+    private final int mEndDay;
+    private final int[] mAccountIds;
+    /**
+     * Closing balance per account (in the order of the ids) and day. Daily changes while building.
+     */
+    private final long[][] mBalances;
+
+    public int getStartDay() {
+        return mStartDay;
+    }
+
+    public int getEndDay() {
+        return mEndDay;
+    }
+
+    public int[] getAccountIds() {
+        return mAccountIds.clone();
+    }
+
+    /**
+     * @return Projected closing balance of the account on the given day, in units. The balance
+     * of the first or last day for the days outside of the period, 0 for an unknown account.
+     */
+    public long getBalance(int accountId, int epochDay) {
+        int account = Arrays.binarySearch(mAccountIds, accountId);
+        if (account < 0) return 0;
+
+        int day = Math.max(mStartDay, Math.min(mEndDay, epochDay)) - mStartDay;
+        return mBalances[account][day];
+    }
+
+    /**
+     * @return Projected closing balances of the account, one per day from the first day.
+     */
+    public long[] getDailyBalances(int accountId) {
+        int account = Arrays.binarySearch(mAccountIds, accountId);
+        if (account < 0) return new long[mEndDay - mStartDay + 1];
+
+        return mBalances[account].clone();
+    }
+
+    /**
+     * @return The lowest projected balance of the account in the period, in units.
+     */
+    public long getMinimumBalance(int accountId) {
+        long[] balances = getDailyBalances(accountId);
+        long result = Long.MAX_VALUE;
+        for (long balance : balances) {
+            result = Math.min(result, balance);
+        }
+        return result;
+    }
+
+    /**
+     * @return Estimated memory use, in bytes.
+     */
+    public int getSize() {
+        return mAccountIds.length * (4 + (mEndDay - mStartDay + 1) * 8);
+    }
+
+    /**
+     * Add an amount to the account on the given day. Days before the period count on the
+     * first day, days after the period are ignored.
+     */
+    void add(int accountId, int epochDay, long units) {
+        if (epochDay > mEndDay) return;
+
+        int account = Arrays.binarySearch(mAccountIds, accountId);
+        if (account < 0) return;
+
+        mBalances[account][Math.max(epochDay, mStartDay) - mStartDay] += units;
+    }
+
+    /**
+     * Turn the daily changes into closing balances. Called once, after all the amounts are added.
+     */
+    void accumulate() {
+        for (long[] balances : mBalances) {
+            for (int day = 1; day < balances.length; day++) {
+                balances[day] += balances[day - 1];
+            }
+        }
+    }
+
+    // Private
+
+    /**
+     * @return The occurrence after the given one. See RecurringTransactionService.getNextScheduledDate.
+     */
+    private static int getNextDay(Recurrence recurrence, int day, int periods) {
+        switch (recurrence) {
+            case WEEKLY:
+                return day + 7;
+            case BIWEEKLY:
+                return day + 14;
+            case FOUR_WEEKS:
+                return day + 28;
+            case DAILY:
+                return day + 1;
+            case EVERY_X_DAYS:
+                return day + periods;
+            case MONTHLY:
+                return plusMonths(day, 1);
+            case BIMONTHLY:
+                return plusMonths(day, 2);
+            case QUARTERLY:
+                return plusMonths(day, 3);
+            case FOUR_MONTHS:
+                return plusMonths(day, 4);
+            case SEMIANNUALLY:
+                return plusMonths(day, 6);
+            case ANNUALLY:
+                return plusMonths(day, 12);
+            case EVERY_X_MONTHS:
+                return plusMonths(day, periods);
+            case MONTHLY_LAST_DAY: {
+                int result = getLastDayOfMonth(day);
+                return result > day ? result : getLastDayOfMonth(plusMonths(day, 1));
+            }
+            case MONTHLY_LAST_BUSINESS_DAY: {
+                int result = getLastBusinessDayOfMonth(day);
+                return result > day ? result : getLastBusinessDayOfMonth(plusMonths(day, 1));
+            }
+            default:
+                return day;
+        }
+    }
+
+    /**
+     * Add months, keeping the day of month where possible and the last day of the month
+     * otherwise.
+     */
+    private static int plusMonths(int day, int months) {
+        int yearMonth = MyDateTimeUtils.toYearMonth(day);
+        int year = yearMonth / 100;
+        int month = yearMonth % 100;
+        int dayOfMonth = day - MyDateTimeUtils.toEpochDay(year, month, 1) + 1;
+
+        int index = year * 12 + month - 1 + months;
+        year = index / 12;
+        month = index % 12 + 1;
+        int first = MyDateTimeUtils.toEpochDay(year, month, 1);
+        int length = getLastDayOfMonth(first) - first + 1;
+        return first + Math.min(dayOfMonth, length) - 1;
+    }
+
+    private static int getLastDayOfMonth(int day) {
+        int yearMonth = MyDateTimeUtils.toYearMonth(day);
+        int year = yearMonth / 100;
+        int month = yearMonth % 100;
+        return month == 12
+            ? MyDateTimeUtils.toEpochDay(year + 1, 1, 1) - 1
+            : MyDateTimeUtils.toEpochDay(year, month + 1, 1) - 1;
+    }
+
+    private static int getLastBusinessDayOfMonth(int day) {
+        int result = getLastDayOfMonth(day);
+        // 1970-01-01 was a Thursday, day of week 4 (Monday = 1).
+        int dayOfWeek = ((result + 3) % 7 + 7) % 7 + 1;
+        if (dayOfWeek == 6) return result - 1;
+        if (dayOfWeek == 7) return result - 2;
+        return result;
+    }
+
+    /**
+     * Add the transactions up to the last day. The earlier ones make up the opening balances.
+     */
+    private void addTransactions(TransactionSnapshot snapshot) {
+        int end = snapshot.findFirstRow(mEndDay + 1);
+        for (int row = 0; row < end; row++) {
+            if (snapshot.isVoid(row)) continue;
+
+            int day = snapshot.getDate(row);
+            add(snapshot.getAccountId(row), day, snapshot.getAmount(row));
+            if (snapshot.getType(row) == TransactionSnapshot.TYPE_TRANSFER) {
+                add(snapshot.getToAccountId(row), day, snapshot.getToAmount(row));
+            }
+        }
+    }
+
+    private void addSchedule(Cursor cursor) {
+        String date = cursor.getString(6);
+        if (date == null || date.length() < 10 || cursor.isNull(5)) return;
+
+        Recurrence recurrence;
+        try {
+            recurrence = Recurrence.valueOf(cursor.getInt(5));
+        } catch (RuntimeException e) {
+            // invalid recurrence, the schedule can not be entered either.
+            return;
+        }
+
+        int accountId = cursor.getInt(0);
+        int toAccountId = cursor.isNull(1) ? -1 : cursor.getInt(1);
+        String code = cursor.getString(2);
+        long amount = cursor.getLong(3);
+        long toAmount = cursor.getLong(4);
+        Integer paymentsLeft = cursor.isNull(7) ? null : cursor.getInt(7);
+
+        boolean isTransfer = "Transfer".equals(code);
+        long change = "Deposit".equals(code) ? amount : -amount;
+
+        for (int day : getOccurrences(recurrence, MyDateTimeUtils.toEpochDay(date), paymentsLeft, mEndDay)) {
+            add(accountId, day, change);
+            if (isTransfer) {
+                add(toAccountId, day, toAmount);
+            }
+        }
+    }
+}
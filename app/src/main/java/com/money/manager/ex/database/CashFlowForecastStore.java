@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.database;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.money.manager.ex.BuildConfig;
+import com.money.manager.ex.utils.MyDateTimeUtils;
+
+/**
+ * Holds the current {@link CashFlowForecast} for the next {@link #HORIZON_MONTHS} months.
+ * The forecast is built on first use from the {@link TransactionSnapshot} and two queries, and
+ * dropped when the recurring transactions, the transactions, or the accounts change. It is also
+ * built again on the next day. Reads the database, do not call on the main thread.
+ */
+public class CashFlowForecastStore
+    extends CachedValue<CashFlowForecast> {
+
+    public static final int HORIZON_MONTHS = 12;
+
+    private static final String SCHEDULES = "BILLSDEPOSITS_V1";
+    private static final String TRANSACTIONS = "CHECKINGACCOUNT_V1";
+    private static final String SPLITS = "SPLITTRANSACTIONS_V1";
+    private static final String ACCOUNTS = "ACCOUNTLIST_V1";
+
+    private static CashFlowForecastStore mInstance;
+
+    public static synchronized CashFlowForecastStore getInstance() {
+        if (mInstance == null) {
+            mInstance = new CashFlowForecastStore();
+        }
+        return mInstance;
+    }
+
+    private CashFlowForecastStore() {
+        super(SCHEDULES, TRANSACTIONS, SPLITS, ACCOUNTS);
+    }
+
+    @Override
+    protected CashFlowForecast read(Context context) {
+        int today = MyDateTimeUtils.toEpochDay(MyDateTimeUtils.today());
+        int endDay = MyDateTimeUtils.toEpochDay(MyDateTimeUtils.today().plusMonths(HORIZON_MONTHS));
+        TransactionSnapshot snapshot = TransactionSnapshotStore.getInstance().get(context);
+        CashFlowForecast forecast = CashFlowForecast.read(
+            MmexOpenHelper.getInstance(context).getReadableDatabase(), snapshot, today, endDay);
+        if (BuildConfig.DEBUG) Log.d(this.getClass().getSimpleName(), "read forecast, " +
+            forecast.getSize() + " bytes");
+        return forecast;
+    }
+
+    @Override
+    protected boolean isCurrent(CashFlowForecast value) {
+        return value.getStartDay() == MyDateTimeUtils.toEpochDay(MyDateTimeUtils.today());
+    }
+}
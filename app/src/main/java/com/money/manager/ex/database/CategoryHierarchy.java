@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.text.TextUtils;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+
+import com.money.manager.ex.Constants;
+
+/**
+ * Immutable copy of the category and subcategory names, by id. Resolves the names and the
+ * category paths without database access.
+ * Use {@link CategoryHierarchyStore} to obtain the current instance.
+ */
+public class CategoryHierarchy {
+
+    public static final String CATEGORIES = "CATEGORY_V1";
+    public static final String SUBCATEGORIES = "SUBCATEGORY_V1";
+
+    public static CategoryHierarchy read(SQLiteDatabase db) {
+        CategoryHierarchy result = new CategoryHierarchy();
+
+        Cursor cursor = db.rawQuery("SELECT CATEGID, CATEGNAME FROM " + CATEGORIES, null);
+        try {
+            while (cursor.moveToNext()) {
+                result.mCategoryNames.put(cursor.getInt(0), cursor.getString(1));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        cursor = db.rawQuery("SELECT SUBCATEGID, CATEGID, SUBCATEGNAME FROM " + SUBCATEGORIES, null);
+        try {
+            while (cursor.moveToNext()) {
+                int id = cursor.getInt(0);
+                result.mSubcategoryParents.put(id, cursor.getInt(1));
+                result.mSubcategoryNames.put(id, cursor.getString(2));
+            }
+        } finally {
+            cursor.close();
+        }
+
+        return result;
+    }
+
+    private CategoryHierarchy() {
+        mCategoryNames = new SparseArray<>();
+        mSubcategoryNames = new SparseArray<>();
+        mSubcategoryParents = new SparseIntArray();
+    }
+
+    private final SparseArray<String> mCategoryNames;
+    private final SparseArray<String> mSubcategoryNames;
+    private final SparseIntArray mSubcategoryParents;
+
+    /**
+     * @return Category name. Null if the category does not exist.
+     */
+    public String getCategoryName(Integer categoryId) {
+        if (categoryId == null) return null;
+
+        return mCategoryNames.get(categoryId);
+    }
+
+    /**
+     * @return Subcategory name. Null if the subcategory does not exist.
+     */
+    public String getSubcategoryName(Integer subcategoryId) {
+        if (subcategoryId == null) return null;
+
+        return mSubcategoryNames.get(subcategoryId);
+    }
+
+    /**
+     * @return Id of the category of the subcategory. Constants.NOT_SET if the subcategory
+     * does not exist.
+     */
+    public int getCategoryId(int subcategoryId) {
+        return mSubcategoryParents.get(subcategoryId, Constants.NOT_SET);
+    }
+
+    /**
+     * Returns category and sub-category formatted.
+     * @return category:sub-category. Null if neither is set.
+     */
+    public String getCategSubName(int categoryId, int subcategoryId) {
+        if (categoryId == Constants.NOT_SET && subcategoryId == Constants.NOT_SET) return null;
+
+        String categoryName = getCategoryName(categoryId);
+        String subcategoryName = getSubcategoryName(subcategoryId);
+
+        return (!TextUtils.isEmpty(categoryName) ? categoryName : "") +
+            (!TextUtils.isEmpty(subcategoryName) ? ":" + subcategoryName : "");
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.database;
+
+import android.content.Context;
+
+/**
+ * Holds the current {@link CategoryHierarchy}. It is read on first use, with two queries, and
+ * dropped when the categories or subcategories change.
+ * Any code that labels categories, especially for many rows, should use it instead of loading
+ * the names one by one.
+ */
+public class CategoryHierarchyStore
+    extends CachedValue<CategoryHierarchy> {
+
+    private static CategoryHierarchyStore mInstance;
+
+    public static synchronized CategoryHierarchyStore getInstance() {
+        if (mInstance == null) {
+            mInstance = new CategoryHierarchyStore();
+        }
+        return mInstance;
+    }
+
+    private CategoryHierarchyStore() {
+        super(CategoryHierarchy.CATEGORIES, CategoryHierarchy.SUBCATEGORIES);
+    }
+
+    @Override
+    protected CategoryHierarchy read(Context context) {
+        return CategoryHierarchy.read(MmexOpenHelper.getInstance(context).getReadableDatabase());
+    }
+}
@@ -0,0 +1,466 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.database;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.util.Log;
+
+import com.money.manager.ex.BuildConfig;
+import com.money.manager.ex.core.ExceptionHandler;
+import com.money.manager.ex.core.TransactionTypes;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Category suggestions learned from the history of the transactions.
+ * For every feature of a transaction (payee, payee with the amount range, amount range of the
+ * transaction type, words of the notes) the table holds the number of transactions per
+ * category and subcategory. A suggestion is a weighted vote of the features of the
+ * transaction being entered, a handful of primary key lookups.
+ * Transfers and split transactions are not learned. Like the monthly summary, the table is
+ * maintained from the content provider on every change of the transactions and rebuilt in the
+ * background when the database is opened if it is not in sync with the {@link ChangeCounter}.
+ * There are no suggestions until then.
+ */
+public class CategorySuggestions {
+
+    public static final String TABLE_NAME = "MOBILE_CATEGORYSUGGESTION";
+
+    public static final String FEATURE = "FEATURE";
+    public static final String CATEGID = "CATEGID";
+    public static final String SUBCATEGID = "SUBCATEGID";
+    public static final String HITS = "HITS";
+
+    /**
+     * Minimum share of the votes for the best category to be suggested.
+     */
+    public static final double MIN_CONFIDENCE = 0.5;
+
+    /**
+     * Version of the features. Part of the name in the change counter so that a change
+     * rebuilds the table.
+     */
+    private static final int VERSION = 1;
+    /**
+     * Name of the table in the {@link ChangeCounter}.
+     */
+    public static final String COUNTER_NAME = TABLE_NAME + "_V" + VERSION;
+    /**
+     * Ratio between the limits of the consecutive amount ranges.
+     */
+    private static final double BUCKET_RATIO = 1.5;
+    private static final int MAX_WORDS = 8;
+    private static final int MIN_WORD_LENGTH = 3;
+
+    private static final double PAYEE_AMOUNT_WEIGHT = 4;
+    private static final double PAYEE_WEIGHT = 2;
+    private static final double NOTES_WEIGHT = 2;
+    private static final double AMOUNT_WEIGHT = 1;
+
+    private static final String TRANSACTIONS = "CHECKINGACCOUNT_V1";
+
+    private static final String WHERE_PATTERN = "%%where%%";
+    private static final String SOURCE = "SELECT TRANSID, PAYEEID, TRANSCODE, TRANSAMOUNT, NOTES, " +
+        "CATEGID, SUBCATEGID FROM " + TRANSACTIONS + " " +
+        "WHERE TRANSCODE <> 'Transfer' AND CATEGID > 0 " + WHERE_PATTERN;
+
+    private static final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    /**
+     * Whether the table of the open database is in sync and can be used for suggestions.
+     */
+    private static volatile boolean mInSync;
+    private static boolean mRebuildScheduled;
+
+    /**
+     * @return True if the table is in sync with the transactions. There are no suggestions
+     * while it is not.
+     */
+    public static boolean isInSync() {
+        return mInSync;
+    }
+
+    public CategorySuggestions(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    private Context context;
+
+    public Context getContext() {
+        return this.context;
+    }
+
+    /**
+     * Called when the database is opened. Creates the table if it does not exist and checks
+     * whether it is in sync with the transactions. Call after ChangeCounter.verify. Does not
+     * read the transactions, so it is safe on any thread.
+     * @return True if the table is in sync. Otherwise call {@link #rebuildLater()}.
+     */
+    public boolean verify(SQLiteDatabase db) {
+        create(db);
+
+        mInSync = ChangeCounter.isInSync(db, COUNTER_NAME);
+        return mInSync;
+    }
+
+    /**
+     * Rebuild the whole table from the transactions, in the background. There are no
+     * suggestions until it is done.
+     */
+    public void rebuildLater() {
+        mInSync = false;
+
+        synchronized (CategorySuggestions.class) {
+            if (mRebuildScheduled) return;
+            mRebuildScheduled = true;
+        }
+
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (CategorySuggestions.class) {
+                    mRebuildScheduled = false;
+                }
+                try {
+                    SQLiteDatabase db = MmexOpenHelper.getInstance(getContext()).getWritableDatabase();
+                    if (BuildConfig.DEBUG) Log.d(CategorySuggestions.class.getSimpleName(), "rebuilding category suggestions");
+                    rebuild(db);
+                } catch (Exception e) {
+                    ExceptionHandler handler = new ExceptionHandler(getContext(), this);
+                    handler.handle(e, "rebuilding category suggestions");
+                }
+            }
+        });
+    }
+
+    /**
+     * Rebuild the whole table from the transactions. Reads all the transactions; do not call
+     * on the main thread.
+     */
+    public void rebuild(SQLiteDatabase db) {
+        HashMap<Observation, Integer> counts = new HashMap<>();
+        Cursor cursor = db.rawQuery(SOURCE.replace(WHERE_PATTERN, ""), null);
+        try {
+            while (cursor.moveToNext()) {
+                for (Observation observation : read(cursor)) {
+                    Integer count = counts.get(observation);
+                    counts.put(observation, count == null ? 1 : count + 1);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        db.beginTransaction();
+        try {
+            db.execSQL("DELETE FROM " + TABLE_NAME);
+            SQLiteStatement insert = db.compileStatement("INSERT INTO " + TABLE_NAME +
+                " (" + FEATURE + ", " + CATEGID + ", " + SUBCATEGID + ", " + HITS + ") VALUES (?, ?, ?, ?)");
+            for (Map.Entry<Observation, Integer> entry : counts.entrySet()) {
+                Observation observation = entry.getKey();
+                insert.bindString(1, observation.feature);
+                insert.bindLong(2, observation.categoryId);
+                insert.bindLong(3, observation.subcategoryId);
+                insert.bindLong(4, entry.getValue());
+                insert.executeInsert();
+            }
+            insert.close();
+            ChangeCounter.setInSync(db, COUNTER_NAME);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        mInSync = ChangeCounter.isInSync(db, COUNTER_NAME);
+    }
+
+    /**
+     * Read what the given transactions contribute to the table. Call before and after a change
+     * and pass both to {@link #update}.
+     * @return Features with the category of each transaction, one entry per feature.
+     */
+    public List<Observation> load(SQLiteDatabase db, Collection<Integer> transactionIds) {
+        List<Observation> result = new ArrayList<>();
+        if (transactionIds == null || transactionIds.isEmpty()) return result;
+
+        Cursor cursor = db.rawQuery(SOURCE.replace(WHERE_PATTERN,
+            "AND TRANSID IN (" + StringUtils.join(transactionIds, ",") + ")"), null);
+        try {
+            while (cursor.moveToNext()) {
+                result.addAll(read(cursor));
+            }
+        } finally {
+            cursor.close();
+        }
+        return result;
+    }
+
+    /**
+     * Apply a change of the transactions: remove the previous contributions and add the
+     * current ones. Only the affected rows are touched. Runs in the transaction of the change.
+     * @param before Result of {@link #load} before the change. Empty for new transactions.
+     * @param after Result of {@link #load} after the change. Empty for deleted transactions.
+     */
+    public void update(SQLiteDatabase db, List<Observation> before, List<Observation> after) {
+        HashMap<Observation, Integer> deltas = new HashMap<>();
+        for (Observation observation : before) {
+            Integer delta = deltas.get(observation);
+            deltas.put(observation, delta == null ? -1 : delta - 1);
+        }
+        for (Observation observation : after) {
+            Integer delta = deltas.get(observation);
+            deltas.put(observation, delta == null ? 1 : delta + 1);
+        }
+
+        for (Map.Entry<Observation, Integer> entry : deltas.entrySet()) {
+            int delta = entry.getValue();
+            if (delta == 0) continue;
+
+            Observation observation = entry.getKey();
+            Object[] key = new Object[] { observation.feature, observation.categoryId,
+                observation.subcategoryId };
+            db.execSQL("INSERT OR IGNORE INTO " + TABLE_NAME + " (" + FEATURE + ", " + CATEGID + ", " +
+                SUBCATEGID + ", " + HITS + ") VALUES (?, ?, ?, 0)", key);
+            db.execSQL("UPDATE " + TABLE_NAME + " SET " + HITS + " = " + HITS + " + " + delta +
+                " WHERE " + FEATURE + "=? AND " + CATEGID + "=? AND " + SUBCATEGID + "=?", key);
+            if (delta < 0) {
+                db.execSQL("DELETE FROM " + TABLE_NAME + " WHERE " + FEATURE + "=? AND " +
+                    CATEGID + "=? AND " + SUBCATEGID + "=? AND " + HITS + " <= 0", key);
+            }
+        }
+    }
+
+    /**
+     * Suggest the category for a transaction being entered.
+     * @param payeeId Payee, or NOT_SET.
+     * @param type Transaction type. There are no suggestions for transfers.
+     * @param amount Amount of the transaction, 0 if not entered yet.
+     * @param notes Notes, or null.
+     * @return The suggestion, or null if there is no category with enough confidence. Also null
+     * without a payee or notes, as the amount alone matches too many unrelated transactions,
+     * and while the table is not in sync.
+     */
+    public Suggestion suggest(SQLiteDatabase db, int payeeId, TransactionTypes type, double amount,
+                              String notes) {
+        if (!isInSync()) return null;
+        if (type == null || type == TransactionTypes.Transfer) return null;
+
+        Map<String, Double> weights = getFeatures(payeeId, type.name(), amount, notes);
+        if (!hasPayeeOrNotes(weights)) return null;
+
+        String[] features = weights.keySet().toArray(new String[weights.size()]);
+        String placeholders = StringUtils.repeat("?", ", ", features.length);
+
+        // votes of each feature, only for the categories that still exist.
+        HashMap<String, Integer> totals = new HashMap<>();
+        List<Object[]> rows = new ArrayList<>();
+        Cursor cursor = db.rawQuery("SELECT S." + FEATURE + ", S." + CATEGID + ", S." + SUBCATEGID + ", S." + HITS +
+            " FROM " + TABLE_NAME + " S " +
+            "INNER JOIN CATEGORY_V1 CAT ON CAT.CATEGID = S." + CATEGID + " " +
+            "WHERE S." + FEATURE + " IN (" + placeholders + ") AND (S." + SUBCATEGID + " <= 0 OR " +
+            "EXISTS (SELECT 1 FROM SUBCATEGORY_V1 SUBCAT WHERE SUBCAT.SUBCATEGID = S." + SUBCATEGID + "))",
+            features);
+        try {
+            while (cursor.moveToNext()) {
+                String feature = cursor.getString(0);
+                int hits = cursor.getInt(3);
+                Integer total = totals.get(feature);
+                totals.put(feature, total == null ? hits : total + hits);
+                rows.add(new Object[] { feature, cursor.getInt(1), cursor.getInt(2), hits });
+            }
+        } finally {
+            cursor.close();
+        }
+        if (rows.isEmpty()) return null;
+
+        double available = 0;
+        for (String feature : totals.keySet()) {
+            available += weights.get(feature);
+        }
+
+        HashMap<Long, Double> scores = new HashMap<>();
+        Suggestion best = null;
+        for (Object[] row : rows) {
+            String feature = (String) row[0];
+            int categoryId = (Integer) row[1];
+            int subcategoryId = (Integer) row[2];
+            double vote = weights.get(feature) * (Integer) row[3] / totals.get(feature);
+
+            Long key = ((long) categoryId << 32) | (subcategoryId & 0xffffffffL);
+            Double score = scores.get(key);
+            score = score == null ? vote : score + vote;
+            scores.put(key, score);
+
+            if (best == null || score > best.confidence) {
+                best = new Suggestion(categoryId, subcategoryId, score);
+            }
+        }
+
+        best = new Suggestion(best.categoryId, best.subcategoryId, best.confidence / available);
+        return best.confidence >= MIN_CONFIDENCE ? best : null;
+    }
+
+    /**
+     * @return Features of a transaction with their weights in the vote.
+     */
+    public static Map<String, Double> getFeatures(int payeeId, String transactionCode, double amount,
+                                                  String notes) {
+        LinkedHashMap<String, Double> result = new LinkedHashMap<>();
+        int bucket = getAmountBucket(amount);
+
+        if (payeeId > 0) {
+            result.put("P" + payeeId, PAYEE_WEIGHT);
+            if (bucket > 0) {
+                result.put("P" + payeeId + "A" + bucket, PAYEE_AMOUNT_WEIGHT);
+            }
+        }
+        if (bucket > 0) {
+            result.put("A" + transactionCode.charAt(0) + bucket, AMOUNT_WEIGHT);
+        }
+
+        List<String> words = new ArrayList<>();
+        for (String token : TransactionSearchIndex.tokenize(notes)) {
+            if (token.length() < MIN_WORD_LENGTH || StringUtils.isNumeric(token)) continue;
+            if (words.contains(token)) continue;
+
+            words.add(token);
+            if (words.size() == MAX_WORDS) break;
+        }
+        for (String word : words) {
+            result.put("N" + word, NOTES_WEIGHT / words.size());
+        }
+        return result;
+    }
+
+    /**
+     * @return Amount range, growing geometrically. 0 for no amount.
+     */
+    public static int getAmountBucket(double amount) {
+        amount = Math.abs(amount);
+        if (amount < 0.01) return 0;
+
+        return 1 + (int) Math.floor(Math.log(amount * 100) / Math.log(BUCKET_RATIO));
+    }
+
+    // Private
+
+    /**
+     * @return Indicator whether the features include the payee or words of the notes, not only
+     * the amount.
+     */
+    private static boolean hasPayeeOrNotes(Map<String, Double> features) {
+        for (String feature : features.keySet()) {
+            if (!feature.startsWith("A")) return true;
+        }
+        return false;
+    }
+
+    private void create(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + MobileDatabase.SCHEMA + "." + TABLE_NAME + " (" +
+            FEATURE + " TEXT NOT NULL, " + CATEGID + " INTEGER NOT NULL, " + SUBCATEGID + " INTEGER NOT NULL, " +
+            HITS + " INTEGER NOT NULL, " +
+            "PRIMARY KEY (" + FEATURE + ", " + CATEGID + ", " + SUBCATEGID + "))");
+    }
+
+    /**
+     * @return Observations of the current row of a {@link #SOURCE} cursor.
+     */
+    private List<Observation> read(Cursor cursor) {
+        int payeeId = cursor.isNull(1) ? -1 : cursor.getInt(1);
+        String code = cursor.getString(2);
+        int categoryId = cursor.getInt(5);
+        int subcategoryId = cursor.isNull(6) ? -1 : cursor.getInt(6);
+
+        List<Observation> result = new ArrayList<>();
+        if (code == null || code.isEmpty()) return result;
+
+        for (String feature : getFeatures(payeeId, code, cursor.getDouble(3), cursor.getString(4)).keySet()) {
+            result.add(new Observation(feature, categoryId, subcategoryId));
+        }
+        return result;
+    }
+
+    /**
+     * A feature of a transaction with its category.
+     */
+    public static class Observation {
+        Observation(String feature, int categoryId, int subcategoryId) {
+            this.feature = feature;
+            this.categoryId = categoryId;
+            this.subcategoryId = subcategoryId;
+        }
+
+        final String feature;
+        final int categoryId;
+        final int subcategoryId;
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Observation)) return false;
+
+            Observation other = (Observation) o;
+            return categoryId == other.categoryId && subcategoryId == other.subcategoryId &&
+                feature.equals(other.feature);
+        }
+
+        @Override
+        public int hashCode() {
+            return (feature.hashCode() * 31 + categoryId) * 31 + subcategoryId;
+        }
+    }
+
+    /**
+     * Suggested category.
+     */
+    public static class Suggestion {
+        Suggestion(int categoryId, int subcategoryId, double confidence) {
+            this.categoryId = categoryId;
+            this.subcategoryId = subcategoryId;
+            this.confidence = confidence;
+        }
+
+        private final int categoryId;
+        private final int subcategoryId;
+        private final double confidence;
+
+        public int getCategoryId() {
+            return categoryId;
+        }
+
+        public int getSubcategoryId() {
+            return subcategoryId;
+        }
+
+        /**
+         * @return Share of the votes, between 0 and 1.
+         */
+        public double getConfidence() {
+            return confidence;
+        }
+    }
+}
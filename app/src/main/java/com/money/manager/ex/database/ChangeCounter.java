@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.database;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * Counts the changes of the transactions, splits, payees and categories, so that the tables
+ * derived from them (i.e. the monthly summary) know whether they are in sync.
+ * The counter is incremented by triggers, in the same statement as the change, so it also
+ * counts the changes made elsewhere (i.e. desktop). The counter and its triggers are the only
+ * objects in the database file; the derived tables record the value of the counter they are in
+ * sync with in the {@link MobileDatabase}, together with the id of the database file they were
+ * built from. The content provider moves the tables that were in sync before a change to the
+ * new value, once they are updated, and marks a table dirty if its update fails. A table that
+ * is not in sync is rebuilt when the database is opened.
+ */
+public class ChangeCounter {
+
+    public static final String TABLE_NAME = "MOBILE_CHANGECOUNTER";
+    /**
+     * Sync state of the derived tables, in the {@link MobileDatabase}.
+     */
+    public static final String SYNC_TABLE_NAME = "MOBILE_SYNCSTATE";
+
+    private static final String NAME = "NAME";
+    private static final String GENERATION = "GENERATION";
+    /**
+     * Name of the row with the counter itself.
+     */
+    private static final String COUNTER = "*";
+    /**
+     * Name of the row with the random id of the database file. Tells apart a different file
+     * copied over the same path, which may have reached the same count.
+     */
+    private static final String DATABASE_ID = "#";
+    private static final long DIRTY = -1;
+
+    private static final String[] SOURCE_TABLES = new String[] { "CHECKINGACCOUNT_V1",
+        "SPLITTRANSACTIONS_V1", "PAYEE_V1", "CATEGORY_V1", "SUBCATEGORY_V1" };
+    private static final String[] OPERATIONS = new String[] { "INSERT", "UPDATE", "DELETE" };
+
+    /**
+     * Called when the database is opened, after the mobile database is attached and before
+     * the derived tables are verified. Creates the counter and the triggers. If any trigger was
+     * missing (new database, or the table was recreated elsewhere) the changes may not have been
+     * counted, and all the derived tables are marked dirty. So are they if they were built from
+     * a different database file.
+     */
+    public static void verify(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_NAME + " (" +
+            NAME + " TEXT PRIMARY KEY, " + GENERATION + " INTEGER NOT NULL)");
+        db.execSQL("INSERT OR IGNORE INTO " + TABLE_NAME + " VALUES (?, 0)", new Object[] { COUNTER });
+        db.execSQL("INSERT OR IGNORE INTO " + TABLE_NAME + " VALUES (?, abs(random()))",
+            new Object[] { DATABASE_ID });
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + MobileDatabase.SCHEMA + "." + SYNC_TABLE_NAME + " (" +
+            NAME + " TEXT PRIMARY KEY, " + GENERATION + " INTEGER NOT NULL)");
+
+        boolean sameDatabase = DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM " + SYNC_TABLE_NAME +
+            " S, " + TABLE_NAME + " C WHERE S." + NAME + " = ? AND C." + NAME + " = ? AND S." +
+            GENERATION + " = C." + GENERATION, new String[] { DATABASE_ID, DATABASE_ID }) == 1;
+        boolean triggers = DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM sqlite_master " +
+            "WHERE type = 'trigger' AND name LIKE 'MOBILE_%_CHANGECOUNT_%'", null) ==
+            SOURCE_TABLES.length * OPERATIONS.length;
+        if (sameDatabase && triggers) return;
+
+        for (String table : SOURCE_TABLES) {
+            for (String operation : OPERATIONS) {
+                db.execSQL("CREATE TRIGGER IF NOT EXISTS MOBILE_" + table + "_CHANGECOUNT_" + operation +
+                    " AFTER " + operation + " ON " + table + " BEGIN UPDATE " + TABLE_NAME +
+                    " SET " + GENERATION + " = " + GENERATION + " + 1 WHERE " + NAME + " = '" + COUNTER + "'; END");
+            }
+        }
+        db.execSQL("UPDATE " + SYNC_TABLE_NAME + " SET " + GENERATION + " = ? WHERE " + NAME + " <> ?",
+            new Object[] { DIRTY, DATABASE_ID });
+        db.execSQL("INSERT OR REPLACE INTO " + SYNC_TABLE_NAME + " (" + NAME + ", " + GENERATION + ") " +
+            "SELECT " + NAME + ", " + GENERATION + " FROM " + TABLE_NAME + " WHERE " + NAME + " = ?",
+            new Object[] { DATABASE_ID });
+    }
+
+    public static boolean isSourceTable(String table) {
+        for (String source : SOURCE_TABLES) {
+            if (source.equalsIgnoreCase(table)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return The current value of the counter.
+     */
+    public static long get(SQLiteDatabase db) {
+        Cursor cursor = db.rawQuery("SELECT " + GENERATION + " FROM " + TABLE_NAME +
+            " WHERE " + NAME + " = ?", new String[] { COUNTER });
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : DIRTY;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * @param name Name of the derived table.
+     * @return True if the derived table is in sync with the current data.
+     */
+    public static boolean isInSync(SQLiteDatabase db, String name) {
+        Cursor cursor = db.rawQuery("SELECT S." + GENERATION + " = C." + GENERATION +
+            " FROM " + SYNC_TABLE_NAME + " S, " + TABLE_NAME + " C WHERE S." + NAME + " = ? AND C." + NAME + " = ?",
+            new String[] { name, COUNTER });
+        try {
+            return cursor.moveToFirst() && cursor.getInt(0) == 1;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Record that the derived table is in sync with the current data, i.e. after a rebuild.
+     * Call in the same transaction as the rebuild.
+     */
+    public static void setInSync(SQLiteDatabase db, String name) {
+        db.execSQL("INSERT OR REPLACE INTO " + SYNC_TABLE_NAME + " (" + NAME + ", " + GENERATION + ") " +
+            "SELECT ?, " + GENERATION + " FROM " + TABLE_NAME + " WHERE " + NAME + " = ?",
+            new Object[] { name, COUNTER });
+    }
+
+    /**
+     * Record that the derived table is out of sync, i.e. after its update failed. It stays
+     * out of sync until it is rebuilt.
+     */
+    public static void setDirty(SQLiteDatabase db, String name) {
+        db.execSQL("UPDATE " + SYNC_TABLE_NAME + " SET " + GENERATION + " = ? WHERE " + NAME + " = ?",
+            new Object[] { DIRTY, name });
+    }
+
+    /**
+     * Called after a change, once the derived tables are updated. The tables that were in sync
+     * before the change are in sync with the new data.
+     * @param previous Value of the counter before the change.
+     */
+    public static void advance(SQLiteDatabase db, long previous) {
+        if (previous == DIRTY) return;
+
+        db.execSQL("UPDATE " + SYNC_TABLE_NAME + " SET " + GENERATION + " = " +
+            "(SELECT " + GENERATION + " FROM " + TABLE_NAME + " WHERE " + NAME + " = ?) " +
+            "WHERE " + NAME + " <> ? AND " + GENERATION + " = ?",
+            new Object[] { COUNTER, DATABASE_ID, previous });
+    }
+}
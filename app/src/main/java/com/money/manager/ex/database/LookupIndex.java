@@ -0,0 +1,304 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.database;
+
+import android.database.MatrixCursor;
+import android.text.TextUtils;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Immutable in-memory index of the rows of a picker list (payees, categories) for filtering
+ * while typing. Each row has one or more names and is found by a case- and accent-insensitive
+ * prefix of any of them. The names are kept in a sorted array, so a lookup is a binary search
+ * followed by a scan of the matching names only.
+ * A search text that starts with the {@link #WILDCARD} ("contains" search type) is found
+ * anywhere in the names, with a scan of all the names.
+ * The rows are kept in their display order (by name). They can also be ranked by usage, the
+ * number of transactions. Rows can belong to a group (subcategories of a category), in which case
+ * the groups are ranked by the usage of their first row and the rows are kept together. When
+ * picking, the recently used rows can be put first.
+ * Use {@link LookupIndexStore} to obtain the current instances.
+ */
+public class LookupIndex {
+
+    /**
+     * Prepended to the search text when the text is to be found anywhere in the names,
+     * see BaseListFragment.onPreQueryTextChange.
+     */
+    public static final String WILDCARD = "%";
+
+    /**
+     * Normalize a name or the search text: accents removed and lower case.
+     * The same normalization is used by the highlighting of the list items.
+     */
+    public static String normalize(String text) {
+        if (text == null) return "";
+
+        return Normalizer.normalize(text, Normalizer.Form.NFD)
+            .replaceAll("\\p{InCombiningDiacriticalMarks}+", "")
+            .toLowerCase(Locale.getDefault());
+    }
+
+    /**
+     * @param text Search text, optionally starting with the wildcard.
+     * @return The normalized text to find, without the wildcard. Use for highlighting the
+     * matches.
+     */
+    public static String getSearchText(String text) {
+        return normalize(isContains(text) ? text.substring(WILDCARD.length()) : text);
+    }
+
+    /**
+     * @param columns Cursor columns of the rows.
+     * @param rows Row values, in display order.
+     * @param names Names by which each row is found.
+     * @param groups Index of the first row of the group, for each row. The row itself if not grouped.
+     * @param usage Number of transactions, for each row.
+     */
+    public LookupIndex(String[] columns, List<Object[]> rows, List<String[]> names, int[] groups, int[] usage) {
+        mColumns = columns;
+        mRows = rows.toArray(new Object[rows.size()][]);
+        mGroups = groups;
+        mUsage = usage;
+
+        List<Key> keys = new ArrayList<>();
+        for (int row = 0; row < names.size(); row++) {
+            for (String name : names.get(row)) {
+                if (TextUtils.isEmpty(name)) continue;
+                keys.add(new Key(normalize(name), row));
+            }
+        }
+        Collections.sort(keys);
+
+        mKeys = new String[keys.size()];
+        mKeyRows = new int[keys.size()];
+        for (int i = 0; i < keys.size(); i++) {
+            mKeys[i] = keys.get(i).name;
+            mKeyRows[i] = keys.get(i).row;
+        }
+    }
+
+    /**
+     * Copy of the index with different usage counts. The rows and the names are shared.
+     */
+    private LookupIndex(LookupIndex source, int[] usage) {
+        mColumns = source.mColumns;
+        mRows = source.mRows;
+        mGroups = source.mGroups;
+        mUsage = usage;
+        mKeys = source.mKeys;
+        mKeyRows = source.mKeyRows;
+    }
+
+    private final String[] mColumns;
+    private final Object[][] mRows;
+    private final int[] mGroups;
+    private final int[] mUsage;
+    /**
+     * Normalized names, sorted, and the row of each.
+     */
+    private final String[] mKeys;
+    private final int[] mKeyRows;
+
+    public int size() {
+        return mRows.length;
+    }
+
+    /**
+     * @return Value of the given column in the given row.
+     */
+    public Object getValue(int row, int column) {
+        return mRows[row][column];
+    }
+
+    /**
+     * @return A copy of the index with the usage of the given rows incremented, i.e. after a
+     * transaction was inserted. Rows of -1 are skipped. This index is not changed.
+     */
+    public LookupIndex addUsage(int... rows) {
+        int[] usage = mUsage.clone();
+        for (int row : rows) {
+            if (row != -1) usage[row]++;
+        }
+        return new LookupIndex(this, usage);
+    }
+
+    /**
+     * Find the rows that have a name starting with the given text, or containing it if the
+     * text starts with the wildcard.
+     * @param text Search text. All the rows are returned if empty.
+     * @param byUsage Rank the rows by usage instead of the display order.
+     * @return Row indexes, in order.
+     */
+    public Integer[] find(String text, boolean byUsage) {
+        boolean[] matches = new boolean[mRows.length];
+        int count = 0;
+
+        String prefix = getSearchText(text);
+        if (prefix.isEmpty()) {
+            Arrays.fill(matches, true);
+            count = mRows.length;
+        } else if (isContains(text)) {
+            for (int i = 0; i < mKeys.length; i++) {
+                if (!matches[mKeyRows[i]] && mKeys[i].contains(prefix)) {
+                    matches[mKeyRows[i]] = true;
+                    count++;
+                }
+            }
+        } else {
+            int position = Arrays.binarySearch(mKeys, prefix);
+            if (position < 0) position = -position - 1;
+
+            for (int i = position; i < mKeys.length && mKeys[i].startsWith(prefix); i++) {
+                if (!matches[mKeyRows[i]]) {
+                    matches[mKeyRows[i]] = true;
+                    count++;
+                }
+            }
+        }
+
+        Integer[] result = new Integer[count];
+        int index = 0;
+        for (int row = 0; row < matches.length; row++) {
+            if (matches[row]) result[index++] = row;
+        }
+
+        if (byUsage) {
+            Arrays.sort(result, getUsageComparator());
+        }
+        return result;
+    }
+
+    /**
+     * Find the rows as {@link #find(String, boolean)} and, if the search text is empty, put the
+     * rows with the given ids first.
+     * @param firstIds Ids of the rows to put first, in this order, i.e. the recently used payees.
+     *                 The id is the value of the first column.
+     * @return Row indexes, in order.
+     */
+    public Integer[] find(String text, boolean byUsage, List<Integer> firstIds) {
+        Integer[] rows = find(text, byUsage);
+        if (firstIds == null || firstIds.isEmpty() || !getSearchText(text).isEmpty()) return rows;
+
+        HashMap<Integer, Integer> rowsById = new HashMap<>();
+        for (Integer row : rows) {
+            Object id = mRows[row][0];
+            if (id instanceof Integer) {
+                rowsById.put((Integer) id, row);
+            }
+        }
+
+        List<Integer> result = new ArrayList<>(rows.length);
+        HashSet<Integer> first = new HashSet<>();
+        for (Integer id : firstIds) {
+            Integer row = rowsById.get(id);
+            if (row != null && first.add(row)) {
+                result.add(row);
+            }
+        }
+        for (Integer row : rows) {
+            if (!first.contains(row)) {
+                result.add(row);
+            }
+        }
+        return result.toArray(new Integer[result.size()]);
+    }
+
+    /**
+     * @return Cursor with the rows that have a name matching the given text, see
+     * {@link #find(String, boolean)}.
+     */
+    public MatrixCursor getCursor(String text, boolean byUsage) {
+        return getCursor(text, byUsage, null);
+    }
+
+    /**
+     * @return Cursor with the rows that have a name matching the given text, see
+     * {@link #find(String, boolean, List)}.
+     */
+    public MatrixCursor getCursor(String text, boolean byUsage, List<Integer> firstIds) {
+        Integer[] rows = find(text, byUsage, firstIds);
+
+        MatrixCursor cursor = new MatrixCursor(mColumns, rows.length);
+        for (Integer row : rows) {
+            cursor.addRow(mRows[row]);
+        }
+        return cursor;
+    }
+
+    // Private
+
+    private static boolean isContains(String text) {
+        return text != null && text.startsWith(WILDCARD);
+    }
+
+    private Comparator<Integer> getUsageComparator() {
+        return new Comparator<Integer>() {
+            @Override
+            public int compare(Integer lhs, Integer rhs) {
+                int leftGroup = mGroups[lhs];
+                int rightGroup = mGroups[rhs];
+                if (leftGroup != rightGroup) {
+                    int result = compareUsage(leftGroup, rightGroup);
+                    return result != 0 ? result : compareInt(leftGroup, rightGroup);
+                }
+                // The first row of the group stays first.
+                if (lhs == leftGroup || rhs == rightGroup) {
+                    return lhs == leftGroup ? (rhs == rightGroup ? 0 : -1) : 1;
+                }
+                int result = compareUsage(lhs, rhs);
+                return result != 0 ? result : compareInt(lhs, rhs);
+            }
+        };
+    }
+
+    private int compareUsage(int lhs, int rhs) {
+        // descending
+        return compareInt(mUsage[rhs], mUsage[lhs]);
+    }
+
+    private static int compareInt(int lhs, int rhs) {
+        return lhs < rhs ? -1 : (lhs == rhs ? 0 : 1);
+    }
+
+    private static class Key
+        implements Comparable<Key> {
+
+        Key(String name, int row) {
+            this.name = name;
+            this.row = row;
+        }
+
+        final String name;
+        final int row;
+
+        @Override
+        public int compareTo(Key another) {
+            int result = name.compareTo(another.name);
+            return result != 0 ? result : compareInt(row, another.row);
+        }
+    }
+}
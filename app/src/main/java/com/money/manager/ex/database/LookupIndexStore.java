@@ -0,0 +1,292 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.database;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import com.money.manager.ex.BuildConfig;
+import com.money.manager.ex.domainmodel.AccountTransaction;
+import com.money.manager.ex.domainmodel.Payee;
+import com.money.manager.ex.domainmodel.SplitCategory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Holds the {@link LookupIndex} of the payees and of the categories, used by the pickers.
+ * Each index is read from the database once, with the usage counts, and then serves all the
+ * filtering while typing. A new transaction or split only increments the usage counts of its
+ * payee and category. Any other change of the tables drops the index and it is read again by
+ * the next picker that loads.
+ */
+public class LookupIndexStore {
+
+    public static final String[] PAYEE_COLUMNS = new String[] { "_id", Payee.PAYEEID, Payee.PAYEENAME,
+        Payee.CATEGID, Payee.SUBCATEGID };
+
+    private static final String PAYEES = "SELECT P.PAYEEID AS _id, P.PAYEEID, P.PAYEENAME, P.CATEGID, P.SUBCATEGID, " +
+        "ifnull(U.USAGE, 0) AS USAGE " +
+        "FROM PAYEE_V1 P " +
+        "LEFT JOIN (SELECT PAYEEID, COUNT(*) AS USAGE FROM CHECKINGACCOUNT_V1 GROUP BY PAYEEID) U " +
+        "ON U.PAYEEID = P.PAYEEID " +
+        "ORDER BY UPPER(P.PAYEENAME)";
+    /**
+     * Usage of each category and subcategory, by the transactions and the splits.
+     */
+    private static final String CATEGORY_USAGE = "SELECT CATEGID, SUBCATEGID, COUNT(*) FROM (" +
+        "SELECT CATEGID, SUBCATEGID FROM CHECKINGACCOUNT_V1 WHERE CATEGID <> -1 " +
+        "UNION ALL SELECT CATEGID, SUBCATEGID FROM SPLITTRANSACTIONS_V1) " +
+        "GROUP BY CATEGID, SUBCATEGID";
+
+    /**
+     * Columns of the ids in the rows of the indexes.
+     */
+    private static final int PAYEE_ID_COLUMN = 1;
+    private static final int CATEGORY_ID_COLUMN = 1;
+    private static final int SUBCATEGORY_ID_COLUMN = 3;
+
+    private static LookupIndexStore mInstance;
+
+    public static synchronized LookupIndexStore getInstance() {
+        if (mInstance == null) {
+            mInstance = new LookupIndexStore();
+        }
+        return mInstance;
+    }
+
+    private final CachedValue<LookupIndex> mPayees = new CachedValue<LookupIndex>(
+        "PAYEE_V1", "CHECKINGACCOUNT_V1") {
+        @Override
+        protected LookupIndex read(Context context) {
+            return readPayees(MmexOpenHelper.getInstance(context).getReadableDatabase());
+        }
+
+        @Override
+        public void dataInserted(Context context, String table, long id, ContentValues values) {
+            // a new payee is not in the index yet.
+            if (!AccountTransaction.TABLE_NAME.equalsIgnoreCase(table)) {
+                super.dataInserted(context, table, id, values);
+                return;
+            }
+
+            final Integer payeeId = values.getAsInteger(AccountTransaction.PAYEEID);
+            update(new Update<LookupIndex>() {
+                @Override
+                public LookupIndex apply(LookupIndex value) {
+                    return value.addUsage(findRow(value, PAYEE_ID_COLUMN, payeeId));
+                }
+            });
+        }
+    };
+    private final CachedValue<LookupIndex> mCategories = new CachedValue<LookupIndex>(
+        "CATEGORY_V1", "SUBCATEGORY_V1", "CHECKINGACCOUNT_V1", "SPLITTRANSACTIONS_V1") {
+        @Override
+        protected LookupIndex read(Context context) {
+            return readCategories(context, MmexOpenHelper.getInstance(context).getReadableDatabase());
+        }
+
+        @Override
+        public void dataInserted(Context context, String table, long id, ContentValues values) {
+            // a new category or subcategory is not in the index yet.
+            if (!AccountTransaction.TABLE_NAME.equalsIgnoreCase(table) &&
+                !SplitCategory.TABLE_NAME.equalsIgnoreCase(table)) {
+                super.dataInserted(context, table, id, values);
+                return;
+            }
+
+            final Integer categoryId = values.getAsInteger(SplitCategory.CATEGID);
+            final Integer subcategoryId = values.getAsInteger(SplitCategory.SUBCATEGID);
+            // the categories of a split transaction are counted by its splits.
+            if (categoryId == null || categoryId == -1) return;
+
+            update(new Update<LookupIndex>() {
+                @Override
+                public LookupIndex apply(LookupIndex value) {
+                    // the category row counts the usage of its subcategories, too.
+                    int subcategoryRow = subcategoryId == null || subcategoryId == -1 ? -1
+                        : findRow(value, SUBCATEGORY_ID_COLUMN, subcategoryId);
+                    return value.addUsage(findCategoryRow(value, categoryId), subcategoryRow);
+                }
+            });
+        }
+    };
+
+    /**
+     * Index of the payees, ordered by name. Found by the payee name.
+     * Reads the data if required. Do not call on the main thread.
+     */
+    public LookupIndex loadPayees(Context context) {
+        return mPayees.get(context);
+    }
+
+    /**
+     * Index of the categories and subcategories, with the columns of
+     * {@link QueryCategorySubCategory}, ordered by category and subcategory name. Found by the
+     * category name, the subcategory name or the full path.
+     * Reads the data if required. Do not call on the main thread.
+     */
+    public LookupIndex loadCategories(Context context) {
+        return mCategories.get(context);
+    }
+
+    /**
+     * @return The listeners that keep each index up to date when its tables change.
+     */
+    public List<TableChangeListener> getListeners() {
+        return Arrays.<TableChangeListener>asList(mPayees, mCategories);
+    }
+
+    // Private
+
+    /**
+     * @return The row with the given id in the given column, or -1.
+     */
+    private static int findRow(LookupIndex index, int column, Integer id) {
+        if (id == null) return -1;
+
+        for (int row = 0; row < index.size(); row++) {
+            if (id.equals(index.getValue(row, column))) return row;
+        }
+        return -1;
+    }
+
+    /**
+     * @return The row of the category itself, not of one of its subcategories, or -1.
+     */
+    private static int findCategoryRow(LookupIndex index, int categoryId) {
+        for (int row = 0; row < index.size(); row++) {
+            if (Integer.valueOf(categoryId).equals(index.getValue(row, CATEGORY_ID_COLUMN)) &&
+                Integer.valueOf(-1).equals(index.getValue(row, SUBCATEGORY_ID_COLUMN))) {
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    private LookupIndex readPayees(SQLiteDatabase db) {
+        List<Object[]> rows = new ArrayList<>();
+        List<String[]> names = new ArrayList<>();
+        List<Integer> usage = new ArrayList<>();
+
+        Cursor cursor = db.rawQuery(PAYEES, null);
+        try {
+            while (cursor.moveToNext()) {
+                String name = cursor.getString(2);
+                rows.add(new Object[] { cursor.getInt(0), cursor.getInt(1), name,
+                    getIntOrNull(cursor, 3), getIntOrNull(cursor, 4) });
+                names.add(new String[] { name });
+                usage.add(cursor.getInt(5));
+            }
+        } finally {
+            cursor.close();
+        }
+        if (BuildConfig.DEBUG) Log.d(this.getClass().getSimpleName(), "read " + rows.size() + " payees");
+
+        int[] groups = new int[rows.size()];
+        for (int i = 0; i < groups.length; i++) {
+            groups[i] = i;
+        }
+        return new LookupIndex(PAYEE_COLUMNS, rows, names, groups, toArray(usage));
+    }
+
+    private LookupIndex readCategories(Context context, SQLiteDatabase db) {
+        HashMap<Integer, Integer> categoryUsage = new HashMap<>();
+        HashMap<Integer, Integer> subcategoryUsage = new HashMap<>();
+
+        Cursor cursor = db.rawQuery(CATEGORY_USAGE, null);
+        try {
+            while (cursor.moveToNext()) {
+                int categoryId = cursor.getInt(0);
+                int subcategoryId = cursor.isNull(1) ? -1 : cursor.getInt(1);
+                int count = cursor.getInt(2);
+
+                Integer total = categoryUsage.get(categoryId);
+                categoryUsage.put(categoryId, total == null ? count : total + count);
+                if (subcategoryId != -1) {
+                    subcategoryUsage.put(subcategoryId, count);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+
+        QueryCategorySubCategory query = new QueryCategorySubCategory(context);
+        List<Object[]> rows = new ArrayList<>();
+        List<String[]> names = new ArrayList<>();
+        List<Integer> groups = new ArrayList<>();
+        List<Integer> usage = new ArrayList<>();
+        HashMap<Integer, Integer> categoryRows = new HashMap<>();
+
+        cursor = db.rawQuery("SELECT " + QueryCategorySubCategory.ID + ", " +
+            QueryCategorySubCategory.CATEGID + ", " + QueryCategorySubCategory.CATEGNAME + ", " +
+            QueryCategorySubCategory.SUBCATEGID + ", " + QueryCategorySubCategory.SUBCATEGNAME + ", " +
+            QueryCategorySubCategory.CATEGSUBNAME +
+            " FROM (" + query.getSource() + ") T " +
+            "ORDER BY " + QueryCategorySubCategory.CATEGNAME + ", " + QueryCategorySubCategory.SUBCATEGNAME, null);
+        try {
+            while (cursor.moveToNext()) {
+                int row = rows.size();
+                int categoryId = cursor.getInt(1);
+                int subcategoryId = cursor.getInt(3);
+                String categoryName = cursor.getString(2);
+                String subcategoryName = cursor.getString(4);
+                String path = cursor.getString(5);
+
+                rows.add(new Object[] { cursor.getInt(0), categoryId, categoryName, subcategoryId,
+                    subcategoryName, path });
+
+                Integer count;
+                if (subcategoryId == -1) {
+                    categoryRows.put(categoryId, row);
+                    groups.add(row);
+                    names.add(new String[] { categoryName });
+                    count = categoryUsage.get(categoryId);
+                } else {
+                    // The category row comes first.
+                    Integer categoryRow = categoryRows.get(categoryId);
+                    groups.add(categoryRow == null ? row : categoryRow);
+                    names.add(new String[] { categoryName, subcategoryName, path });
+                    count = subcategoryUsage.get(subcategoryId);
+                }
+                usage.add(count == null ? 0 : count);
+            }
+        } finally {
+            cursor.close();
+        }
+        if (BuildConfig.DEBUG) Log.d(this.getClass().getSimpleName(), "read " + rows.size() + " categories");
+
+        return new LookupIndex(query.getAllColumns(), rows, names, toArray(groups), toArray(usage));
+    }
+
+    private Integer getIntOrNull(Cursor cursor, int column) {
+        return cursor.isNull(column) ? null : cursor.getInt(column);
+    }
+
+    private int[] toArray(List<Integer> values) {
+        int[] result = new int[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = values.get(i);
+        }
+        return result;
+    }
+}
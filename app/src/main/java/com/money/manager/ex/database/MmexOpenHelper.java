@@ -29,6 +29,7 @@ import android.util.Log;
 
 import com.money.manager.ex.BuildConfig;
 import com.money.manager.ex.Constants;
+import com.money.manager.ex.MmexContentProvider;
 import com.money.manager.ex.MoneyManagerApplication;
 import com.money.manager.ex.R;
 import com.money.manager.ex.core.InfoKeys;
@@ -36,11 +37,13 @@ import com.money.manager.ex.datalayer.SubcategoryRepository;
 import com.money.manager.ex.domainmodel.Category;
 import com.money.manager.ex.domainmodel.Info;
 import com.money.manager.ex.domainmodel.Subcategory;
+import com.money.manager.ex.notifications.RecurringTransactionScheduler;
 import com.money.manager.ex.servicelayer.InfoService;
 import com.money.manager.ex.core.Core;
 import com.money.manager.ex.core.ExceptionHandler;
 import com.money.manager.ex.currency.CurrencyService;
 import com.money.manager.ex.utils.MmexFileUtils;
+import com.money.manager.ex.widget.WidgetSnapshotStore;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
@@ -136,6 +139,69 @@ public class MmexOpenHelper
     @Override
     public void onOpen(SQLiteDatabase db) {
         super.onOpen(db);
+        // a different database file may have been opened.
+        ReportResultCache.dataChanged();
+        MmexContentProvider.invalidateTableChangeListeners();
+        WidgetSnapshotStore.dataChanged(getContext());
+
+        try {
+            MobileDatabase.attach(getContext(), db);
+        } catch (Exception e) {
+            ExceptionHandler handler = new ExceptionHandler(getContext(), this);
+            handler.handle(e, "attaching mobile database");
+        }
+
+        try {
+            new TransactionAmountIndex().verify(db);
+        } catch (Exception e) {
+            ExceptionHandler handler = new ExceptionHandler(getContext(), this);
+            handler.handle(e, "verifying amount index");
+        }
+
+        try {
+            ChangeCounter.verify(db);
+        } catch (Exception e) {
+            ExceptionHandler handler = new ExceptionHandler(getContext(), this);
+            handler.handle(e, "verifying change counter");
+        }
+
+        try {
+            MonthlySummary summary = new MonthlySummary(getContext());
+            if (!summary.verify(db)) {
+                summary.rebuildLater();
+            }
+        } catch (Exception e) {
+            ExceptionHandler handler = new ExceptionHandler(getContext(), this);
+            handler.handle(e, "verifying monthly summary");
+        }
+
+        try {
+            TransactionSearchIndex searchIndex = new TransactionSearchIndex(getContext());
+            if (!searchIndex.verify(db)) {
+                searchIndex.rebuildLater();
+            }
+        } catch (Exception e) {
+            ExceptionHandler handler = new ExceptionHandler(getContext(), this);
+            handler.handle(e, "verifying search index");
+        }
+
+        try {
+            CategorySuggestions suggestions = new CategorySuggestions(getContext());
+            if (!suggestions.verify(db)) {
+                suggestions.rebuildLater();
+            }
+        } catch (Exception e) {
+            ExceptionHandler handler = new ExceptionHandler(getContext(), this);
+            handler.handle(e, "verifying category suggestions");
+        }
+
+        try {
+            RecurringTransactionScheduler.createIndex(db);
+            RecurringTransactionScheduler.getInstance().scheduleLater(getContext());
+        } catch (Exception e) {
+            ExceptionHandler handler = new ExceptionHandler(getContext(), this);
+            handler.handle(e, "scheduling recurring transaction notification");
+        }
 
 //        int version = db.getVersion();
 //        if (BuildConfig.DEBUG) Log.d(LOGCAT, "opening db version: " + version);
@@ -243,7 +309,9 @@ public class MmexOpenHelper
         SQLiteDatabase db = super.getWritableDatabase();
 
         if (db != null) {
-            db.rawQuery("PRAGMA journal_mode=OFF", null).close();
+            // The rollback journal is kept in memory: no journal file is left next to the shared
+            // database, and unlike OFF, a rollback of the batches and single changes still works.
+            db.rawQuery("PRAGMA journal_mode=MEMORY", null).close();
         }
 
         return db;
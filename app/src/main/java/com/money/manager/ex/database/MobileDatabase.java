@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.database;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.apache.commons.io.FilenameUtils;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * App-private database with the tables derived from the open database file (i.e. the monthly
+ * summary) and the state of their sync. It is attached to the connection when the database is
+ * opened, so the derived tables can be queried and changed together with the data, in the same
+ * transaction, by their unqualified names.
+ * <p>
+ * The database file belongs to the user and is shared with the desktop app (i.e. through
+ * Dropbox). Only what must see the changes made in the file itself is kept there, such as the
+ * change counter and its triggers. The desktop app does not read these objects; the triggers
+ * only write to the mobile objects of the same file, and a table recreated by the desktop app
+ * loses them, which is detected when the database is opened
+ * (see {@link ChangeCounter#verify(SQLiteDatabase)}).
+ * The derived tables can be rebuilt from the data at any time and do not travel with the file.
+ */
+public class MobileDatabase {
+
+    /**
+     * Name of the attached database. Use it to create the derived tables and indexes.
+     */
+    public static final String SCHEMA = "mobile";
+
+    /**
+     * Called when the database is opened, before the derived tables are verified. Each database
+     * file has its own derived database, in the app's database directory.
+     */
+    public static void attach(Context context, SQLiteDatabase db) {
+        attach(db, getFile(context, db.getPath()).getPath());
+    }
+
+    /**
+     * @param path Path of the derived database. ":memory:" for a temporary one.
+     */
+    public static void attach(SQLiteDatabase db, String path) {
+        if (isAttached(db)) return;
+
+        db.execSQL("ATTACH DATABASE ? AS " + SCHEMA, new Object[] { path });
+    }
+
+    /**
+     * @return The derived database of the given database file.
+     */
+    public static File getFile(Context context, String databasePath) {
+        String path;
+        try {
+            path = new File(databasePath).getCanonicalPath();
+        } catch (IOException e) {
+            path = databasePath;
+        }
+        return context.getDatabasePath(SCHEMA + "_" + FilenameUtils.getBaseName(path) + "_" +
+            Integer.toHexString(path.hashCode()) + ".db");
+    }
+
+    // Private
+
+    private static boolean isAttached(SQLiteDatabase db) {
+        Cursor cursor = db.rawQuery("PRAGMA database_list", null);
+        try {
+            int nameColumn = cursor.getColumnIndex("name");
+            while (cursor.moveToNext()) {
+                if (SCHEMA.equalsIgnoreCase(cursor.getString(nameColumn))) return true;
+            }
+            return false;
+        } finally {
+            cursor.close();
+        }
+    }
+}
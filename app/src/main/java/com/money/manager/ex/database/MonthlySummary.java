@@ -0,0 +1,393 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.database;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.money.manager.ex.BuildConfig;
+import com.money.manager.ex.core.ExceptionHandler;
+import com.money.manager.ex.utils.MyDateTimeUtils;
+
+import org.apache.commons.lang3.StringUtils;
+import org.joda.time.DateTime;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Monthly summary of the transactions, used as the source for the reports.
+ * The totals are grouped by year, month, account, category, subcategory, payee, and
+ * transaction type. They are kept in the account currency and converted to the base currency
+ * when read, so that exchange rate changes do not invalidate the summary.
+ * The table is maintained from the content provider on every change of the transactions or
+ * splits, one month at a time, in the same transaction as the change. If it is not in sync with
+ * the {@link ChangeCounter} when the database is opened, i.e. the data was changed elsewhere
+ * (desktop), or an update fails, it is rebuilt in the background. The rebuild reads all the
+ * transactions, so it is not done on the thread that opens the database; until it is done the
+ * reports read the transactions directly. The table is kept in the {@link MobileDatabase}, not
+ * in the database file shared with the desktop app.
+ */
+public class MonthlySummary {
+
+    public static final String TABLE_NAME = "MOBILE_MONTHLYSUMMARY";
+
+    public static final String YEAR = "YEAR";
+    public static final String MONTH = "MONTH";
+    public static final String ACCOUNTID = "ACCOUNTID";
+    public static final String CATEGID = "CATEGID";
+    public static final String SUBCATEGID = "SUBCATEGID";
+    public static final String PAYEEID = "PAYEEID";
+    public static final String TRANSCODE = "TRANSCODE";
+    public static final String TOTAL = "TOTAL";
+    public static final String TRANSCOUNT = "TRANSCOUNT";
+
+    /**
+     * Number of transaction records in the summary source rows. Sum it instead of COUNT(*).
+     */
+    public static final String TransCount = "TransCount";
+
+    private static final String TRANSACTIONS = "CHECKINGACCOUNT_V1";
+    private static final String SPLITS = "SPLITTRANSACTIONS_V1";
+
+    private static final String WHERE_PATTERN = "%%where%%";
+    private static final String ROLLUP = "INSERT INTO " + TABLE_NAME +
+        " (" + YEAR + ", " + MONTH + ", " + ACCOUNTID + ", " + CATEGID + ", " + SUBCATEGID + ", " +
+        PAYEEID + ", " + TRANSCODE + ", " + TOTAL + ", " + TRANSCOUNT + ") " +
+        "SELECT CAST(strftime('%Y', TX.TRANSDATE) AS INTEGER), CAST(strftime('%m', TX.TRANSDATE) AS INTEGER), " +
+        "TX.ACCOUNTID, ifnull(CAT.CATEGID, st.CATEGID), ifnull(ifnull(SUBCAT.SUBCATEGID, st.SUBCATEGID), -1), " +
+        "ifnull(TX.PAYEEID, -1), TX.TRANSCODE, " +
+        "SUM(ROUND((CASE TX.TRANSCODE WHEN 'Withdrawal' THEN -1 ELSE 1 END) * " +
+        "(CASE TX.CATEGID WHEN -1 THEN st.SPLITTRANSAMOUNT ELSE TX.TRANSAMOUNT END), 2)), COUNT(*) " +
+        "FROM " + TRANSACTIONS + " TX " +
+        "LEFT JOIN CATEGORY_V1 CAT ON CAT.CATEGID = TX.CATEGID " +
+        "LEFT JOIN SUBCATEGORY_V1 SUBCAT ON SUBCAT.SUBCATEGID = TX.SUBCATEGID AND SUBCAT.CATEGID = TX.CATEGID " +
+        "LEFT JOIN " + SPLITS + " st ON st.TRANSID = TX.TRANSID " +
+        "WHERE TX.STATUS <> 'V' " + WHERE_PATTERN + " " +
+        "GROUP BY 1, 2, 3, 4, 5, 6, 7";
+
+    private static final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    /**
+     * Whether the summary of the open database is in sync and can be read.
+     */
+    private static volatile boolean mInSync;
+    private static boolean mRebuildScheduled;
+
+    /**
+     * @return True if the summary is in sync with the transactions. The reports read the
+     * transactions directly while it is not.
+     */
+    public static boolean isInSync() {
+        return mInSync;
+    }
+
+    public MonthlySummary(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    private Context context;
+
+    public Context getContext() {
+        return this.context;
+    }
+
+    /**
+     * Called when the database is opened. Creates the summary if it does not exist and checks
+     * whether it is in sync with the transactions. Call after ChangeCounter.verify. Does not
+     * read the transactions, so it is safe on any thread.
+     * @return True if the summary is in sync. Otherwise call {@link #rebuildLater()}.
+     */
+    public boolean verify(SQLiteDatabase db) {
+        create(db);
+
+        mInSync = ChangeCounter.isInSync(db, TABLE_NAME);
+        return mInSync;
+    }
+
+    /**
+     * Rebuild the whole summary from the transactions, in the background. The reports read the
+     * transactions directly until it is done.
+     */
+    public void rebuildLater() {
+        mInSync = false;
+
+        synchronized (MonthlySummary.class) {
+            if (mRebuildScheduled) return;
+            mRebuildScheduled = true;
+        }
+
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (MonthlySummary.class) {
+                    mRebuildScheduled = false;
+                }
+                try {
+                    SQLiteDatabase db = MmexOpenHelper.getInstance(getContext()).getWritableDatabase();
+                    if (BuildConfig.DEBUG) Log.d(MonthlySummary.class.getSimpleName(), "rebuilding monthly summary");
+                    rebuild(db);
+                    // the reports read the summary from now on.
+                    ReportResultCache.dataChanged(TABLE_NAME);
+                } catch (Exception e) {
+                    ExceptionHandler handler = new ExceptionHandler(getContext(), this);
+                    handler.handle(e, "rebuilding monthly summary");
+                }
+            }
+        });
+    }
+
+    /**
+     * Rebuild the whole summary from the transactions. Reads all the transactions; do not call
+     * on the main thread.
+     */
+    public void rebuild(SQLiteDatabase db) {
+        db.beginTransaction();
+        try {
+            db.execSQL("DELETE FROM " + TABLE_NAME);
+            db.execSQL(ROLLUP.replace(WHERE_PATTERN, ""));
+            ChangeCounter.setInSync(db, TABLE_NAME);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        mInSync = ChangeCounter.isInSync(db, TABLE_NAME);
+    }
+
+    /**
+     * Collects the ids of the transactions affected by a change in the transactions or splits.
+     * Call before the change, for update and delete.
+     * @param db Database
+     * @param table Table being changed.
+     * @param where Selection of the change.
+     * @param whereArgs Selection arguments.
+     * @return Transaction ids. Null if the table is not the source of the summary.
+     */
+    public List<Integer> getAffectedTransactions(SQLiteDatabase db, String table, String where,
+                                                 String[] whereArgs) {
+        if (!isSourceTable(table)) return null;
+
+        String sql = "SELECT DISTINCT TRANSID FROM " + table;
+        if (!TextUtils.isEmpty(where)) {
+            sql += " WHERE " + where;
+        }
+
+        List<Integer> ids = new ArrayList<>();
+        Cursor cursor = db.rawQuery(sql, whereArgs);
+        while (cursor.moveToNext()) {
+            ids.add(cursor.getInt(0));
+        }
+        cursor.close();
+        return ids;
+    }
+
+    /**
+     * @return Months (as year * 100 + month) of the given transactions.
+     */
+    public TreeSet<Integer> getMonthsFor(SQLiteDatabase db, List<Integer> transactionIds) {
+        TreeSet<Integer> months = new TreeSet<>();
+        if (transactionIds == null || transactionIds.isEmpty()) return months;
+
+        Cursor cursor = db.rawQuery("SELECT DISTINCT " +
+            "CAST(strftime('%Y', TRANSDATE) AS INTEGER) * 100 + CAST(strftime('%m', TRANSDATE) AS INTEGER) " +
+            "FROM " + TRANSACTIONS + " WHERE TRANSID IN (" + StringUtils.join(transactionIds, ",") + ")", null);
+        while (cursor.moveToNext()) {
+            if (!cursor.isNull(0)) {
+                months.add(cursor.getInt(0));
+            }
+        }
+        cursor.close();
+        return months;
+    }
+
+    /**
+     * Recalculate the given months from the transactions. Runs in the transaction of the
+     * caller (the change), without a nested one, so that a failure does not roll it back.
+     * @param months Months as year * 100 + month.
+     */
+    public void refreshMonths(SQLiteDatabase db, TreeSet<Integer> months) {
+        if (months == null || months.isEmpty()) return;
+
+        for (int month : months) {
+            int year = month / 100;
+            int monthOfYear = month % 100;
+            String[] range = new String[] { getMonthStart(year, monthOfYear),
+                monthOfYear == 12 ? getMonthStart(year + 1, 1) : getMonthStart(year, monthOfYear + 1) };
+
+            db.execSQL("DELETE FROM " + TABLE_NAME + " WHERE " + YEAR + "=? AND " + MONTH + "=?",
+                new Object[] { year, monthOfYear });
+            db.execSQL(ROLLUP.replace(WHERE_PATTERN, "AND TX.TRANSDATE >= ? AND TX.TRANSDATE < ?"), range);
+        }
+    }
+
+    public boolean isSourceTable(String table) {
+        return TRANSACTIONS.equalsIgnoreCase(table) || SPLITS.equalsIgnoreCase(table);
+    }
+
+    public boolean isTransactionsTable(String table) {
+        return TRANSACTIONS.equalsIgnoreCase(table);
+    }
+
+    /**
+     * Report source for the given period, with the same column names as the mobile data query
+     * (Date, Year, Month, AccountID, CategID, Category, SubcategID, Subcategory, PayeeID, Payee,
+     * TransactionType, Status, AmountBaseConvRate) and TransCount. Whole months are read from
+     * the summary, one row per group; the partial months at the edges of the period come from
+     * the transactions. Void transactions are not included. While the summary is not in sync,
+     * the whole period comes from the transactions.
+     * @param dateFrom Start of the period, inclusive. Null for no lower limit.
+     * @param dateTo End of the period, inclusive. Null for no upper limit.
+     * @return The source statement, aliased as mobiledata.
+     */
+    public String getSource(DateTime dateFrom, DateTime dateTo) {
+        if (!isInSync()) {
+            return "(" + getTransactionsSource(getDateRange(dateFrom, dateTo)) + ") mobiledata";
+        }
+
+        // whole months within the period
+        Integer firstMonth = null;
+        Integer lastMonth = null;
+        if (dateFrom != null) {
+            DateTime start = dateFrom.getDayOfMonth() == 1 ? dateFrom : dateFrom.plusMonths(1);
+            firstMonth = start.getYear() * 100 + start.getMonthOfYear();
+        }
+        if (dateTo != null) {
+            boolean isMonthEnd = dateTo.getDayOfMonth() == dateTo.dayOfMonth().getMaximumValue();
+            DateTime end = isMonthEnd ? dateTo : dateTo.minusMonths(1);
+            lastMonth = end.getYear() * 100 + end.getMonthOfYear();
+        }
+
+        List<String> parts = new ArrayList<>();
+
+        if (firstMonth == null || lastMonth == null || firstMonth <= lastMonth) {
+            parts.add(getSummarySource(firstMonth, lastMonth));
+        }
+
+        // partial months
+        List<String> ranges = new ArrayList<>();
+        DateTime lowerEnd = null;
+        if (dateFrom != null && dateFrom.getDayOfMonth() != 1) {
+            lowerEnd = dateFrom.dayOfMonth().withMaximumValue();
+            if (dateTo != null && dateTo.isBefore(lowerEnd)) {
+                lowerEnd = dateTo;
+            }
+            ranges.add(getDateRange(dateFrom, lowerEnd));
+        }
+        if (dateTo != null && dateTo.getDayOfMonth() != dateTo.dayOfMonth().getMaximumValue()) {
+            DateTime upperStart = dateTo.dayOfMonth().withMinimumValue();
+            if (dateFrom != null && upperStart.isBefore(dateFrom)) {
+                upperStart = dateFrom;
+            }
+            if (lowerEnd == null || upperStart.isAfter(lowerEnd)) {
+                ranges.add(getDateRange(upperStart, dateTo));
+            }
+        }
+        if (!ranges.isEmpty()) {
+            parts.add(getTransactionsSource(TextUtils.join(" OR ", ranges)));
+        }
+
+        return "(" + TextUtils.join(" UNION ALL ", parts) + ") mobiledata";
+    }
+
+    /**
+     * @return Statement with the distinct years of the transactions, as Year, newest first.
+     * Read from the summary while it is in sync.
+     */
+    public String getYearsQuery() {
+        if (!isInSync()) {
+            return "SELECT DISTINCT CAST(strftime('%Y', TRANSDATE) AS INTEGER) AS Year FROM " + TRANSACTIONS +
+                " WHERE STATUS <> 'V' AND TRANSDATE IS NOT NULL ORDER BY Year DESC";
+        }
+        return "SELECT DISTINCT " + YEAR + " AS Year FROM " + TABLE_NAME + " ORDER BY " + YEAR + " DESC";
+    }
+
+    // Private
+
+    private void create(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + MobileDatabase.SCHEMA + "." + TABLE_NAME + " (" +
+            YEAR + " INTEGER NOT NULL, " + MONTH + " INTEGER NOT NULL, " + ACCOUNTID + " INTEGER, " +
+            CATEGID + " INTEGER, " + SUBCATEGID + " INTEGER, " + PAYEEID + " INTEGER, " +
+            TRANSCODE + " TEXT, " + TOTAL + " NUMERIC, " + TRANSCOUNT + " INTEGER)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + MobileDatabase.SCHEMA + ".IDX_MOBILE_MONTHLYSUMMARY_YEAR_MONTH ON " +
+            TABLE_NAME + " (" + YEAR + ", " + MONTH + ")");
+    }
+
+    private String getSummarySource(Integer firstMonth, Integer lastMonth) {
+        String sql = "SELECT S.YEAR || '-' || substr('0' || S.MONTH, -2, 2) || '-01' AS Date, " +
+            "S.YEAR AS Year, S.MONTH AS Month, S.ACCOUNTID AS AccountID, " +
+            "S.CATEGID AS CategID, CAT.CATEGNAME AS Category, " +
+            "S.SUBCATEGID AS SubcategID, ifnull(SUBCAT.SUBCATEGNAME, '') AS Subcategory, " +
+            "S.PAYEEID AS PayeeID, ifnull(PAYEE.PAYEENAME, '') AS Payee, " +
+            "S.TRANSCODE AS TransactionType, '' AS Status, " +
+            "S.TOTAL * ifnull(cf.BASECONVRATE, 1) AS AmountBaseConvRate, " +
+            "S.TRANSCOUNT AS TransCount " +
+            "FROM " + TABLE_NAME + " S " +
+            "LEFT JOIN CATEGORY_V1 CAT ON CAT.CATEGID = S.CATEGID " +
+            "LEFT JOIN SUBCATEGORY_V1 SUBCAT ON SUBCAT.SUBCATEGID = S.SUBCATEGID AND SUBCAT.CATEGID = S.CATEGID " +
+            "LEFT JOIN PAYEE_V1 PAYEE ON PAYEE.PAYEEID = S.PAYEEID " +
+            "LEFT JOIN ACCOUNTLIST_V1 ACC ON ACC.ACCOUNTID = S.ACCOUNTID " +
+            "LEFT JOIN CURRENCYFORMATS_V1 cf ON cf.CURRENCYID = ACC.CURRENCYID";
+
+        List<String> where = new ArrayList<>();
+        if (firstMonth != null) {
+            where.add("S.YEAR * 100 + S.MONTH >= " + firstMonth);
+        }
+        if (lastMonth != null) {
+            where.add("S.YEAR * 100 + S.MONTH <= " + lastMonth);
+        }
+        if (!where.isEmpty()) {
+            sql += " WHERE " + TextUtils.join(" AND ", where);
+        }
+        return sql;
+    }
+
+    private String getTransactionsSource(String dateCondition) {
+        ViewMobileData mobileData = new ViewMobileData(getContext());
+        mobileData.setWhere("TX.STATUS <> 'V' AND (" + dateCondition + ")");
+
+        return "SELECT Date, Year, Month, AccountID, CategID, Category, SubcategID, Subcategory, " +
+            "PayeeID, Payee, TransactionType, Status, AmountBaseConvRate, 1 AS TransCount " +
+            "FROM " + mobileData.getSource();
+    }
+
+    /**
+     * @param from Start, inclusive. Null for no lower limit.
+     * @param to End, inclusive. Null for no upper limit.
+     */
+    private String getDateRange(DateTime from, DateTime to) {
+        List<String> conditions = new ArrayList<>();
+        if (from != null) {
+            conditions.add("TX.TRANSDATE >= '" + MyDateTimeUtils.getIsoStringFrom(from) + "'");
+        }
+        if (to != null) {
+            conditions.add("TX.TRANSDATE < '" + MyDateTimeUtils.getIsoStringFrom(to.plusDays(1)) + "'");
+        }
+        if (conditions.isEmpty()) return "1=1";
+
+        return "(" + TextUtils.join(" AND ", conditions) + ")";
+    }
+
+    private String getMonthStart(int year, int month) {
+        return String.format(Locale.US, "%04d-%02d-01", year, month);
+    }
+}
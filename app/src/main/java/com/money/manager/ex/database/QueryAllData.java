@@ -37,6 +37,11 @@ public class QueryAllData
     public static final String Category = "Category";
     public static final String Subcategory = "Subcategory";
     public static final String Amount = "Amount";
+    /**
+     * Signed amount in fixed-point units, see {@link TransactionAmountIndex}. Indexed, when
+     * the database has the column. Use instead of the Amount when filtering.
+     */
+    public static final String AmountUnits = "AmountUnits";
     public static final String BaseConvRate = "BaseConvRate";
     public static final String CURRENCYID = "CurrencyID";
     public static final String AccountName = "AccountName";
@@ -64,6 +69,14 @@ public class QueryAllData
         super(MmexFileUtils.getRawAsString(context, R.raw.query_alldata), DatasetType.QUERY, "queryalldata");
     }
 
+    /**
+     * @return The query, reading the indexed amount if the database has it.
+     */
+    @Override
+    public String getSource() {
+        return TransactionAmountIndex.getSource(super.getSource());
+    }
+
     @Override
     public String[] getAllColumns() {
         return new String[]{"ID AS _id", ID, TransactionType, Date, UserDate, Year, Month, Day,
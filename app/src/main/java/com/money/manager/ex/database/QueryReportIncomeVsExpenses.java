@@ -45,12 +45,16 @@ public class QueryReportIncomeVsExpenses
     }
 
     private void initialize(Context context, String whereStatement) {
-        ViewMobileData mobileData = new ViewMobileData(context);
-        // add where statement
-        if(!StringUtils.isEmpty(whereStatement)) {
+        String mobileDataQuery;
+        if (StringUtils.isEmpty(whereStatement)) {
+            // whole months, read from the summary.
+            mobileDataQuery = new MonthlySummary(context).getSource(null, null);
+        } else {
+            ViewMobileData mobileData = new ViewMobileData(context);
+            // add where statement
             mobileData.setWhere(whereStatement);
+            mobileDataQuery = mobileData.getSource();
         }
-        String mobileDataQuery = mobileData.getSource();
 
         // assemble the source statement by combining queries.
         String source = MmexFileUtils.getRawAsString(context, R.raw.report_income_vs_expenses);
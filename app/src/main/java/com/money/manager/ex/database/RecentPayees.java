@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.database;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.money.manager.ex.core.TransactionTypes;
+import com.money.manager.ex.domainmodel.AccountTransaction;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The most recently used payees, by the date of their last transaction (transfers excluded).
+ * Read once with a bounded query on the date index and then kept up to date on every new
+ * transaction, so that the new transaction screen does not query the transactions for the last
+ * payee. Edits and deletions of transactions or payees drop the list; it is read again on the
+ * next use.
+ */
+public class RecentPayees
+    extends CachedValue<List<RecentPayees.Entry>> {
+
+    /**
+     * Number of payees kept.
+     */
+    public static final int SIZE = 10;
+    /**
+     * Number of the latest transactions read to find the recent payees. Less than SIZE payees
+     * are kept if these transactions do not have as many.
+     */
+    private static final int TRANSACTIONS_READ = SIZE * 20;
+
+    private static final String PAYEES = "PAYEE_V1";
+
+    private static final String SOURCE = "SELECT C.PAYEEID, C.TRANSDATE, C.TRANSID " +
+        "FROM " + AccountTransaction.TABLE_NAME + " C " +
+        "INNER JOIN " + PAYEES + " P ON C.PAYEEID = P.PAYEEID " +
+        "WHERE C.TRANSCODE <> 'Transfer' " +
+        "ORDER BY C.TRANSDATE DESC, C.TRANSID DESC " +
+        "LIMIT " + TRANSACTIONS_READ;
+
+    private static RecentPayees mInstance;
+
+    public static synchronized RecentPayees getInstance() {
+        if (mInstance == null) {
+            mInstance = new RecentPayees();
+        }
+        return mInstance;
+    }
+
+    private RecentPayees() {
+        super(AccountTransaction.TABLE_NAME, PAYEES);
+    }
+
+    /**
+     * @return Id of the payee of the latest transaction. Null if there is none.
+     * Reads the data if required. Do not call on the main thread.
+     */
+    public Integer getLastPayeeId(Context context) {
+        List<Integer> ids = getPayeeIds(context);
+        return ids.isEmpty() ? null : ids.get(0);
+    }
+
+    /**
+     * @return Ids of the recently used payees, the latest first.
+     * Reads the data if required. Do not call on the main thread.
+     */
+    public List<Integer> getPayeeIds(Context context) {
+        List<Integer> result = new ArrayList<>();
+        for (Entry entry : get(context)) {
+            result.add(entry.payeeId);
+        }
+        return result;
+    }
+
+    @Override
+    public void dataInserted(Context context, String table, long id, ContentValues values) {
+        // a new payee has no transactions yet.
+        if (!AccountTransaction.TABLE_NAME.equalsIgnoreCase(table)) return;
+
+        Integer payeeId = values.getAsInteger(AccountTransaction.PAYEEID);
+        String date = values.getAsString(AccountTransaction.TRANSDATE);
+        String type = values.getAsString(AccountTransaction.TRANSCODE);
+        final boolean isRecent = payeeId != null && payeeId > 0 && date != null &&
+            !TransactionTypes.Transfer.name().equals(type);
+        final Entry entry = isRecent ? new Entry(payeeId, date, (int) id) : null;
+
+        update(new Update<List<Entry>>() {
+            @Override
+            public List<Entry> apply(List<Entry> value) {
+                if (entry == null) return value;
+
+                List<Entry> entries = new ArrayList<>(value);
+                add(entries, entry);
+                return entries;
+            }
+        });
+    }
+
+    // Private
+
+    @Override
+    protected List<Entry> read(Context context) {
+        return read(MmexOpenHelper.getInstance(context).getReadableDatabase());
+    }
+
+    private List<Entry> read(SQLiteDatabase db) {
+        List<Entry> entries = new ArrayList<>();
+
+        Cursor cursor = db.rawQuery(SOURCE, null);
+        try {
+            // ordered by date, so only the first transaction of each payee is added.
+            while (cursor.moveToNext() && entries.size() < SIZE) {
+                add(entries, new Entry(cursor.getInt(0), cursor.getString(1), cursor.getInt(2)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return entries;
+    }
+
+    /**
+     * Put the entry in its place by date, if it is more recent than the existing entry of the
+     * same payee, and keep at most SIZE entries.
+     */
+    private static void add(List<Entry> entries, Entry entry) {
+        for (int i = 0; i < entries.size(); i++) {
+            if (entries.get(i).payeeId == entry.payeeId) {
+                if (!entry.isAfter(entries.get(i))) return;
+
+                entries.remove(i);
+                break;
+            }
+        }
+
+        int position = 0;
+        while (position < entries.size() && !entry.isAfter(entries.get(position))) {
+            position++;
+        }
+        if (position >= SIZE) return;
+
+        entries.add(position, entry);
+        if (entries.size() > SIZE) {
+            entries.remove(entries.size() - 1);
+        }
+    }
+
+    static class Entry {
+        Entry(int payeeId, String date, int transactionId) {
+            this.payeeId = payeeId;
+            this.date = date;
+            this.transactionId = transactionId;
+        }
+
+        final int payeeId;
+        final String date;
+        final int transactionId;
+
+        boolean isAfter(Entry another) {
+            int result = date.compareTo(another.date);
+            return result != 0 ? result > 0 : transactionId > another.transactionId;
+        }
+    }
+}
@@ -0,0 +1,376 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.database;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory cache of report query results.
+ * Entries are keyed by the query (dataset, projection, selection, arguments, sort) and by the
+ * data generation at the time they were read. Each entry depends on the tables named in its
+ * query text; the content provider bumps the generation of a table once a write to it is
+ * committed, so stale results are never returned and a write only drops the results that read
+ * the table. The least recently used entries are evicted when the estimated size exceeds the
+ * budget.
+ */
+public class ReportResultCache {
+
+    private static final int DEFAULT_BUDGET = 2 * 1024 * 1024;
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    private static ReportResultCache mInstance;
+
+    public static synchronized ReportResultCache getInstance() {
+        if (mInstance == null) {
+            mInstance = new ReportResultCache(DEFAULT_BUDGET);
+        }
+        return mInstance;
+    }
+
+    /**
+     * Notify the cache that all the data has changed, i.e. a database was opened.
+     */
+    public static void dataChanged() {
+        getInstance().bumpGeneration();
+    }
+
+    /**
+     * Notify the cache that the tables have changed. Called by the content provider after
+     * the writes are committed.
+     */
+    public static void dataChanged(String... tables) {
+        getInstance().bumpGeneration(tables);
+    }
+
+    /**
+     * @param query Parts of the query text (i.e. the SQL of a report).
+     * @return The names the query depends on: every identifier in its text, in upper case.
+     * Column names and aliases only make the dependencies wider.
+     */
+    public static Set<String> getDependencies(String... query) {
+        Set<String> names = new HashSet<>();
+        for (String part : query) {
+            if (part == null) continue;
+
+            Matcher matcher = IDENTIFIER.matcher(part);
+            while (matcher.find()) {
+                names.add(matcher.group().toUpperCase(Locale.US));
+            }
+        }
+        return names;
+    }
+
+    public ReportResultCache(int budget) {
+        mBudget = budget;
+        mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    private final int mBudget;
+    private final AtomicLong mGeneration = new AtomicLong();
+    /**
+     * Generation of the last change, by table name in upper case.
+     */
+    private final Map<String, Long> mTableGenerations = new HashMap<>();
+    /**
+     * Generation of the last change of all the data.
+     */
+    private long mResetGeneration;
+    private final LinkedHashMap<String, Entry> mEntries;
+    private int mSize;
+
+    public long getGeneration() {
+        return mGeneration.get();
+    }
+
+    public synchronized void bumpGeneration() {
+        mResetGeneration = mGeneration.incrementAndGet();
+        clear();
+    }
+
+    /**
+     * Drop the results that depend on any of the tables.
+     */
+    public synchronized void bumpGeneration(String... tables) {
+        long generation = mGeneration.incrementAndGet();
+        for (String table : tables) {
+            mTableGenerations.put(table.toUpperCase(Locale.US), generation);
+        }
+
+        Iterator<Map.Entry<String, Entry>> iterator = mEntries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next().getValue();
+            if (!isCurrent(entry.generation, entry.tables)) {
+                mSize -= entry.size;
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        mEntries.clear();
+        mSize = 0;
+    }
+
+    public synchronized int getSize() {
+        return mSize;
+    }
+
+    public static String createKey(Uri uri, String[] projection, String selection, String[] selectionArgs,
+                                   String sortOrder) {
+        // separators that can not appear in sql text
+        return uri + "\u0000" + Arrays.toString(projection) + "\u0000" + selection + "\u0000" +
+            Arrays.toString(selectionArgs) + "\u0000" + sortOrder;
+    }
+
+    /**
+     * @param key Query key, see createKey.
+     * @return A new cursor over the cached rows or null if the result is not cached for the
+     * current data generation.
+     */
+    public synchronized Cursor get(String key) {
+        Entry entry = mEntries.get(key);
+        if (entry == null) return null;
+
+        if (!isCurrent(entry.generation, entry.tables)) {
+            remove(key);
+            return null;
+        }
+
+        return new CachedCursor(entry.columns, entry.rows);
+    }
+
+    /**
+     * Copy the cursor contents into the cache. The cursor is left positioned before the first row.
+     * @param key Query key, see createKey.
+     * @param generation Data generation read before the query was run. The result is discarded
+     *                   if the data has changed in the meantime.
+     * @param cursor Query result.
+     */
+    public void put(String key, long generation, Cursor cursor) {
+        put(key, generation, null, cursor);
+    }
+
+    /**
+     * Copy the cursor contents into the cache. The cursor is left positioned before the first row.
+     * @param key Query key, see createKey.
+     * @param generation Data generation read before the query was run. The result is discarded
+     *                   if any of the tables has changed in the meantime.
+     * @param tables Names the result depends on, see getDependencies. Null if it depends on
+     *               all the tables.
+     * @param cursor Query result.
+     */
+    public void put(String key, long generation, Set<String> tables, Cursor cursor) {
+        if (cursor == null) return;
+        synchronized (this) {
+            if (!isCurrent(generation, tables)) return;
+        }
+
+        String[] columns = cursor.getColumnNames();
+        List<Object[]> rows = new ArrayList<>(cursor.getCount());
+        int size = 64 + 16 * columns.length + key.length() * 2;
+
+        cursor.moveToPosition(-1);
+        while (cursor.moveToNext()) {
+            Object[] row = new Object[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                row[i] = readValue(cursor, i);
+                size += estimateSize(row[i]);
+            }
+            rows.add(row);
+            size += 16 + 4 * columns.length;
+
+            // do not let a single result take over the cache.
+            if (size > mBudget / 4) {
+                cursor.moveToPosition(-1);
+                return;
+            }
+        }
+        cursor.moveToPosition(-1);
+
+        Entry entry = new Entry(generation, tables, columns, rows, size);
+
+        synchronized (this) {
+            if (!isCurrent(generation, tables)) return;
+
+            remove(key);
+            mEntries.put(key, entry);
+            mSize += size;
+            trim();
+        }
+    }
+
+    /**
+     * Read the value with its native type, as required by MatrixCursor.
+     */
+    public static Object readValue(Cursor cursor, int column) {
+        switch (cursor.getType(column)) {
+            case Cursor.FIELD_TYPE_NULL:
+                return null;
+            case Cursor.FIELD_TYPE_INTEGER:
+                return cursor.getLong(column);
+            case Cursor.FIELD_TYPE_FLOAT:
+                return new CachedDouble(cursor.getDouble(column), cursor.getString(column));
+            case Cursor.FIELD_TYPE_BLOB:
+                return cursor.getBlob(column);
+            default:
+                return cursor.getString(column);
+        }
+    }
+
+    // Private
+
+    /**
+     * @return True if none of the tables has changed since the generation.
+     */
+    private boolean isCurrent(long generation, Set<String> tables) {
+        if (mResetGeneration > generation) return false;
+
+        if (tables == null) {
+            // depends on all the tables.
+            return mGeneration.get() == generation;
+        }
+        for (String table : tables) {
+            Long changed = mTableGenerations.get(table);
+            if (changed != null && changed > generation) return false;
+        }
+        return true;
+    }
+
+    private void remove(String key) {
+        Entry existing = mEntries.remove(key);
+        if (existing != null) {
+            mSize -= existing.size;
+        }
+    }
+
+    private void trim() {
+        Iterator<Map.Entry<String, Entry>> iterator = mEntries.entrySet().iterator();
+        while (mSize > mBudget && iterator.hasNext()) {
+            mSize -= iterator.next().getValue().size;
+            iterator.remove();
+        }
+    }
+
+    private int estimateSize(Object value) {
+        if (value == null) return 0;
+        if (value instanceof String) return 40 + ((String) value).length() * 2;
+        if (value instanceof byte[]) return 16 + ((byte[]) value).length;
+        if (value instanceof CachedDouble) return 64 + value.toString().length() * 2;
+        return 16;
+    }
+
+    /**
+     * Floating point value that keeps the text representation produced by SQLite, so that
+     * getString returns the same text as the original cursor (i.e. no exponent notation).
+     */
+    private static class CachedDouble
+        extends Number {
+
+        CachedDouble(double value, String text) {
+            this.value = value;
+            this.text = text;
+        }
+
+        private final double value;
+        private final String text;
+
+        @Override
+        public int intValue() {
+            return (int) value;
+        }
+
+        @Override
+        public long longValue() {
+            return (long) value;
+        }
+
+        @Override
+        public float floatValue() {
+            return (float) value;
+        }
+
+        @Override
+        public double doubleValue() {
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
+    /**
+     * Cursor over the cached rows. Reports the floating point values as such, which
+     * MatrixCursor would report as strings.
+     */
+    private static class CachedCursor
+        extends MatrixCursor {
+
+        CachedCursor(String[] columns, List<Object[]> rows) {
+            super(columns, rows.size());
+
+            this.rows = rows;
+            for (Object[] row : rows) {
+                addRow(row);
+            }
+        }
+
+        private final List<Object[]> rows;
+
+        @Override
+        public int getType(int column) {
+            int position = getPosition();
+            if (position >= 0 && position < rows.size() && rows.get(position)[column] instanceof CachedDouble) {
+                return FIELD_TYPE_FLOAT;
+            }
+            return super.getType(column);
+        }
+    }
+
+    private static class Entry {
+        Entry(long generation, Set<String> tables, String[] columns, List<Object[]> rows, int size) {
+            this.generation = generation;
+            this.tables = tables;
+            this.columns = columns;
+            this.rows = rows;
+            this.size = size;
+        }
+
+        final long generation;
+        final Set<String> tables;
+        final String[] columns;
+        final List<Object[]> rows;
+        final int size;
+    }
+}
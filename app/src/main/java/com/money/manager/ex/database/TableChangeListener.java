@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.database;
+
+import android.content.ContentValues;
+import android.content.Context;
+
+/**
+ * Receives the changes of the tables from the content provider. Used to keep the in-memory
+ * data derived from the tables up to date.
+ * Register with {@link com.money.manager.ex.MmexContentProvider#addTableChangeListener}.
+ */
+public interface TableChangeListener {
+
+    /**
+     * @return Names of the tables the listener depends on.
+     */
+    String[] getTables();
+
+    /**
+     * Called after a row was inserted into one of the tables.
+     */
+    void dataInserted(Context context, String table, long id, ContentValues values);
+
+    /**
+     * Called after rows of one of the tables were updated or deleted.
+     */
+    void dataChanged(Context context, String table);
+
+    /**
+     * Drop all the derived data, i.e. when a change was rolled back or a different database
+     * is opened.
+     */
+    void invalidate();
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.database;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import com.money.manager.ex.BuildConfig;
+
+import java.math.RoundingMode;
+
+import info.javaperformance.money.Money;
+
+/**
+ * Signed amount of each transaction, persisted on the transactions table in fixed-point units
+ * and indexed together with the date, so that amount-range searches do not compute the amount
+ * for every transaction.
+ * The amount is the signed change of the account balance (withdrawals and transfers are
+ * negative), as the Amount of the all-data query, in units of {@link TransactionSnapshot#PRECISION}
+ * decimal places.
+ * The column is maintained by triggers, so it stays correct also when the database is changed
+ * elsewhere (i.e. desktop). The column, index and triggers are (re)created when the database
+ * is opened, as they are lost if the table is recreated.
+ * Unlike the derived tables in the {@link MobileDatabase}, they have to live in the database
+ * file, on the transactions table. On the desktop side:
+ * - the desktop app names the columns it inserts and updates, so it ignores the extra column;
+ * - the triggers only use core SQLite functions and also run on its changes;
+ * - a desktop upgrade that rebuilds the table drops the column, the index and the triggers.
+ * Until they are restored, or if that fails, the queries calculate the amount instead, see
+ * {@link #getSource(String)}.
+ */
+public class TransactionAmountIndex {
+
+    public static final String COLUMN = "MOBILE_AMOUNTUNITS";
+    private static final String INDEX_NAME = "IDX_CHECKINGACCOUNT_MOBILE_AMOUNT";
+    private static final String INSERT_TRIGGER = "MOBILE_CHECKINGACCOUNT_AMOUNT_INSERT";
+    private static final String UPDATE_TRIGGER = "MOBILE_CHECKINGACCOUNT_AMOUNT_UPDATE";
+
+    private static final String TRANSACTIONS = "CHECKINGACCOUNT_V1";
+
+    /**
+     * Whether the column of the open database is complete and maintained.
+     */
+    private static volatile boolean mAvailable;
+
+    /**
+     * @return True if the column can be read. The amount is calculated while it can not.
+     */
+    public static boolean isAvailable() {
+        return mAvailable;
+    }
+
+    /**
+     * Adapt a query that reads the column of the transactions (aliased TX) to the open database.
+     * @return The query, with the column replaced by the calculated amount if it is not available.
+     */
+    public static String getSource(String query) {
+        if (isAvailable()) return query;
+
+        return query.replace("TX." + COLUMN, getUnits("TX."));
+    }
+
+    /**
+     * Convert an amount into the units stored in the column.
+     */
+    public static long toUnits(Money amount) {
+        return amount.toBigDecimal()
+            .movePointRight(TransactionSnapshot.PRECISION)
+            .setScale(0, RoundingMode.HALF_UP)
+            .longValue();
+    }
+
+    /**
+     * Called when the database is opened. Adds the column, the index and the triggers
+     * if they do not exist and calculates the missing amounts.
+     */
+    public void verify(SQLiteDatabase db) {
+        mAvailable = false;
+
+        db.beginTransaction();
+        try {
+            if (!hasColumn(db)) {
+                if (BuildConfig.DEBUG) Log.d(this.getClass().getSimpleName(), "adding amount column");
+                db.execSQL("ALTER TABLE " + TRANSACTIONS + " ADD COLUMN " + COLUMN + " INTEGER");
+            }
+            db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_NAME + " ON " + TRANSACTIONS +
+                " (" + COLUMN + ", TRANSDATE)");
+
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS " + INSERT_TRIGGER +
+                " AFTER INSERT ON " + TRANSACTIONS + getRefresh());
+            // The column itself is included in case a stale value is written back.
+            db.execSQL("CREATE TRIGGER IF NOT EXISTS " + UPDATE_TRIGGER +
+                " AFTER UPDATE OF TRANSCODE, TRANSAMOUNT, " + COLUMN + " ON " + TRANSACTIONS + getRefresh());
+
+            // Uses the index.
+            db.execSQL("UPDATE " + TRANSACTIONS + " SET " + COLUMN + " = " + getUnits("") +
+                " WHERE " + COLUMN + " IS NULL");
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        mAvailable = true;
+    }
+
+    // Private
+
+    private boolean hasColumn(SQLiteDatabase db) {
+        boolean result = false;
+        Cursor cursor = db.rawQuery("PRAGMA table_info(" + TRANSACTIONS + ")", null);
+        int nameColumn = cursor.getColumnIndex("name");
+        while (cursor.moveToNext()) {
+            if (COLUMN.equalsIgnoreCase(cursor.getString(nameColumn))) {
+                result = true;
+                break;
+            }
+        }
+        cursor.close();
+        return result;
+    }
+
+    /**
+     * Trigger condition and body that set the amount of the changed row.
+     */
+    private String getRefresh() {
+        String units = getUnits("NEW.");
+        return " WHEN NEW." + COLUMN + " IS NOT " + units +
+            " BEGIN UPDATE " + TRANSACTIONS + " SET " + COLUMN + " = " + units +
+            " WHERE TRANSID = NEW.TRANSID; END";
+    }
+
+    /**
+     * Same calculation as the amount units of the transaction snapshot.
+     * @param row Row prefix, i.e. "NEW."
+     */
+    private static String getUnits(String row) {
+        return "CAST(ROUND((CASE " + row + "TRANSCODE WHEN 'Deposit' THEN 1 ELSE -1 END) * " +
+            "ifnull(" + row + "TRANSAMOUNT, 0) * 10000) AS INTEGER)";
+    }
+}
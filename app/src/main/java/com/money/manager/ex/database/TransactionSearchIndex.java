@@ -0,0 +1,361 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.database;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.money.manager.ex.BuildConfig;
+import com.money.manager.ex.core.ExceptionHandler;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Full-text index of the transactions, used by the search. Each transaction is indexed by
+ * its id with the notes, payee name, category and subcategory names (including the ones of
+ * the splits) and the transaction number.
+ * Like the monthly summary, the index is maintained from the content provider on every change
+ * of the transactions, splits, payees and categories, and it is rebuilt in the background when
+ * the database is opened if it is not in sync with the {@link ChangeCounter}. The search uses
+ * LIKE on the transactions until then, see {@link #isInSync()}.
+ */
+public class TransactionSearchIndex {
+
+    public static final String TABLE_NAME = "MOBILE_TRANSACTIONSEARCH";
+
+    public static final String NOTES = "NOTES";
+    public static final String PAYEE = "PAYEE";
+    public static final String CATEGORY = "CATEGORY";
+    public static final String TRANSACTIONNUMBER = "TRANSACTIONNUMBER";
+
+    private static final String TRANSACTIONS = "CHECKINGACCOUNT_V1";
+    private static final String SPLITS = "SPLITTRANSACTIONS_V1";
+    private static final String PAYEES = "PAYEE_V1";
+    private static final String CATEGORIES = "CATEGORY_V1";
+    private static final String SUBCATEGORIES = "SUBCATEGORY_V1";
+
+    private static final String WHERE_PATTERN = "%%where%%";
+    private static final String FILL = "INSERT INTO " + TABLE_NAME +
+        " (docid, " + NOTES + ", " + PAYEE + ", " + CATEGORY + ", " + TRANSACTIONNUMBER + ") " +
+        "SELECT TX.TRANSID, ifnull(TX.NOTES, ''), ifnull(PAYEE.PAYEENAME, ''), " +
+        "ifnull(CAT.CATEGNAME, '') || ' ' || ifnull(SUBCAT.SUBCATEGNAME, '') || ' ' || " +
+        "ifnull((SELECT group_concat(ifnull(SCAT.CATEGNAME, '') || ' ' || ifnull(SSUBCAT.SUBCATEGNAME, ''), ' ') " +
+        "FROM " + SPLITS + " st " +
+        "LEFT JOIN " + CATEGORIES + " SCAT ON SCAT.CATEGID = st.CATEGID " +
+        "LEFT JOIN " + SUBCATEGORIES + " SSUBCAT ON SSUBCAT.SUBCATEGID = st.SUBCATEGID " +
+        "WHERE st.TRANSID = TX.TRANSID), ''), " +
+        "ifnull(TX.TRANSACTIONNUMBER, '') " +
+        "FROM " + TRANSACTIONS + " TX " +
+        "LEFT JOIN " + PAYEES + " PAYEE ON PAYEE.PAYEEID = TX.PAYEEID " +
+        "LEFT JOIN " + CATEGORIES + " CAT ON CAT.CATEGID = TX.CATEGID " +
+        "LEFT JOIN " + SUBCATEGORIES + " SUBCAT ON SUBCAT.SUBCATEGID = TX.SUBCATEGID " +
+        WHERE_PATTERN;
+
+    private static final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
+    /**
+     * Whether the index of the open database is in sync and can be searched.
+     */
+    private static volatile boolean mInSync;
+    private static boolean mRebuildScheduled;
+
+    /**
+     * @return True if the index is in sync with the transactions. The search uses LIKE on the
+     * transactions while it is not.
+     */
+    public static boolean isInSync() {
+        return mInSync;
+    }
+
+    public TransactionSearchIndex(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    private Context context;
+
+    public Context getContext() {
+        return this.context;
+    }
+
+    /**
+     * Called when the database is opened. Creates the index if it does not exist and checks
+     * whether it is in sync with the transactions. Call after ChangeCounter.verify. Does not
+     * read the transactions, so it is safe on any thread.
+     * @return True if the index is in sync. Otherwise call {@link #rebuildLater()}.
+     */
+    public boolean verify(SQLiteDatabase db) {
+        create(db);
+
+        mInSync = ChangeCounter.isInSync(db, TABLE_NAME);
+        return mInSync;
+    }
+
+    /**
+     * Rebuild the whole index from the transactions, in the background. The search uses LIKE
+     * until it is done.
+     */
+    public void rebuildLater() {
+        mInSync = false;
+
+        synchronized (TransactionSearchIndex.class) {
+            if (mRebuildScheduled) return;
+            mRebuildScheduled = true;
+        }
+
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (TransactionSearchIndex.class) {
+                    mRebuildScheduled = false;
+                }
+                try {
+                    SQLiteDatabase db = MmexOpenHelper.getInstance(getContext()).getWritableDatabase();
+                    if (BuildConfig.DEBUG) Log.d(TransactionSearchIndex.class.getSimpleName(), "rebuilding search index");
+                    rebuild(db);
+                } catch (Exception e) {
+                    ExceptionHandler handler = new ExceptionHandler(getContext(), this);
+                    handler.handle(e, "rebuilding search index");
+                }
+            }
+        });
+    }
+
+    /**
+     * Rebuild the whole index from the transactions. Reads all the transactions; do not call
+     * on the main thread.
+     */
+    public void rebuild(SQLiteDatabase db) {
+        db.beginTransaction();
+        try {
+            db.execSQL("DELETE FROM " + TABLE_NAME);
+            db.execSQL(FILL.replace(WHERE_PATTERN, ""));
+            ChangeCounter.setInSync(db, TABLE_NAME);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        mInSync = ChangeCounter.isInSync(db, TABLE_NAME);
+    }
+
+    /**
+     * Collects the ids of the transactions that use the payees or categories being changed.
+     * Call before the change, for update and delete. The changes of the transactions and
+     * splits themselves are collected by the monthly summary.
+     * @return Transaction ids. Null if the table is not a lookup source of the index.
+     */
+    public List<Integer> getAffectedTransactions(SQLiteDatabase db, String table, String where,
+                                                 String[] whereArgs) {
+        if (!isLookupTable(table)) return null;
+
+        String key = PAYEES.equalsIgnoreCase(table)
+            ? "PAYEEID"
+            : CATEGORIES.equalsIgnoreCase(table) ? "CATEGID" : "SUBCATEGID";
+        String changed = "SELECT " + key + " FROM " + table;
+        if (!TextUtils.isEmpty(where)) {
+            changed += " WHERE " + where;
+        }
+
+        String sql = "SELECT TRANSID FROM " + TRANSACTIONS + " WHERE " + key + " IN (" + changed + ")";
+        String[] args = whereArgs;
+        if (!PAYEES.equalsIgnoreCase(table)) {
+            sql += " UNION SELECT TRANSID FROM " + SPLITS + " WHERE " + key + " IN (" + changed + ")";
+            args = repeat(whereArgs);
+        }
+
+        List<Integer> ids = new ArrayList<>();
+        Cursor cursor = db.rawQuery(sql, args);
+        while (cursor.moveToNext()) {
+            ids.add(cursor.getInt(0));
+        }
+        cursor.close();
+        return ids;
+    }
+
+    /**
+     * Re-index the given transactions. Deleted transactions are removed from the index.
+     * Runs in the transaction of the change.
+     */
+    public void refreshTransactions(SQLiteDatabase db, Collection<Integer> transactionIds) {
+        if (transactionIds == null || transactionIds.isEmpty()) return;
+
+        String ids = StringUtils.join(transactionIds, ",");
+
+        db.execSQL("DELETE FROM " + TABLE_NAME + " WHERE docid IN (" + ids + ")");
+        db.execSQL(FILL.replace(WHERE_PATTERN, "WHERE TX.TRANSID IN (" + ids + ")"));
+    }
+
+    /**
+     * Condition for the transactions that contain all the words of the given text, as word
+     * prefixes. The text is user input and is never interpreted as query syntax.
+     * @param idField Transaction id field of the filtered statement.
+     * @param column Indexed column to search, or null to search all the columns.
+     * @param text Text entered by the user.
+     * @return Where statement, or null if the text contains no words.
+     */
+    public static String getMatchStatement(String idField, String column, String text) {
+        String query = getMatchQuery(text);
+        if (query == null) return null;
+
+        return idField + " IN (SELECT docid FROM " + TABLE_NAME + " WHERE " +
+            (column == null ? TABLE_NAME : column) + " MATCH " + DatabaseUtils.sqlEscapeString(query) + ")";
+    }
+
+    /**
+     * Condition for the transactions whose field contains the given text. The matching is by word
+     * prefix, served from the index: all the words of the text must start a word of the field,
+     * in any order, so "super" finds "supermarket" but "market" does not. Only a text without
+     * any words (i.e. punctuation) is matched anywhere in the field itself.
+     * @param idField Transaction id field of the filtered statement.
+     * @param column Indexed column to search.
+     * @param field Field of the filtered statement with the same text as the indexed column.
+     * @param text Text entered by the user.
+     * @return Where statement, or null if there is no text.
+     */
+    public static String getSearchStatement(String idField, String column, String field, String text) {
+        if (TextUtils.isEmpty(text)) return null;
+
+        String match = getMatchStatement(idField, column, text);
+        if (match != null) return match;
+
+        return getLikeStatement(field, text);
+    }
+
+    /**
+     * Condition for the transactions whose field contains the given text anywhere, without the
+     * index. Used while the index is not in sync.
+     * @param field Field of the filtered statement.
+     * @param text Text entered by the user.
+     * @return Where statement, or null if there is no text.
+     */
+    public static String getLikeStatement(String field, String text) {
+        if (TextUtils.isEmpty(text)) return null;
+
+        return field + " LIKE " + DatabaseUtils.sqlEscapeString("%" + text + "%");
+    }
+
+    /**
+     * Full-text query for the given text. Each word becomes a quoted prefix term so that the
+     * user input is never interpreted as query syntax.
+     * @return The query, or null if the text contains no words.
+     */
+    public static String getMatchQuery(String text) {
+        List<String> terms = new ArrayList<>();
+        for (List<String> word : getQueryWords(text)) {
+            terms.add("\"" + TextUtils.join(" ", word) + "*\"");
+        }
+        if (terms.isEmpty()) return null;
+
+        return TextUtils.join(" ", terms);
+    }
+
+    /**
+     * @return The tokens of each word of the search text. Words without any tokens are skipped
+     * because they would not match anything.
+     */
+    public static List<List<String>> getQueryWords(String text) {
+        List<List<String>> words = new ArrayList<>();
+        if (text == null) return words;
+
+        for (String word : text.trim().split("\\s+")) {
+            List<String> tokens = tokenize(word);
+            if (tokens.isEmpty()) continue;
+
+            words.add(tokens);
+        }
+        return words;
+    }
+
+    /**
+     * Split the text into tokens the way the index does (the default "simple" tokenizer).
+     * ASCII letters and digits and all non-ASCII characters are part of a token, ASCII letters
+     * are folded to lower case. Everything else separates the tokens.
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) return tokens;
+
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 0x80 || (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z')) {
+                token.append(c);
+            } else if (c >= 'A' && c <= 'Z') {
+                token.append((char) (c + ('a' - 'A')));
+            } else if (token.length() > 0) {
+                tokens.add(token.toString());
+                token.setLength(0);
+            }
+        }
+        if (token.length() > 0) {
+            tokens.add(token.toString());
+        }
+        return tokens;
+    }
+
+    /**
+     * Load the indexed text of the given transactions.
+     * @return Indexed columns (notes, payee, category, transaction number) by transaction id.
+     */
+    public HashMap<Integer, String[]> loadDocuments(SQLiteDatabase db, Collection<Integer> transactionIds) {
+        HashMap<Integer, String[]> documents = new HashMap<>();
+        if (transactionIds == null || transactionIds.isEmpty()) return documents;
+
+        Cursor cursor = db.rawQuery("SELECT docid, " + NOTES + ", " + PAYEE + ", " + CATEGORY + ", " +
+            TRANSACTIONNUMBER + " FROM " + TABLE_NAME +
+            " WHERE docid IN (" + StringUtils.join(transactionIds, ",") + ")", null);
+        while (cursor.moveToNext()) {
+            documents.put(cursor.getInt(0), new String[] { cursor.getString(1), cursor.getString(2),
+                cursor.getString(3), cursor.getString(4) });
+        }
+        cursor.close();
+        return documents;
+    }
+
+    // Private
+
+    private void create(SQLiteDatabase db) {
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS " + MobileDatabase.SCHEMA + "." + TABLE_NAME + " USING fts4(" +
+            NOTES + ", " + PAYEE + ", " + CATEGORY + ", " + TRANSACTIONNUMBER + ")");
+    }
+
+    private boolean isLookupTable(String table) {
+        return PAYEES.equalsIgnoreCase(table) || CATEGORIES.equalsIgnoreCase(table) ||
+            SUBCATEGORIES.equalsIgnoreCase(table);
+    }
+
+    /**
+     * @return The arguments for a statement that uses the selection twice.
+     */
+    private String[] repeat(String[] whereArgs) {
+        if (whereArgs == null) return null;
+
+        String[] result = new String[whereArgs.length * 2];
+        System.arraycopy(whereArgs, 0, result, 0, whereArgs.length);
+        System.arraycopy(whereArgs, 0, result, whereArgs.length, whereArgs.length);
+        return result;
+    }
+}
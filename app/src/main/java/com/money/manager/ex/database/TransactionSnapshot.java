@@ -0,0 +1,276 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.database;
+
+import android.database.Cursor;
+
+import com.money.manager.ex.core.TransactionTypes;
+
+import java.util.Collection;
+import java.util.HashSet;
+
+import info.javaperformance.money.Money;
+import info.javaperformance.money.MoneyFactory;
+
+/**
+ * Immutable, columnar copy of the transactions for in-memory analytics.
+ * There is one row per transaction, or one row per split for the split transactions. The rows
+ * are ordered by date and transaction id and each column is a primitive array, so scans run
+ * without cursors or object allocation.
+ * Amounts are kept in the account currency, as units of {@link #PRECISION} decimal places.
+ * The amount is the signed change of the account balance (withdrawals and transfers are
+ * negative), the to-amount is the change of the destination account of a transfer.
+ * Use {@link TransactionSnapshotStore} to obtain the current instance.
+ */
+public class TransactionSnapshot {
+
+    /**
+     * Number of decimal places of the amount units.
+     */
+    public static final int PRECISION = 4;
+
+    public static final byte TYPE_WITHDRAWAL = (byte) TransactionTypes.Withdrawal.getCode();
+    public static final byte TYPE_DEPOSIT = (byte) TransactionTypes.Deposit.getCode();
+    public static final byte TYPE_TRANSFER = (byte) TransactionTypes.Transfer.getCode();
+
+    public static final byte STATUS_VOID = 'V';
+
+    public static Money toMoney(long units) {
+        return MoneyFactory.fromUnits(units, PRECISION);
+    }
+
+    /**
+     * Read the rows from a cursor with the columns: transaction id, epoch day, account id,
+     * to-account id, category id, subcategory id, payee id, type, status, amount units and
+     * to-amount units. The rows must be ordered by date and transaction id.
+     */
+    public static TransactionSnapshot read(Cursor cursor) {
+        TransactionSnapshot result = new TransactionSnapshot(cursor.getCount());
+        while (cursor.moveToNext()) {
+            int i = result.mSize++;
+            result.mTransactionIds[i] = cursor.getInt(0);
+            result.mDates[i] = cursor.getInt(1);
+            result.mAccountIds[i] = cursor.getInt(2);
+            result.mToAccountIds[i] = cursor.getInt(3);
+            result.mCategoryIds[i] = cursor.getInt(4);
+            result.mSubcategoryIds[i] = cursor.getInt(5);
+            result.mPayeeIds[i] = cursor.getInt(6);
+            result.mTypes[i] = (byte) cursor.getInt(7);
+            String status = cursor.getString(8);
+            result.mStatuses[i] = status == null || status.isEmpty() ? 0 : (byte) status.charAt(0);
+            result.mAmounts[i] = cursor.getLong(9);
+            result.mToAmounts[i] = cursor.getLong(10);
+        }
+        return result;
+    }
+
+    private TransactionSnapshot(int capacity) {
+        mTransactionIds = new int[capacity];
+        mDates = new int[capacity];
+        mAccountIds = new int[capacity];
+        mToAccountIds = new int[capacity];
+        mCategoryIds = new int[capacity];
+        mSubcategoryIds = new int[capacity];
+        mPayeeIds = new int[capacity];
+        mTypes = new byte[capacity];
+        mStatuses = new byte[capacity];
+        mAmounts = new long[capacity];
+        mToAmounts = new long[capacity];
+    }
+
+    private int mSize;
+    private final int[] mTransactionIds;
+    private final int[] mDates;
+    private final int[] mAccountIds;
+    private final int[] mToAccountIds;
+    private final int[] mCategoryIds;
+    private final int[] mSubcategoryIds;
+    private final int[] mPayeeIds;
+    private final byte[] mTypes;
+    private final byte[] mStatuses;
+    private final long[] mAmounts;
+    private final long[] mToAmounts;
+
+    public int size() {
+        return mSize;
+    }
+
+    public int getTransactionId(int row) {
+        return mTransactionIds[row];
+    }
+
+    /**
+     * @return Transaction date as epoch day. See MyDateTimeUtils.toEpochDay.
+     */
+    public int getDate(int row) {
+        return mDates[row];
+    }
+
+    public int getAccountId(int row) {
+        return mAccountIds[row];
+    }
+
+    /**
+     * @return Destination account of a transfer, -1 for the other types.
+     */
+    public int getToAccountId(int row) {
+        return mToAccountIds[row];
+    }
+
+    public int getCategoryId(int row) {
+        return mCategoryIds[row];
+    }
+
+    public int getSubcategoryId(int row) {
+        return mSubcategoryIds[row];
+    }
+
+    public int getPayeeId(int row) {
+        return mPayeeIds[row];
+    }
+
+    /**
+     * @return One of the TYPE_* codes.
+     */
+    public byte getType(int row) {
+        return mTypes[row];
+    }
+
+    /**
+     * @return Status code character, 0 for none.
+     */
+    public byte getStatus(int row) {
+        return mStatuses[row];
+    }
+
+    public boolean isVoid(int row) {
+        return mStatuses[row] == STATUS_VOID;
+    }
+
+    /**
+     * @return Signed change of the account balance, in units.
+     */
+    public long getAmount(int row) {
+        return mAmounts[row];
+    }
+
+    /**
+     * @return Change of the destination account balance of a transfer, in units.
+     */
+    public long getToAmount(int row) {
+        return mToAmounts[row];
+    }
+
+    /**
+     * @param epochDay Date
+     * @return The first row on or after the given date. Size if there is none.
+     */
+    public int findFirstRow(int epochDay) {
+        int low = 0;
+        int high = mSize;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (mDates[middle] < epochDay) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Sum of all the non-void transactions of the account up to and including the given date.
+     * The initial balance of the account is not included.
+     * @return Amount in units of the account currency.
+     */
+    public long getBalance(int accountId, int epochDay) {
+        long total = 0;
+        int end = findFirstRow(epochDay + 1);
+        for (int i = 0; i < end; i++) {
+            if (mStatuses[i] == STATUS_VOID) continue;
+
+            if (mAccountIds[i] == accountId) {
+                total += mAmounts[i];
+            } else if (mToAccountIds[i] == accountId) {
+                total += mToAmounts[i];
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Create a new snapshot with the rows of the given transactions replaced.
+     * @param transactionIds Transactions that were changed.
+     * @param changes Current rows of the changed transactions. Deleted ones are not included.
+     * @return The patched snapshot. This instance is not modified.
+     */
+    TransactionSnapshot patch(Collection<Integer> transactionIds, TransactionSnapshot changes) {
+        HashSet<Integer> replaced = new HashSet<>(transactionIds);
+        TransactionSnapshot result = new TransactionSnapshot(mSize + changes.mSize);
+
+        // Merge the two ordered sequences, skipping the old rows of the changed transactions.
+        int i = 0;
+        int j = 0;
+        while (i < mSize || j < changes.mSize) {
+            if (i < mSize && replaced.contains(mTransactionIds[i])) {
+                i++;
+                continue;
+            }
+            if (j >= changes.mSize || (i < mSize && compare(this, i, changes, j) <= 0)) {
+                result.copyRow(this, i++);
+            } else {
+                result.copyRow(changes, j++);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return Estimated memory use, in bytes.
+     */
+    public int getSize() {
+        return mTransactionIds.length * (7 * 4 + 2 + 2 * 8);
+    }
+
+    // Private
+
+    private static int compare(TransactionSnapshot left, int leftRow, TransactionSnapshot right, int rightRow) {
+        int result = compare(left.mDates[leftRow], right.mDates[rightRow]);
+        if (result != 0) return result;
+        return compare(left.mTransactionIds[leftRow], right.mTransactionIds[rightRow]);
+    }
+
+    private static int compare(int left, int right) {
+        return left < right ? -1 : (left == right ? 0 : 1);
+    }
+
+    private void copyRow(TransactionSnapshot source, int row) {
+        int i = mSize++;
+        mTransactionIds[i] = source.mTransactionIds[row];
+        mDates[i] = source.mDates[row];
+        mAccountIds[i] = source.mAccountIds[row];
+        mToAccountIds[i] = source.mToAccountIds[row];
+        mCategoryIds[i] = source.mCategoryIds[row];
+        mSubcategoryIds[i] = source.mSubcategoryIds[row];
+        mPayeeIds[i] = source.mPayeeIds[row];
+        mTypes[i] = source.mTypes[row];
+        mStatuses[i] = source.mStatuses[row];
+        mAmounts[i] = source.mAmounts[row];
+        mToAmounts[i] = source.mToAmounts[row];
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.database;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import com.money.manager.ex.BuildConfig;
+import com.money.manager.ex.core.ExceptionHandler;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Collection;
+
+/**
+ * Holds the current {@link TransactionSnapshot}. The snapshot is built on demand, in the
+ * background, and then patched by the content provider on every change of the transactions
+ * or splits, so it never has to be read again while the same database is open.
+ * Readers get an immutable instance and need no locking.
+ */
+public class TransactionSnapshotStore
+    extends CachedValue<TransactionSnapshot> {
+
+    private static final String WHERE_PATTERN = "%%where%%";
+    private static final String SOURCE = "SELECT TX.TRANSID, " +
+        "CAST(julianday(substr(TX.TRANSDATE, 1, 10)) - 2440587.5 AS INTEGER) AS EPOCHDAY, " +
+        "TX.ACCOUNTID, " +
+        "CASE TX.TRANSCODE WHEN 'Transfer' THEN TX.TOACCOUNTID ELSE -1 END AS TOACCOUNTID, " +
+        "ifnull(st.CATEGID, TX.CATEGID) AS CATEGID, ifnull(st.SUBCATEGID, TX.SUBCATEGID) AS SUBCATEGID, " +
+        "ifnull(TX.PAYEEID, -1) AS PAYEEID, " +
+        "CASE TX.TRANSCODE WHEN 'Withdrawal' THEN 0 WHEN 'Deposit' THEN 1 WHEN 'Transfer' THEN 2 ELSE -1 END AS TRANSTYPE, " +
+        "TX.STATUS, " +
+        "CAST(ROUND((CASE TX.TRANSCODE WHEN 'Deposit' THEN 1 ELSE -1 END) * " +
+        "ifnull(st.SPLITTRANSAMOUNT, ifnull(TX.TRANSAMOUNT, 0)) * 10000) AS INTEGER) AS AMOUNTUNITS, " +
+        "CASE TX.TRANSCODE WHEN 'Transfer' THEN CAST(ROUND(ifnull(TX.TOTRANSAMOUNT, 0) * 10000) AS INTEGER) " +
+        "ELSE 0 END AS TOAMOUNTUNITS " +
+        "FROM CHECKINGACCOUNT_V1 TX " +
+        "LEFT JOIN SPLITTRANSACTIONS_V1 st ON st.TRANSID = TX.TRANSID AND TX.CATEGID = -1 AND TX.TRANSCODE <> 'Transfer' " +
+        "WHERE EPOCHDAY IS NOT NULL " + WHERE_PATTERN + " " +
+        "ORDER BY EPOCHDAY, TX.TRANSID";
+
+    private static TransactionSnapshotStore mInstance;
+
+    public static synchronized TransactionSnapshotStore getInstance() {
+        if (mInstance == null) {
+            mInstance = new TransactionSnapshotStore();
+        }
+        return mInstance;
+    }
+
+    private boolean mBuilding;
+
+    private TransactionSnapshotStore() {
+        // patched on every change, never dropped by a change of the tables.
+        super();
+    }
+
+    /**
+     * @return The current snapshot. Null if it is not built yet, in which case the build is
+     * started in the background and the caller should use the database.
+     */
+    public TransactionSnapshot peekOrBuild(Context context) {
+        TransactionSnapshot snapshot = peek();
+        if (snapshot == null) {
+            buildInBackground(context);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Replace the rows of the given transactions with their current state. Called by the content
+     * provider after changes in the transactions or splits, once they are committed.
+     */
+    public void patch(final SQLiteDatabase db, final Collection<Integer> transactionIds) {
+        update(new Update<TransactionSnapshot>() {
+            @Override
+            public TransactionSnapshot apply(TransactionSnapshot value) {
+                if (transactionIds == null || transactionIds.isEmpty()) return value;
+
+                TransactionSnapshot changes = read(db, "AND TX.TRANSID IN (" +
+                    StringUtils.join(transactionIds, ",") + ")");
+                return value.patch(transactionIds, changes);
+            }
+        });
+    }
+
+    // Private
+
+    @Override
+    protected TransactionSnapshot read(Context context) {
+        SQLiteDatabase db = MmexOpenHelper.getInstance(context).getReadableDatabase();
+        TransactionSnapshot snapshot = read(db, "");
+        if (BuildConfig.DEBUG) Log.d(this.getClass().getSimpleName(), "read " + snapshot.size() + " rows");
+        return snapshot;
+    }
+
+    private void buildInBackground(Context context) {
+        synchronized (this) {
+            if (mBuilding) return;
+            mBuilding = true;
+        }
+
+        final Context appContext = context.getApplicationContext();
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    get(appContext);
+                } catch (Exception e) {
+                    ExceptionHandler handler = new ExceptionHandler(appContext, this);
+                    handler.handle(e, "building transaction snapshot");
+                } finally {
+                    synchronized (TransactionSnapshotStore.this) {
+                        mBuilding = false;
+                    }
+                }
+            }
+        }, "TransactionSnapshot").start();
+    }
+
+    private TransactionSnapshot read(SQLiteDatabase db, String where) {
+        Cursor cursor = db.rawQuery(SOURCE.replace(WHERE_PATTERN, where), null);
+        try {
+            return TransactionSnapshot.read(cursor);
+        } finally {
+            cursor.close();
+        }
+    }
+}
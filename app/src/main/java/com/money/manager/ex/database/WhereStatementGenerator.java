@@ -45,6 +45,10 @@ public class WhereStatementGenerator {
         this.statements.add(getStatement(field, operator, argument));
     }
 
+    public void addStatement(String field, String operator, Long argument) {
+        this.statements.add(getStatement(field, operator, argument));
+    }
+
     public void addStatement(String field, String operator, Money argument) {
         this.statements.add(getStatement(field, operator, argument));
     }
@@ -75,6 +79,16 @@ public class WhereStatementGenerator {
         return sb.toString();
     }
 
+    public String getStatement(String field, String operator, Long argument) {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append(field);
+        sb.append(operator);
+        sb.append(argument);
+
+        return sb.toString();
+    }
+
     public String getStatement(String field, String operator, Money argument) {
         StringBuilder sb = new StringBuilder();
 
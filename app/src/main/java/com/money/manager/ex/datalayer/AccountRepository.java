@@ -30,6 +30,8 @@ import com.money.manager.ex.database.WhereStatementGenerator;
 import com.money.manager.ex.domainmodel.Account;
 import com.money.manager.ex.utils.MyDatabaseUtils;
 
+import java.util.HashMap;
+
 /**
  * Repository for Accounts
  */
@@ -129,6 +131,25 @@ public class AccountRepository
         return account.getCurrencyId();
     }
 
+    /**
+     * Loads the currency ids for all the accounts in one query.
+     * @return Map of Account Id / Currency Id.
+     */
+    public HashMap<Integer, Integer> loadCurrencyIds() {
+        HashMap<Integer, Integer> result = new HashMap<>();
+
+        Cursor cursor = openCursor(new String[] { Account.ACCOUNTID, Account.CURRENCYID }, null, null);
+        if (cursor == null) return result;
+
+        while (cursor.moveToNext()) {
+            result.put(cursor.getInt(cursor.getColumnIndex(Account.ACCOUNTID)),
+                cursor.getInt(cursor.getColumnIndex(Account.CURRENCYID)));
+        }
+        cursor.close();
+
+        return result;
+    }
+
     public String loadName(Integer id) {
         if (id == null) return null;
 
@@ -94,6 +94,27 @@ public class AssetClassStockRepository
         return result;
     }
 
+    /**
+     * Loads all the links in one query. Used to assemble the asset allocation in memory.
+     * @return List of all asset class / stock links.
+     */
+    public List<AssetClassStock> loadAll() {
+        Cursor c = openCursor(null, null, null, AssetClassStock.ASSETCLASSID);
+        if (c == null) return null;
+
+        List<AssetClassStock> result = new ArrayList<>();
+
+        while (c.moveToNext()) {
+            AssetClassStock entity = AssetClassStock.create(0, "");
+            entity.loadFromCursor(c);
+            result.add(entity);
+        }
+
+        c.close();
+
+        return result;
+    }
+
     /**
      * Retrieves the cursor for the list of linked securities to the given asset class.
      * @param assetClassId Id of the asset class for which to load the data.
@@ -23,6 +23,7 @@ import android.database.Cursor;
 import com.money.manager.ex.R;
 import com.money.manager.ex.database.DatasetType;
 import com.money.manager.ex.database.QueryAllData;
+import com.money.manager.ex.database.TransactionAmountIndex;
 import com.money.manager.ex.utils.MmexFileUtils;
 import com.money.manager.ex.viewmodels.AccountTransactionDisplay;
 
@@ -37,6 +38,14 @@ public class QueryAllDataRepository
             "queryalldata");
     }
 
+    /**
+     * @return The query, reading the indexed amount if the database has it.
+     */
+    @Override
+    public String getSource() {
+        return TransactionAmountIndex.getSource(super.getSource());
+    }
+
     @Override
     public String[] getAllColumns() {
         return new String[]{"ID AS _id", QueryAllData.ID, QueryAllData.TransactionType,
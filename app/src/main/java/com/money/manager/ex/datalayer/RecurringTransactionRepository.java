@@ -25,6 +25,11 @@ import com.money.manager.ex.database.DatasetType;
 import com.money.manager.ex.database.ITransactionEntity;
 import com.money.manager.ex.database.WhereStatementGenerator;
 import com.money.manager.ex.domainmodel.RecurringTransaction;
+import com.money.manager.ex.utils.MyDateTimeUtils;
+
+import org.joda.time.DateTime;
+
+import java.util.List;
 
 /**
  * Recurring transaction repository.
@@ -68,6 +73,19 @@ public class RecurringTransactionRepository
         return tx;
     }
 
+    /**
+     * @param date Last date, inclusive.
+     * @return Recurring transactions with the next occurrence on or before the given date,
+     * ordered by the next occurrence.
+     */
+    public List<RecurringTransaction> loadDue(DateTime date) {
+        Query query = new Query()
+            .where(RecurringTransaction.NEXTOCCURRENCEDATE + "<=?",
+                new String[] { MyDateTimeUtils.getIsoStringFrom(date) })
+            .orderBy(RecurringTransaction.NEXTOCCURRENCEDATE + ", " + RecurringTransaction.BDID);
+        return query(RecurringTransaction.class, query);
+    }
+
     public RecurringTransaction first(String[] projection, String selection, String[] args) {
         Cursor c = openCursor(projection, selection, args);
 
@@ -25,7 +25,11 @@ import com.money.manager.ex.database.ITransactionEntity;
 import com.money.manager.ex.database.WhereStatementGenerator;
 import com.money.manager.ex.domainmodel.SplitRecurringCategory;
 
+import org.apache.commons.lang3.StringUtils;
+
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 
 /**
  * Repository for Recurring Split Categories (TableBudgetSplitTransactions).
@@ -73,6 +77,38 @@ public class SplitRecurringCategoriesRepository
         return listSplitTrans;
     }
 
+    /**
+     * Loads the split categories of several recurring transactions with a single query.
+     * @param transIds Ids of the recurring transactions.
+     * @return Split categories by recurring transaction id. Transactions without splits are
+     * not included.
+     */
+    public HashMap<Integer, ArrayList<ISplitTransaction>> loadSplitCategoriesFor(Collection<Integer> transIds) {
+        HashMap<Integer, ArrayList<ISplitTransaction>> result = new HashMap<>();
+        if (transIds == null || transIds.isEmpty()) return result;
+
+        Cursor curSplit = getContext().getContentResolver().query(getUri(), null,
+            SplitRecurringCategory.TRANSID + " IN (" + StringUtils.join(transIds, ",") + ")",
+            null,
+            SplitRecurringCategory.SPLITTRANSID);
+        if (curSplit == null) return result;
+
+        while (curSplit.moveToNext()) {
+            SplitRecurringCategory splitRecurringCategory = new SplitRecurringCategory();
+            splitRecurringCategory.loadFromCursor(curSplit);
+
+            ArrayList<ISplitTransaction> splits = result.get(splitRecurringCategory.getTransId());
+            if (splits == null) {
+                splits = new ArrayList<>();
+                result.put(splitRecurringCategory.getTransId(), splits);
+            }
+            splits.add(splitRecurringCategory);
+        }
+        curSplit.close();
+
+        return result;
+    }
+
     public boolean insert(SplitRecurringCategory item) {
         // Remove any existing id value.
         item.contentValues.remove(SplitRecurringCategory.SPLITTRANSID);
@@ -23,6 +23,7 @@ import android.database.Cursor;
 import com.money.manager.ex.Constants;
 import com.money.manager.ex.database.DatasetType;
 import com.money.manager.ex.database.WhereStatementGenerator;
+import com.money.manager.ex.domainmodel.AssetClassStock;
 import com.money.manager.ex.domainmodel.Stock;
 import com.money.manager.ex.utils.MyDatabaseUtils;
 
@@ -128,6 +129,22 @@ public class StockRepository
         return result;
     }
 
+    /**
+     * Loads all the stocks whose symbols are linked to any asset class, in one query.
+     * @return List of linked stocks.
+     */
+    public List<Stock> loadLinkedToAssetClasses() {
+        AssetClassStockRepository linkRepo = new AssetClassStockRepository(getContext());
+
+        Cursor c = openCursor(null,
+            Stock.SYMBOL + " IN (SELECT " + AssetClassStock.STOCKSYMBOL + " FROM " + linkRepo.getSource() + ")",
+            null,
+            null);
+        if (c == null) return null;
+
+        return getEntities(c);
+    }
+
     /**
      * Retrieves all record ids which refer the given symbol.
      * @return array of ids of records which contain the symbol.
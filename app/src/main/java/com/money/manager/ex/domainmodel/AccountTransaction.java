@@ -37,6 +37,8 @@ public class AccountTransaction
     extends EntityBase
     implements ITransactionEntity {
 
+    public static final String TABLE_NAME = "CHECKINGACCOUNT_V1";
+
     public static final String TRANSID = "TRANSID";
 
     /**
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.domainmodel;
+
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+
+import org.joda.time.DateTime;
+
+import info.javaperformance.money.Money;
+
+/**
+ * Historical exchange rate of a currency to the base currency.
+ */
+public class CurrencyHistory
+    extends EntityBase {
+
+    public static final String CURRHISTID = "CURRHISTID";
+    public static final String CURRENCYID = "CURRENCYID";
+    public static final String CURRDATE = "CURRDATE";
+    public static final String CURRVALUE = "CURRVALUE";
+    public static final String CURRUPDTYPE = "CURRUPDTYPE";
+
+    public static CurrencyHistory fromCursor(Cursor c) {
+        CurrencyHistory entity = new CurrencyHistory();
+        entity.loadFromCursor(c);
+        return entity;
+    }
+
+    @Override
+    public void loadFromCursor(Cursor c) {
+        super.loadFromCursor(c);
+
+        // Reload all money values.
+        DatabaseUtils.cursorDoubleToCursorValues(c, CURRVALUE, this.contentValues);
+    }
+
+    public int getId() {
+        return getInt(CURRHISTID);
+    }
+
+    public int getCurrencyId() {
+        return getInt(CURRENCYID);
+    }
+
+    public void setCurrencyId(int value) {
+        setInt(CURRENCYID, value);
+    }
+
+    public String getDateString() {
+        return getString(CURRDATE);
+    }
+
+    public DateTime getDate() {
+        return getDateTime(CURRDATE);
+    }
+
+    public void setDate(DateTime value) {
+        setDateTime(CURRDATE, value);
+    }
+
+    public Money getValue() {
+        return getMoney(CURRVALUE);
+    }
+
+    public void setValue(Money value) {
+        setMoney(CURRVALUE, value);
+    }
+
+    public Integer getUpdateType() {
+        return getInt(CURRUPDTYPE);
+    }
+
+    public void setUpdateType(int value) {
+        setInt(CURRUPDTYPE, value);
+    }
+}
@@ -21,6 +21,7 @@ import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.database.Cursor;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.v4.app.LoaderManager;
 import android.support.v4.content.Loader;
@@ -42,11 +43,13 @@ import com.money.manager.ex.PayeeActivity;
 import com.money.manager.ex.R;
 import com.money.manager.ex.adapter.MoneySimpleCursorAdapter;
 import com.money.manager.ex.core.ContextMenuIds;
+import com.money.manager.ex.core.ExceptionHandler;
 import com.money.manager.ex.datalayer.PayeeRepository;
-import com.money.manager.ex.datalayer.Query;
 import com.money.manager.ex.servicelayer.PayeeService;
 import com.money.manager.ex.common.BaseListFragment;
-import com.money.manager.ex.common.MmexCursorLoader;
+import com.money.manager.ex.common.LookupIndexLoader;
+import com.money.manager.ex.database.LookupIndex;
+import com.money.manager.ex.database.RecentPayees;
 import com.money.manager.ex.database.SQLTypeTransaction;
 import com.money.manager.ex.domainmodel.Payee;
 import com.money.manager.ex.search.SearchParameters;
@@ -54,12 +57,15 @@ import com.money.manager.ex.settings.AppSettings;
 import com.money.manager.ex.utils.IntentUtils;
 import com.shamanland.fonticon.FontIconDrawable;
 
+import java.util.List;
+
 /**
- * List of Payees. Used as a picker/selector also.
+ * List of Payees. Used as a picker/selector also, in which case the recently used payees are
+ * listed first.
  */
 public class PayeeListFragment
         extends BaseListFragment
-        implements LoaderManager.LoaderCallbacks<Cursor> {
+        implements LoaderManager.LoaderCallbacks<LookupIndex> {
 
     public static String mAction = Intent.ACTION_EDIT;
 
@@ -67,12 +73,17 @@ public class PayeeListFragment
 //    private static final int MENU_ITEM_ADD = 1;
     private static final int ID_LOADER_PAYEE = 0;
 
-    private static final String SORT_BY_USAGE = "(SELECT COUNT(*) FROM CHECKINGACCOUNT_V1 WHERE PAYEE_V1.PAYEEID = CHECKINGACCOUNT_V1.PAYEEID) DESC";
-    private static final String SORT_BY_NAME = "UPPER(" + Payee.PAYEENAME + ")";
-
     private Context mContext;
     private String mCurFilter;
     private int mSort = 0;
+    /**
+     * All the payees. The list is filtered from it while typing.
+     */
+    private LookupIndex mIndex;
+    /**
+     * Recently used payees, listed first when picking a payee. Null if not loaded.
+     */
+    private List<Integer> mRecentPayeeIds;
 
     @Override
     public void onActivityCreated(Bundle savedInstanceState) {
@@ -109,6 +120,9 @@ public class PayeeListFragment
 
         // start loader
         getLoaderManager().initLoader(ID_LOADER_PAYEE, null, this);
+        if (Intent.ACTION_PICK.equals(mAction)) {
+            loadRecentPayees();
+        }
 
         // set floating button visible
         setFloatingActionButtonVisible(true);
@@ -149,16 +163,14 @@ public class PayeeListFragment
                 mSort = 0;
                 item.setChecked(true);
                 settings.set(R.string.pref_sort_payee, mSort);
-                // restart search
-                restartLoader();
+                showPayees();
                 return true;
 
             case R.id.menu_sort_usage:
                 mSort = 1;
                 item.setChecked(true);
                 settings.set(R.string.pref_sort_payee, mSort);
-                // restart search
-                restartLoader();
+                showPayees();
                 return true;
             case android.R.id.home:
                 getActivity().setResult(PayeeActivity.RESULT_CANCELED);
@@ -237,31 +249,20 @@ public class PayeeListFragment
     // Loader
 
     @Override
-    public Loader<Cursor> onCreateLoader(int id, Bundle args) {
+    public Loader<LookupIndex> onCreateLoader(int id, Bundle args) {
         switch (id) {
             case ID_LOADER_PAYEE:
-                String whereClause = null;
-                String selectionArgs[] = null;
-                if (!TextUtils.isEmpty(mCurFilter)) {
-                    whereClause = Payee.PAYEENAME + " LIKE ?"; // + mCurFilter + "%'";
-                    selectionArgs = new String[]{mCurFilter + '%'};
-                }
-                PayeeRepository repo = new PayeeRepository(getActivity());
-                Query query = new Query()
-                        .select(repo.getAllColumns())
-                        .where(whereClause, selectionArgs)
-                        .orderBy(mSort == 1 ? SORT_BY_USAGE : SORT_BY_NAME);
-
-                return new MmexCursorLoader(getActivity(), repo.getUri(), query);
+                return LookupIndexLoader.forPayees(getActivity());
         }
 
         return null;
     }
 
     @Override
-    public void onLoaderReset(Loader<Cursor> loader) {
+    public void onLoaderReset(Loader<LookupIndex> loader) {
         switch (loader.getId()) {
             case ID_LOADER_PAYEE:
+                mIndex = null;
                 MoneySimpleCursorAdapter adapter = (MoneySimpleCursorAdapter) getListAdapter();
 //                adapter.swapCursor(null);
                 adapter.changeCursor(null);
@@ -269,22 +270,17 @@ public class PayeeListFragment
     }
 
     @Override
-    public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
+    public void onLoadFinished(Loader<LookupIndex> loader, LookupIndex data) {
         if (data == null) return;
 
         switch (loader.getId()) {
             case ID_LOADER_PAYEE:
-                MoneySimpleCursorAdapter adapter = (MoneySimpleCursorAdapter) getListAdapter();
-                String highlightFilter = mCurFilter != null
-                        ? mCurFilter.replace("%", "")
-                        : "";
-                adapter.setHighlightFilter(highlightFilter);
-//                adapter.swapCursor(data);
-                adapter.changeCursor(data);
+                mIndex = data;
+                Cursor cursor = showPayees();
 
                 if (isResumed()) {
                     setListShown(true);
-                    if (data.getCount() <= 0 && getFloatingActionButton() != null) {
+                    if (cursor.getCount() <= 0 && getFloatingActionButton() != null) {
                         getFloatingActionButton().show(true);
                     }
                 } else {
@@ -295,11 +291,9 @@ public class PayeeListFragment
 
     @Override
     public boolean onQueryTextChange(String newText) {
-        // Called when the action bar search text has changed.  Update
-        // the search filter, and restart the loader to do a new query
-        // with this filter.
+        // Called when the action bar search text has changed. Filter the loaded payees.
         mCurFilter = !TextUtils.isEmpty(newText) ? newText : null;
-        restartLoader();
+        showPayees();
         return true;
     }
 
@@ -319,6 +313,50 @@ public class PayeeListFragment
         getActivity().setResult(PayeeActivity.RESULT_CANCELED);
     }
 
+    /**
+     * Show the payees matching the current filter, in the selected order.
+     * @return The displayed cursor. Null if the payees are not loaded yet.
+     */
+    private Cursor showPayees() {
+        if (mIndex == null) return null;
+
+        Cursor cursor = mIndex.getCursor(mCurFilter, mSort == 1, mRecentPayeeIds);
+
+        MoneySimpleCursorAdapter adapter = (MoneySimpleCursorAdapter) getListAdapter();
+        // the same normalization as the lookup, so that the matches are highlighted.
+        adapter.setHighlightFilter(LookupIndex.getSearchText(mCurFilter));
+        adapter.changeCursor(cursor);
+        return cursor;
+    }
+
+    /**
+     * Read the recently used payees in the background and list them first.
+     */
+    private void loadRecentPayees() {
+        final Context context = getActivity().getApplicationContext();
+
+        new AsyncTask<Void, Void, List<Integer>>() {
+            @Override
+            protected List<Integer> doInBackground(Void... params) {
+                try {
+                    return RecentPayees.getInstance().getPayeeIds(context);
+                } catch (Exception e) {
+                    ExceptionHandler handler = new ExceptionHandler(context, this);
+                    handler.handle(e, "loading recent payees");
+                }
+                return null;
+            }
+
+            @Override
+            protected void onPostExecute(List<Integer> payeeIds) {
+                if (payeeIds == null || !isAdded()) return;
+
+                mRecentPayeeIds = payeeIds;
+                showPayees();
+            }
+        }.execute();
+    }
+
     private void sendResultToActivity(int payeeId, String payeeName) {
         Intent result = new Intent();
         result.putExtra(PayeeActivity.INTENT_RESULT_PAYEEID, payeeId);
@@ -424,6 +462,12 @@ public class PayeeListFragment
         alertDialog.create().show();
     }
 
+    @Override
+    protected boolean isSearchWithWildcards() {
+        // the lookup index only takes a leading wildcard, for the "contains" search.
+        return false;
+    }
+
     @Override
     public String getSubTitle() {
         return getString(R.string.payees);
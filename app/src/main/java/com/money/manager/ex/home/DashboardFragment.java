@@ -18,9 +18,6 @@
 package com.money.manager.ex.home;
 
 import android.content.Context;
-import android.database.Cursor;
-import android.database.sqlite.SQLiteQueryBuilder;
-import android.os.Build;
 import android.os.Bundle;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.FragmentManager;
@@ -44,23 +41,17 @@ import android.widget.TableRow;
 import android.widget.TextView;
 
 import com.money.manager.ex.R;
-import com.money.manager.ex.common.MmexCursorLoader;
 import com.money.manager.ex.core.Core;
 import com.money.manager.ex.core.UIHelper;
 import com.money.manager.ex.currency.CurrencyService;
-import com.money.manager.ex.database.QueryBillDeposits;
-import com.money.manager.ex.database.QueryReportIncomeVsExpenses;
-import com.money.manager.ex.database.SQLDataSet;
-import com.money.manager.ex.database.ViewMobileData;
-import com.money.manager.ex.datalayer.Query;
 import com.money.manager.ex.reports.IncomeVsExpensesChartFragment;
 import com.money.manager.ex.utils.MyDateTimeUtils;
 import com.money.manager.ex.view.RobotoTextView;
-import com.money.manager.ex.viewmodels.IncomeVsExpenseReportEntity;
+import com.money.manager.ex.viewmodels.DashboardSnapshot;
 
 import org.joda.time.DateTime;
 
-import java.util.Calendar;
+import java.util.List;
 
 import info.javaperformance.money.MoneyFactory;
 
@@ -69,13 +60,15 @@ import info.javaperformance.money.MoneyFactory;
  */
 public class DashboardFragment
     extends Fragment
-    implements LoaderManager.LoaderCallbacks<Cursor> {
+    implements LoaderManager.LoaderCallbacks<DashboardSnapshot> {
 
     // ID LOADER
-    private static final int ID_LOADER_SCREEN1 = 0x000;
-    private static final int ID_LOADER_SCREEN2 = 0x001;
-    private static final int ID_LOADER_SCREEN3 = 0x002;
-    private static final int ID_LOADER_SCREEN4 = 0x003;
+    private static final int ID_LOADER_DASHBOARD = 0x000;
+    // panels
+    private static final int ID_SCREEN1 = 0;
+    private static final int ID_SCREEN2 = 1;
+    private static final int ID_SCREEN3 = 2;
+    private static final int ID_SCREEN4 = 3;
     // Padding
     final int padding_in_dp = 6; // 6 dps
     double scale;
@@ -99,12 +92,12 @@ public class DashboardFragment
         ViewGroup layout = (ViewGroup) inflater.inflate(R.layout.dashboard_fragment, container, false);
         if (layout == null)
             return null;
-        linearScreens = new LinearLayout[ID_LOADER_SCREEN4 + 1];
+        linearScreens = new LinearLayout[ID_SCREEN4 + 1];
         // get sub linearlayout
-        linearScreens[ID_LOADER_SCREEN1] = (LinearLayout) layout.findViewById(R.id.linearLayoutScreen1);
-        linearScreens[ID_LOADER_SCREEN2] = (LinearLayout) layout.findViewById(R.id.linearLayoutScreen2);
-        linearScreens[ID_LOADER_SCREEN3] = (LinearLayout) layout.findViewById(R.id.linearLayoutScreen3);
-        linearScreens[ID_LOADER_SCREEN4] = (LinearLayout) layout.findViewById(R.id.linearLayoutScreen4);
+        linearScreens[ID_SCREEN1] = (LinearLayout) layout.findViewById(R.id.linearLayoutScreen1);
+        linearScreens[ID_SCREEN2] = (LinearLayout) layout.findViewById(R.id.linearLayoutScreen2);
+        linearScreens[ID_SCREEN3] = (LinearLayout) layout.findViewById(R.id.linearLayoutScreen3);
+        linearScreens[ID_SCREEN4] = (LinearLayout) layout.findViewById(R.id.linearLayoutScreen4);
         // calculate padding
         scale = getResources().getDisplayMetrics().density;
         padding_in_px = (int) (padding_in_dp * scale + 0.5f);
@@ -128,153 +121,67 @@ public class DashboardFragment
     }
 
     public void loadData() {
-        // restart loader
-        if (linearScreens[ID_LOADER_SCREEN1].getVisibility() == View.VISIBLE)
-            getLoaderManager().restartLoader(ID_LOADER_SCREEN1, null, this);
-
-        if (linearScreens[ID_LOADER_SCREEN2].getVisibility() == View.VISIBLE)
-            getLoaderManager().restartLoader(ID_LOADER_SCREEN2, null, this);
-
-        if (linearScreens[ID_LOADER_SCREEN3].getVisibility() == View.VISIBLE)
-            getLoaderManager().restartLoader(ID_LOADER_SCREEN3, null, this);
+        // add progress bars to the visible panels
+        for (LinearLayout screen : linearScreens) {
+            if (screen.getVisibility() != View.VISIBLE) continue;
+
+            ProgressBar progressBar = new ProgressBar(getActivity());
+            LinearLayout.LayoutParams layoutParams = new LinearLayout.LayoutParams(LayoutParams.WRAP_CONTENT, LayoutParams.WRAP_CONTENT);
+            layoutParams.gravity = Gravity.CENTER;
+            progressBar.setLayoutParams(layoutParams);
+            progressBar.setIndeterminate(true);
+
+            screen.removeAllViews();
+            screen.addView(progressBar);
+        }
 
-        if (linearScreens[ID_LOADER_SCREEN4].getVisibility() == View.VISIBLE)
-            getLoaderManager().restartLoader(ID_LOADER_SCREEN4, null, this);
+        // restart loader. All the panels are loaded in one pass.
+        getLoaderManager().restartLoader(ID_LOADER_DASHBOARD, null, this);
     }
 
     @Override
-    public Loader<Cursor> onCreateLoader(int id, Bundle args) {
-        // add progress bar
-        ProgressBar progressBar = new ProgressBar(getActivity());
-        LinearLayout.LayoutParams layoutParams = new LinearLayout.LayoutParams(LayoutParams.WRAP_CONTENT, LayoutParams.WRAP_CONTENT);
-        layoutParams.gravity = Gravity.CENTER;
-        progressBar.setLayoutParams(layoutParams);
-        progressBar.setIndeterminate(true);
-
-        if (id <= ID_LOADER_SCREEN4) {
-            linearScreens[id].removeAllViews();
-            // add view
-            linearScreens[id].addView(progressBar);
-        }
-
-        Query query = new Query();
-
-        // start loader
+    public Loader<DashboardSnapshot> onCreateLoader(int id, Bundle args) {
         switch (id) {
-            case ID_LOADER_SCREEN1:
-                QueryReportIncomeVsExpenses report = new QueryReportIncomeVsExpenses(getActivity());
-                query.select(report.getAllColumns())
-                    .where(IncomeVsExpenseReportEntity.Month + "=" + Integer.toString(Calendar.getInstance().get(Calendar.MONTH) + 1) +
-                            " AND " +
-                            IncomeVsExpenseReportEntity.YEAR + "=" + Integer.toString(Calendar.getInstance().get(Calendar.YEAR)));
-
-                return new MmexCursorLoader(getActivity(), report.getUri(), query);
-
-            case ID_LOADER_SCREEN2:
-                query.where(prepareQueryTopWithdrawals());
-                return new MmexCursorLoader(getActivity(), new SQLDataSet().getUri(), query);
-
-            case ID_LOADER_SCREEN3:
-                query.where(prepareQueryTopPayees());
-                return new MmexCursorLoader(getActivity(), new SQLDataSet().getUri(), query);
-
-            case ID_LOADER_SCREEN4:
-                QueryBillDeposits billDeposits = new QueryBillDeposits(getActivity());
-                query.select(billDeposits.getAllColumns())
-                    .where(QueryBillDeposits.DAYSLEFT + "<=10")
-                    .orderBy(QueryBillDeposits.DAYSLEFT);
-
-                return new MmexCursorLoader(getActivity(), billDeposits.getUri(), query);
+            case ID_LOADER_DASHBOARD:
+                return new DashboardLoader(getActivity());
         }
         return null;
     }
 
     @Override
-    public void onLoadFinished(Loader<Cursor> loader, Cursor data) {
-        if (loader.getId() <= ID_LOADER_SCREEN4)
-            linearScreens[loader.getId()].removeAllViews();
-
-        switch (loader.getId()) {
-            case ID_LOADER_SCREEN1:
-                showChartIncomeVsExpensesCurrentMonth(data);
-                break;
-            case ID_LOADER_SCREEN2:
-                linearScreens[loader.getId()].addView(showTableLayoutTopWithdrawals(data));
-                break;
-            case ID_LOADER_SCREEN3:
-                linearScreens[loader.getId()].addView(showTableLayoutTopPayees(data));
-                break;
-            case ID_LOADER_SCREEN4:
-                linearScreens[loader.getId()].addView(showTableLayoutUpComingTransactions(data));
-                break;
+    public void onLoadFinished(Loader<DashboardSnapshot> loader, DashboardSnapshot data) {
+        if (loader.getId() != ID_LOADER_DASHBOARD || data == null) return;
+
+        if (linearScreens[ID_SCREEN1].getVisibility() == View.VISIBLE) {
+            linearScreens[ID_SCREEN1].removeAllViews();
+            showChartIncomeVsExpensesCurrentMonth(data);
+        }
+        if (linearScreens[ID_SCREEN2].getVisibility() == View.VISIBLE) {
+            linearScreens[ID_SCREEN2].removeAllViews();
+            linearScreens[ID_SCREEN2].addView(showTableLayoutTopWithdrawals(data.getTopWithdrawals()));
+        }
+        if (linearScreens[ID_SCREEN3].getVisibility() == View.VISIBLE) {
+            linearScreens[ID_SCREEN3].removeAllViews();
+            linearScreens[ID_SCREEN3].addView(showTableLayoutTopPayees(data.getTopPayees()));
+        }
+        if (linearScreens[ID_SCREEN4].getVisibility() == View.VISIBLE) {
+            linearScreens[ID_SCREEN4].removeAllViews();
+            linearScreens[ID_SCREEN4].addView(showTableLayoutUpComingTransactions(data.getUpcomingBills()));
         }
     }
 
     @Override
-    public void onLoaderReset(Loader<Cursor> loader) {
+    public void onLoaderReset(Loader<DashboardSnapshot> loader) {
 
     }
 
     // End loader
 
-    //@SuppressWarnings("deprecation")
-    private String prepareQueryTopWithdrawals() {
-        SQLiteQueryBuilder builder = new SQLiteQueryBuilder();
-        ViewMobileData mobileData = new ViewMobileData(getContext());
-        // data to compose builder
-        String[] projectionIn = new String[]{"ROWID AS _id", ViewMobileData.CATEGID, ViewMobileData.Category, ViewMobileData.SubcategID,
-                ViewMobileData.Subcategory, "SUM(" + ViewMobileData.AmountBaseConvRate + ") AS TOTAL", "COUNT(*) AS NUM"};
-
-        String selection = ViewMobileData.Status + "<>'V' AND " + ViewMobileData.TransactionType + " IN ('Withdrawal')"
-                + " AND (julianday(date('now')) - julianday(" + ViewMobileData.Date + ") <= 30)";
-
-        String groupBy = ViewMobileData.CATEGID + ", " + ViewMobileData.Category + ", " + ViewMobileData.SubcategID + ", " + ViewMobileData.Subcategory;
-        String having = "SUM(" + ViewMobileData.AmountBaseConvRate + ") < 0";
-        String sortOrder = "ABS(SUM(" + ViewMobileData.AmountBaseConvRate + ")) DESC";
-        String limit = "10";
-        // compose builder
-        builder.setTables(mobileData.getSource());
-        // return query
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB_MR2) {
-            return builder.buildQuery(projectionIn, selection, groupBy, having, sortOrder, limit);
-        } else {
-            return builder.buildQuery(projectionIn, selection, null, groupBy, having, sortOrder, limit);
-        }
-    }
-
-    @SuppressWarnings("deprecation")
-    private String prepareQueryTopPayees() {
-        SQLiteQueryBuilder builder = new SQLiteQueryBuilder();
-        ViewMobileData mobileData = new ViewMobileData(getContext());
-        // data to compose builder
-        String[] projectionIn = new String[]{"ROWID AS _id",
-                ViewMobileData.PAYEEID, ViewMobileData.PAYEE,
-                "ABS(SUM(" + ViewMobileData.AmountBaseConvRate + ")) AS TOTAL",
-                "COUNT(*) AS NUM"};
-
-        String selection = ViewMobileData.Status + "<>'V' AND " + ViewMobileData.TransactionType
-                + " IN ('Withdrawal', 'Deposit') AND (julianday(date('now')) - julianday(" + ViewMobileData.Date + ") <= 30)";
-
-        String groupBy = ViewMobileData.PAYEEID + ", " + ViewMobileData.PAYEE;
-        String having = null;
-        String sortOrder = "ABS(SUM(" + ViewMobileData.AmountBaseConvRate + ")) DESC";
-        String limit = "10";
-        // compose builder
-        builder.setTables(mobileData.getSource());
-        // return query
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB_MR2) {
-            return builder.buildQuery(projectionIn, selection, groupBy, having, sortOrder, limit);
-        } else {
-            return builder.buildQuery(projectionIn, selection, null, groupBy, having, sortOrder, limit);
-        }
-    }
-
     /*
      * Show Chart of Income Vs. Expenses Cur
      */
-    private void showChartIncomeVsExpensesCurrentMonth(Cursor cursor) {
-        // move to first
-        if (!cursor.moveToFirst())
+    private void showChartIncomeVsExpensesCurrentMonth(DashboardSnapshot data) {
+        if (!data.hasCurrentMonth())
             return;
         // arrays
         double[] incomes = new double[3];
@@ -282,11 +189,11 @@ public class DashboardFragment
         String[] titles = new String[3];
 
         // incomes and expenses
-        incomes[1] = cursor.getDouble(cursor.getColumnIndex(IncomeVsExpenseReportEntity.Income));
-        expenses[1] = Math.abs(cursor.getDouble(cursor.getColumnIndex(IncomeVsExpenseReportEntity.Expenses)));
+        incomes[1] = data.getIncome();
+        expenses[1] = Math.abs(data.getExpenses());
         // titles
-        int year = cursor.getInt(cursor.getColumnIndex(IncomeVsExpenseReportEntity.YEAR));
-        int month = cursor.getInt(cursor.getColumnIndex(IncomeVsExpenseReportEntity.Month));
+        int year = data.getYear();
+        int month = data.getMonth();
 
         // format month
 //        Calendar calendar = Calendar.getInstance();
@@ -322,7 +229,7 @@ public class DashboardFragment
         }
     }
 
-    private View showTableLayoutTopWithdrawals(Cursor cursor) {
+    private View showTableLayoutTopWithdrawals(List<DashboardSnapshot.Item> items) {
         LayoutInflater inflater = (LayoutInflater) getActivity().getSystemService(Context.LAYOUT_INFLATER_SERVICE);
         LinearLayout layout = (LinearLayout) inflater.inflate(R.layout.dashboard_summary_layout, null);
         CurrencyService currencyService = new CurrencyService(getActivity().getApplicationContext());
@@ -337,14 +244,14 @@ public class DashboardFragment
                 "<small><b>" + getString(R.string.quantity) + "</b></small>", "<small><b>" + getString(R.string.summary) + "</b></small>"}, new Float[]{1f,
                 null, null}, new Integer[]{null, Gravity.RIGHT, Gravity.RIGHT}, new Integer[][]{null, {0, 0, padding_in_px, 0}, null}));
         // add rows
-        while (cursor.moveToNext()) {
+        for (DashboardSnapshot.Item item : items) {
             // load values
-            String category = "<b>" + cursor.getString(cursor.getColumnIndex(ViewMobileData.Category)) + "</b>";
-            if (!TextUtils.isEmpty(cursor.getString(cursor.getColumnIndex(ViewMobileData.Subcategory)))) {
-                category += " : " + cursor.getString(cursor.getColumnIndex(ViewMobileData.Subcategory));
+            String category = "<b>" + item.getName() + "</b>";
+            if (!TextUtils.isEmpty(item.getDetail())) {
+                category += " : " + item.getDetail();
             }
-            double total = cursor.getDouble(cursor.getColumnIndex("TOTAL"));
-            int num = cursor.getInt(cursor.getColumnIndex("NUM"));
+            double total = item.getTotal();
+            int num = item.getCount();
             // Add Row
             tableLayout.addView(createTableRow(new String[]{"<small>" + category + "</small>",
                             "<small><i>" + Integer.toString(num) + "</i></small>",
@@ -357,7 +264,7 @@ public class DashboardFragment
         return layout;
     }
 
-    private View showTableLayoutTopPayees(Cursor cursor) {
+    private View showTableLayoutTopPayees(List<DashboardSnapshot.Item> items) {
         LayoutInflater inflater = (LayoutInflater) getActivity().getSystemService(Context.LAYOUT_INFLATER_SERVICE);
         LinearLayout layout = (LinearLayout) inflater.inflate(R.layout.dashboard_summary_layout, null);
         CurrencyService currencyService = new CurrencyService(getActivity().getApplicationContext());
@@ -372,11 +279,11 @@ public class DashboardFragment
                 "<small><b>" + getString(R.string.quantity) + "</b></small>", "<small><b>" + getString(R.string.summary) + "</b></small>"}, new Float[]{1f,
                 null, null}, new Integer[]{null, Gravity.RIGHT, Gravity.RIGHT}, new Integer[][]{null, {0, 0, padding_in_px, 0}, null}));
         // add rows
-        while (cursor.moveToNext()) {
+        for (DashboardSnapshot.Item item : items) {
             // load values
-            String payee = cursor.getString(cursor.getColumnIndex(ViewMobileData.PAYEE));
-            double total = cursor.getDouble(cursor.getColumnIndex("TOTAL"));
-            int num = cursor.getInt(cursor.getColumnIndex("NUM"));
+            String payee = item.getName();
+            double total = item.getTotal();
+            int num = item.getCount();
             // Add Row
             tableLayout.addView(createTableRow(new String[]{"<small>" + payee + "</small>",
                             "<small><i>" + Integer.toString(num) + "</i></small>",
@@ -391,7 +298,7 @@ public class DashboardFragment
         return layout;
     }
 
-    private View showTableLayoutUpComingTransactions(Cursor cursor) {
+    private View showTableLayoutUpComingTransactions(List<DashboardSnapshot.Bill> bills) {
         LayoutInflater inflater = (LayoutInflater) getActivity().getSystemService(Context.LAYOUT_INFLATER_SERVICE);
         LinearLayout layout = (LinearLayout) inflater.inflate(R.layout.dashboard_summary_layout, null);
         CurrencyService currencyService = new CurrencyService(getActivity().getApplicationContext());
@@ -403,12 +310,12 @@ public class DashboardFragment
         // Table
         TableLayout tableLayout = (TableLayout) layout.findViewById(R.id.tableLayoutSummary);
         // add rows
-        while (cursor.moveToNext()) {
+        for (DashboardSnapshot.Bill bill : bills) {
             // load values
-            String payee = "<i>" + cursor.getString(cursor.getColumnIndex(QueryBillDeposits.PAYEENAME)) + "</i>";
-            double total = cursor.getDouble(cursor.getColumnIndex(QueryBillDeposits.AMOUNT));
-            int daysLeft = cursor.getInt(cursor.getColumnIndex(QueryBillDeposits.DAYSLEFT));
-            int currencyId = cursor.getInt(cursor.getColumnIndex(QueryBillDeposits.CURRENCYID));
+            String payee = "<i>" + bill.getPayee() + "</i>";
+            double total = bill.getAmount();
+            int daysLeft = bill.getDaysLeft();
+            int currencyId = bill.getCurrencyId();
             String daysLeftText = "";
             daysLeftText = Integer.toString(Math.abs(daysLeft)) + " " + getString(daysLeft >= 0 ? R.string.days_remaining : R.string.days_overdue);
             TableRow row = createTableRow(new String[]{"<small>" + payee + "</small>",
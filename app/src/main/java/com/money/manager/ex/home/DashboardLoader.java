@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.home;
+
+import android.content.Context;
+import android.net.Uri;
+import android.support.v4.content.AsyncTaskLoader;
+
+import com.money.manager.ex.MmexContentProvider;
+import com.money.manager.ex.servicelayer.DashboardService;
+import com.money.manager.ex.viewmodels.DashboardSnapshot;
+
+/**
+ * Loads the data for all the Dashboard panels in one background pass. The panels read most of
+ * the tables, so the loader reloads on any change notified by the content provider.
+ */
+public class DashboardLoader
+    extends AsyncTaskLoader<DashboardSnapshot> {
+
+    public DashboardLoader(Context context) {
+        super(context);
+    }
+
+    private DashboardSnapshot mData;
+    private ForceLoadContentObserver mObserver;
+
+    @Override
+    public DashboardSnapshot loadInBackground() {
+        DashboardService service = new DashboardService(getContext());
+        return service.loadSnapshot();
+    }
+
+    @Override
+    public void deliverResult(DashboardSnapshot data) {
+        if (isReset()) return;
+
+        mData = data;
+
+        if (isStarted()) {
+            super.deliverResult(data);
+        }
+    }
+
+    @Override
+    protected void onStartLoading() {
+        if (mData != null) {
+            // Deliver any previously loaded data immediately.
+            deliverResult(mData);
+        }
+
+        if (mObserver == null) {
+            mObserver = new ForceLoadContentObserver();
+            Uri uri = Uri.parse("content://" + MmexContentProvider.getAuthority() + "/");
+            getContext().getContentResolver().registerContentObserver(uri, true, mObserver);
+        }
+
+        if (takeContentChanged() || mData == null) {
+            forceLoad();
+        }
+    }
+
+    @Override
+    protected void onStopLoading() {
+        cancelLoad();
+    }
+
+    @Override
+    protected void onReset() {
+        onStopLoading();
+
+        if (mObserver != null) {
+            getContext().getContentResolver().unregisterContentObserver(mObserver);
+            mObserver = null;
+        }
+        mData = null;
+    }
+}
@@ -18,9 +18,11 @@ package com.money.manager.ex.home;
 
 import android.animation.ObjectAnimator;
 import android.app.Activity;
+import android.content.Context;
 import android.content.Intent;
 import android.database.Cursor;
 import android.graphics.Color;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.annotation.Nullable;
 import android.support.v4.app.Fragment;
@@ -133,6 +135,12 @@ public class HomeFragment
     private int accountBalancedId = Constants.NOT_SET;
     private QueryAccountBills accountBeingBalanced = null;
 
+    /**
+     * Last rendered state, shown immediately on a cold start.
+     */
+    private HomeSnapshot mSnapshot;
+    private boolean mAccountsRendered;
+
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -190,6 +198,13 @@ public class HomeFragment
         mFloatingActionButton.attachToListView(mExpandableListView);
     }
 
+    @Override
+    public void onActivityCreated(@Nullable Bundle savedInstanceState) {
+        super.onActivityCreated(savedInstanceState);
+
+        showSnapshot();
+    }
+
     @Override
     public void onStart() {
         super.onStart();
@@ -220,7 +235,10 @@ public class HomeFragment
                 break;
 
             case LOADER_ACCOUNT_BILLS:
-                setListViewAccountBillsVisible(false);
+                // keep showing the current accounts, if any, until the fresh ones are loaded.
+                if (!mAccountsRendered) {
+                    setListViewAccountBillsVisible(false);
+                }
 
                 LookAndFeelSettings settings = new AppSettings(getContext()).getLookAndFeelSettings();
                 // compose whereClause
@@ -299,6 +317,10 @@ public class HomeFragment
                 break;
 
             case LOADER_ACCOUNT_BILLS:
+                if (data != null) {
+                    mSnapshot.setAccounts(data);
+                    mSnapshot.save(getActivity());
+                }
                 try {
                     renderAccountsList(data);
                 } catch (Exception e) {
@@ -318,42 +340,10 @@ public class HomeFragment
                         income = data.getDouble(data.getColumnIndex(IncomeVsExpenseReportEntity.Income));
                     }
                 }
-                TextView txtIncome = (TextView) getActivity().findViewById(R.id.textViewIncome);
-                TextView txtExpenses = (TextView) getActivity().findViewById(R.id.textViewExpenses);
-                TextView txtDifference = (TextView) getActivity().findViewById(R.id.textViewDifference);
-                // set value
-                if (txtIncome != null)
-                    txtIncome.setText(mCurrencyService.getCurrencyFormatted(mCurrencyService.getBaseCurrencyId(),
-                            MoneyFactory.fromDouble(income)));
-                if (txtExpenses != null)
-                    txtExpenses.setText(mCurrencyService.getCurrencyFormatted(mCurrencyService.getBaseCurrencyId(),
-                            MoneyFactory.fromDouble(Math.abs(expenses))));
-                if (txtDifference != null)
-                    txtDifference.setText(mCurrencyService.getCurrencyFormatted(mCurrencyService.getBaseCurrencyId(),
-                            MoneyFactory.fromDouble(income - Math.abs(expenses))));
-                // manage progressbar
-                final ProgressBar barIncome = (ProgressBar) getActivity().findViewById(R.id.progressBarIncome);
-                final ProgressBar barExpenses = (ProgressBar) getActivity().findViewById(R.id.progressBarExpenses);
-
-                if (barIncome != null && barExpenses != null) {
-                    barIncome.setMax((int) (Math.abs(income) + Math.abs(expenses)));
-                    barExpenses.setMax((int) (Math.abs(income) + Math.abs(expenses)));
-
-                    if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.HONEYCOMB) {
-                        ObjectAnimator animationIncome = ObjectAnimator.ofInt(barIncome, "progress", (int) Math.abs(income));
-                        animationIncome.setDuration(1000); // 0.5 second
-                        animationIncome.setInterpolator(new DecelerateInterpolator());
-                        animationIncome.start();
-
-                        ObjectAnimator animationExpenses = ObjectAnimator.ofInt(barExpenses, "progress", (int) Math.abs(expenses));
-                        animationExpenses.setDuration(1000); // 0.5 second
-                        animationExpenses.setInterpolator(new DecelerateInterpolator());
-                        animationExpenses.start();
-                    } else {
-                        barIncome.setProgress((int) Math.abs(income));
-                        barExpenses.setProgress((int) Math.abs(expenses));
-                    }
-                }
+                mSnapshot.setIncomeExpenses(getCurrentYearMonth(), income, expenses);
+                mSnapshot.save(getActivity());
+
+                renderIncomeExpenses(income, expenses);
                 break;
         }
     }
@@ -591,6 +581,95 @@ public class HomeFragment
 
     private String[] mLanguageCodes;
 
+    private void renderIncomeExpenses(double income, double expenses) {
+        TextView txtIncome = (TextView) getActivity().findViewById(R.id.textViewIncome);
+        TextView txtExpenses = (TextView) getActivity().findViewById(R.id.textViewExpenses);
+        TextView txtDifference = (TextView) getActivity().findViewById(R.id.textViewDifference);
+        // set value
+        if (txtIncome != null)
+            txtIncome.setText(mCurrencyService.getCurrencyFormatted(mCurrencyService.getBaseCurrencyId(),
+                    MoneyFactory.fromDouble(income)));
+        if (txtExpenses != null)
+            txtExpenses.setText(mCurrencyService.getCurrencyFormatted(mCurrencyService.getBaseCurrencyId(),
+                    MoneyFactory.fromDouble(Math.abs(expenses))));
+        if (txtDifference != null)
+            txtDifference.setText(mCurrencyService.getCurrencyFormatted(mCurrencyService.getBaseCurrencyId(),
+                    MoneyFactory.fromDouble(income - Math.abs(expenses))));
+        // manage progressbar
+        final ProgressBar barIncome = (ProgressBar) getActivity().findViewById(R.id.progressBarIncome);
+        final ProgressBar barExpenses = (ProgressBar) getActivity().findViewById(R.id.progressBarExpenses);
+
+        if (barIncome != null && barExpenses != null) {
+            barIncome.setMax((int) (Math.abs(income) + Math.abs(expenses)));
+            barExpenses.setMax((int) (Math.abs(income) + Math.abs(expenses)));
+
+            if (android.os.Build.VERSION.SDK_INT >= android.os.Build.VERSION_CODES.HONEYCOMB) {
+                ObjectAnimator animationIncome = ObjectAnimator.ofInt(barIncome, "progress", (int) Math.abs(income));
+                animationIncome.setDuration(1000); // 0.5 second
+                animationIncome.setInterpolator(new DecelerateInterpolator());
+                animationIncome.start();
+
+                ObjectAnimator animationExpenses = ObjectAnimator.ofInt(barExpenses, "progress", (int) Math.abs(expenses));
+                animationExpenses.setDuration(1000); // 0.5 second
+                animationExpenses.setInterpolator(new DecelerateInterpolator());
+                animationExpenses.start();
+            } else {
+                barIncome.setProgress((int) Math.abs(income));
+                barExpenses.setProgress((int) Math.abs(expenses));
+            }
+        }
+    }
+
+    /**
+     * Render the last stored state of the screen, if it belongs to the current database.
+     * The file is read in the background and the loaders replace it with the current data.
+     */
+    private void showSnapshot() {
+        mSnapshot = new HomeSnapshot(MoneyManagerApplication.getDatabasePath(getActivity()));
+
+        final Context context = getActivity().getApplicationContext();
+        new AsyncTask<Void, Void, HomeSnapshot>() {
+            @Override
+            protected HomeSnapshot doInBackground(Void... params) {
+                return HomeSnapshot.load(context);
+            }
+
+            @Override
+            protected void onPostExecute(HomeSnapshot stored) {
+                showSnapshot(stored);
+            }
+        }.execute();
+    }
+
+    /**
+     * Render the parts of the stored snapshot that the loaders have not delivered yet.
+     */
+    private void showSnapshot(HomeSnapshot stored) {
+        if (stored == null || !isAdded() || getView() == null) return;
+
+        int yearMonth = getCurrentYearMonth();
+        try {
+            Cursor accounts = stored.getAccounts();
+            if (accounts != null && !mSnapshot.hasAccounts()) {
+                // keep the stored rows in the snapshot until the loader replaces them.
+                mSnapshot.setAccounts(accounts);
+                renderAccountsList(accounts);
+            }
+            if (stored.hasIncomeExpenses(yearMonth) && !mSnapshot.hasIncomeExpenses(yearMonth)) {
+                mSnapshot.setIncomeExpenses(yearMonth, stored.getIncome(), stored.getExpenses());
+                renderIncomeExpenses(stored.getIncome(), stored.getExpenses());
+            }
+        } catch (Exception e) {
+            ExceptionHandler handler = new ExceptionHandler(getContext(), this);
+            handler.handle(e, "rendering home snapshot");
+        }
+    }
+
+    private int getCurrentYearMonth() {
+        Calendar calendar = Calendar.getInstance();
+        return calendar.get(Calendar.YEAR) * 100 + calendar.get(Calendar.MONTH) + 1;
+    }
+
     private void createWelcomeView(View view) {
         linearWelcome = (ViewGroup) view.findViewById(R.id.linearLayoutWelcome);
 
@@ -905,6 +984,7 @@ public class HomeFragment
 
         setVisibilityOfAccountGroups();
         setListViewAccountBillsVisible(true);
+        mAccountsRendered = true;
     }
 
     private void showAccountTotals(Cursor cursor) {
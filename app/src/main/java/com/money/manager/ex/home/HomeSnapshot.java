@@ -0,0 +1,290 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.home;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+
+import com.money.manager.ex.MoneyManagerApplication;
+import com.money.manager.ex.core.ExceptionHandler;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The last rendered state of the home screen: the account rows with their balances and the
+ * income/expenses of the current month. It is stored in a small binary file so that the home
+ * screen can be shown immediately on a cold start, while the loaders read the fresh data.
+ * The snapshot belongs to a database file and is ignored for any other.
+ */
+public class HomeSnapshot {
+
+    private static final String FILE_NAME = "home_snapshot.bin";
+    private static final int VERSION = 1;
+
+    private static final byte TYPE_NULL = 0;
+    private static final byte TYPE_LONG = 1;
+    private static final byte TYPE_DOUBLE = 2;
+    private static final byte TYPE_STRING = 3;
+
+    /**
+     * Writes the snapshots one at a time, in order.
+     */
+    private static final ExecutorService mWriter = Executors.newSingleThreadExecutor();
+
+    /**
+     * @return The stored snapshot for the current database. Null if there is none.
+     */
+    public static HomeSnapshot load(Context context) {
+        File file = getFile(context);
+        if (!file.exists()) return null;
+
+        String databasePath = MoneyManagerApplication.getDatabasePath(context);
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (input.readInt() != VERSION) return null;
+            if (!input.readUTF().equals(databasePath)) return null;
+
+            HomeSnapshot snapshot = new HomeSnapshot(databasePath);
+            snapshot.read(input);
+            return snapshot;
+        } catch (IOException e) {
+            // Not available. The screen is simply loaded from the database.
+            return null;
+        } finally {
+            close(input);
+        }
+    }
+
+    public HomeSnapshot(String databasePath) {
+        mDatabasePath = databasePath;
+    }
+
+    private final String mDatabasePath;
+    private String[] mColumns;
+    private List<Object[]> mAccountRows;
+    private int mYearMonth;
+    private double mIncome;
+    private double mExpenses;
+
+    /**
+     * Copy the account rows. The cursor is left before the first row.
+     */
+    public void setAccounts(Cursor cursor) {
+        mColumns = cursor.getColumnNames();
+        mAccountRows = new ArrayList<>(cursor.getCount());
+
+        cursor.moveToPosition(-1);
+        while (cursor.moveToNext()) {
+            Object[] row = new Object[mColumns.length];
+            for (int i = 0; i < mColumns.length; i++) {
+                switch (cursor.getType(i)) {
+                    case Cursor.FIELD_TYPE_NULL:
+                        break;
+                    case Cursor.FIELD_TYPE_INTEGER:
+                        row[i] = cursor.getLong(i);
+                        break;
+                    case Cursor.FIELD_TYPE_FLOAT:
+                        row[i] = cursor.getDouble(i);
+                        break;
+                    default:
+                        row[i] = cursor.getString(i);
+                        break;
+                }
+            }
+            mAccountRows.add(row);
+        }
+        cursor.moveToPosition(-1);
+    }
+
+    public boolean hasAccounts() {
+        return mColumns != null;
+    }
+
+    /**
+     * @return Copy of the account rows, in the columns of the account bills query. Null if
+     * not available.
+     */
+    public Cursor getAccounts() {
+        if (mColumns == null) return null;
+
+        MatrixCursor cursor = new MatrixCursor(mColumns, mAccountRows.size());
+        for (Object[] row : mAccountRows) {
+            cursor.addRow(row);
+        }
+        return cursor;
+    }
+
+    /**
+     * @param yearMonth Period of the values, as year * 100 + month.
+     */
+    public void setIncomeExpenses(int yearMonth, double income, double expenses) {
+        mYearMonth = yearMonth;
+        mIncome = income;
+        mExpenses = expenses;
+    }
+
+    public boolean hasIncomeExpenses(int yearMonth) {
+        return mYearMonth == yearMonth;
+    }
+
+    public double getIncome() {
+        return mIncome;
+    }
+
+    public double getExpenses() {
+        return mExpenses;
+    }
+
+    /**
+     * Write the current values in the background.
+     */
+    public void save(Context context) {
+        if (mColumns == null) return;
+
+        final Context appContext = context.getApplicationContext();
+        // the rows are replaced, never modified, so a copy of the references is enough.
+        final HomeSnapshot copy = new HomeSnapshot(mDatabasePath);
+        copy.mColumns = mColumns;
+        copy.mAccountRows = mAccountRows;
+        copy.setIncomeExpenses(mYearMonth, mIncome, mExpenses);
+
+        mWriter.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    copy.write(appContext);
+                } catch (IOException e) {
+                    ExceptionHandler handler = new ExceptionHandler(appContext, this);
+                    handler.handle(e, "saving home snapshot");
+                }
+            }
+        });
+    }
+
+    /**
+     * Write the current values now. Used from the background.
+     */
+    public void write(Context context) throws IOException {
+        write(getFile(context));
+    }
+
+    // Private
+
+    private static File getFile(Context context) {
+        return new File(context.getCacheDir(), FILE_NAME);
+    }
+
+    private static void close(Closeable stream) {
+        if (stream == null) return;
+        try {
+            stream.close();
+        } catch (IOException e) {
+            // nothing to do
+        }
+    }
+
+    private void write(File file) throws IOException {
+        // write a new file and replace the old one, so a snapshot is never read half-written.
+        File temporary = new File(file.getPath() + ".tmp");
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+        try {
+            output.writeInt(VERSION);
+            output.writeUTF(mDatabasePath);
+
+            output.writeInt(mYearMonth);
+            output.writeDouble(mIncome);
+            output.writeDouble(mExpenses);
+
+            output.writeShort(mColumns.length);
+            for (String column : mColumns) {
+                output.writeUTF(column);
+            }
+            output.writeInt(mAccountRows.size());
+            for (Object[] row : mAccountRows) {
+                for (Object value : row) {
+                    if (value == null) {
+                        output.writeByte(TYPE_NULL);
+                    } else if (value instanceof Long) {
+                        output.writeByte(TYPE_LONG);
+                        output.writeLong((Long) value);
+                    } else if (value instanceof Double) {
+                        output.writeByte(TYPE_DOUBLE);
+                        output.writeDouble((Double) value);
+                    } else {
+                        output.writeByte(TYPE_STRING);
+                        output.writeUTF(value.toString());
+                    }
+                }
+            }
+        } finally {
+            output.close();
+        }
+
+        if (!temporary.renameTo(file)) {
+            throw new IOException("could not replace " + file.getPath());
+        }
+    }
+
+    private void read(DataInputStream input) throws IOException {
+        mYearMonth = input.readInt();
+        mIncome = input.readDouble();
+        mExpenses = input.readDouble();
+
+        mColumns = new String[input.readShort()];
+        for (int i = 0; i < mColumns.length; i++) {
+            mColumns[i] = input.readUTF();
+        }
+        int rows = input.readInt();
+        mAccountRows = new ArrayList<>(rows);
+        for (int r = 0; r < rows; r++) {
+            Object[] row = new Object[mColumns.length];
+            for (int i = 0; i < row.length; i++) {
+                byte type = input.readByte();
+                switch (type) {
+                    case TYPE_NULL:
+                        break;
+                    case TYPE_LONG:
+                        row[i] = input.readLong();
+                        break;
+                    case TYPE_DOUBLE:
+                        row[i] = input.readDouble();
+                        break;
+                    case TYPE_STRING:
+                        row[i] = input.readUTF();
+                        break;
+                    default:
+                        throw new IOException("invalid value type " + type);
+                }
+            }
+            mAccountRows.add(row);
+        }
+    }
+}
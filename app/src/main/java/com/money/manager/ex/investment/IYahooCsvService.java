@@ -32,7 +32,8 @@ public interface IYahooCsvService {
 
     /**
      * "http://download.finance.yahoo.com/d/quotes.csv?f=sl1d1c4&e=.csv"
-     * @param symbol Yahoo Finance symbol to update
+     * @param symbol Yahoo Finance symbol to update, or a comma-separated list of symbols.
+     *               The result contains one line per symbol.
      * //@return Contents of the CSV result from Yahoo
      */
     @GET("/d/quotes.csv?f=sl1d1c4&e=.csv")
@@ -39,6 +39,7 @@ import com.money.manager.ex.datalayer.AccountRepository;
 import com.money.manager.ex.datalayer.StockRepository;
 import com.money.manager.ex.domainmodel.Account;
 import com.money.manager.ex.domainmodel.Stock;
+import com.money.manager.ex.investment.events.HoldingChangedEvent;
 import com.money.manager.ex.servicelayer.AccountService;
 import com.money.manager.ex.utils.MyDateTimeUtils;
 import com.money.manager.ex.utils.SpinnerHelper;
@@ -412,6 +413,8 @@ public class InvestmentTransactionEditActivity
             repository.insert(mStock);
         }
 
+        EventBus.getDefault().post(new HoldingChangedEvent(mStock));
+
         return true;
     }
 
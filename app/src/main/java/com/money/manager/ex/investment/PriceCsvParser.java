@@ -31,6 +31,8 @@ import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import info.javaperformance.money.Money;
 import info.javaperformance.money.MoneyFactory;
@@ -50,6 +52,25 @@ public class PriceCsvParser {
         return mContext;
     }
 
+    /**
+     * Parses CSV content with one line per symbol.
+     * @param content CSV content of a multi-symbol request.
+     * @return List of price events, one for each valid line.
+     */
+    public List<PriceDownloadedEvent> parseAll(String content) {
+        List<PriceDownloadedEvent> result = new ArrayList<>();
+
+        for (String line : content.split("\\r?\\n")) {
+            if (TextUtils.isEmpty(line.trim())) continue;
+
+            PriceDownloadedEvent event = parse(line);
+            if (event != null) {
+                result.add(event);
+            }
+        }
+        return result;
+    }
+
     /**
      * Parses CSV content and fires an PriceDownloadedEvent.
      * @param content CSV content to parse into price information.
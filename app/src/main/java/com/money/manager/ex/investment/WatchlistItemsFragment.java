@@ -53,6 +53,7 @@ import com.money.manager.ex.core.ExceptionHandler;
 import com.money.manager.ex.datalayer.StockRepository;
 import com.money.manager.ex.domainmodel.Account;
 import com.money.manager.ex.domainmodel.Stock;
+import com.money.manager.ex.investment.events.HoldingChangedEvent;
 import com.money.manager.ex.investment.events.PriceUpdateRequestEvent;
 import com.shamanland.fonticon.FontIconDrawable;
 
@@ -457,6 +458,8 @@ public class WatchlistItemsFragment
                         if (!repo.delete(id)) {
                             ExceptionHandler handler = new ExceptionHandler(getActivity());
                             handler.showMessage(R.string.db_delete_failed);
+                        } else {
+                            EventBus.getDefault().post(new HoldingChangedEvent(id));
                         }
 
                         // restart loader
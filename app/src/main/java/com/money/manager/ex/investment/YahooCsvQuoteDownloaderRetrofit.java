@@ -26,8 +26,10 @@ import com.money.manager.ex.investment.events.AllPricesDownloadedEvent;
 import com.money.manager.ex.investment.events.PriceDownloadedEvent;
 import com.money.manager.ex.utils.DialogUtils;
 
+import org.apache.commons.lang3.StringUtils;
 import org.greenrobot.eventbus.EventBus;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import retrofit2.Call;
@@ -40,14 +42,20 @@ import retrofit2.Response;
 public class YahooCsvQuoteDownloaderRetrofit
     implements ISecurityPriceUpdater {
 
+    /**
+     * Yahoo accepts a list of symbols in one request. Limit the size of the url.
+     */
+    private static final int SYMBOLS_PER_REQUEST = 50;
+
     private Context mContext;
     private ProgressDialog mDialog = null;
     private IYahooCsvService yahooCsvService;
     /**
-     * Tracks the number of records to update. Used to close progress dialog when all done.
+     * Tracks the number of requests completed. Used to close progress dialog when all done.
      */
     private int mCounter;
-    private int mTotalRecords;
+    private int mTotalRequests;
+    private List<PriceDownloadedEvent> mPrices;
 
     public YahooCsvQuoteDownloaderRetrofit(Context context) {
         this.mContext = context;
@@ -55,11 +63,13 @@ public class YahooCsvQuoteDownloaderRetrofit
 
     @Override
     public void downloadPrices(List<String> symbols) {
-        if (symbols == null) return;
-        mTotalRecords = symbols.size();
-        if (mTotalRecords == 0) return;
+        if (symbols == null || symbols.isEmpty()) return;
 
-        showProgressDialog(mTotalRecords);
+        mCounter = 0;
+        mTotalRequests = (symbols.size() + SYMBOLS_PER_REQUEST - 1) / SYMBOLS_PER_REQUEST;
+        mPrices = new ArrayList<>();
+
+        showProgressDialog(mTotalRequests);
 
         IYahooCsvService service = getService();
 
@@ -73,15 +83,23 @@ public class YahooCsvQuoteDownloaderRetrofit
             public void onFailure(Call<String> call, Throwable t) {
                 ExceptionHandler handler = new ExceptionHandler(mContext, this);
                 handler.handle(t, "fetching price");
+
+                mCounter++;
+                finishIfAllDone();
             }
         };
 
-        for (String symbol : symbols) {
+        for (int i = 0; i < symbols.size(); i += SYMBOLS_PER_REQUEST) {
+            List<String> batch = symbols.subList(i, Math.min(i + SYMBOLS_PER_REQUEST, symbols.size()));
             try {
-                service.getPrice(symbol).enqueue(callback);
+                service.getPrice(StringUtils.join(batch, ",")).enqueue(callback);
             } catch (Exception ex) {
                 ExceptionHandler handler = new ExceptionHandler(getContext());
                 handler.handle(ex, "downloading quotes");
+
+                // the request will not call back.
+                mCounter++;
+                finishIfAllDone();
             }
         }
     }
@@ -98,7 +116,7 @@ public class YahooCsvQuoteDownloaderRetrofit
     }
 
     private synchronized void finishIfAllDone() {
-        if (mCounter != mTotalRecords) return;
+        if (mCounter != mTotalRequests) return;
 
         closeProgressDialog();
 
@@ -106,8 +124,8 @@ public class YahooCsvQuoteDownloaderRetrofit
         ExceptionHandler handler = new ExceptionHandler(getContext(), this);
         handler.showMessage(mContext.getString(R.string.download_complete));
 
-        // fire an event so that the data can be reloaded.
-        EventBus.getDefault().post(new AllPricesDownloadedEvent());
+        // fire an event so that the data can be saved and reloaded at once.
+        EventBus.getDefault().post(new AllPricesDownloadedEvent(mPrices));
     }
 
     private Context getContext() {
@@ -129,16 +147,18 @@ public class YahooCsvQuoteDownloaderRetrofit
             ExceptionHandler handler = new ExceptionHandler(getContext(), this);
             handler.showMessage(getContext().getString(R.string.error_updating_rates));
 //            closeProgressDialog();
+            finishIfAllDone();
             return;
         }
 
         PriceCsvParser parser = new PriceCsvParser(getContext());
-        PriceDownloadedEvent event = parser.parse(content);
+        List<PriceDownloadedEvent> prices = parser.parseAll(content);
 
-        // Notify the caller by invoking the interface method.
-        if (event != null) {
+        // Notify the individual listeners (securities) by invoking the interface method.
+        for (PriceDownloadedEvent event : prices) {
             EventBus.getDefault().post(event);
         }
+        mPrices.addAll(prices);
 
         finishIfAllDone();
     }
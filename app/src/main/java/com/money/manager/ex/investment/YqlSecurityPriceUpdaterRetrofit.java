@@ -26,6 +26,7 @@ import com.google.gson.JsonObject;
 import com.money.manager.ex.R;
 import com.money.manager.ex.core.ExceptionHandler;
 import com.money.manager.ex.core.NumericHelper;
+import com.money.manager.ex.investment.events.AllPricesDownloadedEvent;
 import com.money.manager.ex.investment.events.PriceDownloadedEvent;
 import com.money.manager.ex.utils.DialogUtils;
 import com.money.manager.ex.utils.MyDateTimeUtils;
@@ -128,10 +129,15 @@ public class YqlSecurityPriceUpdaterRetrofit
             handler.showMessage(R.string.error_no_price_found_for_symbol);
         } else {
             // Send the parsed price data to the listener(s).
+            List<PriceDownloadedEvent> prices = new ArrayList<>();
             for (SecurityPriceModel model : pricesList) {
                 // Notify the caller.
-                EventBus.getDefault().post(new PriceDownloadedEvent(model.symbol, model.price, model.date));
+                PriceDownloadedEvent event = new PriceDownloadedEvent(model.symbol, model.price, model.date);
+                EventBus.getDefault().post(event);
+                prices.add(event);
             }
+            // and all of them at once, for batch processing.
+            EventBus.getDefault().post(new AllPricesDownloadedEvent(prices));
         }
         closeProgressDialog();
 
@@ -17,9 +17,24 @@
 
 package com.money.manager.ex.investment.events;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * Sent when all the requested prices/quotes have completed download.
  * Marks the point when the whole list can be reloaded.
  */
 public class AllPricesDownloadedEvent {
+    public AllPricesDownloadedEvent() {
+        this.prices = new ArrayList<>();
+    }
+
+    public AllPricesDownloadedEvent(List<PriceDownloadedEvent> prices) {
+        this.prices = prices;
+    }
+
+    /**
+     * All the prices downloaded in this run, for processing as a batch.
+     */
+    public List<PriceDownloadedEvent> prices;
 }
@@ -0,0 +1,23 @@
+package com.money.manager.ex.investment.events;
+
+import com.money.manager.ex.domainmodel.Stock;
+
+/**
+ * A stock record (holding) has been saved or deleted.
+ */
+public class HoldingChangedEvent {
+
+    public HoldingChangedEvent(Stock stock) {
+        this.stock = stock;
+        this.stockId = stock.getId();
+    }
+
+    public HoldingChangedEvent(int deletedStockId) {
+        this.stockId = deletedStockId;
+        this.deleted = true;
+    }
+
+    public Stock stock;
+    public Integer stockId;
+    public boolean deleted;
+}
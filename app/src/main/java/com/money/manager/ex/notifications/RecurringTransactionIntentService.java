@@ -20,12 +20,20 @@ package com.money.manager.ex.notifications;
 import android.app.IntentService;
 import android.content.Intent;
 
+import com.money.manager.ex.core.ExceptionHandler;
+
 /**
- * Background service that triggers notifications about recurring transactions.
+ * Background service that triggers notifications about recurring transactions and arms the
+ * alarm for the next one.
  */
 public class RecurringTransactionIntentService
 	extends IntentService {
 
+	/**
+	 * Only arm the alarm, without notifying. Used at boot.
+	 */
+	public static final String ACTION_SCHEDULE = "com.money.manager.ex.notifications.action.SCHEDULE";
+
 	public RecurringTransactionIntentService() {
 		super("com.money.manager.ex.notifications.RecurringTransactionIntentService");
 	}
@@ -33,7 +41,17 @@ public class RecurringTransactionIntentService
 	@Override
 	protected void onHandleIntent(Intent intent) {
 		// start repeating transaction
-		RepeatingTransactionNotifications notifications = new RepeatingTransactionNotifications(getApplicationContext());
-		notifications.notifyRepeatingTransaction();
+		if (intent == null || !ACTION_SCHEDULE.equals(intent.getAction())) {
+			RepeatingTransactionNotifications notifications = new RepeatingTransactionNotifications(getApplicationContext());
+			notifications.notifyRepeatingTransaction();
+		}
+
+		// the alarm fires once, arm it for the next occurrence.
+		try {
+			RecurringTransactionScheduler.getInstance().schedule(getApplicationContext());
+		} catch (Exception e) {
+			ExceptionHandler handler = new ExceptionHandler(getApplicationContext(), this);
+			handler.handle(e, "scheduling recurring transaction notification");
+		}
 	}
 }
@@ -0,0 +1,212 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.notifications;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.Intent;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Build;
+import android.util.Log;
+
+import com.money.manager.ex.BuildConfig;
+import com.money.manager.ex.core.ExceptionHandler;
+import com.money.manager.ex.database.MmexOpenHelper;
+import com.money.manager.ex.database.TableChangeListener;
+import com.money.manager.ex.settings.BehaviourSettings;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.LocalDate;
+import org.joda.time.LocalDateTime;
+import org.joda.time.LocalTime;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Arms a single exact alarm for the earliest occurrence of the recurring transactions, at the
+ * notification time set by the user. The alarm is re-armed after it fires and whenever the
+ * recurring transactions or the settings change, so the device wakes only when something is due.
+ * While there are overdue occurrences the alarm fires once a day.
+ */
+public class RecurringTransactionScheduler
+    implements TableChangeListener {
+
+    private static final String TABLE = "BILLSDEPOSITS_V1";
+    private static final String INDEX_NAME = "IDX_BILLSDEPOSITS_MOBILE_NEXTOCCURRENCE";
+    /**
+     * Served from the index, without reading the table.
+     */
+    private static final String NEXT_OCCURRENCE = "SELECT MIN(NEXTOCCURRENCEDATE) FROM " + TABLE;
+    /**
+     * Changes are usually made in bursts, and within a batch. Wait for them to be committed.
+     */
+    private static final long SCHEDULE_DELAY_MILLIS = 1000;
+
+    private static RecurringTransactionScheduler mInstance;
+
+    public static synchronized RecurringTransactionScheduler getInstance() {
+        if (mInstance == null) {
+            mInstance = new RecurringTransactionScheduler();
+        }
+        return mInstance;
+    }
+
+
+    /**
+     * Called when the database is opened. Creates the index on the next occurrence date, which
+     * is not part of the desktop schema. An index can only be created in the database file of
+     * its table; the desktop app ignores it, and it is created again if the table is recreated.
+     */
+    public static void createIndex(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_NAME + " ON " + TABLE + " (NEXTOCCURRENCEDATE)");
+    }
+
+    /**
+     * @param nextOccurrence Earliest next occurrence date, in ISO format.
+     * @param notificationTime Time of the notification, HH:mm.
+     * @param now Current time.
+     * @return Time of the alarm: the notification time on the day of the next occurrence or,
+     * if that has passed, the next notification time from now.
+     */
+    public static DateTime getAlarmTime(String nextOccurrence, String notificationTime, DateTime now) {
+        LocalTime time = LocalTime.parse(notificationTime);
+
+        DateTime result = getDateTime(LocalDate.parse(nextOccurrence.substring(0, 10)), time, now.getZone());
+        if (result.isAfter(now)) return result;
+
+        // overdue, remind again at the next notification time.
+        result = getDateTime(now.toLocalDate(), time, now.getZone());
+        if (!result.isAfter(now)) {
+            result = getDateTime(now.toLocalDate().plusDays(1), time, now.getZone());
+        }
+        return result;
+    }
+
+    private final ScheduledExecutorService mExecutor = Executors.newSingleThreadScheduledExecutor();
+    private boolean mScheduled;
+
+    @Override
+    public String[] getTables() {
+        return new String[] { TABLE };
+    }
+
+    @Override
+    public void dataInserted(Context context, String table, long id, ContentValues values) {
+        scheduleLater(context);
+    }
+
+    @Override
+    public void dataChanged(Context context, String table) {
+        scheduleLater(context);
+    }
+
+    @Override
+    public void invalidate() {
+        // nothing kept in memory.
+    }
+
+    /**
+     * Re-arm the alarm in the background, shortly, so that a burst of changes reads the
+     * recurring transactions only once.
+     */
+    public synchronized void scheduleLater(Context context) {
+        if (mScheduled) return;
+        mScheduled = true;
+
+        final Context appContext = context.getApplicationContext();
+        mExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (RecurringTransactionScheduler.this) {
+                    mScheduled = false;
+                }
+                try {
+                    schedule(appContext);
+                } catch (Exception e) {
+                    ExceptionHandler handler = new ExceptionHandler(appContext, this);
+                    handler.handle(e, "scheduling recurring transaction notification");
+                }
+            }
+        }, SCHEDULE_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Arm the alarm for the earliest occurrence, or cancel it if there is nothing scheduled
+     * or the notifications are disabled. Reads the database, do not call on the main thread.
+     */
+    public void schedule(Context context) {
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        PendingIntent pending = getPendingIntent(context);
+
+        BehaviourSettings settings = new BehaviourSettings(context);
+        String nextOccurrence = settings.getNotificationRecurringTransaction()
+            ? loadNextOccurrence(context)
+            : null;
+        if (nextOccurrence == null) {
+            alarmManager.cancel(pending);
+            return;
+        }
+
+        DateTime time = getAlarmTime(nextOccurrence, settings.getNotificationTime(), DateTime.now());
+        if (BuildConfig.DEBUG) {
+            Log.d(this.getClass().getSimpleName(), "next notification at " + time);
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, time.getMillis(), pending);
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            alarmManager.setExact(AlarmManager.RTC_WAKEUP, time.getMillis(), pending);
+        } else {
+            alarmManager.set(AlarmManager.RTC_WAKEUP, time.getMillis(), pending);
+        }
+    }
+
+    // Private
+
+    private static DateTime getDateTime(LocalDate date, LocalTime time, DateTimeZone zone) {
+        LocalDateTime result = date.toLocalDateTime(time);
+        // the time does not exist on the day the clock moves forward.
+        while (zone.isLocalDateTimeGap(result)) {
+            result = result.plusHours(1);
+        }
+        return result.toDateTime(zone);
+    }
+
+    private PendingIntent getPendingIntent(Context context) {
+        Intent intent = new Intent(context, RepeatingTransactionReceiver.class);
+        return PendingIntent.getBroadcast(context, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+    }
+
+    private String loadNextOccurrence(Context context) {
+        SQLiteDatabase db = MmexOpenHelper.getInstance(context).getReadableDatabase();
+        Cursor cursor = db.rawQuery(NEXT_OCCURRENCE, null);
+        try {
+            if (!cursor.moveToFirst() || cursor.isNull(0)) return null;
+
+            String result = cursor.getString(0);
+            return result.length() < 10 ? null : result;
+        } finally {
+            cursor.close();
+        }
+    }
+}
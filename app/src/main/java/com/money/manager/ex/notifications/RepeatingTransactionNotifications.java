@@ -31,6 +31,7 @@ import com.money.manager.ex.core.ExceptionHandler;
 import com.money.manager.ex.currency.CurrencyService;
 import com.money.manager.ex.database.QueryBillDeposits;
 import com.money.manager.ex.recurring.transactions.RecurringTransactionListActivity;
+import com.money.manager.ex.utils.MyDateTimeUtils;
 
 import info.javaperformance.money.MoneyFactory;
 
@@ -57,15 +58,14 @@ public class RepeatingTransactionNotifications {
     private void notifyRepeatingTransaction_Internal() {
         QueryBillDeposits billDeposits = new QueryBillDeposits(mContext);
 
-        /*
-          In this query, the 0 days diff parameter HAS to be set in the query. Adding it in
-          the parameters will not work (for whatever reason).
-        */
+        // Compare the dates directly, not the computed days left, so that the index on the
+        // next occurrence date is used. Due today or before.
+        String tomorrow = MyDateTimeUtils.getIsoStringFrom(MyDateTimeUtils.now().plusDays(1));
 
         Cursor cursor = mContext.getContentResolver().query(billDeposits.getUri(),
                 null,
-                QueryBillDeposits.DAYSLEFT + "<=0",
-                null,
+                QueryBillDeposits.NEXTOCCURRENCEDATE + "<?",
+                new String[] { tomorrow },
                 QueryBillDeposits.NEXTOCCURRENCEDATE);
         if (cursor == null) return;
 
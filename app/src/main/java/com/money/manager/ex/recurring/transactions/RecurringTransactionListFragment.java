@@ -20,15 +20,20 @@ import android.content.DialogInterface;
 import android.content.Intent;
 import android.database.Cursor;
 import android.graphics.drawable.ColorDrawable;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.support.v4.app.LoaderManager;
 import android.support.v4.content.Loader;
 import android.text.TextUtils;
 import android.util.Log;
 import android.view.ContextMenu;
+import android.view.Menu;
+import android.view.MenuInflater;
+import android.view.MenuItem;
 import android.view.View;
 import android.widget.AdapterView;
 import android.widget.ListView;
+import android.widget.Toast;
 
 import com.afollestad.materialdialogs.AlertDialogWrapper;
 import com.money.manager.ex.common.MmexCursorLoader;
@@ -44,6 +49,7 @@ import com.money.manager.ex.adapter.AllDataAdapter;
 import com.money.manager.ex.servicelayer.RecurringTransactionService;
 import com.money.manager.ex.transactions.EditTransactionActivityConstants;
 import com.money.manager.ex.database.QueryBillDeposits;
+import com.money.manager.ex.utils.MyDateTimeUtils;
 import com.money.manager.ex.common.BaseListFragment;
 import com.shamanland.fonticon.FontIconDrawable;
 
@@ -96,6 +102,22 @@ public class RecurringTransactionListFragment
 
     // Menu
 
+    @Override
+    public void onCreateOptionsMenu(Menu menu, MenuInflater inflater) {
+        super.onCreateOptionsMenu(menu, inflater);
+
+        menu.add(Menu.NONE, R.id.menu_enter_all_due, Menu.NONE, R.string.enter_all_due_occurrences);
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == R.id.menu_enter_all_due) {
+            confirmEnterAllDue();
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
     @Override
     public void onListItemClick(ListView l, View v, int position, long id) {
         super.onListItemClick(l, v, position, id);
@@ -273,6 +295,58 @@ public class RecurringTransactionListFragment
         alertDialog.create().show();
     }
 
+    private void confirmEnterAllDue() {
+        AlertDialogWrapper.Builder alertDialog = new AlertDialogWrapper.Builder(getContext())
+            .setTitle(R.string.enter_all_due_occurrences)
+            .setIcon(FontIconDrawable.inflate(getContext(), R.xml.ic_question))
+            .setMessage(R.string.enter_all_due_occurrences_confirmation)
+            .setPositiveButton(android.R.string.ok,
+                    new DialogInterface.OnClickListener() {
+                        @Override
+                        public void onClick(DialogInterface dialog, int which) {
+                            enterAllDue();
+                        }
+                    })
+            .setNegativeButton(android.R.string.cancel, new DialogInterface.OnClickListener() {
+                @Override
+                public void onClick(DialogInterface dialog, int which) {
+                    dialog.cancel();
+                }
+            });
+        alertDialog.create().show();
+    }
+
+    /**
+     * Enter all the occurrences due until today, in the background.
+     */
+    private void enterAllDue() {
+        final RecurringTransactionService service = new RecurringTransactionService(getActivity());
+
+        AsyncTask<Void, Void, Integer> task = new AsyncTask<Void, Void, Integer>() {
+            @Override
+            protected Integer doInBackground(Void... params) {
+                try {
+                    return service.enterDueOccurrences(MyDateTimeUtils.today());
+                } catch (Exception e) {
+                    ExceptionHandler handler = new ExceptionHandler(service.getContext(), this);
+                    handler.handle(e, "entering due occurrences");
+                }
+                return null;
+            }
+
+            @Override
+            protected void onPostExecute(Integer entered) {
+                if (entered == null || !isAdded()) return;
+
+                Toast.makeText(getActivity(), getString(R.string.due_occurrences_entered, entered),
+                    Toast.LENGTH_SHORT).show();
+                getLoaderManager().restartLoader(ID_LOADER_REPEATING, null,
+                        RecurringTransactionListFragment.this);
+            }
+        };
+        task.execute();
+    }
+
     private void confirmSkip(final int id) {
         AlertDialogWrapper.Builder alertDialog = new AlertDialogWrapper.Builder(getContext())
             .setTitle(R.string.skip_next_occurrence)
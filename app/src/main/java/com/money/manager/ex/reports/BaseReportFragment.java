@@ -31,7 +31,8 @@ import com.afollestad.materialdialogs.DialogAction;
 import com.afollestad.materialdialogs.MaterialDialog;
 import com.money.manager.ex.Constants;
 import com.money.manager.ex.R;
-import com.money.manager.ex.common.MmexCursorLoader;
+import com.money.manager.ex.common.ReportCursorLoader;
+import com.money.manager.ex.database.MonthlySummary;
 import com.money.manager.ex.database.SQLDataSet;
 import com.money.manager.ex.database.ViewMobileData;
 import com.money.manager.ex.common.BaseListFragment;
@@ -49,11 +50,13 @@ public abstract class BaseReportFragment
     protected static final String KEY_WHERE_CLAUSE = "PayeeReportFragment:WhereClause";
     protected static final String KEY_FROM_DATE = "PayeeReportFragment:FromDate";
     protected static final String KEY_TO_DATE = "PayeeReportFragment:ToDate";
+    protected static final String KEY_TOP_ITEMS = "PayeeReportFragment:TopItems";
 
     protected int mItemSelected = R.id.menu_all_time;
     protected String mWhereClause = null;
     protected DateTime mDateFrom = null;
     protected DateTime mDateTo = null;
+    protected boolean mTopItemsOnly = false;
 
     @Override
     public void onActivityCreated(Bundle savedInstanceState) {
@@ -76,6 +79,7 @@ public abstract class BaseReportFragment
                 String dateToString = savedInstanceState.getString(KEY_TO_DATE);
                 mDateTo = MyDateTimeUtils.from(dateToString);
             }
+            mTopItemsOnly = savedInstanceState.getBoolean(KEY_TOP_ITEMS, false);
         }
         //start loader
         startLoader(savedInstanceState);
@@ -92,6 +96,12 @@ public abstract class BaseReportFragment
         if (item != null) {
             item.setChecked(true);
         }
+        // top items mode
+        MenuItem itemTop = menu.findItem(R.id.menu_top_items);
+        if (itemTop != null) {
+            itemTop.setVisible(getTopItems() != null);
+            itemTop.setChecked(mTopItemsOnly);
+        }
     }
 
     // Loader events
@@ -109,9 +119,15 @@ public abstract class BaseReportFragment
                 Query query = new Query()
                         .where(where);
 
-                result = new MmexCursorLoader(getActivity(),  // context
+                TopItems topItems = getTopItems();
+                if (mTopItemsOnly && topItems != null) {
+                    result = new TopItemsCursorLoader(getActivity(), new SQLDataSet().getUri(),
+                        query, topItems);
+                } else {
+                    result = new ReportCursorLoader(getActivity(),  // context
                         new SQLDataSet().getUri(),          // uri
                         query);
+                }
                 break;
         }
         return result;
@@ -177,6 +193,14 @@ public abstract class BaseReportFragment
                 mDateFrom = null;
                 mDateTo = null;
                 break;
+            case R.id.menu_top_items:
+                mTopItemsOnly = !mTopItemsOnly;
+                item.setChecked(mTopItemsOnly);
+
+                Bundle topArgs = new Bundle();
+                topArgs.putString(KEY_WHERE_CLAUSE, getWhereClause());
+                startLoader(topArgs);
+                return true;
             case R.id.menu_custom_dates:
                 //check item
                 item.setChecked(true);
@@ -214,6 +238,7 @@ public abstract class BaseReportFragment
         super.onSaveInstanceState(outState);
         outState.putInt(KEY_ITEM_SELECTED, mItemSelected);
         outState.putString(KEY_WHERE_CLAUSE, getWhereClause());
+        outState.putBoolean(KEY_TOP_ITEMS, mTopItemsOnly);
         if (mDateFrom != null) {
 //            outState.putSerializable(KEY_FROM_DATE, mDateFrom);
             outState.putString(KEY_FROM_DATE, mDateFrom.toString(Constants.ISO_DATE_FORMAT));
@@ -234,6 +259,24 @@ public abstract class BaseReportFragment
      */
     protected abstract String prepareQuery(String whereClause);
 
+    /**
+     * Source for the report query, for the selected period. The whole months are read from
+     * the monthly summary. The column names are the same as in the mobile data.
+     * @return source statement
+     */
+    protected String getReportSource() {
+        return new MonthlySummary(getActivity()).getSource(mDateFrom, mDateTo);
+    }
+
+    /**
+     * Override to support the top items mode.
+     * @return Definition of the top items and the "Other" row, or null if the report lists
+     * all the items.
+     */
+    protected TopItems getTopItems() {
+        return null;
+    }
+
     protected void setWhereClause(String mWhereClause) {
         this.mWhereClause = mWhereClause;
     }
@@ -278,15 +321,16 @@ public abstract class BaseReportFragment
                 }
             })
             .show();
-        // set date if is null
-        if (mDateFrom == null) mDateFrom = MyDateTimeUtils.today();
-        if (mDateTo == null) mDateTo = MyDateTimeUtils.today();
+        // Show today if there is no period. The period itself changes only when confirmed,
+        // as the report source is read from it.
+        DateTime dateFrom = mDateFrom != null ? mDateFrom : MyDateTimeUtils.today();
+        DateTime dateTo = mDateTo != null ? mDateTo : MyDateTimeUtils.today();
 
         View view = dialog.getCustomView();
         DatePicker fromDatePicker = (DatePicker) view.findViewById(R.id.datePickerFromDate);
         DatePicker toDatePicker = (DatePicker) view.findViewById(R.id.datePickerToDate);
 
-        MyDateTimeUtils.setDatePicker(mDateFrom, fromDatePicker);
-        MyDateTimeUtils.setDatePicker(mDateTo, toDatePicker);
+        MyDateTimeUtils.setDatePicker(dateFrom, fromDatePicker);
+        MyDateTimeUtils.setDatePicker(dateTo, toDatePicker);
     }
 }
@@ -217,7 +217,6 @@ public class CategoriesReportFragment
     @Override
     protected String prepareQuery(String whereClause) {
         SQLiteQueryBuilder builder = new SQLiteQueryBuilder();
-        ViewMobileData mobileData = new ViewMobileData(getContext());
 
         //data to compose builder
         String[] projectionIn = new String[]{
@@ -249,7 +248,7 @@ public class CategoriesReportFragment
         String sortOrder = ViewMobileData.Category + ", " + ViewMobileData.Subcategory;
 
         //compose builder
-        builder.setTables(mobileData.getSource());
+        builder.setTables(getReportSource());
 
         //return query
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB_MR2) {
@@ -259,6 +258,12 @@ public class CategoriesReportFragment
         }
     }
 
+    @Override
+    protected TopItems getTopItems() {
+        return new TopItems(TopItems.DEFAULT_LIMIT, "TOTAL")
+            .withOtherValue(ViewMobileData.Category, getString(R.string.other));
+    }
+
     @Override
     public String getSubTitle() {
         return null;
@@ -364,6 +369,8 @@ public class CategoriesReportFragment
         if (item == null) return null;
 
         Cursor cursor = (Cursor) item;
+        // "Other" is a group of categories.
+        if (TopItems.isOther(cursor)) return null;
 
         ContentValues values = new ContentValues();
         DatabaseUtils.cursorIntToContentValues(cursor, ViewMobileData.CATEGID, values);
@@ -37,6 +37,7 @@ import com.github.mikephil.charting.highlight.Highlight;
 import com.github.mikephil.charting.interfaces.datasets.IBarDataSet;
 import com.github.mikephil.charting.listener.OnChartValueSelectedListener;
 import com.money.manager.ex.R;
+import com.money.manager.ex.common.DecimatingChartGestureListener;
 import com.money.manager.ex.core.Core;
 import com.money.manager.ex.core.UIHelper;
 
@@ -62,10 +63,38 @@ public class IncomeVsExpensesChartFragment extends Fragment implements
     // layout
     private LinearLayout mLayout;
     private BarChart mChart;
+    private DecimatingChartGestureListener mDecimation;
     // show back home
     private boolean mDisplayHomeAsUpEnabled = false;
 
     public void buildChart() {
+        setChartData();
+        mChart.animateXY(1500, 1500);
+        mChart.invalidate();
+
+        Legend l = mChart.getLegend();
+        if (l != null && mTextColor != -1)
+            l.setTextColor(getResources().getColor(mTextColor));
+
+        // x labels
+        XAxis xAxis = mChart.getXAxis();
+        if (xAxis != null && mTextColor != -1)
+            xAxis.setTextColor(getResources().getColor(mTextColor));
+        // right label
+        YAxis yAxis = mChart.getAxisRight();
+        if (yAxis != null && mTextColor != -1)
+            yAxis.setTextColor(getResources().getColor(mTextColor));
+        // left label
+        yAxis = mChart.getAxisLeft();
+        if (yAxis != null && mTextColor != -1)
+            yAxis.setTextColor(getResources().getColor(mTextColor));
+    }
+
+    /**
+     * Create the chart entries. Long series are decimated to the chart width, the visible range
+     * is shown in full resolution when zoomed in.
+     */
+    private void setChartData() {
         String[] xVals = getChartArguments().getStringArray(KEY_XTITLES);
         double[] incomes = getChartArguments().getDoubleArray(KEY_INCOME_VALUES);
         double[] expenses = getChartArguments().getDoubleArray(KEY_EXPENSES_VALUES);
@@ -73,7 +102,7 @@ public class IncomeVsExpensesChartFragment extends Fragment implements
         ArrayList<BarEntry> yIncomes = new ArrayList<>();
         ArrayList<BarEntry> yExpenses = new ArrayList<>();
 
-        for (int i = 0; i < xVals.length; i++) {
+        for (int i : mDecimation.getPoints(incomes, expenses)) {
             yIncomes.add(new BarEntry((float) incomes[i], i));
             yExpenses.add(new BarEntry((float) expenses[i], i));
         }
@@ -92,25 +121,6 @@ public class IncomeVsExpensesChartFragment extends Fragment implements
         if (mTextColor != -1)
             data.setValueTextColor(getResources().getColor(mTextColor));
         mChart.setData(data);
-        mChart.animateXY(1500, 1500);
-        mChart.invalidate();
-
-        Legend l = mChart.getLegend();
-        if (l != null && mTextColor != -1)
-            l.setTextColor(getResources().getColor(mTextColor));
-
-        // x labels
-        XAxis xAxis = mChart.getXAxis();
-        if (xAxis != null && mTextColor != -1)
-            xAxis.setTextColor(getResources().getColor(mTextColor));
-        // right label
-        YAxis yAxis = mChart.getAxisRight();
-        if (yAxis != null && mTextColor != -1)
-            yAxis.setTextColor(getResources().getColor(mTextColor));
-        // left label
-        yAxis = mChart.getAxisLeft();
-        if (yAxis != null && mTextColor != -1)
-            yAxis.setTextColor(getResources().getColor(mTextColor));
     }
 
     @Override
@@ -143,6 +153,16 @@ public class IncomeVsExpensesChartFragment extends Fragment implements
 
         mChart = (BarChart) mLayout.findViewById(R.id.chartBar);
         mChart.setOnChartValueSelectedListener(this);
+        mDecimation = new DecimatingChartGestureListener(mChart) {
+            @Override
+            protected void rebuild() {
+                if (getChartArguments() == null) return;
+
+                setChartData();
+                mChart.invalidate();
+            }
+        };
+        mChart.setOnChartGestureListener(mDecimation);
         mChart.setDescription("");
 
 //      mChart.setDrawBorders(true);
@@ -40,13 +40,13 @@ import android.widget.TextView;
 
 import com.afollestad.materialdialogs.MaterialDialog;
 import com.money.manager.ex.R;
-import com.money.manager.ex.common.MmexCursorLoader;
+import com.money.manager.ex.common.ReportCursorLoader;
 import com.money.manager.ex.core.ExceptionHandler;
 import com.money.manager.ex.core.UIHelper;
 import com.money.manager.ex.currency.CurrencyService;
+import com.money.manager.ex.database.MonthlySummary;
 import com.money.manager.ex.database.QueryReportIncomeVsExpenses;
 import com.money.manager.ex.database.SQLDataSet;
-import com.money.manager.ex.database.ViewMobileData;
 import com.money.manager.ex.datalayer.Query;
 import com.money.manager.ex.search.SearchParameters;
 import com.money.manager.ex.utils.CalendarUtils;
@@ -121,7 +121,13 @@ public class IncomeVsExpensesListFragment
 
         switch (id) {
             case ID_LOADER_REPORT:
+                ArrayList<Integer> years = new ArrayList<>();
                 if (args != null && args.containsKey(KEY_BUNDLE_YEAR) && args.getString(KEY_BUNDLE_YEAR) != null) {
+                    for (String year : TextUtils.split(args.getString(KEY_BUNDLE_YEAR), ",")) {
+                        if (!TextUtils.isEmpty(year.trim())) {
+                            years.add(Integer.parseInt(year.trim()));
+                        }
+                    }
                     selection = IncomeVsExpenseReportEntity.YEAR + " IN (" + args.getString(KEY_BUNDLE_YEAR) + ")";
                     if (!TextUtils.isEmpty(selection)) {
                         selection = "(" + selection + ")";
@@ -136,13 +142,14 @@ public class IncomeVsExpensesListFragment
                     .where(selection)
                     .orderBy(IncomeVsExpenseReportEntity.YEAR + " " + mSort + ", " + IncomeVsExpenseReportEntity.Month + " " + mSort);
 
-                return new MmexCursorLoader(getActivity(), report.getUri(), query);
+                return new IncomeVsExpensesLoader(getActivity(), report, query, years,
+                    SORT_ASCENDING.equals(mSort));
 
             case ID_LOADER_YEARS:
-                ViewMobileData mobileData = new ViewMobileData(getContext());
-                selection = "SELECT DISTINCT Year FROM " + mobileData.getSource() + " ORDER BY Year DESC";
+                // read from the monthly summary index instead of expanding all transactions.
+                selection = new MonthlySummary(getActivity()).getYearsQuery();
                 query.where(selection);
-                return new MmexCursorLoader(getActivity(), new SQLDataSet().getUri(), query);
+                return new ReportCursorLoader(getActivity(), new SQLDataSet().getUri(), query);
         }
         return null;
     }
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.reports;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+
+import com.money.manager.ex.common.ReportCursorLoader;
+import com.money.manager.ex.core.ExceptionHandler;
+import com.money.manager.ex.database.Dataset;
+import com.money.manager.ex.database.TransactionSnapshot;
+import com.money.manager.ex.database.TransactionSnapshotStore;
+import com.money.manager.ex.datalayer.Query;
+import com.money.manager.ex.utils.MyDateTimeUtils;
+import com.money.manager.ex.viewmodels.IncomeVsExpenseReportEntity;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import info.javaperformance.money.Money;
+
+/**
+ * Loads the Income vs. Expenses report for the selected years. When the transaction snapshot
+ * is available, the report is aggregated in memory on all cores, converting each transaction
+ * at the exchange rate valid on its date. Otherwise, the report query is used, with the same
+ * result columns and order, at the current rates.
+ */
+public class IncomeVsExpensesLoader
+    extends ReportCursorLoader {
+
+    private static final int YEAR_TOTAL = IncomeVsExpensesActivity.SUBTOTAL_MONTH;
+
+    public IncomeVsExpensesLoader(Context context, Dataset report, Query query, List<Integer> years,
+                                  boolean ascending) {
+        super(context, report, query);
+
+        mYears = new HashSet<>(years);
+        mAscending = ascending;
+    }
+
+    private final HashSet<Integer> mYears;
+    private final boolean mAscending;
+
+    @Override
+    public Cursor loadInBackground() {
+        TransactionSnapshot snapshot = TransactionSnapshotStore.getInstance().peekOrBuild(getContext());
+        if (snapshot == null || mYears.isEmpty()) {
+            return super.loadInBackground();
+        }
+
+        try {
+            return observe(aggregate(snapshot));
+        } catch (Exception e) {
+            ExceptionHandler handler = new ExceptionHandler(getContext(), this);
+            handler.handle(e, "aggregating income vs expenses");
+        }
+        return super.loadInBackground();
+    }
+
+    private Cursor aggregate(TransactionSnapshot snapshot) {
+        final HashSet<Integer> years = mYears;
+        int fromDay = MyDateTimeUtils.toEpochDay(Collections.min(years), 1, 1);
+        int toDay = MyDateTimeUtils.toEpochDay(Collections.max(years), 12, 31);
+
+        // key: (year * 100 + month) * 4 + transaction type
+        ReportAggregator aggregator = ReportAggregator.forBaseCurrency(getContext());
+        HashMap<Long, Money> totals = aggregator.aggregate(snapshot, fromDay, toDay,
+            new ReportAggregator.Grouping() {
+                @Override
+                public long getKey(TransactionSnapshot snapshot, int row) {
+                    int type = snapshot.getType(row);
+                    if (type < 0) return ReportAggregator.SKIP;
+
+                    int yearMonth = MyDateTimeUtils.toYearMonth(snapshot.getDate(row));
+                    if (!years.contains(yearMonth / 100)) return ReportAggregator.SKIP;
+
+                    return yearMonth * 4L + type;
+                }
+            });
+
+        // Income, Expenses, Transfers by year and month, including the year totals.
+        TreeMap<Integer, BigDecimal[]> rows = new TreeMap<>();
+        for (Map.Entry<Long, Money> entry : totals.entrySet()) {
+            int yearMonth = (int) (entry.getKey() / 4);
+            int type = (int) (entry.getKey() % 4);
+            BigDecimal amount = entry.getValue().toBigDecimal();
+
+            int column;
+            if (type == TransactionSnapshot.TYPE_DEPOSIT) {
+                column = 0;
+            } else if (type == TransactionSnapshot.TYPE_WITHDRAWAL) {
+                column = 1;
+            } else {
+                // transfers are reported as positive amounts.
+                column = 2;
+                amount = amount.negate();
+            }
+
+            add(rows, yearMonth, column, amount);
+            add(rows, (yearMonth / 100) * 100 + YEAR_TOTAL, column, amount);
+        }
+
+        List<Integer> keys = new ArrayList<>(rows.keySet());
+        if (!mAscending) {
+            Collections.reverse(keys);
+        }
+
+        MatrixCursor cursor = new MatrixCursor(new String[] { "_id",
+            IncomeVsExpenseReportEntity.YEAR, IncomeVsExpenseReportEntity.Month,
+            IncomeVsExpenseReportEntity.Income, IncomeVsExpenseReportEntity.Expenses,
+            IncomeVsExpenseReportEntity.Transfers });
+        int id = 0;
+        for (int key : keys) {
+            BigDecimal[] values = rows.get(key);
+            cursor.addRow(new Object[] { ++id, key / 100, key % 100,
+                values[0].toPlainString(), values[1].toPlainString(), values[2].toPlainString() });
+        }
+        return cursor;
+    }
+
+    private void add(TreeMap<Integer, BigDecimal[]> rows, int yearMonth, int column, BigDecimal amount) {
+        BigDecimal[] values = rows.get(yearMonth);
+        if (values == null) {
+            values = new BigDecimal[] { BigDecimal.ZERO, BigDecimal.ZERO, BigDecimal.ZERO };
+            rows.put(yearMonth, values);
+        }
+        values[column] = values[column].add(amount);
+    }
+}
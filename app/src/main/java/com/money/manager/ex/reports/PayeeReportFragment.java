@@ -164,7 +164,6 @@ public class PayeeReportFragment
     @Override
     protected String prepareQuery(String whereClause) {
         SQLiteQueryBuilder builder = new SQLiteQueryBuilder();
-        ViewMobileData mobileData = new ViewMobileData(getContext());
         //data to compose builder
         String[] projectionIn = new String[]{ ViewMobileData.PAYEEID + " AS _id",
                 ViewMobileData.PAYEEID, ViewMobileData.PAYEE,
@@ -179,7 +178,7 @@ public class PayeeReportFragment
         String sortOrder = ViewMobileData.PAYEE;
         String limit = null;
         //compose builder
-        builder.setTables(mobileData.getSource());
+        builder.setTables(getReportSource());
         //return query
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB_MR2) {
             return builder.buildQuery(projectionIn, selection, groupBy, having, sortOrder, limit);
@@ -188,6 +187,12 @@ public class PayeeReportFragment
         }
     }
 
+    @Override
+    protected TopItems getTopItems() {
+        return new TopItems(TopItems.DEFAULT_LIMIT, "TOTAL")
+            .withOtherValue(ViewMobileData.PAYEE, getString(R.string.other));
+    }
+
     @Override
     public void onCreateOptionsMenu(Menu menu, MenuInflater inflater) {
         super.onCreateOptionsMenu(menu, inflater);
@@ -291,6 +296,9 @@ public class PayeeReportFragment
         if (item == null) return null;
 
         Cursor cursor = (Cursor) item;
+        // "Other" is a group of payees.
+        if (TopItems.isOther(cursor)) return null;
+
         Payee payee = new Payee();
 //        payee.loadFromCursor(cursor);
         // The fields are different! Can't use standard loadFromCursor.
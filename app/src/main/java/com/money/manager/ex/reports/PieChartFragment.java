@@ -40,11 +40,14 @@ import com.github.mikephil.charting.listener.OnChartValueSelectedListener;
 import com.money.manager.ex.R;
 import com.money.manager.ex.core.Core;
 import com.money.manager.ex.core.UIHelper;
+import com.money.manager.ex.currency.CurrencyService;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 
+import info.javaperformance.money.MoneyFactory;
+
 public class PieChartFragment
     extends Fragment
     implements OnChartValueSelectedListener {
@@ -82,10 +85,12 @@ public class PieChartFragment
                 return lhs.getValue() > rhs.getValue() ? -1 : lhs.getValue() == rhs.getValue() ? 0 : 1;
             }
         });
+        foldSmallSlices();
+
         ArrayList<Entry> yVals1 = new ArrayList<Entry>();
         ArrayList<String> xVals = new ArrayList<String>();
 
-        int length = mPieCharts.size() < MAX_NUM_ITEMS ? mPieCharts.size() : MAX_NUM_ITEMS;
+        int length = mPieCharts.size();
 
         for (int i = 0; i < length; i++) {
             Entry e = new Entry((float) mPieCharts.get(i).getValue(), i);
@@ -122,6 +127,27 @@ public class PieChartFragment
         }
     }
 
+    /**
+     * Keep the largest slices and fold the rest into a single "Other" slice, so that the
+     * percentages remain correct and the chart stays legible. Expects sorted entries.
+     */
+    private void foldSmallSlices() {
+        if (mPieCharts.size() <= MAX_NUM_ITEMS) return;
+
+        ArrayList<ValuePieEntry> slices = new ArrayList<>(mPieCharts.subList(0, MAX_NUM_ITEMS - 1));
+        double otherValue = 0;
+        for (int i = MAX_NUM_ITEMS - 1; i < mPieCharts.size(); i++) {
+            otherValue += mPieCharts.get(i).getValue();
+        }
+
+        // the report values are in the base currency.
+        CurrencyService currencyService = new CurrencyService(getActivity().getApplicationContext());
+        slices.add(new ValuePieEntry(getString(R.string.other), otherValue,
+            currencyService.getBaseCurrencyFormatted(MoneyFactory.fromDouble(otherValue))));
+
+        mPieCharts = slices;
+    }
+
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -0,0 +1,297 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.reports;
+
+import android.content.Context;
+
+import com.money.manager.ex.Constants;
+import com.money.manager.ex.currency.CurrencyService;
+import com.money.manager.ex.currency.ExchangeRateEngine;
+import com.money.manager.ex.database.TransactionSnapshot;
+import com.money.manager.ex.datalayer.AccountRepository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import info.javaperformance.money.Money;
+import info.javaperformance.money.MoneyFactory;
+
+/**
+ * Aggregates the transaction snapshot for reports on all the available cores.
+ * The rows of the requested period are split into contiguous partitions (date ranges), each
+ * partition is summed on a bounded worker pool and the partial sums are merged.
+ * The partial sums are kept in integer units per group, account and rate interval, so the merge
+ * is exact and the result does not depend on the number of partitions. The rate intervals come
+ * from the currency history (see {@link ExchangeRateEngine#getInterval(int, int)}), so each row
+ * counts at the rate valid on its date while each sum is converted to the base currency only
+ * once, with BigDecimal arithmetic.
+ * Void transactions are not included.
+ */
+public class ReportAggregator {
+
+    /**
+     * Assigns the rows to groups. Called concurrently from the worker threads, so the
+     * implementations must not have mutable state.
+     */
+    public interface Grouping {
+        /**
+         * @return Group key of the row, or {@link #SKIP} to leave the row out.
+         */
+        long getKey(TransactionSnapshot snapshot, int row);
+    }
+
+    public static final long SKIP = Long.MIN_VALUE;
+
+    /**
+     * Smaller ranges are not worth the hand-over to another thread.
+     */
+    private static final int MIN_PARTITION_ROWS = 8192;
+
+    private static ExecutorService mExecutor;
+
+    private static synchronized ExecutorService getExecutor() {
+        if (mExecutor == null) {
+            mExecutor = Executors.newFixedThreadPool(getThreadCount(), new ThreadFactory() {
+                private final AtomicInteger mCount = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "ReportAggregator #" + mCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return mExecutor;
+    }
+
+    public static int getThreadCount() {
+        return Math.max(1, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create an aggregator that reports in the base currency, using the exchange rates valid on
+     * the date of each transaction.
+     */
+    public static ReportAggregator forBaseCurrency(Context context) {
+        HashMap<Integer, Integer> accountCurrencies = new AccountRepository(context).loadCurrencyIds();
+        CurrencyService currencyService = new CurrencyService(context);
+
+        return new ReportAggregator(accountCurrencies, currencyService.getExchangeRateEngine(),
+            currencyService.getBaseCurrencyId());
+    }
+
+    /**
+     * Converts with fixed rates.
+     * @param accountRates Conversion rate by account id. Accounts without a rate are taken as is.
+     */
+    public ReportAggregator(Map<Integer, BigDecimal> accountRates) {
+        mAccountRates = accountRates;
+        mAccountCurrencies = null;
+        mEngine = null;
+        mTargetCurrencyId = Constants.NOT_SET;
+    }
+
+    /**
+     * Converts with the rates valid on the transaction dates.
+     * @param accountCurrencies Currency id by account id. Accounts without a currency, or with a
+     *                          currency the engine does not know, are taken as is.
+     * @param engine Exchange rates, including the history.
+     * @param targetCurrencyId Currency of the totals.
+     */
+    public ReportAggregator(Map<Integer, Integer> accountCurrencies, ExchangeRateEngine engine,
+                            int targetCurrencyId) {
+        mAccountRates = null;
+        mAccountCurrencies = accountCurrencies;
+        mEngine = engine;
+        mTargetCurrencyId = targetCurrencyId;
+    }
+
+    private final Map<Integer, BigDecimal> mAccountRates;
+    private final Map<Integer, Integer> mAccountCurrencies;
+    private final ExchangeRateEngine mEngine;
+    private final int mTargetCurrencyId;
+
+    /**
+     * Sum the amounts of the rows in the given period, by group.
+     * @param snapshot Transactions
+     * @param fromDay First day (epoch day), inclusive. Null for no lower limit.
+     * @param toDay Last day (epoch day), inclusive. Null for no upper limit.
+     * @param grouping Group of each row.
+     * @return Total by group key.
+     */
+    public HashMap<Long, Money> aggregate(TransactionSnapshot snapshot, Integer fromDay, Integer toDay,
+                                          final Grouping grouping) {
+        int from = fromDay == null ? 0 : snapshot.findFirstRow(fromDay);
+        int to = toDay == null ? snapshot.size() : snapshot.findFirstRow(toDay + 1);
+
+        List<HashMap<Long, HashMap<Integer, long[]>>> partials = new ArrayList<>();
+        int partitions = Math.min(getThreadCount(), Math.max(1, (to - from) / MIN_PARTITION_ROWS));
+        if (partitions <= 1) {
+            partials.add(sum(snapshot, from, to, grouping));
+        } else {
+            List<Callable<HashMap<Long, HashMap<Integer, long[]>>>> tasks = new ArrayList<>();
+            int size = (to - from + partitions - 1) / partitions;
+            for (int start = from; start < to; start += size) {
+                final TransactionSnapshot source = snapshot;
+                final int partitionFrom = start;
+                final int partitionTo = Math.min(to, start + size);
+                tasks.add(new Callable<HashMap<Long, HashMap<Integer, long[]>>>() {
+                    @Override
+                    public HashMap<Long, HashMap<Integer, long[]>> call() {
+                        return sum(source, partitionFrom, partitionTo, grouping);
+                    }
+                });
+            }
+
+            try {
+                for (Future<HashMap<Long, HashMap<Integer, long[]>>> future : getExecutor().invokeAll(tasks)) {
+                    partials.add(future.get());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("report aggregation interrupted", e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException("report aggregation failed", e.getCause());
+            }
+        }
+
+        return convert(merge(partials));
+    }
+
+    // Private
+
+    private HashMap<Long, HashMap<Integer, long[]>> sum(TransactionSnapshot snapshot, int from, int to,
+                                                        Grouping grouping) {
+        HashMap<Long, HashMap<Integer, long[]>> result = new HashMap<>();
+
+        // rows of the same group tend to come together.
+        long lastKey = SKIP;
+        HashMap<Integer, long[]> group = null;
+        int lastAccountId = 0;
+        int currencyId = Constants.NOT_SET;
+        long[] units = null;
+
+        for (int row = from; row < to; row++) {
+            if (snapshot.isVoid(row)) continue;
+
+            long key = grouping.getKey(snapshot, row);
+            if (key == SKIP) continue;
+
+            if (group == null || key != lastKey) {
+                group = result.get(key);
+                if (group == null) {
+                    group = new HashMap<>();
+                    result.put(key, group);
+                }
+                lastKey = key;
+                units = null;
+            }
+
+            int accountId = snapshot.getAccountId(row);
+            if (units == null || accountId != lastAccountId) {
+                currencyId = getCurrencyId(accountId);
+                units = group.get(accountId);
+                if (units == null) {
+                    // one sum per rate interval of the account currency.
+                    units = new long[currencyId == Constants.NOT_SET ? 1 : mEngine.getIntervalCount(currencyId)];
+                    group.put(accountId, units);
+                }
+                lastAccountId = accountId;
+            }
+
+            int interval = units.length == 1 ? 0 : mEngine.getInterval(currencyId, snapshot.getDate(row));
+            units[interval] += snapshot.getAmount(row);
+        }
+        return result;
+    }
+
+    private HashMap<Long, HashMap<Integer, long[]>> merge(List<HashMap<Long, HashMap<Integer, long[]>>> partials) {
+        HashMap<Long, HashMap<Integer, long[]>> result = partials.get(0);
+
+        for (int i = 1; i < partials.size(); i++) {
+            for (Map.Entry<Long, HashMap<Integer, long[]>> group : partials.get(i).entrySet()) {
+                HashMap<Integer, long[]> target = result.get(group.getKey());
+                if (target == null) {
+                    result.put(group.getKey(), group.getValue());
+                    continue;
+                }
+                for (Map.Entry<Integer, long[]> account : group.getValue().entrySet()) {
+                    long[] units = target.get(account.getKey());
+                    if (units == null) {
+                        target.put(account.getKey(), account.getValue());
+                        continue;
+                    }
+                    long[] source = account.getValue();
+                    for (int interval = 0; interval < units.length; interval++) {
+                        units[interval] += source[interval];
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    private HashMap<Long, Money> convert(HashMap<Long, HashMap<Integer, long[]>> totals) {
+        HashMap<Long, Money> result = new HashMap<>();
+
+        for (Map.Entry<Long, HashMap<Integer, long[]>> group : totals.entrySet()) {
+            BigDecimal total = BigDecimal.ZERO;
+            for (Map.Entry<Integer, long[]> account : group.getValue().entrySet()) {
+                long[] units = account.getValue();
+                for (int interval = 0; interval < units.length; interval++) {
+                    if (units[interval] == 0) continue;
+
+                    BigDecimal amount = BigDecimal.valueOf(units[interval], TransactionSnapshot.PRECISION);
+                    BigDecimal rate = getRate(account.getKey(), interval);
+                    total = total.add(rate == null ? amount : amount.multiply(rate));
+                }
+            }
+            result.put(group.getKey(), MoneyFactory.fromBigDecimal(total));
+        }
+        return result;
+    }
+
+    /**
+     * @return Currency of the account, if converted with the exchange rate engine.
+     */
+    private int getCurrencyId(int accountId) {
+        if (mEngine == null) return Constants.NOT_SET;
+
+        Integer currencyId = mAccountCurrencies.get(accountId);
+        if (currencyId == null || !mEngine.contains(currencyId)) return Constants.NOT_SET;
+        return currencyId;
+    }
+
+    private BigDecimal getRate(int accountId, int interval) {
+        if (mEngine == null) return mAccountRates.get(accountId);
+
+        int currencyId = getCurrencyId(accountId);
+        if (currencyId == Constants.NOT_SET) return null;
+        return mEngine.getIntervalRate(currencyId, mTargetCurrencyId, interval);
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.reports;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+
+import com.money.manager.ex.Constants;
+import com.money.manager.ex.database.ReportResultCache;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Reduces a grouped report result to the items with the largest totals. The remaining items
+ * are folded into a single "Other" row, calculated in the same pass. A bounded heap is used
+ * so the grouped rows do not need to be sorted.
+ */
+public class TopItems {
+
+    public static final int DEFAULT_LIMIT = 10;
+    /**
+     * Added column. 1 for the "Other" row, 0 otherwise.
+     */
+    public static final String OTHER = "IsOther";
+
+    private static final String ID = "_id";
+
+    /**
+     * @param limit Number of items to keep.
+     * @param totalColumn Column with the amount used for ranking. Absolute values are compared.
+     */
+    public TopItems(int limit, String totalColumn) {
+        mLimit = limit;
+        mTotalColumn = totalColumn;
+        mOtherValues = new HashMap<>();
+    }
+
+    private final int mLimit;
+    private final String mTotalColumn;
+    private final HashMap<String, Object> mOtherValues;
+
+    /**
+     * Set a value displayed in the "Other" row, i.e. the name.
+     * @return this, for chaining
+     */
+    public TopItems withOtherValue(String column, Object value) {
+        mOtherValues.put(column, value);
+        return this;
+    }
+
+    public int getLimit() {
+        return mLimit;
+    }
+
+    /**
+     * @param source Grouped report result. Closed after reading.
+     * @return Top items, ordered by the absolute total descending, followed by the "Other" row
+     * if there are more items than the limit.
+     */
+    public Cursor fold(Cursor source) {
+        if (source == null) return null;
+
+        String[] sourceColumns = source.getColumnNames();
+        final int totalIndex = source.getColumnIndex(mTotalColumn);
+        int idIndex = source.getColumnIndex(ID);
+
+        String[] columns = new String[sourceColumns.length + 1];
+        System.arraycopy(sourceColumns, 0, columns, 0, sourceColumns.length);
+        columns[sourceColumns.length] = OTHER;
+        final int otherIndex = sourceColumns.length;
+
+        Comparator<Object[]> byTotal = new Comparator<Object[]>() {
+            @Override
+            public int compare(Object[] lhs, Object[] rhs) {
+                return Double.compare(Math.abs(getTotal(lhs, totalIndex)), Math.abs(getTotal(rhs, totalIndex)));
+            }
+        };
+        // the smallest of the kept items is at the head.
+        PriorityQueue<Object[]> heap = new PriorityQueue<>(mLimit + 1, byTotal);
+        BigDecimal otherTotal = BigDecimal.ZERO;
+        int otherItems = 0;
+
+        source.moveToPosition(-1);
+        while (source.moveToNext()) {
+            Object[] row = new Object[columns.length];
+            for (int i = 0; i < sourceColumns.length; i++) {
+                row[i] = ReportResultCache.readValue(source, i);
+            }
+            row[otherIndex] = 0;
+
+            heap.add(row);
+            if (heap.size() > mLimit) {
+                Object[] smallest = heap.poll();
+                otherTotal = otherTotal.add(getExactTotal(smallest, totalIndex));
+                otherItems++;
+            }
+        }
+        source.close();
+
+        List<Object[]> rows = new ArrayList<>(heap);
+        Collections.sort(rows, Collections.reverseOrder(byTotal));
+
+        MatrixCursor result = new MatrixCursor(columns, rows.size() + 1);
+        for (Object[] row : rows) {
+            result.addRow(row);
+        }
+
+        if (otherItems > 0) {
+            Object[] other = new Object[columns.length];
+            for (int i = 0; i < sourceColumns.length; i++) {
+                other[i] = mOtherValues.get(sourceColumns[i]);
+            }
+            if (idIndex >= 0) other[idIndex] = Constants.NOT_SET;
+            other[totalIndex] = otherTotal.toPlainString();
+            other[otherIndex] = 1;
+            result.addRow(other);
+        }
+
+        return result;
+    }
+
+    /**
+     * @return Indicator whether the current row of the folded cursor is the "Other" row.
+     */
+    public static boolean isOther(Cursor cursor) {
+        int index = cursor.getColumnIndex(OTHER);
+        return index >= 0 && cursor.getInt(index) == 1;
+    }
+
+    private double getTotal(Object[] row, int totalIndex) {
+        Object value = row[totalIndex];
+        if (value == null) return 0;
+        if (value instanceof Number) return ((Number) value).doubleValue();
+        return Double.parseDouble(value.toString());
+    }
+
+    private BigDecimal getExactTotal(Object[] row, int totalIndex) {
+        Object value = row[totalIndex];
+        if (value == null) return BigDecimal.ZERO;
+        return new BigDecimal(value.toString());
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.reports;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+
+import com.money.manager.ex.common.ReportCursorLoader;
+import com.money.manager.ex.datalayer.Query;
+
+/**
+ * Report loader that returns only the top items of the grouped result, with the rest folded
+ * into the "Other" row. The full grouped result stays in the report cache.
+ */
+public class TopItemsCursorLoader
+    extends ReportCursorLoader {
+
+    public TopItemsCursorLoader(Context context, Uri uri, Query query, TopItems topItems) {
+        super(context, uri, query);
+
+        mTopItems = topItems;
+    }
+
+    private final TopItems mTopItems;
+
+    @Override
+    public Cursor loadInBackground() {
+        Cursor cursor = mTopItems.fold(super.loadInBackground());
+        if (cursor == null) return null;
+
+        return observe(cursor);
+    }
+}
@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.search;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+
+import com.money.manager.ex.database.QueryAllData;
+import com.money.manager.ex.database.TransactionSearchIndex;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * State of a search-as-you-type session over the search results. Keeps the rows of the last
+ * result, with the indexed text of each transaction, so that a query which only narrows the
+ * previous one (the user kept typing) is answered in memory instead of from the database.
+ * The matching follows the full-text index: every word must be found as a prefix of a
+ * sequence of tokens within one indexed column.
+ */
+public class IncrementalSearch {
+
+    /**
+     * Larger results are not kept. The next keystroke queries the database again.
+     */
+    public static final int MAX_ROWS = 2000;
+
+    /**
+     * Incremented on every reset, so that a result read before the reset is not kept.
+     */
+    private int mGeneration;
+    private String mText;
+    private String[] mColumns;
+    private List<Object[]> mRows;
+    private List<String[]> mDocuments;
+
+    /**
+     * @param text The new search text.
+     * @return Indicator whether the result for the text can be filtered from the last result.
+     */
+    public synchronized boolean canRefine(String text) {
+        if (mRows == null || mText == null || text == null) return false;
+
+        return text.startsWith(mText);
+    }
+
+    /**
+     * Forget the last result, i.e. when the data has changed.
+     */
+    public synchronized void reset() {
+        mGeneration++;
+        mText = null;
+        mColumns = null;
+        mRows = null;
+        mDocuments = null;
+    }
+
+    public synchronized int getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * Keep the result of a database query for the later refinements.
+     * @param text Search text of the query.
+     * @param cursor Result. The position is restored to the start.
+     * @param documents Indexed text of the transactions, by id.
+     * @param generation Generation at the time the query started.
+     */
+    public synchronized void store(String text, Cursor cursor, HashMap<Integer, String[]> documents,
+                                   int generation) {
+        // the data has changed since.
+        if (generation != mGeneration) return;
+
+        reset();
+        if (cursor.getCount() > MAX_ROWS) return;
+
+        String[] columns = cursor.getColumnNames();
+        int idColumn = cursor.getColumnIndex(QueryAllData.ID);
+        List<Object[]> rows = new ArrayList<>(cursor.getCount());
+        List<String[]> rowDocuments = new ArrayList<>(cursor.getCount());
+
+        cursor.moveToPosition(-1);
+        while (cursor.moveToNext()) {
+            Object[] row = new Object[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                row[i] = getValue(cursor, i);
+            }
+            rows.add(row);
+            rowDocuments.add(documents.get(cursor.getInt(idColumn)));
+        }
+        cursor.moveToPosition(-1);
+
+        mText = text;
+        mColumns = columns;
+        mRows = rows;
+        mDocuments = rowDocuments;
+    }
+
+    /**
+     * Filter the last result with the new text. The new text must narrow the previous one,
+     * see {@link #canRefine(String)}. The refined result is kept for the next refinement.
+     * @return Cursor with the matching rows, in the original order.
+     */
+    public synchronized MatrixCursor refine(String text) {
+        List<List<String>> words = TransactionSearchIndex.getQueryWords(text);
+
+        List<Object[]> rows = new ArrayList<>();
+        List<String[]> documents = new ArrayList<>();
+        for (int i = 0; i < mRows.size(); i++) {
+            String[] document = mDocuments.get(i);
+            if (!matches(document, words)) continue;
+
+            rows.add(mRows.get(i));
+            documents.add(document);
+        }
+
+        mText = text;
+        mRows = rows;
+        mDocuments = documents;
+
+        MatrixCursor cursor = new MatrixCursor(mColumns, rows.size());
+        for (Object[] row : rows) {
+            cursor.addRow(row);
+        }
+        return cursor;
+    }
+
+    // Private
+
+    private boolean matches(String[] document, List<List<String>> words) {
+        if (document == null) return false;
+
+        for (List<String> word : words) {
+            boolean found = false;
+            for (String column : document) {
+                if (containsPrefix(TransactionSearchIndex.tokenize(column), word)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return Indicator whether the tokens contain the phrase, with the last word as a prefix.
+     */
+    private boolean containsPrefix(List<String> tokens, List<String> phrase) {
+        int last = phrase.size() - 1;
+        for (int start = 0; start + last < tokens.size(); start++) {
+            boolean match = true;
+            for (int i = 0; i < last && match; i++) {
+                match = tokens.get(start + i).equals(phrase.get(i));
+            }
+            if (match && tokens.get(start + last).startsWith(phrase.get(last))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Object getValue(Cursor cursor, int column) {
+        switch (cursor.getType(column)) {
+            case Cursor.FIELD_TYPE_NULL:
+                return null;
+            case Cursor.FIELD_TYPE_INTEGER:
+                return cursor.getLong(column);
+            case Cursor.FIELD_TYPE_FLOAT:
+                return cursor.getDouble(column);
+            case Cursor.FIELD_TYPE_BLOB:
+                return cursor.getBlob(column);
+            default:
+                return cursor.getString(column);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.search;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.support.v4.os.OperationCanceledException;
+import android.text.TextUtils;
+
+import com.money.manager.ex.common.MmexCursorLoader;
+import com.money.manager.ex.core.ExceptionHandler;
+import com.money.manager.ex.database.MmexOpenHelper;
+import com.money.manager.ex.database.QueryAllData;
+import com.money.manager.ex.database.TransactionSearchIndex;
+import com.money.manager.ex.datalayer.Query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads the search results filtered by the text typed so far. A text that only narrows the
+ * previous one is filtered in memory from the previous result. Otherwise the database is
+ * queried with the full-text index. While the index is being rebuilt, each word is found
+ * anywhere in the searched fields with LIKE and nothing is kept for refining.
+ * A restarted loader cancels the query that is running.
+ */
+public class IncrementalSearchLoader
+    extends MmexCursorLoader {
+
+    /**
+     * @param query Search results query, without the text filter.
+     * @param text The text typed by the user.
+     * @param search State of the search-as-you-type session.
+     */
+    public IncrementalSearchLoader(Context context, Uri uri, Query query, String text,
+                                   IncrementalSearch search) {
+        super(context, uri, addTextFilter(query, text));
+
+        mUri = uri;
+        mText = text;
+        mSearch = search;
+    }
+
+    private final Uri mUri;
+    private final String mText;
+    private final IncrementalSearch mSearch;
+
+    @Override
+    public Cursor loadInBackground() {
+        if (mSearch.canRefine(mText)) {
+            if (isLoadInBackgroundCanceled()) {
+                throw new OperationCanceledException();
+            }
+
+            MatrixCursor cursor = mSearch.refine(mText);
+            // reload on data changes, as the database cursor does.
+            cursor.setNotificationUri(getContext().getContentResolver(), mUri);
+            cursor.registerContentObserver(new ForceLoadContentObserver());
+            return cursor;
+        }
+
+        int generation = mSearch.getGeneration();
+        Cursor cursor = super.loadInBackground();
+        if (cursor == null) return null;
+
+        try {
+            keepResult(cursor, generation);
+        } catch (Exception e) {
+            mSearch.reset();
+            ExceptionHandler handler = new ExceptionHandler(getContext(), this);
+            handler.handle(e, "keeping the search result");
+        }
+        return cursor;
+    }
+
+    @Override
+    public void onContentChanged() {
+        // the kept result is out of date.
+        mSearch.reset();
+
+        super.onContentChanged();
+    }
+
+    // Private
+
+    private static Query addTextFilter(Query query, String text) {
+        String statement = TransactionSearchIndex.isInSync()
+            ? TransactionSearchIndex.getMatchStatement(QueryAllData.ID, null, text)
+            : getLikeStatement(text);
+        if (statement == null) return query;
+
+        String selection = TextUtils.isEmpty(query.selection)
+            ? statement
+            : "(" + query.selection + ") AND " + statement;
+
+        return new Query()
+            .select(query.projection)
+            .where(selection, query.selectionArgs)
+            .orderBy(query.sort);
+    }
+
+    /**
+     * @return Condition for the rows that contain all the words of the text in any of the
+     * searched fields. Null if there are no words.
+     */
+    private static String getLikeStatement(String text) {
+        String[] fields = new String[] { QueryAllData.Notes, QueryAllData.Payee, QueryAllData.Category,
+            QueryAllData.Subcategory, QueryAllData.TransactionNumber };
+
+        List<String> words = new ArrayList<>();
+        for (String word : text == null ? new String[0] : text.trim().split("\\s+")) {
+            if (word.isEmpty()) continue;
+
+            List<String> conditions = new ArrayList<>();
+            for (String field : fields) {
+                conditions.add(TransactionSearchIndex.getLikeStatement(field, word));
+            }
+            words.add("(" + TextUtils.join(" OR ", conditions) + ")");
+        }
+        if (words.isEmpty()) return null;
+
+        return TextUtils.join(" AND ", words);
+    }
+
+    private void keepResult(Cursor cursor, int generation) {
+        // the documents of an index that is being rebuilt can not refine the result.
+        if (cursor.getCount() > IncrementalSearch.MAX_ROWS || !TransactionSearchIndex.isInSync()) {
+            mSearch.reset();
+            return;
+        }
+
+        List<Integer> ids = new ArrayList<>(cursor.getCount());
+        int idColumn = cursor.getColumnIndex(QueryAllData.ID);
+        cursor.moveToPosition(-1);
+        while (cursor.moveToNext()) {
+            ids.add(cursor.getInt(idColumn));
+        }
+
+        TransactionSearchIndex index = new TransactionSearchIndex(getContext());
+        mSearch.store(mText, cursor, index.loadDocuments(
+            MmexOpenHelper.getInstance(getContext()).getReadableDatabase(), ids), generation);
+    }
+}
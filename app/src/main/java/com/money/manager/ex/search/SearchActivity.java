@@ -162,6 +162,8 @@ public class SearchActivity
         searchResultsFragment = AllDataListFragment.newInstance(Constants.NOT_SET, false);
 
         searchResultsFragment.showTotalsFooter();
+        // narrow down the results by payee, notes, category or number while typing.
+        searchResultsFragment.enableIncrementalSearch();
 
         //create parameter bundle
         Bundle args = new Bundle();
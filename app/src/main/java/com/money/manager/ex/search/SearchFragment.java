@@ -45,8 +45,11 @@ import com.money.manager.ex.R;
 import com.money.manager.ex.core.FormatUtilities;
 import com.money.manager.ex.core.NumericHelper;
 import com.money.manager.ex.database.QueryAllData;
+import com.money.manager.ex.database.TransactionAmountIndex;
+import com.money.manager.ex.database.TransactionSearchIndex;
 import com.money.manager.ex.database.WhereStatementGenerator;
 import com.money.manager.ex.domainmodel.Account;
+import com.money.manager.ex.domainmodel.AccountTransaction;
 import com.money.manager.ex.settings.AppSettings;
 import com.money.manager.ex.settings.LookAndFeelSettings;
 import com.money.manager.ex.utils.MyDateTimeUtils;
@@ -339,41 +342,42 @@ public class SearchFragment
         }
         // category
         if (searchParameters.category != null) {
+            // Category and subcategory, on the transaction or on one of its splits.
+            // Select the ids from the tables directly instead of filtering the joined query.
             CategorySub categorySub = searchParameters.category;
-            // Category. Also check the splits.
-            where.addStatement("(" +
-                    "(" + QueryAllData.CategID + "=" + Integer.toString(categorySub.categId) + ") " +
-                    " OR (" + categorySub.categId + " IN (select " + QueryAllData.CategID +
-                    " FROM " + SplitCategory.TABLE_NAME +
-                    " WHERE " + SplitCategory.TRANSID + "=" + QueryAllData.ID + ")" +
-                    ")" +
-                    ")");
-
-            // subcategory
+            String categoryFilter = SplitCategory.CATEGID + "=" + Integer.toString(categorySub.categId);
             if (categorySub.subCategId != Constants.NOT_SET) {
-                // Subcategory. Also check the splits.
-                where.addStatement("(" +
-                        "(" + QueryAllData.SubcategID + "=" + Integer.toString(categorySub.subCategId) + ") " +
-                        " OR (" + categorySub.subCategId + " IN (select " + QueryAllData.SubcategID +
-                        " FROM " + SplitCategory.TABLE_NAME +
-                        " WHERE " + SplitCategory.TRANSID + " = " + QueryAllData.ID + ")" +
-                        ")" +
-                        ")");
+                categoryFilter += " AND " + SplitCategory.SUBCATEGID + "=" + Integer.toString(categorySub.subCategId);
             }
+            where.addStatement(QueryAllData.ID + " IN (" +
+                    "SELECT " + AccountTransaction.TRANSID + " FROM " + AccountTransaction.TABLE_NAME +
+                    " WHERE " + categoryFilter +
+                    " UNION SELECT " + SplitCategory.TRANSID + " FROM " + SplitCategory.TABLE_NAME +
+                    " WHERE " + categoryFilter + ")");
         }
 
         // transaction number
-        if (!TextUtils.isEmpty(searchParameters.transactionNumber)) {
-            where.addStatement(QueryAllData.TransactionNumber, " LIKE ", searchParameters.transactionNumber);
-        }
+        addTextStatement(where, TransactionSearchIndex.TRANSACTIONNUMBER, QueryAllData.TransactionNumber,
+            searchParameters.transactionNumber);
         // notes
-        if (!TextUtils.isEmpty(searchParameters.notes)) {
-            where.addStatement(QueryAllData.Notes + " LIKE '%" + searchParameters.notes + "%'");
-        }
+        addTextStatement(where, TransactionSearchIndex.NOTES, QueryAllData.Notes, searchParameters.notes);
 
         return where.getWhere();
     }
 
+    /**
+     * Word prefix search on the full-text index of the transactions. While the index is being
+     * rebuilt, the text is found anywhere in the field instead.
+     */
+    private void addTextStatement(WhereStatementGenerator where, String column, String field, String text) {
+        String statement = TransactionSearchIndex.isInSync()
+            ? TransactionSearchIndex.getSearchStatement(QueryAllData.ID, column, field, text)
+            : TransactionSearchIndex.getLikeStatement(field, text);
+        if (statement == null) return;
+
+        where.addStatement(statement);
+    }
+
     private void addAmountStatements(WhereStatementGenerator where, SearchParameters searchParameters) {
         if (searchParameters.amountFrom != null && searchParameters.amountTo != null) {
             addAmountStatementForBothAmounts(where, searchParameters);
@@ -384,11 +388,11 @@ public class SearchFragment
 
         // from amount
         if (searchParameters.amountFrom != null) {
-            where.addStatement(QueryAllData.Amount, " >= ", searchParameters.amountFrom);
+            where.addStatement(QueryAllData.AmountUnits, ">=", TransactionAmountIndex.toUnits(searchParameters.amountFrom));
         }
         // to amount
         if (searchParameters.amountTo != null) {
-            where.addStatement(QueryAllData.Amount, " <= ", searchParameters.amountTo);
+            where.addStatement(QueryAllData.AmountUnits, "<=", TransactionAmountIndex.toUnits(searchParameters.amountTo));
         }
 
     }
@@ -404,11 +408,11 @@ public class SearchFragment
 
         // from amount
         if (searchParameters.amountFrom != null) {
-            where.addStatement(QueryAllData.Amount, " >= ", lowerAmount);
+            where.addStatement(QueryAllData.AmountUnits, ">=", TransactionAmountIndex.toUnits(lowerAmount));
         }
         // to amount
         if (searchParameters.amountTo != null) {
-            where.addStatement(QueryAllData.Amount, " <= ", higherAmount);
+            where.addStatement(QueryAllData.AmountUnits, "<=", TransactionAmountIndex.toUnits(higherAmount));
         }
     }
 
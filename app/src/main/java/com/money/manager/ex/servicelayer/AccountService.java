@@ -37,6 +37,8 @@ import com.money.manager.ex.database.ITransactionEntity;
 import com.money.manager.ex.datalayer.AccountRepository;
 import com.money.manager.ex.database.QueryAccountBills;
 import com.money.manager.ex.database.QueryAllData;
+import com.money.manager.ex.database.TransactionSnapshot;
+import com.money.manager.ex.database.TransactionSnapshotStore;
 import com.money.manager.ex.database.WhereStatementGenerator;
 import com.money.manager.ex.datalayer.AccountTransactionRepository;
 import com.money.manager.ex.datalayer.StockRepository;
@@ -44,6 +46,7 @@ import com.money.manager.ex.domainmodel.Account;
 import com.money.manager.ex.domainmodel.Stock;
 import com.money.manager.ex.settings.AppSettings;
 import com.money.manager.ex.settings.LookAndFeelSettings;
+import com.money.manager.ex.utils.MyDateTimeUtils;
 import com.money.manager.ex.viewmodels.AccountTransactionDisplay;
 
 import java.math.BigDecimal;
@@ -107,6 +110,13 @@ public class AccountService
      * @param isoDate date in ISO format
      */
     public Money calculateBalanceOn(int accountId, String isoDate) {
+        // Use the in-memory transactions when available.
+        TransactionSnapshot snapshot = TransactionSnapshotStore.getInstance().peekOrBuild(getContext());
+        if (snapshot != null) {
+            long units = snapshot.getBalance(accountId, MyDateTimeUtils.toEpochDay(isoDate));
+            return TransactionSnapshot.toMoney(units);
+        }
+
         Money total = MoneyFactory.fromBigDecimal(BigDecimal.ZERO);
 
         WhereStatementGenerator where = new WhereStatementGenerator();
@@ -22,13 +22,13 @@ import android.database.Cursor;
 import com.money.manager.ex.Constants;
 import com.money.manager.ex.R;
 import com.money.manager.ex.account.AccountTypes;
+import com.money.manager.ex.assetallocation.AssetAllocationBulkLoader;
 import com.money.manager.ex.assetallocation.ItemType;
 import com.money.manager.ex.core.ExceptionHandler;
 import com.money.manager.ex.currency.CurrencyService;
 import com.money.manager.ex.datalayer.AccountRepository;
 import com.money.manager.ex.datalayer.AssetClassRepository;
 import com.money.manager.ex.datalayer.AssetClassStockRepository;
-import com.money.manager.ex.datalayer.StockRepository;
 import com.money.manager.ex.domainmodel.Account;
 import com.money.manager.ex.domainmodel.AssetClass;
 import com.money.manager.ex.domainmodel.AssetClassStock;
@@ -77,6 +77,22 @@ public class AssetAllocationService
      */
     private HashMap<Integer, Integer> mAccountCurrencies;
 
+    /**
+     * @return Account Id / Currency Id pairs used in the calculation, i.e. to be restored
+     * later with {@link #setAccountCurrencies(HashMap)}.
+     */
+    public HashMap<Integer, Integer> getAccountCurrencies() {
+        return mAccountCurrencies;
+    }
+
+    /**
+     * Use the account currencies that are already loaded instead of reading each one.
+     * @param accountCurrencies Account Id / Currency Id pairs.
+     */
+    public void setAccountCurrencies(HashMap<Integer, Integer> accountCurrencies) {
+        mAccountCurrencies = accountCurrencies;
+    }
+
     public boolean deleteAllocation(int assetClassId) {
         ExceptionHandler handler = new ExceptionHandler(getContext(), this);
         AssetClassRepository repo = new AssetClassRepository(getContext());
@@ -123,36 +139,34 @@ public class AssetAllocationService
 
     /**
      * Main entry point when no data is loaded yet..
-     * @return Asset Allocation, see the method with the cursor parameter.
+     * @return Asset Allocation, see the method with the loader parameter.
      */
     public AssetClass loadAssetAllocation() {
         // http://docs.mongodb.org/manual/tutorial/model-tree-structures/
 
-        // Step 1: Load all elements, ordered by ParentId.
-        Cursor c = loadData();
-        return loadAssetAllocationFrom(c);
+        // Step 1: Load all elements, links, stocks and account currencies in bulk.
+        AssetAllocationBulkLoader loader = new AssetAllocationBulkLoader(getContext());
+        loader.load();
+        return loadAssetAllocationFrom(loader);
     }
 
     /**
      * Main entry point.
-     * @param c Cursor with asset classes, from which to load the Asset Allocation.
+     * @param data Bulk-loaded asset classes, stock links, stocks and account currencies.
      * @return Full Asset Allocation with all the calculated fields.
      */
-    private AssetClass loadAssetAllocationFrom(Cursor c) {
-        if (c == null) return null;
+    private AssetClass loadAssetAllocationFrom(AssetAllocationBulkLoader data) {
+        mAccountCurrencies = data.getAccountCurrencies();
 
         // Main asset allocation object.
         AssetClass root = AssetClass.create("Asset Allocation");
         root.setType(ItemType.Group);
 
-        // Fill a hash map with one pass through cursor. Used for easier fetching of asset classes.
-        HashMap<Integer, AssetClass> map = loadMap(c);
-        c.close();
         // Assign children to their parents. Create a hierarchical list.
-        List<AssetClass> list = assignChildren(map);
+        List<AssetClass> list = assignChildren(data.getAssetClasses());
 
-        // Load stock links and stocks to asset allocations.
-        loadStocks(list);
+        // Assign stock links and stocks to asset allocations.
+        data.assignStocks(list);
 
         root.setChildren(list);
 
@@ -300,7 +314,13 @@ public class AssetAllocationService
         cash.setCurrentValue(currentValue);
     }
 
-    private Money calculateCurrentAllocation(Money currentValue, Money portfolioValue) {
+    /**
+     * Current allocation, as a percentage of the portfolio value.
+     * @param currentValue Current value of the asset class, in base currency.
+     * @param portfolioValue Total value of the portfolio, in base currency.
+     * @return Current allocation percentage.
+     */
+    public Money calculateCurrentAllocation(Money currentValue, Money portfolioValue) {
         Money currentAllocation = currentValue
             .multiply(100)
             .divide(portfolioValue.toDouble(), Constants.DEFAULT_PRECISION);
@@ -340,7 +360,13 @@ public class AssetAllocationService
         item.setDifference(difference);
     }
 
-    private Money calculateSetValue(Money portfolioValue, Money allocation) {
+    /**
+     * The set value in base currency, calculated from the set allocation and the portfolio value.
+     * @param portfolioValue Total value of the portfolio, in base currency.
+     * @param allocation Set allocation percentage.
+     * @return Set value.
+     */
+    public Money calculateSetValue(Money portfolioValue, Money allocation) {
         Money value = portfolioValue
             .multiply(allocation.toDouble())
             .divide(100, Constants.DEFAULT_PRECISION);
@@ -381,25 +407,6 @@ public class AssetAllocationService
         return sum;
     }
 
-    private Cursor loadData() {
-        Cursor c = repository.openCursor(null, null, null, AssetClass.PARENTID);
-        return c;
-    }
-
-    private HashMap<Integer, AssetClass> loadMap(Cursor c) {
-        HashMap<Integer, AssetClass> result = new HashMap<>();
-
-        if (c == null) return result;
-
-        while (c.moveToNext()) {
-            AssetClass ac = AssetClass.from(c);
-            result.put(ac.getId(), ac);
-        }
-//        c.close();
-
-        return result;
-    }
-
     private List<AssetClass> assignChildren(HashMap<Integer, AssetClass> map) {
         List<AssetClass> children = new ArrayList<>();
 
@@ -427,50 +434,6 @@ public class AssetAllocationService
         return children;
     }
 
-    private List<AssetClass> loadStocks(List<AssetClass> allocation) {
-        // iterate
-        for (AssetClass ac : allocation) {
-            // if element has no children, load related stocks
-            if (ac.getChildren().size() == 0) {
-                loadStocks(ac);
-            } else {
-                loadStocks(ac.getChildren());
-            }
-        }
-        return allocation;
-    }
-
-    private void loadStocks(AssetClass assetClass) {
-        if (assetClass.getChildren().size() > 0) {
-            // Group. Load values for child elements.
-            for (AssetClass child : assetClass.getChildren()) {
-                loadStocks(child);
-            }
-        } else {
-            // No child elements. This is the actual allocation. Load value from linked stocks.
-
-            assetClass.setType(ItemType.Allocation);
-
-            // load stock links
-            AssetClassStockRepository linkRepo = new AssetClassStockRepository(getContext());
-            List<AssetClassStock> links = linkRepo.loadForClass(assetClass.getId());
-            assetClass.setStockLinks(links);
-
-            if (assetClass.getStockLinks().size() == 0) return;
-
-            int size = assetClass.getStockLinks().size();
-            String[] symbols = new String[size];
-            for (int i = 0; i < size; i++) {
-                AssetClassStock link = assetClass.getStockLinks().get(i);
-                symbols[i] = link.getStockSymbol();
-            }
-
-            StockRepository stockRepo = new StockRepository(getContext());
-            List<Stock> stocks = stockRepo.loadForSymbols(symbols);
-            assetClass.setStocks(stocks);
-        }
-    }
-
     private Money calculateCurrentValue(List<AssetClass> allocations) {
         Money result = MoneyFactory.fromDouble(0);
 
@@ -623,7 +586,12 @@ public class AssetAllocationService
         }
     }
 
-    private Money sumStockValues(List<Stock> stocks) {
+    /**
+     * Sum of the stock values, converted to the base currency.
+     * @param stocks Stocks to sum.
+     * @return Total value in base currency.
+     */
+    public Money sumStockValues(List<Stock> stocks) {
         Money sum = MoneyFactory.fromDouble(0);
         int baseCurrencyId = mCurrencyService.getBaseCurrencyId();
 
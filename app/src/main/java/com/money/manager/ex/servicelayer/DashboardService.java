@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.servicelayer;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import com.money.manager.ex.database.MonthlySummary;
+import com.money.manager.ex.database.QueryBillDeposits;
+import com.money.manager.ex.database.SQLDataSet;
+import com.money.manager.ex.database.ViewMobileData;
+import com.money.manager.ex.utils.MyDateTimeUtils;
+import com.money.manager.ex.viewmodels.DashboardSnapshot;
+
+import org.joda.time.DateTime;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Calculates the data for all the Dashboard panels.
+ * The transactions are aggregated with a single query over the last 30 days, which always
+ * includes the whole current month. The panels are then derived from the grouped rows.
+ */
+public class DashboardService
+    extends ServiceBase {
+
+    public static final int TOP_ITEMS = 10;
+    public static final int UPCOMING_DAYS = 10;
+
+    private static final String TOTAL = "TOTAL";
+    private static final String NUM = "NUM";
+
+    public DashboardService(Context context) {
+        super(context);
+    }
+
+    public DashboardSnapshot loadSnapshot() {
+        DateTime today = MyDateTimeUtils.today();
+        int year = today.getYear();
+        int month = today.getMonthOfYear();
+
+        boolean hasCurrentMonth = false;
+        double income = 0;
+        double expenses = 0;
+        LinkedHashMap<String, Total> categories = new LinkedHashMap<>();
+        LinkedHashMap<String, Total> payees = new LinkedHashMap<>();
+
+        Cursor c = getContext().getContentResolver().query(new SQLDataSet().getUri(), null,
+            getAggregateQuery(today), null, null);
+        if (c != null) {
+            while (c.moveToNext()) {
+                String type = c.getString(c.getColumnIndex(ViewMobileData.TransactionType));
+                double total = c.getDouble(c.getColumnIndex(TOTAL));
+                int count = c.getInt(c.getColumnIndex(NUM));
+                boolean withdrawal = "Withdrawal".equalsIgnoreCase(type);
+                boolean deposit = "Deposit".equalsIgnoreCase(type);
+
+                // income vs expenses, current month
+                if (c.getInt(c.getColumnIndex(ViewMobileData.Year)) == year &&
+                    c.getInt(c.getColumnIndex(ViewMobileData.Month)) == month) {
+                    hasCurrentMonth = true;
+                    if (deposit) income += total;
+                    if (withdrawal) expenses += total;
+                }
+
+                // top withdrawals by category
+                if (withdrawal) {
+                    String key = c.getInt(c.getColumnIndex(ViewMobileData.CATEGID)) + ":" +
+                        c.getInt(c.getColumnIndex(ViewMobileData.SubcategID));
+                    Total item = categories.get(key);
+                    if (item == null) {
+                        item = new Total(c.getString(c.getColumnIndex(ViewMobileData.Category)),
+                            c.getString(c.getColumnIndex(ViewMobileData.Subcategory)));
+                        categories.put(key, item);
+                    }
+                    item.add(total, count);
+                }
+
+                // top payees
+                if (withdrawal || deposit) {
+                    String key = Integer.toString(c.getInt(c.getColumnIndex(ViewMobileData.PAYEEID)));
+                    Total item = payees.get(key);
+                    if (item == null) {
+                        item = new Total(c.getString(c.getColumnIndex(ViewMobileData.PAYEE)), null);
+                        payees.put(key, item);
+                    }
+                    item.add(total, count);
+                }
+            }
+            c.close();
+        }
+
+        List<DashboardSnapshot.Item> topWithdrawals = new ArrayList<>();
+        for (Total item : getTop(categories.values())) {
+            // only the categories with a net withdrawal
+            if (item.total >= 0) continue;
+            topWithdrawals.add(new DashboardSnapshot.Item(item.name, item.detail, item.count, item.total));
+            if (topWithdrawals.size() == TOP_ITEMS) break;
+        }
+
+        List<DashboardSnapshot.Item> topPayees = new ArrayList<>();
+        for (Total item : getTop(payees.values())) {
+            topPayees.add(new DashboardSnapshot.Item(item.name, null, item.count, Math.abs(item.total)));
+            if (topPayees.size() == TOP_ITEMS) break;
+        }
+
+        return new DashboardSnapshot(year, month, hasCurrentMonth, income, expenses,
+            topWithdrawals, topPayees, loadUpcomingBills());
+    }
+
+    // Private
+
+    /**
+     * Transaction totals grouped by month, type, category and payee.
+     */
+    private String getAggregateQuery(DateTime today) {
+        String source = new MonthlySummary(getContext()).getSource(today.minusDays(30), null);
+        String groupBy = ViewMobileData.Year + ", " + ViewMobileData.Month + ", " +
+            ViewMobileData.TransactionType + ", " +
+            ViewMobileData.CATEGID + ", " + ViewMobileData.Category + ", " +
+            ViewMobileData.SubcategID + ", " + ViewMobileData.Subcategory + ", " +
+            ViewMobileData.PAYEEID + ", " + ViewMobileData.PAYEE;
+
+        return "SELECT " + groupBy + ", " +
+            "SUM(" + ViewMobileData.AmountBaseConvRate + ") AS " + TOTAL + ", " +
+            "SUM(" + MonthlySummary.TransCount + ") AS " + NUM +
+            " FROM " + source +
+            " WHERE " + ViewMobileData.Status + "<>'V'" +
+            " GROUP BY " + groupBy;
+    }
+
+    private List<Total> getTop(Iterable<Total> totals) {
+        List<Total> result = new ArrayList<>();
+        for (Total total : totals) {
+            result.add(total);
+        }
+        Collections.sort(result, new Comparator<Total>() {
+            @Override
+            public int compare(Total lhs, Total rhs) {
+                return Double.compare(Math.abs(rhs.total), Math.abs(lhs.total));
+            }
+        });
+        return result;
+    }
+
+    private List<DashboardSnapshot.Bill> loadUpcomingBills() {
+        List<DashboardSnapshot.Bill> result = new ArrayList<>();
+
+        QueryBillDeposits billDeposits = new QueryBillDeposits(getContext());
+        Cursor c = getContext().getContentResolver().query(billDeposits.getUri(),
+            billDeposits.getAllColumns(),
+            QueryBillDeposits.DAYSLEFT + "<=" + UPCOMING_DAYS,
+            null,
+            QueryBillDeposits.DAYSLEFT);
+        if (c == null) return result;
+
+        while (c.moveToNext()) {
+            result.add(new DashboardSnapshot.Bill(
+                c.getString(c.getColumnIndex(QueryBillDeposits.PAYEENAME)),
+                c.getDouble(c.getColumnIndex(QueryBillDeposits.AMOUNT)),
+                c.getInt(c.getColumnIndex(QueryBillDeposits.CURRENCYID)),
+                c.getInt(c.getColumnIndex(QueryBillDeposits.DAYSLEFT))));
+        }
+        c.close();
+
+        return result;
+    }
+
+    private static class Total {
+        Total(String name, String detail) {
+            this.name = name;
+            this.detail = detail;
+        }
+
+        final String name;
+        final String detail;
+        double total;
+        int count;
+
+        void add(double amount, int transactions) {
+            total += amount;
+            count += transactions;
+        }
+    }
+}
@@ -16,20 +16,32 @@
  */
 package com.money.manager.ex.servicelayer;
 
+import android.content.ContentProviderOperation;
 import android.content.Context;
+import android.content.OperationApplicationException;
 import android.database.Cursor;
+import android.net.Uri;
+import android.os.RemoteException;
 import android.util.Log;
 import android.widget.Toast;
 
 import com.money.manager.ex.Constants;
+import com.money.manager.ex.MmexContentProvider;
 import com.money.manager.ex.R;
 import com.money.manager.ex.core.Core;
 import com.money.manager.ex.core.ExceptionHandler;
+import com.money.manager.ex.core.TransactionTypes;
 import com.money.manager.ex.database.ISplitTransaction;
 import com.money.manager.ex.database.ITransactionEntity;
+import com.money.manager.ex.datalayer.AccountTransactionRepository;
+import com.money.manager.ex.datalayer.PayeeRepository;
 import com.money.manager.ex.datalayer.RecurringTransactionRepository;
+import com.money.manager.ex.datalayer.SplitCategoriesRepository;
 import com.money.manager.ex.datalayer.SplitRecurringCategoriesRepository;
+import com.money.manager.ex.domainmodel.AccountTransaction;
+import com.money.manager.ex.domainmodel.Payee;
 import com.money.manager.ex.domainmodel.RecurringTransaction;
+import com.money.manager.ex.domainmodel.SplitCategory;
 import com.money.manager.ex.domainmodel.SplitRecurringCategory;
 import com.money.manager.ex.recurring.transactions.Recurrence;
 
@@ -37,6 +49,8 @@ import org.joda.time.DateTime;
 import org.joda.time.DateTimeConstants;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 
 /**
  * Represent a first Recurring Transaction object and provides related operations.
@@ -126,14 +140,16 @@ public class RecurringTransactionService
                 break;
             case MONTHLY_LAST_DAY: //month (last day)
                 result = result.dayOfMonth().withMaximumValue();
+                // already on the last day, move to the next month.
+                if (!result.isAfter(date)) {
+                    result = date.plusMonths(1).dayOfMonth().withMaximumValue();
+                }
                 break;
             case MONTHLY_LAST_BUSINESS_DAY: //month (last business day)
-                // get the last day of the month,
-                result = result.dayOfMonth().withMaximumValue();
-                // then iterate backwards until we are not on weekend day.
-                while(result.getDayOfWeek() == DateTimeConstants.SATURDAY ||
-                        result.getDayOfWeek() == DateTimeConstants.SUNDAY) {
-                    result = result.minusDays(1);
+                result = getLastBusinessDayOfMonth(result);
+                // already on the last business day, move to the next month.
+                if (!result.isAfter(date)) {
+                    result = getLastBusinessDayOfMonth(date.plusMonths(1));
                 }
                 break;
         }
@@ -160,7 +176,30 @@ public class RecurringTransactionService
     public void moveNextOccurrence() {
         load();
 
-        Integer recurrenceType = mRecurringTransaction.getRecurrenceInt();
+        if (!moveNextOccurrence(mRecurringTransaction)) {
+            // no more occurrences
+            delete();
+            return;
+        }
+
+        // Save changes
+
+        RecurringTransactionRepository repo = getRepository();
+        boolean updated = repo.update(mRecurringTransaction);
+        if (!updated) {
+            ExceptionHandler handler = new ExceptionHandler(getContext());
+            handler.showMessage(R.string.error_saving_record);
+        }
+    }
+
+    /**
+     * Moves the given recurring transaction to its next occurrence, in memory only.
+     * @param recurringTransaction Recurring transaction to modify.
+     * @return false if there are no more occurrences, in which case the recurring transaction
+     * is to be deleted.
+     */
+    public boolean moveNextOccurrence(RecurringTransaction recurringTransaction) {
+        Integer recurrenceType = recurringTransaction.getRecurrenceInt();
         if (recurrenceType == null) {
             String message = getContext().getString(R.string.recurrence_type_not_set);
             throw new IllegalArgumentException(message);
@@ -179,8 +218,7 @@ public class RecurringTransactionService
         switch (recurrence) {
             // periodical (monthly, weekly)
             case ONCE:
-                delete();
-                break;
+                return false;
             case WEEKLY:
             case BIWEEKLY:
             case MONTHLY:
@@ -193,34 +231,109 @@ public class RecurringTransactionService
             case DAILY:
             case MONTHLY_LAST_DAY:
             case MONTHLY_LAST_BUSINESS_DAY:
-                moveDatesForward();
+                moveDatesForward(recurringTransaction);
                 // Delete if occurrence is down to 1. 0 means repeat forever.
-                deleteIfLastPayment();
-                decreasePaymentsLeft();
+                if (isLastPayment(recurringTransaction)) return false;
+                decreasePaymentsLeft(recurringTransaction);
                 break;
             // every n periods
             case EVERY_X_DAYS:
             case EVERY_X_MONTHS:
-                moveDatesForward();
+                moveDatesForward(recurringTransaction);
                 break;
             // in n periods
             case IN_X_DAYS:
             case IN_X_MONTHS:
                 // reset number of periods
-                mRecurringTransaction.setPaymentsLeft(Constants.NOT_SET);
+                recurringTransaction.setPaymentsLeft(Constants.NOT_SET);
                 break;
             default:
                 break;
         }
+        return true;
+    }
 
-        // Save changes
-
+    /**
+     * Enters all the occurrences of the recurring transactions that are due on or before the
+     * given date. The recurring transactions are then moved past the date, or deleted when there
+     * are no more occurrences.
+     * The occurrences are calculated in memory and the transactions, their splits, and the
+     * recurring transactions are written in a single database transaction, with one change
+     * notification. As in the transaction editor, the category of a transaction that is not a
+     * transfer or split is saved as the default category of its payee.
+     * @param date Last date to enter, inclusive.
+     * @return Number of transactions entered. Null if the changes could not be saved.
+     */
+    public Integer enterDueOccurrences(DateTime date) {
         RecurringTransactionRepository repo = getRepository();
-        boolean updated = repo.update(mRecurringTransaction);
-        if (!updated) {
-            ExceptionHandler handler = new ExceptionHandler(getContext());
-            handler.showMessage(R.string.error_saving_record);
+        List<RecurringTransaction> due = repo.loadDue(date);
+        if (due == null) return null;
+        if (due.isEmpty()) return 0;
+
+        List<Integer> ids = new ArrayList<>();
+        for (RecurringTransaction recurringTransaction : due) {
+            ids.add(recurringTransaction.getId());
         }
+        SplitRecurringCategoriesRepository splitTemplatesRepo = new SplitRecurringCategoriesRepository(getContext());
+        HashMap<Integer, ArrayList<ISplitTransaction>> splitTemplates = splitTemplatesRepo.loadSplitCategoriesFor(ids);
+
+        Uri transactionsUri = new AccountTransactionRepository(getContext()).getUri();
+        Uri splitsUri = new SplitCategoriesRepository(getContext()).getUri();
+        Uri payeesUri = new PayeeRepository(getContext()).getUri();
+
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        int entered = 0;
+
+        for (RecurringTransaction recurringTransaction : due) {
+            ArrayList<ISplitTransaction> splits = splitTemplates.get(recurringTransaction.getId());
+            boolean active = true;
+            AccountTransaction last = null;
+
+            DateTime paymentDate = recurringTransaction.getPaymentDate();
+            while (paymentDate != null && !paymentDate.isAfter(date)) {
+                last = addOccurrence(operations, transactionsUri, splitsUri, recurringTransaction, splits);
+                entered++;
+
+                active = moveNextOccurrence(recurringTransaction);
+                if (!active) break;
+
+                // The "in x days/months" schedules do not move forward. Enter them once.
+                DateTime next = recurringTransaction.getPaymentDate();
+                if (next == null || !next.isAfter(paymentDate)) break;
+                paymentDate = next;
+            }
+            // all the occurrences have the same category.
+            if (last != null) {
+                addDefaultPayee(operations, payeesUri, last);
+            }
+
+            String[] selectionArgs = new String[] { Integer.toString(recurringTransaction.getId()) };
+            if (active) {
+                recurringTransaction.contentValues.remove("_id");
+                operations.add(ContentProviderOperation.newUpdate(repo.getUri())
+                    .withValues(recurringTransaction.contentValues)
+                    .withSelection(RecurringTransaction.BDID + "=?", selectionArgs)
+                    .build());
+            } else {
+                if (splits != null) {
+                    operations.add(ContentProviderOperation.newDelete(splitTemplatesRepo.getUri())
+                        .withSelection(SplitRecurringCategory.TRANSID + "=?", selectionArgs)
+                        .build());
+                }
+                operations.add(ContentProviderOperation.newDelete(repo.getUri())
+                    .withSelection(RecurringTransaction.BDID + "=?", selectionArgs)
+                    .build());
+            }
+        }
+
+        try {
+            getContext().getContentResolver().applyBatch(MmexContentProvider.getAuthority(), operations);
+        } catch (RemoteException | OperationApplicationException e) {
+            ExceptionHandler handler = new ExceptionHandler(getContext(), this);
+            handler.handle(e, "entering due occurrences");
+            return null;
+        }
+        return entered;
     }
 
     /**
@@ -326,30 +439,106 @@ public class RecurringTransactionService
 
     // Private.
 
-    private void decreasePaymentsLeft() {
-        Integer paymentsLeft = mRecurringTransaction.getPaymentsLeft();
-        if (paymentsLeft == null) {
-            mRecurringTransaction.setPaymentsLeft(0);
-            return;
+    private DateTime getLastBusinessDayOfMonth(DateTime date) {
+        // get the last day of the month,
+        DateTime result = date.dayOfMonth().withMaximumValue();
+        // then iterate backwards until we are not on weekend day.
+        while(result.getDayOfWeek() == DateTimeConstants.SATURDAY ||
+                result.getDayOfWeek() == DateTimeConstants.SUNDAY) {
+            result = result.minusDays(1);
+        }
+        return result;
+    }
+
+    /**
+     * Add the operations that insert the next occurrence of the recurring transaction, as
+     * when entered in the transaction editor.
+     * @return The transaction, if it is stored with a single category. Null if split.
+     */
+    private AccountTransaction addOccurrence(ArrayList<ContentProviderOperation> operations, Uri transactionsUri,
+                               Uri splitsUri, RecurringTransaction recurringTransaction,
+                               ArrayList<ISplitTransaction> splits) {
+        AccountTransaction tx = AccountTransaction.create();
+
+        tx.setDate(recurringTransaction.getPaymentDate());
+        tx.setAccountId(recurringTransaction.getAccountId());
+        tx.setAccountToId(recurringTransaction.getToAccountId());
+        tx.setTransactionType(TransactionTypes.valueOf(recurringTransaction.getTransactionCode()));
+        tx.setStatus(recurringTransaction.getStatus());
+        tx.setAmount(recurringTransaction.getAmount());
+        tx.setAmountTo(recurringTransaction.getAmountTo());
+        tx.setPayeeId(recurringTransaction.getPayeeId());
+        tx.setCategoryId(recurringTransaction.getCategoryId());
+        tx.setSubcategoryId(recurringTransaction.getSubcategoryId());
+        tx.setTransactionNumber(recurringTransaction.getTransactionNumber());
+        tx.setNotes(recurringTransaction.getNotes());
+
+        Integer categoryId = recurringTransaction.getCategoryId();
+        Integer subcategoryId = recurringTransaction.getSubcategoryId();
+        boolean useSplits = splits != null && !splits.isEmpty() &&
+            (categoryId == null || categoryId <= 0) && (subcategoryId == null || subcategoryId <= 0);
+        if (useSplits && splits.size() == 1) {
+            // A single split is stored as the category of the transaction.
+            ISplitTransaction split = splits.get(0);
+            tx.setAmount(split.getAmount());
+            tx.setCategoryId(split.getCategoryId());
+            tx.setSubcategoryId(split.getSubcategoryId());
+            useSplits = false;
         }
 
-        if (paymentsLeft > 1) {
-            paymentsLeft = paymentsLeft - 1;
+        int transactionIndex = operations.size();
+        operations.add(ContentProviderOperation.newInsert(transactionsUri)
+            .withValues(tx.contentValues)
+            .build());
+
+        if (!useSplits) return tx;
+
+        for (ISplitTransaction template : splits) {
+            SplitCategory split = new SplitCategory();
+            split.setAmount(template.getAmount());
+            split.setCategoryId(template.getCategoryId());
+            split.setSubcategoryId(template.getSubcategoryId());
+
+            operations.add(ContentProviderOperation.newInsert(splitsUri)
+                .withValues(split.contentValues)
+                .withValueBackReference(SplitCategory.TRANSID, transactionIndex)
+                .build());
         }
+        return null;
+    }
 
-        mRecurringTransaction.setPaymentsLeft(paymentsLeft);
+    /**
+     * Add the operation that saves the category of the transaction as the default category of
+     * its payee, as the transaction editor does. Not for transfers.
+     */
+    private void addDefaultPayee(ArrayList<ContentProviderOperation> operations, Uri payeesUri,
+                                 AccountTransaction tx) {
+        if (tx.getTransactionType() == TransactionTypes.Transfer || !tx.hasPayee()) return;
+
+        operations.add(ContentProviderOperation.newUpdate(payeesUri)
+            .withValue(Payee.CATEGID, tx.getCategoryId())
+            .withValue(Payee.SUBCATEGID, tx.getSubcategoryId())
+            .withSelection(Payee.PAYEEID + "=?", new String[] { Integer.toString(tx.getPayeeId()) })
+            .build());
     }
 
-    private void deleteIfLastPayment() {
-        Integer paymentsLeft = mRecurringTransaction.getPaymentsLeft();
+    private void decreasePaymentsLeft(RecurringTransaction recurringTransaction) {
+        Integer paymentsLeft = recurringTransaction.getPaymentsLeft();
         if (paymentsLeft == null) {
-            mRecurringTransaction.setPaymentsLeft(0);
+            recurringTransaction.setPaymentsLeft(0);
             return;
         }
 
-        if (paymentsLeft == 1) {
-            delete();
+        if (paymentsLeft > 1) {
+            paymentsLeft = paymentsLeft - 1;
         }
+
+        recurringTransaction.setPaymentsLeft(paymentsLeft);
+    }
+
+    private boolean isLastPayment(RecurringTransaction recurringTransaction) {
+        Integer paymentsLeft = recurringTransaction.getPaymentsLeft();
+        return paymentsLeft != null && paymentsLeft == 1;
     }
 
     /**
@@ -379,38 +568,35 @@ public class RecurringTransactionService
 
     /**
      * Set the recurring transaction's Due date and the Payment date to the next occurrence.
-     * Saves changes to the database.
      */
-    private void moveDatesForward() {
-        load();
-
+    private void moveDatesForward(RecurringTransaction recurringTransaction) {
         // Due date.
 
-        moveDueDateForward();
+        moveDueDateForward(recurringTransaction);
 
         // Payment date.
 
-        Recurrence repeatType = Recurrence.valueOf(mRecurringTransaction.getRecurrenceInt());
-        DateTime newPaymentDate = mRecurringTransaction.getPaymentDate();
-        Integer paymentsLeft = mRecurringTransaction.getPaymentsLeft();
+        Recurrence repeatType = Recurrence.valueOf(recurringTransaction.getRecurrenceInt());
+        DateTime newPaymentDate = recurringTransaction.getPaymentDate();
+        Integer paymentsLeft = recurringTransaction.getPaymentsLeft();
 
         // calculate the next payment date
         newPaymentDate = getNextScheduledDate(newPaymentDate, repeatType, paymentsLeft);
 
         if (newPaymentDate != null) {
-            mRecurringTransaction.setPaymentDate(newPaymentDate);
+            recurringTransaction.setPaymentDate(newPaymentDate);
         }
     }
 
-    private void moveDueDateForward() {
-        Recurrence repeats = Recurrence.valueOf(mRecurringTransaction.getRecurrenceInt());
-        DateTime dueDate = mRecurringTransaction.getDueDate();
-        Integer paymentsLeft = mRecurringTransaction.getPaymentsLeft();
+    private void moveDueDateForward(RecurringTransaction recurringTransaction) {
+        Recurrence repeats = Recurrence.valueOf(recurringTransaction.getRecurrenceInt());
+        DateTime dueDate = recurringTransaction.getDueDate();
+        Integer paymentsLeft = recurringTransaction.getPaymentsLeft();
 
         DateTime newDueDate = getNextScheduledDate(dueDate, repeats, paymentsLeft);
 
         if (newDueDate != null) {
-            mRecurringTransaction.setDueDate(newDueDate);
+            recurringTransaction.setDueDate(newDueDate);
         }
     }
 }
@@ -24,6 +24,7 @@ import android.support.v7.preference.PreferenceFragmentCompat;
 import com.codetroopers.betterpickers.radialtimepicker.RadialTimePickerDialogFragment;
 import com.money.manager.ex.Constants;
 import com.money.manager.ex.R;
+import com.money.manager.ex.notifications.RecurringTransactionScheduler;
 import com.money.manager.ex.utils.CalendarUtils;
 
 import org.joda.time.DateTime;
@@ -48,6 +49,7 @@ public class BehaviourSettingsFragment
 
         PreferenceManager.getDefaultSharedPreferences(getActivity());
 
+        initializeNotifications();
         initializeNotificationTime();
     }
 
@@ -74,6 +76,20 @@ public class BehaviourSettingsFragment
 
     // Private
 
+    private void initializeNotifications() {
+        Preference preference = findPreference(getString(PreferenceConstants.PREF_REPEATING_TRANSACTION_NOTIFICATIONS));
+        if (preference == null) return;
+
+        // arm or cancel the alarm, once the new value is saved.
+        preference.setOnPreferenceChangeListener(new Preference.OnPreferenceChangeListener() {
+            @Override
+            public boolean onPreferenceChange(Preference preference, Object newValue) {
+                RecurringTransactionScheduler.getInstance().scheduleLater(getActivity());
+                return true;
+            }
+        });
+    }
+
     private void initializeNotificationTime() {
         Preference preference = findPreference(getString(PreferenceConstants.PREF_REPEATING_TRANSACTION_CHECK));
         if (preference == null) return;
@@ -96,6 +112,7 @@ public class BehaviourSettingsFragment
             public void onTimeSet(RadialTimePickerDialogFragment dialog, int hourOfDay, int minute) {
                 String value = String.format("%02d:%02d", hourOfDay, minute);
                 settings.setNotificationTime(value);
+                RecurringTransactionScheduler.getInstance().scheduleLater(getActivity());
             }
         };
 
@@ -454,10 +454,13 @@ public class CheckingTransactionEditActivity
                                 // get id payee and category
                                 mCommonFunctions.transactionEntity.setPayeeId(payee.getId());
                                 mCommonFunctions.payeeName = payee.getName();
-                                mCommonFunctions.transactionEntity.setCategoryId(payee.getCategoryId());
-                                mCommonFunctions.transactionEntity.setSubcategoryId(payee.getSubcategoryId());
-                                // load category and subcategory name
-                                mCommonFunctions.loadCategoryName();
+                                // category from the history of the payee, or its default.
+                                if (!mCommonFunctions.setCategoryFromHistory()) {
+                                    mCommonFunctions.transactionEntity.setCategoryId(payee.getCategoryId());
+                                    mCommonFunctions.transactionEntity.setSubcategoryId(payee.getSubcategoryId());
+                                    // load category and subcategory name
+                                    mCommonFunctions.loadCategoryName();
+                                }
                                 return Boolean.TRUE;
                             }
                         } catch (Exception e) {
@@ -47,15 +47,14 @@ import com.money.manager.ex.R;
 import com.money.manager.ex.account.AccountListActivity;
 import com.money.manager.ex.common.AmountInputDialog;
 import com.money.manager.ex.common.CommonSplitCategoryLogic;
+import com.money.manager.ex.database.CategoryHierarchy;
+import com.money.manager.ex.database.CategoryHierarchyStore;
+import com.money.manager.ex.database.CategorySuggestions;
 import com.money.manager.ex.database.ISplitTransaction;
 import com.money.manager.ex.database.ITransactionEntity;
 import com.money.manager.ex.database.MmexOpenHelper;
-import com.money.manager.ex.datalayer.CategoryRepository;
 import com.money.manager.ex.datalayer.IRepository;
 import com.money.manager.ex.datalayer.PayeeRepository;
-import com.money.manager.ex.datalayer.SubcategoryRepository;
-import com.money.manager.ex.domainmodel.Category;
-import com.money.manager.ex.domainmodel.Subcategory;
 import com.money.manager.ex.servicelayer.AccountService;
 import com.money.manager.ex.common.BaseFragmentActivity;
 import com.money.manager.ex.common.CategoryListActivity;
@@ -757,21 +756,9 @@ public class EditTransactionCommonFunctions {
     public boolean loadCategoryName() {
         if(!this.transactionEntity.hasCategory() && this.transactionEntity.getSubcategoryId() <= 0) return false;
 
-        CategoryRepository categoryRepository = new CategoryRepository(getContext());
-        Category category = categoryRepository.load(this.transactionEntity.getCategoryId());
-        if (category != null) {
-            this.categoryName = category.getName();
-        } else {
-            this.categoryName = null;
-        }
-
-        SubcategoryRepository subRepo = new SubcategoryRepository(getContext());
-        Subcategory subcategory = subRepo.load(this.transactionEntity.getSubcategoryId());
-        if (subcategory != null) {
-            this.subCategoryName = subcategory.getName();
-        } else {
-            this.subCategoryName = null;
-        }
+        CategoryHierarchy categories = CategoryHierarchyStore.getInstance().get(getContext());
+        this.categoryName = categories.getCategoryName(this.transactionEntity.getCategoryId());
+        this.subCategoryName = categories.getSubcategoryName(this.transactionEntity.getSubcategoryId());
 
         return true;
     }
@@ -808,9 +795,10 @@ public class EditTransactionCommonFunctions {
 
                 transactionEntity.setPayeeId(data.getIntExtra(PayeeActivity.INTENT_RESULT_PAYEEID, Constants.NOT_SET));
                 payeeName = data.getStringExtra(PayeeActivity.INTENT_RESULT_PAYEENAME);
-                // select last category used from payee. Only if category has not been entered earlier.
+                // select the category from the history, or the last one used with the payee.
+                // Only if category has not been entered earlier.
                 if (!isSplitSelected() && !this.transactionEntity.hasCategory() ) {
-                    if (setCategoryFromPayee(transactionEntity.getPayeeId())) {
+                    if (setCategoryFromHistory() || setCategoryFromPayee(transactionEntity.getPayeeId())) {
                         displayCategoryName(); // refresh UI
                     }
                 }
@@ -876,6 +864,11 @@ public class EditTransactionCommonFunctions {
         if (isAmountFrom) {
             this.transactionEntity.setAmount(amount);
             displayAmountFrom();
+
+            // with the payee or notes entered, the amount may tell the category.
+            if (!isSplitSelected() && !this.transactionEntity.hasCategory() && setCategoryFromHistory()) {
+                displayCategoryName();
+            }
         } else {
             this.transactionEntity.setAmountTo(amount);
             displayAmountTo();
@@ -1041,6 +1034,37 @@ public class EditTransactionCommonFunctions {
         return true;
     }
 
+    /**
+     * Set the category suggested by the history of the transactions, from the payee, amount,
+     * and notes entered so far.
+     * @return true if category set
+     */
+    public boolean setCategoryFromHistory() {
+        TransactionTypes type = this.transactionEntity.getTransactionType();
+        Money amount = this.transactionEntity.getAmount();
+        Integer payeeId = this.transactionEntity.getPayeeId();
+
+        CategorySuggestions.Suggestion suggestion;
+        try {
+            CategorySuggestions suggestions = new CategorySuggestions(getContext());
+            suggestion = suggestions.suggest(MmexOpenHelper.getInstance(getContext()).getReadableDatabase(),
+                payeeId == null ? Constants.NOT_SET : payeeId, type,
+                amount == null ? 0 : amount.toDouble(), this.transactionEntity.getNotes());
+        } catch (Exception e) {
+            ExceptionHandler handler = new ExceptionHandler(getContext(), this);
+            handler.handle(e, "suggesting category");
+            return false;
+        }
+        if (suggestion == null) return false;
+
+        this.transactionEntity.setCategoryId(suggestion.getCategoryId());
+        this.transactionEntity.setSubcategoryId(suggestion.getSubcategoryId());
+
+        loadCategoryName();
+
+        return true;
+    }
+
     /**
      * setCategoryFromPayee set last category used from payee
      *
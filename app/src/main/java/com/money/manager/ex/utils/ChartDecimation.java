@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.utils;
+
+import java.util.Arrays;
+
+/**
+ * Reduction of chart series to roughly the number of points that can be displayed.
+ */
+public class ChartDecimation {
+
+    /**
+     * Largest-Triangle-Three-Buckets downsampling. The x value is the index in the series.
+     * The first and the last point in the range are always included.
+     * @param values Series values.
+     * @param from First index of the range, inclusive.
+     * @param to Last index of the range, exclusive.
+     * @param threshold Maximal number of points to return.
+     * @return Sorted indices of the selected points.
+     */
+    public static int[] largestTriangleThreeBuckets(double[] values, int from, int to, int threshold) {
+        from = Math.max(from, 0);
+        to = Math.min(to, values.length);
+        int count = to - from;
+        if (count <= 0) return new int[0];
+
+        if (threshold >= count || threshold < 3) {
+            int[] all = new int[count];
+            for (int i = 0; i < count; i++) {
+                all[i] = from + i;
+            }
+            return all;
+        }
+
+        int[] result = new int[threshold];
+        int selected = 0;
+        result[selected++] = from;
+
+        // the first and the last points are fixed; the rest is split into buckets.
+        double bucketSize = (double) (count - 2) / (threshold - 2);
+        int a = from;
+
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            // average of the next bucket
+            int nextStart = from + (int) Math.floor((bucket + 1) * bucketSize) + 1;
+            int nextEnd = Math.min(from + (int) Math.floor((bucket + 2) * bucketSize) + 1, to);
+            double averageX = 0;
+            double averageY = 0;
+            for (int i = nextStart; i < nextEnd; i++) {
+                averageX += i;
+                averageY += values[i];
+            }
+            int nextLength = nextEnd - nextStart;
+            averageX /= nextLength;
+            averageY /= nextLength;
+
+            // point in the current bucket with the largest triangle
+            int start = from + (int) Math.floor(bucket * bucketSize) + 1;
+            int end = from + (int) Math.floor((bucket + 1) * bucketSize) + 1;
+            double maxArea = -1;
+            int maxIndex = start;
+            for (int i = start; i < end; i++) {
+                double area = Math.abs((a - averageX) * (values[i] - values[a]) -
+                    (a - i) * (averageY - values[a]));
+                if (area > maxArea) {
+                    maxArea = area;
+                    maxIndex = i;
+                }
+            }
+
+            result[selected++] = maxIndex;
+            a = maxIndex;
+        }
+
+        result[selected] = to - 1;
+        return result;
+    }
+
+    /**
+     * @return Sorted union of the two sorted index arrays.
+     */
+    public static int[] merge(int[] first, int[] second) {
+        int[] result = new int[first.length + second.length];
+        int i = 0, j = 0, count = 0;
+        while (i < first.length || j < second.length) {
+            int value;
+            if (j >= second.length || (i < first.length && first[i] <= second[j])) {
+                value = first[i++];
+            } else {
+                value = second[j++];
+            }
+            if (count == 0 || result[count - 1] != value) {
+                result[count++] = value;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+}
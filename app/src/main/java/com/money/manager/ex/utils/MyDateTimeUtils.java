@@ -110,6 +110,57 @@ public class MyDateTimeUtils {
         return dateTime.toString(Constants.ISO_DATE_FORMAT);
     }
 
+    /**
+     * Number of days since 1970-01-01. A compact, comparable representation of a date
+     * for in-memory indexes.
+     * @param isoDate Date in ISO format (yyyy-MM-dd). Any time part is ignored.
+     * @return Epoch day.
+     */
+    public static int toEpochDay(String isoDate) {
+        int year = Integer.parseInt(isoDate.substring(0, 4));
+        int month = Integer.parseInt(isoDate.substring(5, 7));
+        int day = Integer.parseInt(isoDate.substring(8, 10));
+
+        return toEpochDay(year, month, day);
+    }
+
+    public static int toEpochDay(DateTime dateTime) {
+        return toEpochDay(dateTime.getYear(), dateTime.getMonthOfYear(), dateTime.getDayOfMonth());
+    }
+
+    /**
+     * Days from civil date. Proleptic Gregorian calendar.
+     * Ref: http://howardhinnant.github.io/date_algorithms.html
+     */
+    public static int toEpochDay(int year, int month, int day) {
+        int y = month <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * Civil from days, without creating date objects.
+     * @return Year and month of the given epoch day, as year * 100 + month.
+     */
+    public static int toYearMonth(int epochDay) {
+        int z = epochDay + 719468;
+        int era = (z >= 0 ? z : z - 146096) / 146097;
+        int dayOfEra = z - era * 146097;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int mp = (5 * dayOfYear + 2) / 153;
+        int month = mp < 10 ? mp + 3 : mp - 9;
+        int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year * 100 + month;
+    }
+
+    public static DateTime fromEpochDay(int epochDay) {
+        return new DateTime(epochDay * 86400000L, DateTimeZone.UTC);
+    }
+
     public static String getUserStringFromDateTime(Context ctx, DateTime dateTime) {
         if (dateTime == null) return "";
 
@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.viewmodels;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable data for all the Dashboard panels, calculated in one pass.
+ * Amounts are in the base currency, except for the upcoming transactions.
+ */
+public class DashboardSnapshot {
+
+    public DashboardSnapshot(int year, int month, boolean hasCurrentMonth, double income, double expenses,
+                             List<Item> topWithdrawals, List<Item> topPayees, List<Bill> upcomingBills) {
+        this.year = year;
+        this.month = month;
+        this.hasCurrentMonth = hasCurrentMonth;
+        this.income = income;
+        this.expenses = expenses;
+        this.topWithdrawals = Collections.unmodifiableList(topWithdrawals);
+        this.topPayees = Collections.unmodifiableList(topPayees);
+        this.upcomingBills = Collections.unmodifiableList(upcomingBills);
+    }
+
+    private final int year;
+    private final int month;
+    private final boolean hasCurrentMonth;
+    private final double income;
+    private final double expenses;
+    private final List<Item> topWithdrawals;
+    private final List<Item> topPayees;
+    private final List<Bill> upcomingBills;
+
+    public int getYear() {
+        return year;
+    }
+
+    /**
+     * @return Current month, 1-based.
+     */
+    public int getMonth() {
+        return month;
+    }
+
+    /**
+     * @return Indicator whether there are any transactions in the current month.
+     */
+    public boolean hasCurrentMonth() {
+        return hasCurrentMonth;
+    }
+
+    public double getIncome() {
+        return income;
+    }
+
+    public double getExpenses() {
+        return expenses;
+    }
+
+    /**
+     * @return Categories with the highest withdrawals in the last 30 days.
+     */
+    public List<Item> getTopWithdrawals() {
+        return topWithdrawals;
+    }
+
+    /**
+     * @return Payees with the highest totals in the last 30 days.
+     */
+    public List<Item> getTopPayees() {
+        return topPayees;
+    }
+
+    public List<Bill> getUpcomingBills() {
+        return upcomingBills;
+    }
+
+    /**
+     * A row in the top categories or payees panel.
+     */
+    public static class Item {
+        public Item(String name, String detail, int count, double total) {
+            this.name = name;
+            this.detail = detail;
+            this.count = count;
+            this.total = total;
+        }
+
+        private final String name;
+        private final String detail;
+        private final int count;
+        private final double total;
+
+        /**
+         * @return Category or payee name.
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return Subcategory name, if any.
+         */
+        public String getDetail() {
+            return detail;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public double getTotal() {
+            return total;
+        }
+    }
+
+    /**
+     * An upcoming recurring transaction.
+     */
+    public static class Bill {
+        public Bill(String payee, double amount, int currencyId, int daysLeft) {
+            this.payee = payee;
+            this.amount = amount;
+            this.currencyId = currencyId;
+            this.daysLeft = daysLeft;
+        }
+
+        private final String payee;
+        private final double amount;
+        private final int currencyId;
+        private final int daysLeft;
+
+        public String getPayee() {
+            return payee;
+        }
+
+        public double getAmount() {
+            return amount;
+        }
+
+        public int getCurrencyId() {
+            return currencyId;
+        }
+
+        public int getDaysLeft() {
+            return daysLeft;
+        }
+    }
+}
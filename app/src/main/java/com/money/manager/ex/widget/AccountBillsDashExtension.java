@@ -19,7 +19,6 @@ package com.money.manager.ex.widget;
 
 import android.content.Context;
 import android.content.Intent;
-import android.database.Cursor;
 import android.text.TextUtils;
 import android.util.Log;
 
@@ -28,7 +27,6 @@ import com.google.android.apps.dashclock.api.ExtensionData;
 import com.money.manager.ex.home.MainActivity;
 import com.money.manager.ex.MoneyManagerApplication;
 import com.money.manager.ex.R;
-import com.money.manager.ex.database.QueryAccountBills;
 import com.money.manager.ex.currency.CurrencyService;
 
 import info.javaperformance.money.MoneyFactory;
@@ -41,37 +39,22 @@ public class AccountBillsDashExtension extends DashClockExtension {
             Context context = getApplicationContext();
             MoneyManagerApplication app = new MoneyManagerApplication();
             CurrencyService currencyService = new CurrencyService(context);
+            WidgetSnapshot snapshot = WidgetSnapshotStore.getInstance().get(context);
 
-            QueryAccountBills accountBills = new QueryAccountBills(context);
-            String selection = accountBills.getFilterAccountSelection();
-            // create a cursor
-            Cursor cursor = context.getContentResolver().query(accountBills.getUri(), null, selection, null, QueryAccountBills.ACCOUNTNAME);
             // body extensions
             String body = "";
-
-            if (cursor != null) {
-                cursor.moveToFirst();
-                while (!cursor.isAfterLast()) {
-                    String accountname = cursor.getString(cursor.getColumnIndex(QueryAccountBills.ACCOUNTNAME));
-                    int currencyId = cursor.getInt(cursor.getColumnIndex(QueryAccountBills.CURRENCYID));
-                    double summaryAccount = cursor.getDouble(cursor.getColumnIndex(QueryAccountBills.TOTAL));
-                    String value = currencyService.getCurrencyFormatted(
-                            currencyId, MoneyFactory.fromDouble(summaryAccount));
-                    if (!TextUtils.isEmpty(body)) body += "\r\n";
-                    // add account and summary
-                    body += accountname + ": " + value;
-                    // move to next row
-                    cursor.moveToNext();
-                }
-
-                cursor.close();
+            for (WidgetSnapshot.Account account : snapshot.getVisibleAccounts(context)) {
+                String value = currencyService.getCurrencyFormatted(account.currencyId, account.getTotal());
+                if (!TextUtils.isEmpty(body)) body += "\r\n";
+                // add account and summary
+                body += account.name + ": " + value;
             }
 
             // show data
             publishUpdate(new ExtensionData()
                 .visible(true)
                 .icon(R.drawable.ic_stat_notification)
-                .status(currencyService.getBaseCurrencyFormatted(MoneyFactory.fromDouble(app.getSummaryAccounts(context))))
+                .status(currencyService.getBaseCurrencyFormatted(MoneyFactory.fromDouble(snapshot.getSummaryAccounts(context))))
                 .expandedTitle(app.getUserName())
                 .expandedBody(body)
                 .clickIntent(new Intent(this, MainActivity.class)));
@@ -19,16 +19,15 @@ package com.money.manager.ex.widget;
 
 import android.content.Context;
 import android.content.Intent;
-import android.database.Cursor;
 import android.widget.RemoteViews;
 import android.widget.RemoteViewsService;
 
 import com.money.manager.ex.R;
 import com.money.manager.ex.core.ExceptionHandler;
 import com.money.manager.ex.currency.CurrencyService;
-import com.money.manager.ex.database.QueryAccountBills;
 
-import info.javaperformance.money.MoneyFactory;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  *
@@ -36,7 +35,7 @@ import info.javaperformance.money.MoneyFactory;
 public class AllAccountBillsViewFactory implements RemoteViewsService.RemoteViewsFactory {
     private Context mContext;
     private CurrencyService mCurrencyService;
-    private Cursor mCursor;
+    private List<WidgetSnapshot.Account> mAccounts = new ArrayList<>();
 
     public AllAccountBillsViewFactory(Context context, Intent intent) {
         //appWidgetId = intent.getIntExtra(AppWidgetManager.EXTRA_APPWIDGET_ID, AppWidgetManager.INVALID_APPWIDGET_ID);
@@ -57,11 +56,7 @@ public class AllAccountBillsViewFactory implements RemoteViewsService.RemoteView
     }
 
     private int getCountInternal() {
-        if (mCursor != null) {
-            return mCursor.getCount();
-        } else {
-            return 0;
-        }
+        return mAccounts.size();
     }
 
     @Override
@@ -77,13 +72,10 @@ public class AllAccountBillsViewFactory implements RemoteViewsService.RemoteView
     @Override
     public RemoteViews getViewAt(int position) {
         RemoteViews remoteViews = new RemoteViews(mContext.getPackageName(), R.layout.widget_item_account_bills);
-        if (mCursor.moveToPosition(position)) {
-            int colindex = mCursor.getColumnIndex(QueryAccountBills.ACCOUNTNAME);
-            String accountname = mCursor.getString(colindex);
-            remoteViews.setTextViewText(R.id.textViewItemAccountName, accountname);
-            String value = mCurrencyService.getCurrencyFormatted(
-                    mCursor.getInt(mCursor.getColumnIndex(QueryAccountBills.CURRENCYID)),
-                    MoneyFactory.fromDouble(mCursor.getDouble(mCursor.getColumnIndex(QueryAccountBills.TOTAL))));
+        if (position >= 0 && position < mAccounts.size()) {
+            WidgetSnapshot.Account account = mAccounts.get(position);
+            remoteViews.setTextViewText(R.id.textViewItemAccountName, account.name);
+            String value = mCurrencyService.getCurrencyFormatted(account.currencyId, account.getTotal());
             remoteViews.setTextViewText(R.id.textViewItemAccountTotal, value);
         }
         return remoteViews;
@@ -106,21 +98,14 @@ public class AllAccountBillsViewFactory implements RemoteViewsService.RemoteView
 
     @Override
     public void onDataSetChanged() {
-        if (mCursor != null) {
-            mCursor.close();
-        }
-        QueryAccountBills accountBills = new QueryAccountBills(mContext);
-        String selection = accountBills.getFilterAccountSelection();
-        // create a cursor
-        mCursor = mContext.getContentResolver().query(accountBills.getUri(),
-                null, selection, null, QueryAccountBills.ACCOUNTNAME);
+        // the list is served from the widget snapshot, refreshed in the background.
+        WidgetSnapshot snapshot = WidgetSnapshotStore.getInstance().get(mContext);
+        mAccounts = snapshot.getVisibleAccounts(mContext);
     }
 
     @Override
     public void onDestroy() {
-        if (mCursor != null) {
-            mCursor.close();
-        }
+        mAccounts = new ArrayList<>();
         return;
     }
 }
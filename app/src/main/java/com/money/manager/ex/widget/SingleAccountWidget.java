@@ -27,18 +27,11 @@ import android.util.Log;
 import android.widget.RemoteViews;
 
 import com.money.manager.ex.R;
-import com.money.manager.ex.servicelayer.AccountService;
 import com.money.manager.ex.currency.CurrencyService;
-import com.money.manager.ex.datalayer.AccountRepository;
-import com.money.manager.ex.database.QueryAccountBills;
-import com.money.manager.ex.database.WhereStatementGenerator;
-import com.money.manager.ex.domainmodel.Account;
 import com.money.manager.ex.home.MainActivity;
 import com.money.manager.ex.settings.AppSettings;
 import com.money.manager.ex.transactions.CheckingTransactionEditActivity;
 
-import info.javaperformance.money.Money;
-
 /**
  * Implementation of App Widget functionality.
  * App Widget Configuration implemented in {@link SingleAccountWidgetConfigureActivity SingleAccountWidgetConfigureActivity}
@@ -188,7 +181,7 @@ public class SingleAccountWidget
 
     private void displayAccountInfo(Context context, String defaultAccountId, RemoteViews views) {
         int accountId = Integer.parseInt(defaultAccountId);
-        Account account = loadAccount(context, accountId);
+        WidgetSnapshot.Account account = WidgetSnapshotStore.getInstance().get(context).getAccount(accountId);
         if (account == null) return;
 
 //        CharSequence widgetText = SingleAccountWidgetConfigureActivity.loadTitlePref(context, appWidgetId);
@@ -196,7 +189,7 @@ public class SingleAccountWidget
 
         // display the account name
 //        String accountName = getAccountName(context, accountId);
-        String accountName = account.getName();
+        String accountName = account.name;
         views.setTextViewText(R.id.accountNameTextView, accountName);
 
         // get account balance (for this account?)
@@ -225,27 +218,15 @@ public class SingleAccountWidget
         views.setOnClickPendingIntent(R.id.newTransactionButton, pendingIntent);
     }
 
-    private String getFormattedAccountBalance(Context context, Account account) {
-        WhereStatementGenerator where = new WhereStatementGenerator();
-        where.addStatement(QueryAccountBills.ACCOUNTID, "=", account.getId());
-        String selection =  where.getWhere();
-
-        AccountService service = new AccountService(context);
-        Money total = service.loadBalance(selection);
-
+    private String getFormattedAccountBalance(Context context, WidgetSnapshot.Account account) {
         // format the amount
         CurrencyService currencyService = new CurrencyService(context);
         String summary = currencyService.getCurrencyFormatted(
-                account.getCurrencyId(), total);
+                account.currencyId, account.getTotal());
 
         return summary;
     }
 
-    private Account loadAccount(Context context, int accountId) {
-        AccountRepository repository = new AccountRepository(context);
-        return repository.load(accountId);
-    }
-
     private void initializeStartAppCommand(Context context, RemoteViews views) {
         Intent intent = new Intent(context, MainActivity.class);
         PendingIntent pendingIntent = PendingIntent.getActivity(context, 0, intent, 0);
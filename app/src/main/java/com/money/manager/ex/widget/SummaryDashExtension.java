@@ -38,10 +38,11 @@ public class SummaryDashExtension extends DashClockExtension {
             Context context = getApplicationContext();
             MoneyManagerApplication app = new MoneyManagerApplication();
             CurrencyService currencyService = new CurrencyService(context);
+            WidgetSnapshot snapshot = WidgetSnapshotStore.getInstance().get(context);
 
             // summary formatted
             String summary = currencyService.getBaseCurrencyFormatted(
-                    MoneyFactory.fromDouble(app.getSummaryAccounts(context)));
+                    MoneyFactory.fromDouble(snapshot.getSummaryAccounts(context)));
 
             publishUpdate(new ExtensionData()
                     .visible(true)
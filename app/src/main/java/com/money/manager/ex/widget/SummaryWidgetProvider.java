@@ -27,7 +27,6 @@ import android.widget.RemoteViews;
 
 import com.money.manager.ex.currency.CurrencyService;
 import com.money.manager.ex.home.MainActivity;
-import com.money.manager.ex.MoneyManagerApplication;
 import com.money.manager.ex.R;
 
 import info.javaperformance.money.MoneyFactory;
@@ -40,16 +39,16 @@ public class SummaryWidgetProvider
                          int[] appWidgetIds) {
         super.onUpdate(context, appWidgetManager, appWidgetIds);
 
-        MoneyManagerApplication app = new MoneyManagerApplication();
+        WidgetSnapshot snapshot = WidgetSnapshotStore.getInstance().get(context);
         CurrencyService currencyService = new CurrencyService(context);
 
         int[] allWidgetIds = appWidgetManager.getAppWidgetIds(new ComponentName(context, SummaryWidgetProvider.class));
 
         for (int i = 0; i < allWidgetIds.length; ++i) {
             RemoteViews remoteViews = new RemoteViews(context.getPackageName(), R.layout.widget_summary);
-            remoteViews.setTextViewText(R.id.textViewUserName, app.loadUserNameFromDatabase(context));
+            remoteViews.setTextViewText(R.id.textViewUserName, snapshot.getUserName());
             remoteViews.setTextViewText(R.id.textViewTotalAccounts, context.getString(R.string.summary) + ": "
-                    + currencyService.getBaseCurrencyFormatted(MoneyFactory.fromDouble(app.getSummaryAccounts(context))));
+                    + currencyService.getBaseCurrencyFormatted(MoneyFactory.fromDouble(snapshot.getSummaryAccounts(context))));
 
             // register on click in icon launch application
             Intent intentApplication = new Intent(context, MainActivity.class);
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.widget;
+
+import android.content.Context;
+import android.database.Cursor;
+
+import com.money.manager.ex.database.QueryAccountBills;
+import com.money.manager.ex.settings.AppSettings;
+import com.money.manager.ex.settings.LookAndFeelSettings;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import info.javaperformance.money.Money;
+import info.javaperformance.money.MoneyFactory;
+
+/**
+ * Immutable copy of the data shown in the home screen widgets and DashClock extensions:
+ * the user name and all the accounts with their balances, ordered by name.
+ * See {@link WidgetSnapshotStore}.
+ */
+public class WidgetSnapshot {
+
+    public static class Account {
+        private Account(int id, String name, int currencyId, String status, String favourite,
+                        String total, double totalBaseConvRate) {
+            this.id = id;
+            this.name = name;
+            this.currencyId = currencyId;
+            this.status = status;
+            this.favourite = favourite;
+            this.total = total;
+            this.totalBaseConvRate = totalBaseConvRate;
+        }
+
+        public final int id;
+        public final String name;
+        public final int currencyId;
+        private final String status;
+        private final String favourite;
+        private final String total;
+        public final double totalBaseConvRate;
+
+        /**
+         * @return Balance in the account currency.
+         */
+        public Money getTotal() {
+            return MoneyFactory.fromString(total);
+        }
+    }
+
+    /**
+     * Read the snapshot from the account bills query.
+     * @param userName User name from the database info.
+     * @param cursor All the account bills, ordered by account name.
+     */
+    public static WidgetSnapshot from(String userName, Cursor cursor) {
+        List<Account> accounts = new ArrayList<>(cursor.getCount());
+        while (cursor.moveToNext()) {
+            double total = cursor.getDouble(cursor.getColumnIndex(QueryAccountBills.TOTAL));
+            accounts.add(new Account(
+                cursor.getInt(cursor.getColumnIndex(QueryAccountBills.ACCOUNTID)),
+                cursor.getString(cursor.getColumnIndex(QueryAccountBills.ACCOUNTNAME)),
+                cursor.getInt(cursor.getColumnIndex(QueryAccountBills.CURRENCYID)),
+                cursor.getString(cursor.getColumnIndex(QueryAccountBills.STATUS)),
+                cursor.getString(cursor.getColumnIndex(QueryAccountBills.FAVORITEACCT)),
+                MoneyFactory.fromDouble(total).toString(),
+                cursor.getDouble(cursor.getColumnIndex(QueryAccountBills.TOTALBASECONVRATE))));
+        }
+        return new WidgetSnapshot(userName, accounts);
+    }
+
+    static WidgetSnapshot read(DataInputStream input) throws IOException {
+        String userName = input.readUTF();
+        int count = input.readInt();
+        List<Account> accounts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            accounts.add(new Account(input.readInt(), input.readUTF(), input.readInt(),
+                input.readUTF(), input.readUTF(), input.readUTF(), input.readDouble()));
+        }
+        return new WidgetSnapshot(userName, accounts);
+    }
+
+    private WidgetSnapshot(String userName, List<Account> accounts) {
+        mUserName = userName == null ? "" : userName;
+        mAccounts = Collections.unmodifiableList(accounts);
+    }
+
+    private final String mUserName;
+    private final List<Account> mAccounts;
+
+    public String getUserName() {
+        return mUserName;
+    }
+
+    public Account getAccount(int accountId) {
+        for (Account account : mAccounts) {
+            if (account.id == accountId) return account;
+        }
+        return null;
+    }
+
+    /**
+     * @return The accounts to display, according to the open/favourite accounts preferences.
+     */
+    public List<Account> getVisibleAccounts(Context context) {
+        LookAndFeelSettings settings = new AppSettings(context).getLookAndFeelSettings();
+        // the favourite filter replaces the open one, as in the account bills selection.
+        boolean favouriteOnly = settings.getViewFavouriteAccounts();
+        boolean openOnly = !favouriteOnly && settings.getViewOpenAccounts();
+
+        List<Account> result = new ArrayList<>();
+        for (Account account : mAccounts) {
+            if (favouriteOnly && !"true".equalsIgnoreCase(account.favourite)) continue;
+            if (openOnly && !"open".equalsIgnoreCase(account.status)) continue;
+
+            result.add(account);
+        }
+        return result;
+    }
+
+    /**
+     * @return Sum of the balances of the visible accounts, in the base currency.
+     */
+    public double getSummaryAccounts(Context context) {
+        double total = 0;
+        for (Account account : getVisibleAccounts(context)) {
+            total += account.totalBaseConvRate;
+        }
+        return total;
+    }
+
+    void write(DataOutputStream output) throws IOException {
+        output.writeUTF(mUserName);
+        output.writeInt(mAccounts.size());
+        for (Account account : mAccounts) {
+            output.writeInt(account.id);
+            output.writeUTF(account.name == null ? "" : account.name);
+            output.writeInt(account.currencyId);
+            output.writeUTF(account.status == null ? "" : account.status);
+            output.writeUTF(account.favourite == null ? "" : account.favourite);
+            output.writeUTF(account.total);
+            output.writeDouble(account.totalBaseConvRate);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.money.manager.ex.widget;
+
+import android.appwidget.AppWidgetManager;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.database.Cursor;
+
+import com.money.manager.ex.MoneyManagerApplication;
+import com.money.manager.ex.core.ExceptionHandler;
+import com.money.manager.ex.database.QueryAccountBills;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared data for all the widgets and DashClock extensions, served stale-while-revalidate.
+ * The widgets always read the last snapshot, from memory or from a file, and never query the
+ * database themselves. Data changes only mark the snapshot as stale. A single background
+ * refresh, shortly after the changes settle, reads the accounts once, stores the new snapshot
+ * and asks the widgets to redraw.
+ */
+public class WidgetSnapshotStore {
+
+    private static final String FILE_NAME = "widget_snapshot.bin";
+    private static final int VERSION = 1;
+    /**
+     * Changes are usually made in bursts. Wait for them to settle before reading.
+     */
+    private static final long REFRESH_DELAY_MILLIS = 2000;
+
+    private static WidgetSnapshotStore mInstance;
+
+    public static synchronized WidgetSnapshotStore getInstance() {
+        if (mInstance == null) {
+            mInstance = new WidgetSnapshotStore();
+        }
+        return mInstance;
+    }
+
+    /**
+     * Notify the store that the data has changed. Called by the content provider on writes
+     * and whenever a database is opened.
+     */
+    public static void dataChanged(Context context) {
+        getInstance().markStale(context, REFRESH_DELAY_MILLIS);
+    }
+
+    private final ScheduledExecutorService mExecutor = Executors.newSingleThreadScheduledExecutor();
+    private volatile WidgetSnapshot mSnapshot;
+    /**
+     * The snapshot read from the file may be older than the database.
+     */
+    private boolean mStale = true;
+    private boolean mRefreshScheduled;
+
+    /**
+     * @return The last snapshot. A refresh is scheduled if it may be out of date. The database
+     * is read directly only if there is no snapshot at all.
+     */
+    public WidgetSnapshot get(Context context) {
+        WidgetSnapshot snapshot = mSnapshot;
+        if (snapshot == null) {
+            snapshot = readFile(context);
+            if (snapshot == null) {
+                return refresh(context, false);
+            }
+            mSnapshot = snapshot;
+        }
+
+        synchronized (this) {
+            if (mStale) {
+                scheduleRefresh(context, 0);
+            }
+        }
+        return snapshot;
+    }
+
+    // Private
+
+    private synchronized void markStale(Context context, long delay) {
+        mStale = true;
+        // Nothing to refresh until a widget or extension asks for the data.
+        if (mSnapshot == null && !getFile(context).exists()) return;
+
+        scheduleRefresh(context, delay);
+    }
+
+    private synchronized void scheduleRefresh(Context context, long delay) {
+        if (mRefreshScheduled) return;
+        mRefreshScheduled = true;
+
+        final Context appContext = context.getApplicationContext();
+        mExecutor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    refresh(appContext, true);
+                } catch (Exception e) {
+                    ExceptionHandler handler = new ExceptionHandler(appContext, this);
+                    handler.handle(e, "refreshing widget data");
+                }
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private WidgetSnapshot refresh(Context context, boolean notifyWidgets) {
+        synchronized (this) {
+            // changes from now on need another refresh.
+            mStale = false;
+            mRefreshScheduled = false;
+        }
+
+        WidgetSnapshot snapshot = load(context);
+        mSnapshot = snapshot;
+        writeFile(context, snapshot);
+
+        if (notifyWidgets) {
+            updateWidgets(context);
+        }
+        return snapshot;
+    }
+
+    private WidgetSnapshot load(Context context) {
+        MoneyManagerApplication app = new MoneyManagerApplication();
+        String userName = app.loadUserNameFromDatabase(context);
+
+        QueryAccountBills accountBills = new QueryAccountBills(context);
+        Cursor cursor = context.getContentResolver().query(accountBills.getUri(),
+            null, null, null, QueryAccountBills.ACCOUNTNAME);
+        if (cursor == null) {
+            throw new IllegalStateException("account bills not available");
+        }
+        try {
+            return WidgetSnapshot.from(userName, cursor);
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void updateWidgets(Context context) {
+        AppWidgetManager manager = AppWidgetManager.getInstance(context);
+        Class<?>[] providers = new Class<?>[] { SummaryWidgetProvider.class,
+            AccountBillsWidgetProvider.class, SingleAccountWidget.class };
+
+        for (Class<?> provider : providers) {
+            int[] ids = manager.getAppWidgetIds(new ComponentName(context, provider));
+            if (ids == null || ids.length == 0) continue;
+
+            Intent intent = new Intent(context, provider);
+            intent.setAction(AppWidgetManager.ACTION_APPWIDGET_UPDATE);
+            intent.putExtra(AppWidgetManager.EXTRA_APPWIDGET_IDS, ids);
+            context.sendBroadcast(intent);
+        }
+    }
+
+    private File getFile(Context context) {
+        return new File(context.getCacheDir(), FILE_NAME);
+    }
+
+    /**
+     * @return The stored snapshot, if it belongs to the current database.
+     */
+    private WidgetSnapshot readFile(Context context) {
+        File file = getFile(context);
+        if (!file.exists()) return null;
+
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (input.readInt() != VERSION) return null;
+            if (!input.readUTF().equals(MoneyManagerApplication.getDatabasePath(context))) return null;
+
+            return WidgetSnapshot.read(input);
+        } catch (IOException e) {
+            return null;
+        } finally {
+            if (input != null) {
+                try {
+                    input.close();
+                } catch (IOException e) {
+                    // nothing to do
+                }
+            }
+        }
+    }
+
+    private synchronized void writeFile(Context context, WidgetSnapshot snapshot) {
+        File file = getFile(context);
+        File temporary = new File(file.getPath() + ".tmp");
+        try {
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporary)));
+            try {
+                output.writeInt(VERSION);
+                output.writeUTF(MoneyManagerApplication.getDatabasePath(context));
+                snapshot.write(output);
+            } finally {
+                output.close();
+            }
+            if (!temporary.renameTo(file)) {
+                throw new IOException("could not replace " + file.getPath());
+            }
+        } catch (IOException e) {
+            ExceptionHandler handler = new ExceptionHandler(context, this);
+            handler.handle(e, "saving widget data");
+        }
+    }
+}
@@ -2,7 +2,7 @@
 SELECT 	TX.TransID AS ID,
 	TX.TransCode AS TransactionType,
 	date( TX.TransDate ) AS Date,
-	d.userdate AS UserDate,
+	ifnull( ifnull( strftime( df.infovalue, TX.TransDate ) ,  ( strftime( REPLACE( df.infovalue, '%y', SubStr( strftime( '%Y', TX.TransDate ) , 3, 2 )  ) , TX.TransDate )  )  ) , date( TX.TransDate )  ) AS UserDate,
 	CAT.CategName as Category,
 	SUBCAT.SUBCategName as Subcategory,
 --	CASE
@@ -16,6 +16,9 @@ SELECT 	TX.TransID AS ID,
 	-- Source
     -- Withdrawals and Transfers have negative sign.
     ( CASE TX.TRANSCODE WHEN 'Deposit' THEN 1 ELSE -1 END ) *  TX.TransAmount as Amount,
+    -- The same amount in fixed-point units, indexed. Use for filtering by amount.
+    -- Replaced by the calculation while the column is missing, see TransactionAmountIndex.
+    TX.MOBILE_AMOUNTUNITS as AmountUnits,
 	FromAcc.CurrencyID as CurrencyID,
 	cf.currency_symbol AS currency,
 	FromAcc.AccountID as AccountID,
@@ -31,10 +34,10 @@ SELECT 	TX.TransID AS ID,
 	ifnull( PAYEE.PayeeName, '') AS Payee,
 	ifnull( PAYEE.PayeeID, -1 ) AS PayeeID,
 	TX.TRANSACTIONNUMBER AS TransactionNumber,
-	d.year AS Year,
-	d.month AS Month,
-	d.day AS Day,
-	d.finyear AS FinYear
+	round( strftime( '%Y', TX.transdate )  ) AS Year,
+	round( strftime( '%m', TX.transdate )  ) AS Month,
+	round( strftime( '%d', TX.transdate )  ) AS Day,
+	round( strftime( '%Y', TX.transdate, 'start of month', ( (CASE WHEN fd.infovalue <= round( strftime( '%d', TX.transdate )  ) THEN 1 ELSE 0 END ) - fm.infovalue ) || ' month' )  ) AS FinYear
 FROM CHECKINGACCOUNT_V1 TX 
 	LEFT JOIN CATEGORY_V1 CAT ON CAT.CATEGID = TX.CATEGID
 	LEFT JOIN SUBCATEGORY_V1 SUBCAT ON SUBCAT.SUBCATEGID = TX.SUBCATEGID AND SUBCAT.CATEGID = TX.CATEGID
@@ -43,15 +46,8 @@ FROM CHECKINGACCOUNT_V1 TX
 	LEFT JOIN ACCOUNTLIST_V1 TOACC ON TOACC.ACCOUNTID = TX.TOACCOUNTID
 	LEFT JOIN currencyformats_v1 cf ON cf.currencyid = FROMACC.currencyid
 	LEFT JOIN currencyformats_v1 cfTo ON cfTo.currencyid = TOACC.currencyid
-	LEFT JOIN (
-        SELECT	transid AS id,
-			date( transdate ) AS transdate,
-			round( strftime( '%d', transdate )  ) AS day,
-			round( strftime( '%m', transdate )  ) AS month,
-			round( strftime( '%Y', transdate )  ) AS year,
-			round( strftime( '%Y', transdate, 'start of month', ( (CASE WHEN fd.infovalue <= round( strftime( '%d', transdate )  ) THEN 1 ELSE 0 END ) - fm.infovalue ) || ' month' )  ) AS finyear,
-			ifnull( ifnull( strftime( df.infovalue, TransDate ) ,  ( strftime( REPLACE( df.infovalue, '%y', SubStr( strftime( '%Y', TransDate ) , 3, 2 )  ) , TransDate )  )  ) , date( TransDate )  ) AS UserDate
-	    FROM CHECKINGACCOUNT_V1 LEFT JOIN infotable_v1 df ON df.infoname = 'DATEFORMAT'
-		LEFT JOIN infotable_v1 fm ON fm.infoname = 'FINANCIAL_YEAR_START_MONTH'
-		LEFT JOIN infotable_v1 fd ON fd.infoname = 'FINANCIAL_YEAR_START_DAY'
-    ) d ON d.id = TX.TRANSID
+	-- date parts, calculated for each row. A derived table of all the transactions would have
+	-- to be materialized before any filter applies.
+	LEFT JOIN infotable_v1 df ON df.infoname = 'DATEFORMAT'
+	LEFT JOIN infotable_v1 fm ON fm.infoname = 'FINANCIAL_YEAR_START_MONTH'
+	LEFT JOIN infotable_v1 fd ON fd.infoname = 'FINANCIAL_YEAR_START_DAY'
@@ -1,32 +1,17 @@
-SELECT SUB2.Year, SUB2.Month, SUM(SUB2.i) AS Income, SUM(SUB2.e) AS Expenses, SUM(SUB2.t) AS Transfers
+-- Monthly totals are aggregated in a single pass over mobiledata. Each monthly row is then
+-- emitted twice, once as is and once into the yearly total (month 99), so the source is
+-- expanded only once.
+SELECT M.Year AS Year,
+    CASE WHEN T.YearTotal = 1 THEN 99 ELSE M.Month END AS Month,
+    SUM(M.Income) AS Income, SUM(M.Expenses) AS Expenses, SUM(M.Transfers) AS Transfers
 FROM (
-    select sub1.month, sub1.year,
-    case when lower(sub1.transactiontype)='deposit' then sub1.total else 0 end as i,
-    case when lower(sub1.transactiontype)='withdrawal' then sub1.total else 0 end as e,
-    case when lower(sub1.transactiontype)='transfer' then sub1.total else 0 end as t
-    from (
-        select mobiledata.month, mobiledata.year, mobiledata.transactiontype, sum(mobiledata.AmountBaseConvRate) as total
-        from %%mobiledata%%
-        where not(mobiledata.status = 'V')
-        group by month, year, transactiontype
-        ) sub1
-    ) SUB2
-GROUP BY SUB2.Year, SUB2.Month
-
-UNION
--- 	 The total for the year
-SELECT SUB2.Year, 99 AS Month, SUM(SUB2.i) AS Income, SUM(SUB2.e) AS Expenses, SUM(SUB2.t) AS Transfers
-FROM (
-	select sub1.month, sub1.year,
-	case when lower(sub1.transactiontype)='deposit' then sub1.total else 0 end as i,
-	case when lower(sub1.transactiontype)='withdrawal' then sub1.total else 0 end as e,
-	case when lower(sub1.transactiontype)='transfer' then sub1.total else 0 end as t
-	from (
-		select mobiledata.month, mobiledata.year, mobiledata.transactiontype, sum(mobiledata.AmountBaseConvRate) as total
-		from %%mobiledata%%
+    select mobiledata.year as Year, mobiledata.month as Month,
+    sum(case when lower(mobiledata.transactiontype)='deposit' then mobiledata.AmountBaseConvRate else 0 end) as Income,
+    sum(case when lower(mobiledata.transactiontype)='withdrawal' then mobiledata.AmountBaseConvRate else 0 end) as Expenses,
+    sum(case when lower(mobiledata.transactiontype)='transfer' then mobiledata.AmountBaseConvRate else 0 end) as Transfers
+    from %%mobiledata%%
     where not(mobiledata.status = 'V')
-    group by month, year, transactiontype
-    ) sub1
-) SUB2
-GROUP BY SUB2.Year
-
+    group by mobiledata.year, mobiledata.month
+    ) M
+CROSS JOIN (SELECT 0 AS YearTotal UNION ALL SELECT 1) T
+GROUP BY M.Year, CASE WHEN T.YearTotal = 1 THEN 99 ELSE M.Month END
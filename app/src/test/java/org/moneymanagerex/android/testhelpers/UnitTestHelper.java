@@ -101,7 +101,10 @@ public class UnitTestHelper {
         return contentProvider;
     }
 
-    private static void resetSingleton(Class clazz, String fieldName) {
+    /**
+     * Clear the static instance field of a singleton so that the next test gets a new one.
+     */
+    public static void resetSingleton(Class clazz, String fieldName) {
         Field instance;
         try {
             instance = clazz.getDeclaredField(fieldName);
@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.moneymanagerex.android.tests;
+
+import android.content.Context;
+
+import com.money.manager.ex.BuildConfig;
+import com.money.manager.ex.assetallocation.AssetAllocationModel;
+import com.money.manager.ex.datalayer.AssetClassRepository;
+import com.money.manager.ex.datalayer.AssetClassStockRepository;
+import com.money.manager.ex.datalayer.StockRepository;
+import com.money.manager.ex.domainmodel.AssetClass;
+import com.money.manager.ex.domainmodel.AssetClassStock;
+import com.money.manager.ex.domainmodel.Stock;
+import com.money.manager.ex.investment.events.HoldingChangedEvent;
+import com.money.manager.ex.servicelayer.AssetAllocationService;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.moneymanagerex.android.testhelpers.UnitTestHelper;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import info.javaperformance.money.MoneyFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the in-memory asset allocation. Each change applied to the model must give the
+ * same values as a full load of the changed data.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class AssetAllocationModelTests {
+
+    private static final double DELTA = 0.001;
+
+    private Context context;
+    private StockRepository stockRepo;
+    private AssetAllocationModel testObject;
+    /**
+     * Holdings: 100 and 20 of AAA in Equity / Domestic, 100 of BBB in Equity / Foreign,
+     * 100 of CCC in Bonds.
+     */
+    private int domesticId;
+    private int foreignId;
+    private int bondsId;
+
+    @Before
+    public void setup() {
+        UnitTestHelper.setupContentProvider();
+        context = UnitTestHelper.getContext();
+        stockRepo = new StockRepository(context);
+
+        AssetClassRepository classRepo = new AssetClassRepository(context);
+        AssetClass equity = AssetClass.create("Equity");
+        classRepo.insert(equity);
+        createAllocation(equity.getId(), "Domestic", "30", "AAA");
+        createAllocation(equity.getId(), "Foreign", "30", "BBB");
+        createAllocation(null, "Bonds", "40", "CCC");
+
+        domesticId = createStock("AAA", 10, "10");
+        createStock("AAA", 2, "10");
+        foreignId = createStock("BBB", 5, "20");
+        bondsId = createStock("CCC", 4, "25");
+
+        AssetAllocationService service = new AssetAllocationService(context);
+        testObject = new AssetAllocationModel(service.loadAssetAllocation(), service);
+    }
+
+    @After
+    public void tearDown() {
+        testObject = null;
+        UnitTestHelper.teardownDatabase();
+    }
+
+    @Test
+    public void priceUpdateMatchesAFullLoad() {
+        assertTrue(testObject.updatePrice("AAA", MoneyFactory.fromString("12.5")));
+        stockRepo.updateCurrentPrice("AAA", MoneyFactory.fromString("12.5"));
+
+        AssetClass actual = testObject.getAssetAllocation();
+        assertSameValues(loadAssetAllocation(), actual);
+        // the leaf, its group and the total follow the holdings of the symbol.
+        assertEquals(150, getChild(actual, "Equity", "Domestic").getCurrentValue().toDouble(), DELTA);
+        assertEquals(250, getChild(actual, "Equity").getCurrentValue().toDouble(), DELTA);
+        assertEquals(350, actual.getCurrentValue().toDouble(), DELTA);
+    }
+
+    @Test
+    public void priceOfAnUnlinkedSymbolIsIgnored() {
+        assertFalse(testObject.updatePrice("ZZZ", MoneyFactory.fromString("12.5")));
+
+        assertSameValues(loadAssetAllocation(), testObject.getAssetAllocation());
+    }
+
+    @Test
+    public void changedHoldingMatchesAFullLoad() {
+        Stock stock = stockRepo.load(foreignId);
+        stock.setNumberOfShares(8.0);
+        stockRepo.save(stock);
+
+        assertTrue(apply(new HoldingChangedEvent(stockRepo.load(foreignId))));
+
+        assertSameValues(loadAssetAllocation(), testObject.getAssetAllocation());
+    }
+
+    @Test
+    public void newHoldingMatchesAFullLoad() {
+        int id = createStock("CCC", 6, "25");
+
+        assertTrue(apply(new HoldingChangedEvent(stockRepo.load(id))));
+
+        assertSameValues(loadAssetAllocation(), testObject.getAssetAllocation());
+    }
+
+    @Test
+    public void holdingMovedToAnotherSymbolMatchesAFullLoad() {
+        Stock stock = stockRepo.load(domesticId);
+        stock.setSymbol("CCC");
+        stockRepo.save(stock);
+
+        assertTrue(apply(new HoldingChangedEvent(stockRepo.load(domesticId))));
+
+        AssetClass actual = testObject.getAssetAllocation();
+        assertSameValues(loadAssetAllocation(), actual);
+        assertEquals(20, getChild(actual, "Equity", "Domestic").getCurrentValue().toDouble(), DELTA);
+        assertEquals(200, getChild(actual, "Bonds").getCurrentValue().toDouble(), DELTA);
+    }
+
+    @Test
+    public void deletedHoldingMatchesAFullLoad() {
+        stockRepo.delete(bondsId);
+
+        assertTrue(apply(new HoldingChangedEvent(bondsId)));
+
+        AssetClass actual = testObject.getAssetAllocation();
+        assertSameValues(loadAssetAllocation(), actual);
+        assertEquals(0, getChild(actual, "Bonds").getCurrentValue().toDouble(), DELTA);
+        assertEquals(220, actual.getCurrentValue().toDouble(), DELTA);
+    }
+
+    // Private
+
+    /**
+     * Apply the event as the activity does.
+     */
+    private boolean apply(HoldingChangedEvent event) {
+        return event.deleted
+            ? testObject.removeHolding(event.stockId)
+            : testObject.updateHolding(event.stock);
+    }
+
+    private AssetClass loadAssetAllocation() {
+        return new AssetAllocationService(context).loadAssetAllocation();
+    }
+
+    private void assertSameValues(AssetClass expected, AssetClass actual) {
+        assertNotNull(expected.getName(), actual);
+        assertEquals(expected.getName(), expected.getCurrentValue().toDouble(), actual.getCurrentValue().toDouble(), DELTA);
+        assertEquals(expected.getName(), expected.getValue().toDouble(), actual.getValue().toDouble(), DELTA);
+        assertEquals(expected.getName(), expected.getCurrentAllocation().toDouble(),
+            actual.getCurrentAllocation().toDouble(), DELTA);
+        assertEquals(expected.getName(), expected.getDifference().toDouble(), actual.getDifference().toDouble(), DELTA);
+
+        assertEquals(expected.getName(), expected.getChildren().size(), actual.getChildren().size());
+        for (AssetClass child : expected.getChildren()) {
+            assertSameValues(child, actual.getDirectChild(child.getName()));
+        }
+    }
+
+    private AssetClass getChild(AssetClass assetClass, String... names) {
+        for (String name : names) {
+            assetClass = assetClass.getDirectChild(name);
+        }
+        return assetClass;
+    }
+
+    private void createAllocation(Integer parentId, String name, String allocation, String symbol) {
+        AssetClass assetClass = AssetClass.create(name);
+        if (parentId != null) {
+            assetClass.setParentId(parentId);
+        }
+        assetClass.setAllocation(MoneyFactory.fromString(allocation));
+        new AssetClassRepository(context).insert(assetClass);
+
+        new AssetClassStockRepository(context).insert(AssetClassStock.create(assetClass.getId(), symbol));
+    }
+
+    private int createStock(String symbol, double shares, String price) {
+        Stock stock = Stock.create();
+        stock.setName(symbol);
+        stock.setSymbol(symbol);
+        stock.setNumberOfShares(shares);
+        stock.setCurrentPrice(MoneyFactory.fromString(price));
+        return stockRepo.add(stock);
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.moneymanagerex.android.tests;
+
+import android.database.MatrixCursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.money.manager.ex.BuildConfig;
+import com.money.manager.ex.database.CashFlowForecast;
+import com.money.manager.ex.database.TransactionSnapshot;
+import com.money.manager.ex.recurring.transactions.Recurrence;
+import com.money.manager.ex.servicelayer.RecurringTransactionService;
+import com.money.manager.ex.utils.MyDateTimeUtils;
+
+import org.joda.time.DateTime;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.moneymanagerex.android.testhelpers.UnitTestHelper;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the projected balances and the expansion of the recurring transactions.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class CashFlowForecastTests {
+
+    @Test
+    public void occurrencesMatchScheduledDates() {
+        RecurringTransactionService service = new RecurringTransactionService(UnitTestHelper.getContext());
+        Recurrence[] recurrences = new Recurrence[] { Recurrence.WEEKLY, Recurrence.MONTHLY,
+            Recurrence.QUARTERLY, Recurrence.ANNUALLY, Recurrence.EVERY_X_DAYS, Recurrence.EVERY_X_MONTHS,
+            Recurrence.MONTHLY_LAST_DAY, Recurrence.MONTHLY_LAST_BUSINESS_DAY };
+        String[] starts = new String[] { "2016-01-31", "2016-02-29", "2016-07-29" };
+
+        for (Recurrence recurrence : recurrences) {
+            for (String start : starts) {
+                int first = MyDateTimeUtils.toEpochDay(start);
+                int[] occurrences = CashFlowForecast.getOccurrences(recurrence, first, 3, first + 800);
+
+                DateTime date = MyDateTimeUtils.from(start);
+                for (int occurrence : occurrences) {
+                    assertEquals(recurrence + " from " + start, MyDateTimeUtils.toEpochDay(date), occurrence);
+                    date = service.getNextScheduledDate(date, recurrence, 3);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void paymentsLeft() {
+        int first = MyDateTimeUtils.toEpochDay("2016-01-15");
+
+        assertEquals(3, CashFlowForecast.getOccurrences(Recurrence.MONTHLY, first, 3, first + 365).length);
+        assertEquals(13, CashFlowForecast.getOccurrences(Recurrence.MONTHLY, first, 0, first + 366).length);
+        assertEquals(1, CashFlowForecast.getOccurrences(Recurrence.ONCE, first, 0, first + 365).length);
+        assertEquals(1, CashFlowForecast.getOccurrences(Recurrence.IN_X_DAYS, first, 10, first + 365).length);
+        // every 0 days does not move.
+        assertEquals(1, CashFlowForecast.getOccurrences(Recurrence.EVERY_X_DAYS, first, 0, first + 365).length);
+        assertEquals(0, CashFlowForecast.getOccurrences(Recurrence.WEEKLY, first, 0, first - 1).length);
+    }
+
+    @Test
+    public void projectsBalances() {
+        SQLiteDatabase db = SQLiteDatabase.create(null);
+        db.execSQL("CREATE TABLE ACCOUNTLIST_V1 (ACCOUNTID INTEGER PRIMARY KEY, INITIALBAL NUMERIC)");
+        db.execSQL("CREATE TABLE BILLSDEPOSITS_V1 (BDID INTEGER PRIMARY KEY, ACCOUNTID INTEGER, TOACCOUNTID INTEGER, " +
+            "TRANSCODE TEXT, TRANSAMOUNT NUMERIC, TOTRANSAMOUNT NUMERIC, STATUS TEXT, REPEATS INTEGER, " +
+            "NEXTOCCURRENCEDATE TEXT, NUMOCCURRENCES INTEGER)");
+        db.execSQL("INSERT INTO ACCOUNTLIST_V1 VALUES (1, 100), (2, 0)");
+        // monthly, 2 payments left
+        db.execSQL("INSERT INTO BILLSDEPOSITS_V1 VALUES (1, 1, -1, 'Withdrawal', 3, 0, '', 3, '2016-01-20', 2)");
+
+        MatrixCursor source = new MatrixCursor(new String[] { "TRANSID", "EPOCHDAY", "ACCOUNTID",
+            "TOACCOUNTID", "CATEGID", "SUBCATEGID", "PAYEEID", "TRANSTYPE", "STATUS", "AMOUNTUNITS",
+            "TOAMOUNTUNITS" });
+        source.addRow(new Object[] { 1, MyDateTimeUtils.toEpochDay("2016-01-01"), 1, -1, 1, -1, -1,
+            TransactionSnapshot.TYPE_WITHDRAWAL, "", -100000, 0 });
+        source.addRow(new Object[] { 2, MyDateTimeUtils.toEpochDay("2016-01-05"), 1, 2, -1, -1, -1,
+            TransactionSnapshot.TYPE_TRANSFER, "R", -200000, 200000 });
+        source.addRow(new Object[] { 3, MyDateTimeUtils.toEpochDay("2016-01-05"), 1, -1, 1, -1, -1,
+            TransactionSnapshot.TYPE_DEPOSIT, "V", 50000, 0 });
+        source.addRow(new Object[] { 4, MyDateTimeUtils.toEpochDay("2016-02-01"), 1, -1, 1, -1, -1,
+            TransactionSnapshot.TYPE_DEPOSIT, null, 70000, 0 });
+        // after the period
+        source.addRow(new Object[] { 5, MyDateTimeUtils.toEpochDay("2016-06-01"), 1, -1, 1, -1, -1,
+            TransactionSnapshot.TYPE_WITHDRAWAL, "", -900000, 0 });
+        TransactionSnapshot snapshot = TransactionSnapshot.read(source);
+
+        int start = MyDateTimeUtils.toEpochDay("2016-01-10");
+        CashFlowForecast forecast = CashFlowForecast.read(db, snapshot, start, start + 90);
+        db.close();
+
+        assertEquals(700000, forecast.getBalance(1, start));
+        assertEquals(200000, forecast.getBalance(2, start));
+        assertEquals(670000, forecast.getBalance(1, MyDateTimeUtils.toEpochDay("2016-01-20")));
+        assertEquals(740000, forecast.getBalance(1, MyDateTimeUtils.toEpochDay("2016-02-01")));
+        assertEquals(710000, forecast.getBalance(1, MyDateTimeUtils.toEpochDay("2016-02-20")));
+        assertEquals(710000, forecast.getBalance(1, start + 90));
+        assertEquals(670000, forecast.getMinimumBalance(1));
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.moneymanagerex.android.tests;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import com.money.manager.ex.BuildConfig;
+import com.money.manager.ex.Constants;
+import com.money.manager.ex.database.CategoryHierarchy;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests for the cached category names.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class CategoryHierarchyTests {
+
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() {
+        db = SQLiteDatabase.create(null);
+        db.execSQL("CREATE TABLE CATEGORY_V1 (CATEGID INTEGER PRIMARY KEY, CATEGNAME TEXT)");
+        db.execSQL("CREATE TABLE SUBCATEGORY_V1 (SUBCATEGID INTEGER PRIMARY KEY, SUBCATEGNAME TEXT, CATEGID INTEGER)");
+        db.execSQL("INSERT INTO CATEGORY_V1 VALUES (1, 'Food')");
+        db.execSQL("INSERT INTO SUBCATEGORY_V1 VALUES (10, 'Groceries', 1)");
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void resolvesNamesAndPaths() {
+        CategoryHierarchy hierarchy = CategoryHierarchy.read(db);
+
+        assertEquals("Food", hierarchy.getCategoryName(1));
+        assertEquals("Groceries", hierarchy.getSubcategoryName(10));
+        assertEquals(1, hierarchy.getCategoryId(10));
+        assertEquals("Food:Groceries", hierarchy.getCategSubName(1, 10));
+        assertEquals("Food", hierarchy.getCategSubName(1, Constants.NOT_SET));
+    }
+
+    @Test
+    public void missingCategories() {
+        CategoryHierarchy hierarchy = CategoryHierarchy.read(db);
+
+        assertNull(hierarchy.getCategoryName(2));
+        assertNull(hierarchy.getCategoryName(null));
+        assertEquals(Constants.NOT_SET, hierarchy.getCategoryId(20));
+        assertNull(hierarchy.getCategSubName(Constants.NOT_SET, Constants.NOT_SET));
+    }
+}
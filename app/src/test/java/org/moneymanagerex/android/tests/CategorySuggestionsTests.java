@@ -0,0 +1,195 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.moneymanagerex.android.tests;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.money.manager.ex.BuildConfig;
+import com.money.manager.ex.core.TransactionTypes;
+import com.money.manager.ex.database.CategorySuggestions;
+import com.money.manager.ex.database.ChangeCounter;
+import com.money.manager.ex.database.MobileDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.moneymanagerex.android.testhelpers.UnitTestHelper;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the category suggestions learned from the transactions.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class CategorySuggestionsTests {
+
+    private SQLiteDatabase db;
+    private CategorySuggestions testObject;
+
+    @Before
+    public void setUp() {
+        db = SQLiteDatabase.create(null);
+        MobileDatabase.attach(db, ":memory:");
+        db.execSQL("CREATE TABLE CHECKINGACCOUNT_V1 (TRANSID INTEGER PRIMARY KEY, PAYEEID INTEGER, " +
+            "TRANSCODE TEXT, TRANSAMOUNT NUMERIC, NOTES TEXT, CATEGID INTEGER, SUBCATEGID INTEGER)");
+        db.execSQL("CREATE TABLE CATEGORY_V1 (CATEGID INTEGER PRIMARY KEY, CATEGNAME TEXT)");
+        db.execSQL("CREATE TABLE SUBCATEGORY_V1 (SUBCATEGID INTEGER PRIMARY KEY, SUBCATEGNAME TEXT, CATEGID INTEGER)");
+        db.execSQL("CREATE TABLE SPLITTRANSACTIONS_V1 (SPLITTRANSID INTEGER PRIMARY KEY, TRANSID INTEGER)");
+        db.execSQL("CREATE TABLE PAYEE_V1 (PAYEEID INTEGER PRIMARY KEY, PAYEENAME TEXT)");
+        ChangeCounter.verify(db);
+        db.execSQL("INSERT INTO CATEGORY_V1 VALUES (1, 'Food')");
+        db.execSQL("INSERT INTO CATEGORY_V1 VALUES (2, 'Home')");
+        db.execSQL("INSERT INTO SUBCATEGORY_V1 VALUES (10, 'Groceries', 1)");
+        db.execSQL("INSERT INTO SUBCATEGORY_V1 VALUES (11, 'Dining out', 1)");
+
+        // the supermarket: groceries, and the odd household item.
+        insert(1, 5, "Withdrawal", 52.10, "weekly shopping", 1, 10);
+        insert(2, 5, "Withdrawal", 48.70, null, 1, 10);
+        insert(3, 5, "Withdrawal", 55.00, "weekly shopping", 1, 10);
+        insert(4, 5, "Withdrawal", 9.99, "light bulbs", 2, -1);
+        insert(5, 7, "Withdrawal", 30.00, "dinner with friends", 1, 11);
+        // not learned
+        insert(6, 5, "Transfer", 50.00, null, 2, -1);
+        insert(7, 5, "Withdrawal", 50.00, null, -1, -1);
+
+        testObject = new CategorySuggestions(UnitTestHelper.getContext());
+        assertFalse(testObject.verify(db));
+        testObject.rebuild(db);
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void suggestsFromPayeeAndAmount() {
+        CategorySuggestions.Suggestion suggestion = testObject.suggest(db, 5, TransactionTypes.Withdrawal, 50.0, null);
+
+        assertNotNull(suggestion);
+        assertEquals(1, suggestion.getCategoryId());
+        assertEquals(10, suggestion.getSubcategoryId());
+
+        suggestion = testObject.suggest(db, 5, TransactionTypes.Withdrawal, 9.99, null);
+
+        assertNotNull(suggestion);
+        assertEquals(2, suggestion.getCategoryId());
+    }
+
+    @Test
+    public void suggestsFromNotes() {
+        CategorySuggestions.Suggestion suggestion = testObject.suggest(db, -1, TransactionTypes.Withdrawal, 0,
+            "Dinner at the corner");
+
+        assertNotNull(suggestion);
+        assertEquals(11, suggestion.getSubcategoryId());
+    }
+
+    @Test
+    public void amountAloneIsNotEnough() {
+        assertNull(testObject.suggest(db, -1, TransactionTypes.Withdrawal, 50.0, null));
+        assertNull(testObject.suggest(db, -1, TransactionTypes.Withdrawal, 50.0, "a 12"));
+    }
+
+    @Test
+    public void noSuggestions() {
+        assertNull(testObject.suggest(db, 5, TransactionTypes.Transfer, 50.0, null));
+        assertNull(testObject.suggest(db, 99, TransactionTypes.Deposit, 1000.0, "salary"));
+
+        // deleted category
+        db.execSQL("DELETE FROM CATEGORY_V1 WHERE CATEGID = 2");
+        CategorySuggestions.Suggestion suggestion = testObject.suggest(db, 5, TransactionTypes.Withdrawal, 9.99, null);
+        assertNotNull(suggestion);
+        assertEquals(1, suggestion.getCategoryId());
+    }
+
+    @Test
+    public void incrementalUpdateMatchesRebuild() {
+        List<Integer> ids = Arrays.asList(2, 4, 8);
+        List<CategorySuggestions.Observation> before = testObject.load(db, ids);
+
+        db.execSQL("UPDATE CHECKINGACCOUNT_V1 SET CATEGID = 2, SUBCATEGID = -1, NOTES = 'garden' WHERE TRANSID = 2");
+        db.execSQL("DELETE FROM CHECKINGACCOUNT_V1 WHERE TRANSID = 4");
+        insert(8, 7, "Withdrawal", 25.00, "lunch", 1, 11);
+
+        testObject.update(db, before, testObject.load(db, ids));
+        String incremental = dump();
+
+        testObject.rebuild(db);
+
+        assertEquals(dump(), incremental);
+    }
+
+    @Test
+    public void verifyOnlyChecksTheSync() {
+        db.execSQL("DELETE FROM " + CategorySuggestions.TABLE_NAME);
+
+        // no change of the transactions since the rebuild
+        assertTrue(testObject.verify(db));
+        assertEquals("", dump());
+
+        // a change made elsewhere
+        insert(8, 7, "Withdrawal", 25.00, "lunch", 1, 11);
+        assertFalse(testObject.verify(db));
+        assertEquals("", dump());
+        // no suggestions until the rebuild, the payee default applies.
+        assertNull(testObject.suggest(db, 5, TransactionTypes.Withdrawal, 50.0, null));
+
+        testObject.rebuild(db);
+
+        assertTrue(CategorySuggestions.isInSync());
+        assertNotNull(testObject.suggest(db, 5, TransactionTypes.Withdrawal, 50.0, null));
+    }
+
+    @Test
+    public void amountBuckets() {
+        assertEquals(0, CategorySuggestions.getAmountBucket(0));
+        assertEquals(CategorySuggestions.getAmountBucket(12.5), CategorySuggestions.getAmountBucket(-14));
+        assertEquals(CategorySuggestions.getAmountBucket(12.5) + 1, CategorySuggestions.getAmountBucket(20));
+    }
+
+    private void insert(int id, int payeeId, String code, double amount, String notes, int categoryId,
+                        int subcategoryId) {
+        db.execSQL("INSERT INTO CHECKINGACCOUNT_V1 VALUES (?, ?, ?, ?, ?, ?, ?)",
+            new Object[] { id, payeeId, code, amount, notes, categoryId, subcategoryId });
+    }
+
+    private String dump() {
+        StringBuilder result = new StringBuilder();
+        Cursor cursor = db.rawQuery("SELECT FEATURE, CATEGID, SUBCATEGID, HITS FROM " +
+            CategorySuggestions.TABLE_NAME + " ORDER BY 1, 2, 3", null);
+        while (cursor.moveToNext()) {
+            result.append(cursor.getString(0)).append(',').append(cursor.getInt(1)).append(',')
+                .append(cursor.getInt(2)).append(',').append(cursor.getInt(3)).append('\n');
+        }
+        cursor.close();
+        return result.toString();
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.moneymanagerex.android.tests;
+
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.money.manager.ex.BuildConfig;
+import com.money.manager.ex.database.ChangeCounter;
+import com.money.manager.ex.database.MobileDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the change counter that keeps the derived tables in sync.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class ChangeCounterTests {
+
+    private static final String NAME = "DERIVED";
+
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() {
+        db = SQLiteDatabase.create(null);
+        MobileDatabase.attach(db, ":memory:");
+        db.execSQL("CREATE TABLE CHECKINGACCOUNT_V1 (TRANSID INTEGER PRIMARY KEY, TRANSAMOUNT NUMERIC)");
+        db.execSQL("CREATE TABLE SPLITTRANSACTIONS_V1 (SPLITTRANSID INTEGER PRIMARY KEY, TRANSID INTEGER)");
+        db.execSQL("CREATE TABLE PAYEE_V1 (PAYEEID INTEGER PRIMARY KEY, PAYEENAME TEXT)");
+        db.execSQL("CREATE TABLE CATEGORY_V1 (CATEGID INTEGER PRIMARY KEY, CATEGNAME TEXT)");
+        db.execSQL("CREATE TABLE SUBCATEGORY_V1 (SUBCATEGID INTEGER PRIMARY KEY, SUBCATEGNAME TEXT)");
+
+        ChangeCounter.verify(db);
+        ChangeCounter.setInSync(db, NAME);
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void countsChangesOfTheSourceTables() {
+        long before = ChangeCounter.get(db);
+
+        db.execSQL("INSERT INTO CHECKINGACCOUNT_V1 VALUES (1, 10)");
+        db.execSQL("UPDATE PAYEE_V1 SET PAYEENAME = 'x'");
+        db.execSQL("INSERT INTO CATEGORY_V1 VALUES (1, 'Food')");
+        db.execSQL("DELETE FROM CHECKINGACCOUNT_V1");
+
+        assertEquals(before + 3, ChangeCounter.get(db));
+        assertFalse(ChangeCounter.isInSync(db, NAME));
+    }
+
+    @Test
+    public void advanceKeepsInSync() {
+        long before = ChangeCounter.get(db);
+        db.execSQL("INSERT INTO CHECKINGACCOUNT_V1 VALUES (1, 10)");
+
+        ChangeCounter.advance(db, before);
+
+        assertTrue(ChangeCounter.isInSync(db, NAME));
+    }
+
+    @Test
+    public void dirtyStaysOutOfSync() {
+        long before = ChangeCounter.get(db);
+        db.execSQL("INSERT INTO CHECKINGACCOUNT_V1 VALUES (1, 10)");
+
+        ChangeCounter.setDirty(db, NAME);
+        ChangeCounter.advance(db, before);
+        assertFalse(ChangeCounter.isInSync(db, NAME));
+
+        // the next change does not hide the failure either.
+        before = ChangeCounter.get(db);
+        db.execSQL("INSERT INTO CHECKINGACCOUNT_V1 VALUES (2, 10)");
+        ChangeCounter.advance(db, before);
+        assertFalse(ChangeCounter.isInSync(db, NAME));
+
+        ChangeCounter.setInSync(db, NAME);
+        assertTrue(ChangeCounter.isInSync(db, NAME));
+    }
+
+    @Test
+    public void missingTriggersMarkOutOfSync() {
+        ChangeCounter.verify(db);
+        assertTrue(ChangeCounter.isInSync(db, NAME));
+
+        // i.e. the table was recreated by the desktop app.
+        db.execSQL("DROP TRIGGER MOBILE_CHECKINGACCOUNT_V1_CHANGECOUNT_UPDATE");
+        ChangeCounter.verify(db);
+
+        assertFalse(ChangeCounter.isInSync(db, NAME));
+    }
+
+    @Test
+    public void derivedTablesStayOutOfTheDatabaseFile() {
+        assertEquals(0, DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM main.sqlite_master " +
+            "WHERE name = ?", new String[] { ChangeCounter.SYNC_TABLE_NAME }));
+        assertEquals(1, DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM " + MobileDatabase.SCHEMA +
+            ".sqlite_master WHERE name = ?", new String[] { ChangeCounter.SYNC_TABLE_NAME }));
+    }
+
+    @Test
+    public void differentDatabaseFileMarksOutOfSync() {
+        // i.e. another file was copied over the same path.
+        db.execSQL("UPDATE main." + ChangeCounter.TABLE_NAME + " SET GENERATION = GENERATION + 1 " +
+            "WHERE NAME = '#'");
+        ChangeCounter.verify(db);
+
+        assertFalse(ChangeCounter.isInSync(db, NAME));
+    }
+}
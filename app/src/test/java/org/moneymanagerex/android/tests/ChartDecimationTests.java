@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.moneymanagerex.android.tests;
+
+import com.money.manager.ex.utils.ChartDecimation;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the chart series decimation.
+ */
+public class ChartDecimationTests {
+
+    @Test
+    public void keepsAllPointsBelowThreshold() {
+        double[] values = { 1, 5, 2, 8 };
+
+        int[] actual = ChartDecimation.largestTriangleThreeBuckets(values, 0, values.length, 10);
+
+        assertArrayEquals(new int[] { 0, 1, 2, 3 }, actual);
+    }
+
+    @Test
+    public void keepsEndsAndPeaks() {
+        double[] values = new double[1000];
+        values[500] = 100;
+
+        int[] actual = ChartDecimation.largestTriangleThreeBuckets(values, 0, values.length, 50);
+
+        assertEquals(50, actual.length);
+        assertEquals(0, actual[0]);
+        assertEquals(999, actual[actual.length - 1]);
+        boolean peak = false;
+        for (int i = 1; i < actual.length; i++) {
+            assertTrue(actual[i] > actual[i - 1]);
+            if (actual[i] == 500) peak = true;
+        }
+        assertTrue(peak);
+    }
+
+    @Test
+    public void mergeReturnsSortedUnion() {
+        int[] actual = ChartDecimation.merge(new int[] { 0, 3, 7 }, new int[] { 1, 3, 9 });
+
+        assertArrayEquals(new int[] { 0, 1, 3, 7, 9 }, actual);
+    }
+}
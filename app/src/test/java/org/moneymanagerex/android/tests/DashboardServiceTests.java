@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.moneymanagerex.android.tests;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.net.Uri;
+
+import com.money.manager.ex.BuildConfig;
+import com.money.manager.ex.datalayer.AccountRepository;
+import com.money.manager.ex.datalayer.AccountTransactionRepository;
+import com.money.manager.ex.datalayer.CategoryRepository;
+import com.money.manager.ex.datalayer.PayeeRepository;
+import com.money.manager.ex.datalayer.RecurringTransactionRepository;
+import com.money.manager.ex.servicelayer.DashboardService;
+import com.money.manager.ex.utils.MyDateTimeUtils;
+import com.money.manager.ex.viewmodels.DashboardSnapshot;
+
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.moneymanagerex.android.testhelpers.UnitTestHelper;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the data of the Dashboard panels.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class DashboardServiceTests {
+
+    private static final double DELTA = 0.001;
+
+    private Context context;
+    private DashboardService testObject;
+    private DateTime today;
+    private int accountId;
+
+    @Before
+    public void setup() {
+        UnitTestHelper.setupContentProvider();
+        context = UnitTestHelper.getContext();
+        testObject = new DashboardService(context);
+        today = MyDateTimeUtils.today();
+
+        ContentValues values = new ContentValues();
+        values.put("ACCOUNTNAME", "Checking");
+        values.put("ACCOUNTTYPE", "Checking");
+        values.put("STATUS", "Open");
+        values.put("FAVORITEACCT", "TRUE");
+        values.put("CURRENCYID", 1);
+        accountId = insert(new AccountRepository(context).getUri(), values);
+    }
+
+    @After
+    public void tearDown() {
+        UnitTestHelper.teardownDatabase();
+    }
+
+    @Test
+    public void emptyDatabase() {
+        DashboardSnapshot snapshot = testObject.loadSnapshot();
+
+        assertEquals(today.getYear(), snapshot.getYear());
+        assertEquals(today.getMonthOfYear(), snapshot.getMonth());
+        assertFalse(snapshot.hasCurrentMonth());
+        assertTrue(snapshot.getTopWithdrawals().isEmpty());
+        assertTrue(snapshot.getTopPayees().isEmpty());
+        assertTrue(snapshot.getUpcomingBills().isEmpty());
+    }
+
+    @Test
+    public void incomeAndExpensesOfTheCurrentMonth() {
+        insertTransaction("Deposit", 1000, -1, -1, today, "");
+        insertTransaction("Withdrawal", 40, -1, -1, today, "");
+        insertTransaction("Withdrawal", 99, -1, -1, today, "V");
+        insertTransaction("Transfer", 50, -1, -1, today, "");
+        // previous month
+        insertTransaction("Withdrawal", 70, -1, -1, today.minusMonths(1).dayOfMonth().withMinimumValue(), "");
+
+        DashboardSnapshot snapshot = testObject.loadSnapshot();
+
+        assertTrue(snapshot.hasCurrentMonth());
+        assertEquals(1000, snapshot.getIncome(), DELTA);
+        assertEquals(-40, snapshot.getExpenses(), DELTA);
+    }
+
+    @Test
+    public void topWithdrawalsByCategory() {
+        int food = insertCategory("Food");
+        int home = insertCategory("Home");
+        int salary = insertCategory("Salary");
+        insertTransaction("Withdrawal", 10, -1, food, today, "");
+        insertTransaction("Withdrawal", 15, -1, food, today.minusDays(3), "");
+        insertTransaction("Withdrawal", 100, -1, home, today.minusDays(10), "");
+        // only the withdrawals are counted
+        insertTransaction("Deposit", 5, -1, food, today, "");
+        insertTransaction("Deposit", 2000, -1, salary, today, "");
+        // older than 30 days
+        insertTransaction("Withdrawal", 500, -1, food, today.minusDays(40), "");
+
+        List<DashboardSnapshot.Item> items = testObject.loadSnapshot().getTopWithdrawals();
+
+        assertEquals(2, items.size());
+        assertEquals("Home", items.get(0).getName());
+        assertEquals(-100, items.get(0).getTotal(), DELTA);
+        assertEquals(1, items.get(0).getCount());
+        assertEquals("Food", items.get(1).getName());
+        assertEquals(-25, items.get(1).getTotal(), DELTA);
+        assertEquals(2, items.get(1).getCount());
+    }
+
+    @Test
+    public void topPayees() {
+        int market = insertPayee("Market");
+        int employer = insertPayee("Employer");
+        insertTransaction("Withdrawal", 30, market, -1, today, "");
+        insertTransaction("Withdrawal", 20, market, -1, today.minusDays(1), "");
+        insertTransaction("Deposit", 2000, employer, -1, today, "");
+        // transfers are not counted
+        insertTransaction("Transfer", 5000, market, -1, today, "");
+
+        List<DashboardSnapshot.Item> items = testObject.loadSnapshot().getTopPayees();
+
+        assertEquals(2, items.size());
+        assertEquals("Employer", items.get(0).getName());
+        assertEquals(2000, items.get(0).getTotal(), DELTA);
+        assertEquals("Market", items.get(1).getName());
+        assertEquals(50, items.get(1).getTotal(), DELTA);
+        assertEquals(2, items.get(1).getCount());
+    }
+
+    @Test
+    public void upcomingBills() {
+        int payee = insertPayee("Utility");
+        insertBill(payee, 60, today.plusDays(3));
+        insertBill(payee, 80, today.plusDays(DashboardService.UPCOMING_DAYS + 10));
+
+        List<DashboardSnapshot.Bill> bills = testObject.loadSnapshot().getUpcomingBills();
+
+        assertEquals(1, bills.size());
+        assertEquals("Utility", bills.get(0).getPayee());
+        assertEquals(-60, bills.get(0).getAmount(), DELTA);
+    }
+
+    private int insert(Uri uri, ContentValues values) {
+        Uri result = context.getContentResolver().insert(uri, values);
+        return Integer.parseInt(result.getLastPathSegment());
+    }
+
+    private int insertCategory(String name) {
+        ContentValues values = new ContentValues();
+        values.put("CATEGNAME", name);
+        return insert(new CategoryRepository(context).getUri(), values);
+    }
+
+    private int insertPayee(String name) {
+        ContentValues values = new ContentValues();
+        values.put("PAYEENAME", name);
+        return insert(new PayeeRepository(context).getUri(), values);
+    }
+
+    private void insertTransaction(String code, double amount, int payeeId, int categoryId, DateTime date,
+                                   String status) {
+        ContentValues values = new ContentValues();
+        values.put("ACCOUNTID", accountId);
+        values.put("TOACCOUNTID", "Transfer".equals(code) ? accountId : -1);
+        values.put("PAYEEID", payeeId);
+        values.put("TRANSCODE", code);
+        values.put("TRANSAMOUNT", amount);
+        values.put("TOTRANSAMOUNT", amount);
+        values.put("STATUS", status);
+        values.put("CATEGID", categoryId);
+        values.put("SUBCATEGID", -1);
+        values.put("TRANSDATE", MyDateTimeUtils.getIsoStringFrom(date));
+        insert(new AccountTransactionRepository(context).getUri(), values);
+    }
+
+    private void insertBill(int payeeId, double amount, DateTime nextOccurrence) {
+        ContentValues values = new ContentValues();
+        values.put("ACCOUNTID", accountId);
+        values.put("TOACCOUNTID", -1);
+        values.put("PAYEEID", payeeId);
+        values.put("TRANSCODE", "Withdrawal");
+        values.put("TRANSAMOUNT", amount);
+        values.put("CATEGID", -1);
+        values.put("SUBCATEGID", -1);
+        values.put("REPEATS", 4);
+        values.put("NUMOCCURRENCES", -1);
+        values.put("NEXTOCCURRENCEDATE", MyDateTimeUtils.getIsoStringFrom(nextOccurrence));
+        insert(new RecurringTransactionRepository(context).getUri(), values);
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.moneymanagerex.android.tests;
+
+import com.money.manager.ex.BuildConfig;
+import com.money.manager.ex.Constants;
+import com.money.manager.ex.currency.ExchangeRateEngine;
+import com.money.manager.ex.domainmodel.Currency;
+import com.money.manager.ex.domainmodel.CurrencyHistory;
+import com.money.manager.ex.utils.MyDateTimeUtils;
+
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.moneymanagerex.android.testhelpers.UnitTestHelper;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import info.javaperformance.money.MoneyFactory;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the exchange rate engine.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class ExchangeRateEngineTests {
+
+    private static final double DELTA = 0.00001;
+
+    private ExchangeRateEngine testObject;
+
+    @Before
+    public void setup() {
+        List<Currency> currencies = new ArrayList<>();
+        currencies.add(createCurrency(1, 1.0));
+        currencies.add(createCurrency(2, 2.0));
+        currencies.add(createCurrency(3, 0.00000007));
+
+
+        List<CurrencyHistory> history = new ArrayList<>();
+        history.add(createHistory(2, MyDateTimeUtils.from(2016, 3, 1), 1.5));
+        history.add(createHistory(2, MyDateTimeUtils.from(2016, 6, 1), 1.8));
+
+        testObject = new ExchangeRateEngine(UnitTestHelper.getContext()).load(currencies, history);
+    }
+
+    @Test
+    public void currentRates() {
+        assertEquals(20.0, testObject.convert(MoneyFactory.fromString("10"), 2, 1).toDouble(), DELTA);
+        assertEquals(5.0, testObject.convert(MoneyFactory.fromString("10"), 1, 2).toDouble(), DELTA);
+    }
+
+    @Test
+    public void historicalRateOnOrBeforeTheDate() {
+        assertEquals(15.0, testObject.convert(MoneyFactory.fromString("10"), 2, 1,
+            MyDateTimeUtils.from(2016, 5, 31)).toDouble(), DELTA);
+        assertEquals(18.0, testObject.convert(MoneyFactory.fromString("10"), 2, 1,
+            MyDateTimeUtils.from(2016, 6, 1)).toDouble(), DELTA);
+        // the target currency at its rate on the date.
+        assertEquals(1 / 1.8, testObject.getRate(1, 2, MyDateTimeUtils.toEpochDay(2016, 12, 31)).doubleValue(),
+            DELTA);
+    }
+
+    @Test
+    public void earliestRateBeforeTheHistory() {
+        assertEquals(15.0, testObject.convert(MoneyFactory.fromString("10"), 2, 1,
+            MyDateTimeUtils.from(2015, 1, 1)).toDouble(), DELTA);
+    }
+
+    @Test
+    public void currentRateWithoutHistory() {
+        // the source currency has no history, the target one has.
+        assertEquals(0.00000007 / 1.5, testObject.getRate(3, 2, MyDateTimeUtils.toEpochDay(2016, 1, 1))
+            .doubleValue(), 1e-18);
+        assertEquals(1, testObject.getIntervalCount(3));
+        assertEquals(0, testObject.getRate(3, 1).compareTo(testObject.getIntervalRate(3, 1, 0)));
+    }
+
+    @Test
+    public void intervalsFollowTheHistory() {
+        assertEquals(2, testObject.getIntervalCount(2));
+        assertEquals(0, testObject.getInterval(2, MyDateTimeUtils.toEpochDay(2015, 1, 1)));
+        assertEquals(0, testObject.getInterval(2, MyDateTimeUtils.toEpochDay(2016, 5, 31)));
+        assertEquals(1, testObject.getInterval(2, MyDateTimeUtils.toEpochDay(2016, 6, 1)));
+
+        assertEquals(0, new BigDecimal("1.5").compareTo(testObject.getIntervalRate(2, 1, 0)));
+        assertEquals(0, new BigDecimal("1.8").compareTo(testObject.getIntervalRate(2, 1, 1)));
+    }
+
+    @Test
+    public void smallCrossRatesKeepTheirPrecision() {
+        // 0.00000007 / 2 would be rounded to 0.00000004 with 8 decimals.
+        assertEquals(0, new BigDecimal("0.000000035").compareTo(testObject.getRate(3, 2)));
+        assertEquals(35.0, testObject.convert(MoneyFactory.fromString("1000000000"), 3, 2).toDouble(), DELTA);
+    }
+
+    @Test
+    public void amountIsKeptWithoutCurrency() {
+        assertEquals(10.0, testObject.convert(MoneyFactory.fromString("10"), Constants.NOT_SET, 1).toDouble(), DELTA);
+        assertEquals(10.0, testObject.convert(MoneyFactory.fromString("10"), 2, Constants.NOT_SET).toDouble(), DELTA);
+    }
+
+    private Currency createCurrency(int id, double rate) {
+        Currency currency = new Currency();
+        currency.setCurrencyid(id);
+        currency.setConversionRate(rate);
+        return currency;
+    }
+
+    private CurrencyHistory createHistory(int currencyId, DateTime date, double rate) {
+        CurrencyHistory record = new CurrencyHistory();
+        record.setCurrencyId(currencyId);
+        record.setDate(date);
+        record.setValue(MoneyFactory.fromDouble(rate));
+        return record;
+    }
+}
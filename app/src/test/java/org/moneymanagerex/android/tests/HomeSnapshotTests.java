@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.moneymanagerex.android.tests;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+
+import com.money.manager.ex.BuildConfig;
+import com.money.manager.ex.MoneyManagerApplication;
+import com.money.manager.ex.home.HomeSnapshot;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.moneymanagerex.android.testhelpers.UnitTestHelper;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the stored state of the home screen.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class HomeSnapshotTests {
+
+    private Context context;
+
+    @Before
+    public void setup() {
+        context = UnitTestHelper.getContext();
+    }
+
+    @Test
+    public void restoresTheStoredValues() throws Exception {
+        HomeSnapshot snapshot = new HomeSnapshot(MoneyManagerApplication.getDatabasePath(context));
+        MatrixCursor accounts = new MatrixCursor(new String[] { "ACCOUNTID", "ACCOUNTNAME", "TOTAL" });
+        accounts.addRow(new Object[] { 1L, "Checking", 125.5 });
+        accounts.addRow(new Object[] { 2L, null, -3.25 });
+        snapshot.setAccounts(accounts);
+        snapshot.setIncomeExpenses(201610, 1000, -400);
+
+        snapshot.write(context);
+        HomeSnapshot actual = HomeSnapshot.load(context);
+
+        assertNotNull(actual);
+        assertTrue(actual.hasIncomeExpenses(201610));
+        assertFalse(actual.hasIncomeExpenses(201611));
+        assertEquals(1000, actual.getIncome(), 0);
+        assertEquals(-400, actual.getExpenses(), 0);
+
+        Cursor rows = actual.getAccounts();
+        assertEquals(2, rows.getCount());
+        rows.moveToFirst();
+        assertEquals(1, rows.getLong(0));
+        assertEquals("Checking", rows.getString(1));
+        assertEquals(125.5, rows.getDouble(2), 0);
+        rows.moveToNext();
+        assertTrue(rows.isNull(1));
+        assertEquals(-3.25, rows.getDouble(2), 0);
+    }
+
+    @Test
+    public void ignoresTheSnapshotOfAnotherDatabase() throws Exception {
+        HomeSnapshot snapshot = new HomeSnapshot("/another/database.mmb");
+        snapshot.setAccounts(new MatrixCursor(new String[] { "ACCOUNTID" }));
+
+        snapshot.write(context);
+
+        assertNull(HomeSnapshot.load(context));
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.moneymanagerex.android.tests;
+
+import android.database.MatrixCursor;
+
+import com.money.manager.ex.BuildConfig;
+import com.money.manager.ex.database.QueryAllData;
+import com.money.manager.ex.search.IncrementalSearch;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.HashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the search-as-you-type refinement.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class IncrementalSearchTests {
+
+    @Test
+    public void narrowedTextIsFilteredInMemory() {
+        MatrixCursor result = new MatrixCursor(new String[] { QueryAllData.ID, QueryAllData.Notes });
+        result.addRow(new Object[] { 1, "Coffee at the shop" });
+        result.addRow(new Object[] { 2, "Coins" });
+        result.addRow(new Object[] { 3, "Lunch" });
+
+        HashMap<Integer, String[]> documents = new HashMap<>();
+        documents.put(1, new String[] { "Coffee at the shop", "Starbucks", "Food Dining", "" });
+        documents.put(2, new String[] { "Coins", "Bank", "Transfer", "" });
+        documents.put(3, new String[] { "Lunch", "Corner Cafe", "Food Dining", "CHK-12" });
+
+        IncrementalSearch search = new IncrementalSearch();
+        search.store("co", result, documents, search.getGeneration());
+
+        assertTrue(search.canRefine("cof"));
+        assertFalse(search.canRefine("c"));
+        assertFalse(search.canRefine("ba"));
+
+        MatrixCursor refined = search.refine("co din");
+        assertEquals(2, refined.getCount());
+
+        refined = search.refine("co dining chk-1");
+        assertEquals(1, refined.getCount());
+        refined.moveToFirst();
+        assertEquals(3, refined.getInt(0));
+    }
+
+    @Test
+    public void resultReadBeforeResetIsNotKept() {
+        MatrixCursor result = new MatrixCursor(new String[] { QueryAllData.ID });
+        result.addRow(new Object[] { 1 });
+
+        IncrementalSearch search = new IncrementalSearch();
+        int generation = search.getGeneration();
+        search.reset();
+        search.store("a", result, new HashMap<Integer, String[]>(), generation);
+
+        assertFalse(search.canRefine("ab"));
+    }
+}
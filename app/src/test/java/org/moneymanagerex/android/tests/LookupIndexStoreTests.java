@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.moneymanagerex.android.tests;
+
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+
+import com.money.manager.ex.BuildConfig;
+import com.money.manager.ex.core.TransactionTypes;
+import com.money.manager.ex.database.LookupIndex;
+import com.money.manager.ex.database.LookupIndexStore;
+import com.money.manager.ex.database.TableChangeListener;
+import com.money.manager.ex.datalayer.AccountTransactionRepository;
+import com.money.manager.ex.datalayer.SplitCategoriesRepository;
+import com.money.manager.ex.datalayer.SubcategoryRepository;
+import com.money.manager.ex.domainmodel.AccountTransaction;
+import com.money.manager.ex.domainmodel.SplitCategory;
+import com.money.manager.ex.domainmodel.Subcategory;
+import com.money.manager.ex.servicelayer.CategoryService;
+import com.money.manager.ex.servicelayer.PayeeService;
+
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.moneymanagerex.android.testhelpers.UnitTestHelper;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import info.javaperformance.money.MoneyFactory;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the lookup indexes of the pickers, read from the database and kept up to date on
+ * inserts.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class LookupIndexStoreTests {
+
+    private static final int ACCOUNT_ID = 1;
+
+    private Context context;
+    private LookupIndexStore testObject;
+
+    @Before
+    public void setup() {
+        UnitTestHelper.setupContentProvider();
+        context = UnitTestHelper.getContext();
+        testObject = LookupIndexStore.getInstance();
+        invalidate();
+    }
+
+    @After
+    public void tearDown() {
+        invalidate();
+        UnitTestHelper.teardownDatabase();
+    }
+
+    @Test
+    public void countsTheUsageOfNewTransactions() {
+        PayeeService payees = new PayeeService(context);
+        int bar = payees.createNew("Bar").getId();
+        int cafe = payees.createNew("Café").getId();
+        CategoryService categories = new CategoryService(context);
+        int food = categories.createNew("Food");
+        int groceries = createSubcategory(food, "Groceries");
+        int restaurants = createSubcategory(food, "Restaurants");
+        int home = categories.createNew("Home");
+        insert(bar, food, groceries);
+
+        // rows: Bar, Café
+        assertArrayEquals(new Integer[] { 0, 1 }, testObject.loadPayees(context).find(null, true));
+        // rows: Food, Food : Groceries, Food : Restaurants, Home
+        assertArrayEquals(new Integer[] { 0, 1, 2, 3 }, testObject.loadCategories(context).find(null, true));
+
+        insert(cafe, home, -1);
+        insert(cafe, home, -1);
+        // split, counted by the categories of the splits only
+        int split = insert(cafe, -1, -1);
+        insertSplit(split, food, restaurants);
+        insertSplit(split, food, restaurants);
+
+        LookupIndex payeeIndex = testObject.loadPayees(context);
+        LookupIndex categoryIndex = testObject.loadCategories(context);
+        assertArrayEquals(new Integer[] { 1, 0 }, payeeIndex.find(null, true));
+        // Food 3, Restaurants 2, Groceries 1, Home 2
+        assertArrayEquals(new Integer[] { 0, 2, 1, 3 }, categoryIndex.find(null, true));
+
+        // the same as read from the database
+        invalidate();
+        assertArrayEquals(payeeIndex.find(null, true), testObject.loadPayees(context).find(null, true));
+        assertArrayEquals(categoryIndex.find(null, true), testObject.loadCategories(context).find(null, true));
+    }
+
+    @Test
+    public void readsAgainAfterNewPayees() {
+        PayeeService payees = new PayeeService(context);
+        payees.createNew("Bar");
+        assertEquals(1, testObject.loadPayees(context).size());
+
+        payees.createNew("Café");
+
+        assertEquals(2, testObject.loadPayees(context).size());
+    }
+
+    private void invalidate() {
+        for (TableChangeListener listener : testObject.getListeners()) {
+            listener.invalidate();
+        }
+    }
+
+    private int createSubcategory(int categoryId, String name) {
+        ContentValues values = new ContentValues();
+        values.put(Subcategory.CATEGID, categoryId);
+        values.put(Subcategory.SUBCATEGNAME, name);
+        SubcategoryRepository repo = new SubcategoryRepository(context);
+        return (int) ContentUris.parseId(context.getContentResolver().insert(repo.getUri(), values));
+    }
+
+    private int insert(int payeeId, int categoryId, int subcategoryId) {
+        AccountTransaction tx = AccountTransaction.create(ACCOUNT_ID, payeeId, TransactionTypes.Withdrawal,
+            categoryId, subcategoryId, MoneyFactory.fromDouble(10));
+        tx.setDate(new DateTime(2016, 3, 1, 0, 0));
+        return new AccountTransactionRepository(context).insert(tx).getId();
+    }
+
+    private void insertSplit(int transactionId, int categoryId, int subcategoryId) {
+        new SplitCategoriesRepository(context).insert(SplitCategory.create(transactionId, categoryId,
+            subcategoryId, TransactionTypes.Withdrawal, MoneyFactory.fromDouble(5)));
+    }
+}
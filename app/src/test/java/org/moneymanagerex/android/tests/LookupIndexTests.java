@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.moneymanagerex.android.tests;
+
+import com.money.manager.ex.BuildConfig;
+import com.money.manager.ex.database.LookupIndex;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the lookup index of the pickers.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class LookupIndexTests {
+
+    @Test
+    public void findsByCaseAndAccentInsensitivePrefix() {
+        LookupIndex index = createPayees();
+
+        assertArrayEquals(new Integer[] { 1, 2 }, index.find("CAF", false));
+        assertArrayEquals(new Integer[] { 1 }, index.find("café n", false));
+        assertArrayEquals(new Integer[] { }, index.find("nero", false));
+        assertArrayEquals(new Integer[] { 0, 1, 2 }, index.find("", false));
+    }
+
+    @Test
+    public void findsAnywhereWithTheWildcard() {
+        LookupIndex index = createPayees();
+
+        assertArrayEquals(new Integer[] { 1 }, index.find("%NERO", false));
+        assertArrayEquals(new Integer[] { 0, 1, 2 }, index.find("%a", false));
+        assertArrayEquals(new Integer[] { 0, 1, 2 }, index.find("%", false));
+        assertArrayEquals(new Integer[] { }, index.find("nero", false));
+    }
+
+    @Test
+    public void searchTextIsWithoutTheWildcard() {
+        assertEquals("cafe", LookupIndex.getSearchText("%Café"));
+        assertEquals("cafe", LookupIndex.getSearchText("Café"));
+    }
+
+    @Test
+    public void ranksByUsage() {
+        LookupIndex index = createPayees();
+
+        assertArrayEquals(new Integer[] { 2, 0, 1 }, index.find(null, true));
+    }
+
+    @Test
+    public void addsUsageToACopy() {
+        LookupIndex index = createPayees();
+
+        LookupIndex actual = index.addUsage(1, 1, -1).addUsage(1, 1, 1, 1);
+
+        assertArrayEquals(new Integer[] { 2, 1, 0 }, actual.find(null, true));
+        assertArrayEquals(new Integer[] { 1, 2 }, actual.find("caf", false));
+        // unchanged
+        assertArrayEquals(new Integer[] { 2, 0, 1 }, index.find(null, true));
+    }
+
+    @Test
+    public void keepsGroupsTogether() {
+        // Food: Groceries, Restaurants. Travel: Hotels.
+        List<Object[]> rows = new ArrayList<>();
+        List<String[]> names = new ArrayList<>();
+        addRow(rows, names, "Food");
+        addRow(rows, names, "Food", "Groceries", "Food : Groceries");
+        addRow(rows, names, "Food", "Restaurants", "Food : Restaurants");
+        addRow(rows, names, "Travel");
+        addRow(rows, names, "Travel", "Hotels", "Travel : Hotels");
+        LookupIndex index = new LookupIndex(new String[] { "NAME" }, rows, names,
+            new int[] { 0, 0, 0, 3, 3 }, new int[] { 3, 1, 2, 5, 5 });
+
+        assertArrayEquals(new Integer[] { 3, 4, 0, 2, 1 }, index.find(null, true));
+        // the category path matches once
+        assertArrayEquals(new Integer[] { 0, 1, 2 }, index.find("foo", false));
+        assertArrayEquals(new Integer[] { 4 }, index.find("travel : h", false));
+    }
+
+    @Test
+    public void putsRecentRowsFirstWithoutSearchText() {
+        List<Object[]> rows = new ArrayList<>();
+        List<String[]> names = new ArrayList<>();
+        String[] payees = { "Bar", "Café Nero", "cafeteria" };
+        for (int i = 0; i < payees.length; i++) {
+            rows.add(new Object[] { 10 + i, payees[i] });
+            names.add(new String[] { payees[i] });
+        }
+        LookupIndex index = new LookupIndex(new String[] { "_id", "NAME" }, rows, names,
+            new int[] { 0, 1, 2 }, new int[] { 5, 0, 7 });
+        // 99 is not in the index
+        List<Integer> recent = Arrays.asList(12, 99, 11);
+
+        assertArrayEquals(new Integer[] { 2, 1, 0 }, index.find("", false, recent));
+        assertArrayEquals(new Integer[] { 2, 1, 0 }, index.find(null, true, recent));
+        // while typing, the usual order
+        assertArrayEquals(new Integer[] { 1, 2 }, index.find("caf", false, recent));
+        assertArrayEquals(new Integer[] { 0, 1, 2 }, index.find("", false, null));
+    }
+
+    private LookupIndex createPayees() {
+        List<Object[]> rows = new ArrayList<>();
+        List<String[]> names = new ArrayList<>();
+        addRow(rows, names, "Bar");
+        addRow(rows, names, "Café Nero");
+        addRow(rows, names, "cafeteria");
+        return new LookupIndex(new String[] { "NAME" }, rows, names,
+            new int[] { 0, 1, 2 }, new int[] { 5, 0, 7 });
+    }
+
+    private void addRow(List<Object[]> rows, List<String[]> names, String... rowNames) {
+        rows.add(new Object[] { rowNames[rowNames.length - 1] });
+        names.add(rowNames);
+    }
+}
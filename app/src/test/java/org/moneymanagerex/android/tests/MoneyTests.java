@@ -28,7 +28,10 @@ import org.robolectric.annotation.Config;
 
 import java.math.BigDecimal;
 
+import java.nio.ByteBuffer;
+
 import info.javaperformance.money.Money;
+import info.javaperformance.money.MoneyCodec;
 import info.javaperformance.money.MoneyFactory;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -164,4 +167,47 @@ public class MoneyTests {
         assertThat(decimalMoney.toDouble() < 0).isFalse();
         assertThat(decimalMoney.isZero()).isFalse();
     }
+
+    @Test
+    public void binaryEncodingRoundTrip() {
+        // Given
+        String[] values = { "0", "-1", "2148.56", "-7281.6612", "12345678901234567890.123" };
+
+        for (String value : values) {
+            Money money = MoneyFactory.fromString(value);
+
+            // When
+            byte[] encoded = MoneyCodec.encode(money);
+            Money actual = MoneyCodec.decode(encoded);
+
+            // Then
+            assertThat(encoded.length).isEqualTo(MoneyCodec.encodedSize(money));
+            assertThat(actual.compareTo(money)).isEqualTo(0);
+        }
+    }
+
+    @Test
+    public void binaryEncodingIsCompact() {
+        Money money = MoneyFactory.fromString("2148.56");
+
+        assertThat(MoneyCodec.encodedSize(money)).isLessThanOrEqualTo(4);
+    }
+
+    @Test
+    public void binaryEncodingSequenceInBuffer() {
+        // Given
+        Money first = MoneyFactory.fromString("10.5");
+        Money second = MoneyFactory.fromString("-3.25");
+        ByteBuffer buffer = ByteBuffer.allocate(MoneyCodec.encodedSize(first) + MoneyCodec.encodedSize(second));
+
+        // When
+        MoneyCodec.write(first, buffer);
+        MoneyCodec.write(second, buffer);
+        buffer.flip();
+
+        // Then
+        assertThat(MoneyCodec.read(buffer).toString()).isEqualTo("10.5");
+        assertThat(MoneyCodec.read(buffer).toString()).isEqualTo("-3.25");
+        assertThat(buffer.hasRemaining()).isFalse();
+    }
 }
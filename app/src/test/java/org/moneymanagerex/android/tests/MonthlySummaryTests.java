@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.moneymanagerex.android.tests;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.money.manager.ex.BuildConfig;
+import com.money.manager.ex.R;
+import com.money.manager.ex.database.ChangeCounter;
+import com.money.manager.ex.database.MobileDatabase;
+import com.money.manager.ex.database.MonthlySummary;
+import com.money.manager.ex.database.ViewMobileData;
+import com.money.manager.ex.utils.MmexFileUtils;
+import com.money.manager.ex.utils.MyDateTimeUtils;
+
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.moneymanagerex.android.testhelpers.UnitTestHelper;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the monthly summary. The totals read through the summary must match the totals of
+ * the original report query over all the transactions.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class MonthlySummaryTests {
+
+    private SQLiteDatabase db;
+    private MonthlySummary testObject;
+
+    @Before
+    public void setUp() {
+        db = SQLiteDatabase.create(null);
+        String[] statements = MmexFileUtils.getRawAsString(UnitTestHelper.getContext(), R.raw.database_create)
+            .split(";");
+        for (String statement : statements) {
+            // as MmexOpenHelper.executeRawSql, without the comment-only parts.
+            if (statement.replaceAll("(?m)^--.*$", "").trim().isEmpty()) continue;
+            db.execSQL(statement);
+        }
+        MobileDatabase.attach(db, ":memory:");
+        ChangeCounter.verify(db);
+
+        db.execSQL("UPDATE CURRENCYFORMATS_V1 SET BASECONVRATE = 2 WHERE CURRENCYID = 2");
+        db.execSQL("INSERT INTO ACCOUNTLIST_V1 (ACCOUNTID, ACCOUNTNAME, ACCOUNTTYPE, STATUS, FAVORITEACCT, " +
+            "CURRENCYID) VALUES (1, 'Checking', 'Checking', 'Open', 'FALSE', 1)");
+        db.execSQL("INSERT INTO ACCOUNTLIST_V1 (ACCOUNTID, ACCOUNTNAME, ACCOUNTTYPE, STATUS, FAVORITEACCT, " +
+            "CURRENCYID) VALUES (2, 'Euro', 'Checking', 'Open', 'FALSE', 2)");
+        db.execSQL("INSERT INTO CATEGORY_V1 VALUES (1, 'Food')");
+        db.execSQL("INSERT INTO CATEGORY_V1 VALUES (2, 'Salary')");
+        db.execSQL("INSERT INTO SUBCATEGORY_V1 VALUES (10, 'Groceries', 1)");
+        db.execSQL("INSERT INTO PAYEE_V1 (PAYEEID, PAYEENAME) VALUES (5, 'Market')");
+
+        insert(1, 1, "Withdrawal", 10.25, "", 1, 10, "2016-01-05");
+        insert(2, 1, "Withdrawal", 4.75, "", 1, 10, "2016-01-31");
+        insert(3, 1, "Deposit", 1000, "R", 2, -1, "2016-01-28");
+        insert(4, 2, "Withdrawal", 20, "", 1, -1, "2016-02-14");
+        insert(5, 1, "Transfer", 50, "", 1, -1, "2016-02-15");
+        insert(6, 1, "Withdrawal", 99, "V", 1, -1, "2016-02-16");
+        insert(7, 2, "Withdrawal", 30, "", -1, -1, "2016-03-01");
+        insertSplit(7, 1, 10, 12.5);
+        insertSplit(7, 2, -1, 17.5);
+
+        testObject = new MonthlySummary(UnitTestHelper.getContext());
+        assertFalse(testObject.verify(db));
+        testObject.rebuild(db);
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void rebuildMatchesTheReportQuery() {
+        assertTrue(MonthlySummary.isInSync());
+        assertEquals(expected(), actual(null, null));
+    }
+
+    @Test
+    public void insertRefreshesTheMonth() {
+        insert(8, 1, "Deposit", 15, "", 2, -1, "2016-02-20");
+        // a new month
+        insert(9, 2, "Withdrawal", 8, "", 1, 10, "2016-04-02");
+
+        testObject.refreshMonths(db, testObject.getMonthsFor(db, Arrays.asList(8, 9)));
+
+        assertEquals(expected(), actual(null, null));
+    }
+
+    @Test
+    public void updateRefreshesTheMonthsBeforeAndAfter() {
+        List<Integer> ids = Arrays.asList(1, 4);
+        TreeSet<Integer> months = testObject.getMonthsFor(db, ids);
+
+        // moved to another month, and a different amount
+        db.execSQL("UPDATE CHECKINGACCOUNT_V1 SET TRANSDATE = '2016-03-10', TRANSAMOUNT = 11 WHERE TRANSID = 1");
+        db.execSQL("UPDATE CHECKINGACCOUNT_V1 SET STATUS = 'V' WHERE TRANSID = 4");
+        db.execSQL("UPDATE SPLITTRANSACTIONS_V1 SET SPLITTRANSAMOUNT = 20 WHERE TRANSID = 7 AND CATEGID = 1");
+        months.addAll(testObject.getMonthsFor(db, Arrays.asList(1, 4, 7)));
+        testObject.refreshMonths(db, months);
+
+        assertEquals(expected(), actual(null, null));
+    }
+
+    @Test
+    public void deleteRefreshesTheMonth() {
+        List<Integer> ids = testObject.getAffectedTransactions(db, "CHECKINGACCOUNT_V1", "TRANSID IN (2, 3)", null);
+        TreeSet<Integer> months = testObject.getMonthsFor(db, ids);
+
+        db.execSQL("DELETE FROM CHECKINGACCOUNT_V1 WHERE TRANSID IN (2, 3)");
+        testObject.refreshMonths(db, months);
+
+        assertEquals(expected(), actual(null, null));
+    }
+
+    @Test
+    public void partialMonthsAreReadFromTheTransactions() {
+        // January and March from the transactions, February from the summary.
+        String from = "2016-01-10";
+        String to = "2016-03-01";
+
+        assertEquals(expected("Date >= '" + from + "' AND Date <= '" + to + "'"),
+            actual(MyDateTimeUtils.from(from), MyDateTimeUtils.from(to)));
+    }
+
+    @Test
+    public void rebuildsWhenChangedElsewhere() {
+        // i.e. by the desktop app, without refreshing the summary.
+        insert(8, 1, "Deposit", 15, "", 2, -1, "2016-02-20");
+        db.execSQL("DELETE FROM CHECKINGACCOUNT_V1 WHERE TRANSID = 1");
+
+        assertFalse(testObject.verify(db));
+        assertFalse(MonthlySummary.isInSync());
+        // out of sync, the reports read the transactions.
+        assertEquals(expected(), actual(null, null));
+
+        testObject.rebuild(db);
+
+        assertTrue(MonthlySummary.isInSync());
+        assertTrue(testObject.verify(db));
+        assertEquals(expected(), actual(null, null));
+    }
+
+    @Test
+    public void rebuildsWhenDirty() {
+        long before = ChangeCounter.get(db);
+        insert(8, 1, "Deposit", 15, "", 2, -1, "2016-02-20");
+        // i.e. the refresh failed.
+        ChangeCounter.setDirty(db, MonthlySummary.TABLE_NAME);
+        ChangeCounter.advance(db, before);
+
+        assertFalse(testObject.verify(db));
+
+        testObject.rebuild(db);
+
+        assertTrue(testObject.verify(db));
+        assertEquals(expected(), actual(null, null));
+    }
+
+    private void insert(int id, int accountId, String code, double amount, String status, int categoryId,
+                        int subcategoryId, String date) {
+        db.execSQL("INSERT INTO CHECKINGACCOUNT_V1 (TRANSID, ACCOUNTID, TOACCOUNTID, PAYEEID, TRANSCODE, " +
+            "TRANSAMOUNT, STATUS, CATEGID, SUBCATEGID, TRANSDATE) VALUES (?, ?, -1, 5, ?, ?, ?, ?, ?, ?)",
+            new Object[] { id, accountId, code, amount, status, categoryId, subcategoryId, date });
+    }
+
+    private void insertSplit(int transactionId, int categoryId, int subcategoryId, double amount) {
+        db.execSQL("INSERT INTO SPLITTRANSACTIONS_V1 (TRANSID, CATEGID, SUBCATEGID, SPLITTRANSAMOUNT) " +
+            "VALUES (?, ?, ?, ?)", new Object[] { transactionId, categoryId, subcategoryId, amount });
+    }
+
+    /**
+     * @return Totals by month, type, category and payee from the original report source.
+     */
+    private String expected(String where) {
+        ViewMobileData mobileData = new ViewMobileData(UnitTestHelper.getContext());
+        return dump(mobileData.getSource(), where);
+    }
+
+    private String expected() {
+        return expected(null);
+    }
+
+    private String actual(DateTime from, DateTime to) {
+        return dump(testObject.getSource(from, to), null);
+    }
+
+    private String dump(String source, String where) {
+        String sql = "SELECT Year, Month, TransactionType, CategID, SubcategID, PayeeID, " +
+            "SUM(AmountBaseConvRate) FROM " + source + " WHERE Status <> 'V'";
+        if (where != null) {
+            sql += " AND " + where;
+        }
+        sql += " GROUP BY 1, 2, 3, 4, 5, 6 ORDER BY 1, 2, 3, 4, 5, 6";
+
+        StringBuilder result = new StringBuilder();
+        Cursor cursor = db.rawQuery(sql, null);
+        while (cursor.moveToNext()) {
+            result.append(String.format(Locale.US, "%d-%02d %s %d/%d %d: %.2f%n", cursor.getInt(0),
+                cursor.getInt(1), cursor.getString(2), cursor.getInt(3), cursor.getInt(4), cursor.getInt(5),
+                cursor.getDouble(6)));
+        }
+        cursor.close();
+        return result.toString();
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.moneymanagerex.android.tests;
+
+import com.money.manager.ex.BuildConfig;
+import com.money.manager.ex.PayeeActivity;
+import com.money.manager.ex.R;
+import com.money.manager.ex.database.LookupIndex;
+import com.money.manager.ex.database.LookupIndexStore;
+import com.money.manager.ex.fragment.PayeeListFragment;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.moneymanagerex.android.testhelpers.UnitTestHelper;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.util.ActivityController;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the filtering of the payee picker.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class PayeeListFragmentTests {
+
+    private ActivityController<PayeeActivity> controller;
+    private PayeeListFragment fragment;
+
+    @Before
+    public void setUp() {
+        UnitTestHelper.setupContentProvider();
+
+        this.controller = UnitTestHelper.getController(PayeeActivity.class);
+        PayeeActivity activity = UnitTestHelper.getActivity(this.controller);
+        this.fragment = (PayeeListFragment) activity.getSupportFragmentManager()
+            .findFragmentById(R.id.content);
+
+        this.fragment.onLoadFinished(null, createPayees());
+    }
+
+    @After
+    public void tearDown() {
+        this.controller.destroy();
+        UnitTestHelper.teardownDatabase();
+    }
+
+    @Test
+    public void leadingWildcardFindsTextWithinNames() {
+        // the text as passed on from the search view by onPreQueryTextChange, for the
+        // "contains" search type.
+        fragment.onQueryTextChange(LookupIndex.WILDCARD + "nero");
+
+        assertEquals(1, fragment.getListAdapter().getCount());
+    }
+
+    @Test
+    public void textWithoutWildcardFindsPrefixes() {
+        fragment.onQueryTextChange("caf");
+        assertEquals(2, fragment.getListAdapter().getCount());
+
+        fragment.onQueryTextChange("nero");
+        assertEquals(0, fragment.getListAdapter().getCount());
+    }
+
+    @Test
+    public void embeddedWildcardsAreLiteral() {
+        fragment.onQueryTextChange("caf%");
+        assertEquals(0, fragment.getListAdapter().getCount());
+
+        fragment.onQueryTextChange(LookupIndex.WILDCARD + "caf_");
+        assertEquals(0, fragment.getListAdapter().getCount());
+    }
+
+    private LookupIndex createPayees() {
+        List<Object[]> rows = new ArrayList<>();
+        List<String[]> names = new ArrayList<>();
+        String[] payees = new String[] { "Bar", "Café Nero", "cafeteria" };
+        for (int i = 0; i < payees.length; i++) {
+            rows.add(new Object[] { i + 1, i + 1, payees[i], null, null });
+            names.add(new String[] { payees[i] });
+        }
+        return new LookupIndex(LookupIndexStore.PAYEE_COLUMNS, rows, names,
+            new int[] { 0, 1, 2 }, new int[] { 0, 0, 0 });
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.moneymanagerex.android.tests;
+
+import android.content.Context;
+
+import com.money.manager.ex.BuildConfig;
+import com.money.manager.ex.core.TransactionTypes;
+import com.money.manager.ex.datalayer.AccountTransactionRepository;
+import com.money.manager.ex.database.RecentPayees;
+import com.money.manager.ex.domainmodel.AccountTransaction;
+import com.money.manager.ex.servicelayer.PayeeService;
+
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.moneymanagerex.android.testhelpers.UnitTestHelper;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+import java.util.List;
+
+import info.javaperformance.money.MoneyFactory;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the recently used payees, read from the database and kept up to date on inserts.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class RecentPayeesTests {
+
+    private static final int ACCOUNT_ID = 1;
+
+    private Context context;
+    private RecentPayees testObject;
+
+    @Before
+    public void setup() {
+        UnitTestHelper.setupContentProvider();
+        context = UnitTestHelper.getContext();
+        testObject = RecentPayees.getInstance();
+        testObject.invalidate();
+    }
+
+    @After
+    public void tearDown() {
+        testObject.invalidate();
+        UnitTestHelper.teardownDatabase();
+    }
+
+    @Test
+    public void readsLatestFirstOncePerPayee() {
+        List<Integer> payees = createPayees(3);
+        insert(payees.get(0), TransactionTypes.Withdrawal, 1);
+        insert(payees.get(1), TransactionTypes.Withdrawal, 3);
+        insert(payees.get(2), TransactionTypes.Deposit, 2);
+        insert(payees.get(0), TransactionTypes.Withdrawal, 4);
+        // transfers are excluded
+        insert(payees.get(2), TransactionTypes.Transfer, 5);
+
+        assertEquals(Arrays.asList(payees.get(0), payees.get(1), payees.get(2)),
+            testObject.getPayeeIds(context));
+        assertEquals(payees.get(0), testObject.getLastPayeeId(context));
+    }
+
+    @Test
+    public void mergesNewTransactions() {
+        List<Integer> payees = createPayees(3);
+        insert(payees.get(0), TransactionTypes.Withdrawal, 2);
+        insert(payees.get(1), TransactionTypes.Withdrawal, 4);
+        assertEquals(Arrays.asList(payees.get(1), payees.get(0)), testObject.getPayeeIds(context));
+
+        // older than the latest, placed by date
+        insert(payees.get(2), TransactionTypes.Withdrawal, 3);
+        assertEquals(Arrays.asList(payees.get(1), payees.get(2), payees.get(0)),
+            testObject.getPayeeIds(context));
+
+        // newer transaction of a listed payee moves it up
+        insert(payees.get(0), TransactionTypes.Withdrawal, 5);
+        assertEquals(Arrays.asList(payees.get(0), payees.get(1), payees.get(2)),
+            testObject.getPayeeIds(context));
+
+        // older transaction of a listed payee does not move it
+        insert(payees.get(2), TransactionTypes.Withdrawal, 1);
+        // on the same date, the later transaction comes first
+        insert(payees.get(2), TransactionTypes.Withdrawal, 4);
+        assertEquals(Arrays.asList(payees.get(0), payees.get(2), payees.get(1)),
+            testObject.getPayeeIds(context));
+        // transfers are excluded
+        insert(payees.get(1), TransactionTypes.Transfer, 6);
+        assertEquals(Arrays.asList(payees.get(0), payees.get(2), payees.get(1)),
+            testObject.getPayeeIds(context));
+    }
+
+    @Test
+    public void keepsTheLatestPayeesOnly() {
+        List<Integer> payees = createPayees(RecentPayees.SIZE + 2);
+        for (int i = 0; i < RecentPayees.SIZE; i++) {
+            insert(payees.get(i), TransactionTypes.Withdrawal, i + 2);
+        }
+        assertEquals(RecentPayees.SIZE, testObject.getPayeeIds(context).size());
+
+        // older than all the listed payees
+        insert(payees.get(RecentPayees.SIZE), TransactionTypes.Withdrawal, 1);
+        // newer than all the listed payees, drops the oldest
+        insert(payees.get(RecentPayees.SIZE + 1), TransactionTypes.Withdrawal, 28);
+
+        List<Integer> actual = testObject.getPayeeIds(context);
+        assertEquals(RecentPayees.SIZE, actual.size());
+        assertEquals(payees.get(RecentPayees.SIZE + 1), actual.get(0));
+        assertEquals(payees.get(RecentPayees.SIZE - 1), actual.get(1));
+        assertEquals(payees.get(1), actual.get(RecentPayees.SIZE - 1));
+        // the same as read from the database
+        testObject.invalidate();
+        assertEquals(actual, testObject.getPayeeIds(context));
+    }
+
+    private List<Integer> createPayees(int count) {
+        PayeeService service = new PayeeService(context);
+        Integer[] ids = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = service.createNew("payee " + i).getId();
+        }
+        return Arrays.asList(ids);
+    }
+
+    private void insert(int payeeId, TransactionTypes type, int day) {
+        AccountTransaction tx = AccountTransaction.create(ACCOUNT_ID, payeeId, type, -1, -1,
+            MoneyFactory.fromDouble(10));
+        tx.setDate(new DateTime(2016, 3, day, 0, 0));
+        new AccountTransactionRepository(context).insert(tx);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.moneymanagerex.android.tests;
+
+import com.money.manager.ex.BuildConfig;
+import com.money.manager.ex.notifications.RecurringTransactionScheduler;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the time of the recurring transaction notification alarm.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class RecurringTransactionSchedulerTests {
+
+    private static final DateTimeZone ZONE = DateTimeZone.forID("Europe/Vienna");
+
+    @Test
+    public void alarmOnTheDueDate() {
+        DateTime now = new DateTime(2016, 3, 10, 12, 0, ZONE);
+
+        DateTime actual = RecurringTransactionScheduler.getAlarmTime("2016-03-15", "08:30", now);
+
+        assertEquals(new DateTime(2016, 3, 15, 8, 30, ZONE), actual);
+    }
+
+    @Test
+    public void dueTodayBeforeTheNotificationTime() {
+        DateTime now = new DateTime(2016, 3, 10, 7, 0, ZONE);
+
+        DateTime actual = RecurringTransactionScheduler.getAlarmTime("2016-03-10", "08:00", now);
+
+        assertEquals(new DateTime(2016, 3, 10, 8, 0, ZONE), actual);
+    }
+
+    @Test
+    public void overdueRemindsAtTheNextNotificationTime() {
+        DateTime now = new DateTime(2016, 3, 10, 8, 0, ZONE);
+
+        // the alarm for today has just fired.
+        DateTime actual = RecurringTransactionScheduler.getAlarmTime("2016-03-01", "08:00", now);
+        assertEquals(new DateTime(2016, 3, 11, 8, 0, ZONE), actual);
+
+        actual = RecurringTransactionScheduler.getAlarmTime("2016-03-10", "20:00", now);
+        assertEquals(new DateTime(2016, 3, 10, 20, 0, ZONE), actual);
+    }
+
+    @Test
+    public void notificationTimeInDaylightSavingGap() {
+        DateTime now = new DateTime(2016, 3, 10, 8, 0, ZONE);
+
+        // 02:00 - 03:00 does not exist on 2016-03-27 in Vienna.
+        DateTime actual = RecurringTransactionScheduler.getAlarmTime("2016-03-27", "02:30", now);
+
+        assertEquals(new DateTime(2016, 3, 27, 3, 30, ZONE), actual);
+    }
+}
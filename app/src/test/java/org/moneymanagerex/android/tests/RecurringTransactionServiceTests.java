@@ -0,0 +1,287 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.moneymanagerex.android.tests;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentValues;
+import android.content.OperationApplicationException;
+
+import com.money.manager.ex.BuildConfig;
+import com.money.manager.ex.MmexContentProvider;
+import com.money.manager.ex.core.TransactionTypes;
+import com.money.manager.ex.database.ISplitTransaction;
+import com.money.manager.ex.datalayer.AccountTransactionRepository;
+import com.money.manager.ex.datalayer.PayeeRepository;
+import com.money.manager.ex.datalayer.Query;
+import com.money.manager.ex.datalayer.RecurringTransactionRepository;
+import com.money.manager.ex.datalayer.SplitCategoriesRepository;
+import com.money.manager.ex.datalayer.SplitRecurringCategoriesRepository;
+import com.money.manager.ex.domainmodel.AccountTransaction;
+import com.money.manager.ex.domainmodel.Payee;
+import com.money.manager.ex.domainmodel.RecurringTransaction;
+import com.money.manager.ex.domainmodel.SplitCategory;
+import com.money.manager.ex.domainmodel.SplitRecurringCategory;
+import com.money.manager.ex.recurring.transactions.Recurrence;
+import com.money.manager.ex.servicelayer.PayeeService;
+import com.money.manager.ex.servicelayer.RecurringTransactionService;
+import com.money.manager.ex.utils.MyDateTimeUtils;
+
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.moneymanagerex.android.testhelpers.UnitTestHelper;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import info.javaperformance.money.MoneyFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for moving the recurring transactions to their next occurrence, in memory, and for
+ * entering the due occurrences.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class RecurringTransactionServiceTests {
+
+    private static final int ACCOUNT_ID = 1;
+
+    private RecurringTransactionService testObject;
+
+    @Before
+    public void setUp() {
+        testObject = new RecurringTransactionService(UnitTestHelper.getContext());
+    }
+
+    @After
+    public void tearDown() {
+        UnitTestHelper.teardownDatabase();
+    }
+
+    @Test
+    public void monthlyMovesForward() {
+        RecurringTransaction tx = create(Recurrence.MONTHLY, 3);
+
+        assertTrue(testObject.moveNextOccurrence(tx));
+
+        assertEquals("2016-02-15", tx.getPaymentDateString());
+        assertEquals("2016-02-15", tx.getDueDateString());
+        assertEquals(2, tx.getPaymentsLeft().intValue());
+    }
+
+    @Test
+    public void lastPaymentEnds() {
+        assertFalse(testObject.moveNextOccurrence(create(Recurrence.MONTHLY, 1)));
+        assertFalse(testObject.moveNextOccurrence(create(Recurrence.ONCE, 0)));
+
+        // 0 repeats forever
+        assertTrue(testObject.moveNextOccurrence(create(Recurrence.WEEKLY, 0)));
+    }
+
+    @Test
+    public void inDaysDoesNotMove() {
+        RecurringTransaction tx = create(Recurrence.IN_X_DAYS, 10);
+
+        assertTrue(testObject.moveNextOccurrence(tx));
+
+        assertEquals("2016-01-15", tx.getPaymentDateString());
+    }
+
+    @Test
+    public void lastDayMovesToNextMonth() {
+        DateTime next = testObject.getNextScheduledDate(MyDateTimeUtils.from("2016-01-31"),
+            Recurrence.MONTHLY_LAST_DAY, 0);
+        assertEquals("2016-02-29", MyDateTimeUtils.getIsoStringFrom(next));
+
+        // 2016-09-30 is a Friday, 2016-10-31 a Monday.
+        next = testObject.getNextScheduledDate(MyDateTimeUtils.from("2016-09-30"),
+            Recurrence.MONTHLY_LAST_BUSINESS_DAY, 0);
+        assertEquals("2016-10-31", MyDateTimeUtils.getIsoStringFrom(next));
+    }
+
+    @Test
+    public void entersEveryDueOccurrence() {
+        UnitTestHelper.setupContentProvider();
+        RecurringTransaction schedule = insert(Recurrence.MONTHLY, 0, 3, -1);
+
+        assertEquals(3, testObject.enterDueOccurrences(MyDateTimeUtils.from("2016-03-20")).intValue());
+
+        List<AccountTransaction> entered = loadTransactions();
+        assertEquals(3, entered.size());
+        assertEquals("2016-01-15", entered.get(0).getDateString());
+        assertEquals("2016-02-15", entered.get(1).getDateString());
+        assertEquals("2016-03-15", entered.get(2).getDateString());
+        assertEquals(3, entered.get(2).getCategoryId().intValue());
+
+        // the schedule is kept, with the next occurrence
+        RecurringTransaction updated = new RecurringTransactionRepository(UnitTestHelper.getContext())
+            .load(schedule.getId());
+        assertNotNull(updated);
+        assertEquals("2016-04-15", updated.getPaymentDateString());
+
+        // nothing more is due
+        assertEquals(0, testObject.enterDueOccurrences(MyDateTimeUtils.from("2016-03-20")).intValue());
+    }
+
+    @Test
+    public void deletesFinishedSchedule() {
+        UnitTestHelper.setupContentProvider();
+        RecurringTransaction schedule = insert(Recurrence.MONTHLY, 2, -1, -1);
+        insertSplit(schedule, 3, 10);
+        insertSplit(schedule, 4, 15);
+
+        assertEquals(2, testObject.enterDueOccurrences(MyDateTimeUtils.from("2016-12-31")).intValue());
+
+        assertEquals(2, loadTransactions().size());
+        assertNull(new RecurringTransactionRepository(UnitTestHelper.getContext()).load(schedule.getId()));
+        assertEquals(0, new SplitRecurringCategoriesRepository(UnitTestHelper.getContext())
+            .loadSplitCategoriesFor(schedule.getId()).size());
+    }
+
+    @Test
+    public void splitsReferToTheirTransaction() {
+        UnitTestHelper.setupContentProvider();
+        RecurringTransaction schedule = insert(Recurrence.MONTHLY, 0, -1, -1);
+        insertSplit(schedule, 3, 10);
+        insertSplit(schedule, 4, 15);
+
+        assertEquals(2, testObject.enterDueOccurrences(MyDateTimeUtils.from("2016-02-20")).intValue());
+
+        SplitCategoriesRepository splitRepo = new SplitCategoriesRepository(UnitTestHelper.getContext());
+        for (AccountTransaction tx : loadTransactions()) {
+            List<ISplitTransaction> splits = splitRepo.loadSplitCategoriesFor(tx.getId());
+            assertEquals(2, splits.size());
+            assertEquals(3, splits.get(0).getCategoryId().intValue());
+            assertEquals(4, splits.get(1).getCategoryId().intValue());
+        }
+    }
+
+    @Test
+    public void savesCategoryOfThePayee() {
+        UnitTestHelper.setupContentProvider();
+        Payee payee = new PayeeService(UnitTestHelper.getContext()).createNew("landlord");
+        RecurringTransaction schedule = create(Recurrence.MONTHLY, 0);
+        schedule.setPayeeId(payee.getId());
+        schedule.setCategoryId(3);
+        schedule.setSubcategoryId(7);
+        insert(schedule);
+
+        testObject.enterDueOccurrences(MyDateTimeUtils.from("2016-01-31"));
+
+        payee = new PayeeRepository(UnitTestHelper.getContext()).load(payee.getId());
+        assertEquals(3, payee.getCategoryId().intValue());
+        assertEquals(7, payee.getSubcategoryId().intValue());
+    }
+
+    @Test
+    public void failedOperationRollsBackTheBatch() throws Exception {
+        UnitTestHelper.setupContentProvider();
+        RecurringTransaction schedule = insert(Recurrence.MONTHLY, 1, 3, -1);
+        AccountTransactionRepository transactions = new AccountTransactionRepository(UnitTestHelper.getContext());
+
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        // written before the failure.
+        ContentValues values = new ContentValues();
+        values.put(AccountTransaction.ACCOUNTID, ACCOUNT_ID);
+        values.put(AccountTransaction.PAYEEID, -1);
+        values.put(AccountTransaction.TRANSCODE, TransactionTypes.Withdrawal.name());
+        values.put(AccountTransaction.TRANSAMOUNT, 10);
+        values.put(AccountTransaction.NOTES, "rolled back");
+        operations.add(ContentProviderOperation.newInsert(transactions.getUri())
+            .withValues(values)
+            .build());
+        operations.add(ContentProviderOperation.newInsert(
+            new SplitCategoriesRepository(UnitTestHelper.getContext()).getUri())
+            .withValue(SplitCategory.CATEGID, 3)
+            .withValueBackReference(SplitCategory.TRANSID, 0)
+            .build());
+        // the transaction code is required.
+        values = new ContentValues();
+        values.put(AccountTransaction.ACCOUNTID, ACCOUNT_ID);
+        operations.add(ContentProviderOperation.newInsert(transactions.getUri())
+            .withValues(values)
+            .build());
+        operations.add(ContentProviderOperation.newDelete(
+            new RecurringTransactionRepository(UnitTestHelper.getContext()).getUri())
+            .withSelection(RecurringTransaction.BDID + "=?", new String[] { Integer.toString(schedule.getId()) })
+            .build());
+
+        try {
+            UnitTestHelper.getContext().getContentResolver().applyBatch(MmexContentProvider.getAuthority(),
+                operations);
+            fail("the batch must fail");
+        } catch (OperationApplicationException e) {
+            // expected
+        }
+
+        // the writes before the failure are undone.
+        assertEquals(0, transactions.count(AccountTransaction.NOTES + "=?", new String[] { "rolled back" }));
+        assertEquals(0, new SplitCategoriesRepository(UnitTestHelper.getContext())
+            .count(SplitCategory.CATEGID + "=?", new String[] { "3" }));
+        // the ones after it are not applied.
+        assertNotNull(new RecurringTransactionRepository(UnitTestHelper.getContext()).load(schedule.getId()));
+    }
+
+    private RecurringTransaction insert(Recurrence recurrence, int paymentsLeft, int categoryId,
+                                        int subcategoryId) {
+        RecurringTransaction tx = create(recurrence, paymentsLeft);
+        tx.setCategoryId(categoryId);
+        tx.setSubcategoryId(subcategoryId);
+        return insert(tx);
+    }
+
+    private RecurringTransaction insert(RecurringTransaction tx) {
+        tx.setAccountId(ACCOUNT_ID);
+        tx.setAmount(MoneyFactory.fromDouble(25));
+        tx.setStatus("");
+        return new RecurringTransactionRepository(UnitTestHelper.getContext()).insert(tx);
+    }
+
+    private void insertSplit(RecurringTransaction schedule, int categoryId, double amount) {
+        new SplitRecurringCategoriesRepository(UnitTestHelper.getContext()).insert(
+            SplitRecurringCategory.create(schedule.getId(), categoryId, -1, TransactionTypes.Withdrawal,
+                MoneyFactory.fromDouble(amount)));
+    }
+
+    private List<AccountTransaction> loadTransactions() {
+        return new AccountTransactionRepository(UnitTestHelper.getContext()).query(AccountTransaction.class,
+            new Query()
+                .where(AccountTransaction.ACCOUNTID + "=?", new String[] { Integer.toString(ACCOUNT_ID) })
+                .orderBy(AccountTransaction.TRANSDATE));
+    }
+
+    private RecurringTransaction create(Recurrence recurrence, int paymentsLeft) {
+        RecurringTransaction tx = RecurringTransaction.createInstance();
+        tx.setRecurrence(recurrence);
+        tx.setPaymentsLeft(paymentsLeft);
+        tx.setDueDate(MyDateTimeUtils.from("2016-01-15"));
+        tx.setPaymentDate(MyDateTimeUtils.from("2016-01-15"));
+        return tx;
+    }
+}
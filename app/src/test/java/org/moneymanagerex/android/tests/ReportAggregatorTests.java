@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.moneymanagerex.android.tests;
+
+import android.database.MatrixCursor;
+
+import com.money.manager.ex.BuildConfig;
+import com.money.manager.ex.currency.ExchangeRateEngine;
+import com.money.manager.ex.database.TransactionSnapshot;
+import com.money.manager.ex.domainmodel.Currency;
+import com.money.manager.ex.domainmodel.CurrencyHistory;
+import com.money.manager.ex.reports.ReportAggregator;
+import com.money.manager.ex.utils.MyDateTimeUtils;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.moneymanagerex.android.testhelpers.UnitTestHelper;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import info.javaperformance.money.Money;
+import info.javaperformance.money.MoneyFactory;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for the parallel report aggregation.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class ReportAggregatorTests {
+
+    @Test
+    public void partitionedTotalsAreExact() {
+        MatrixCursor source = createSource();
+        HashMap<Integer, BigDecimal> rates = new HashMap<>();
+        rates.put(2, new BigDecimal("1.37"));
+
+        Random random = new Random(1);
+        HashMap<Long, BigDecimal> expected = new HashMap<>();
+        for (int i = 0; i < 50000; i++) {
+            int accountId = random.nextInt(2) + 1;
+            int payeeId = random.nextInt(20);
+            String status = random.nextInt(10) == 0 ? "V" : "R";
+            long units = random.nextInt(10000000) - 5000000;
+            source.addRow(new Object[] { i + 1, 16000 + i / 50, accountId, -1, 1, -1, payeeId,
+                TransactionSnapshot.TYPE_WITHDRAWAL, status, units, 0 });
+
+            if (status.equals("V")) continue;
+            BigDecimal amount = BigDecimal.valueOf(units, TransactionSnapshot.PRECISION);
+            if (rates.containsKey(accountId)) amount = amount.multiply(rates.get(accountId));
+            BigDecimal total = expected.get((long) payeeId);
+            expected.put((long) payeeId, total == null ? amount : total.add(amount));
+        }
+        TransactionSnapshot snapshot = TransactionSnapshot.read(source);
+
+        HashMap<Long, Money> actual = new ReportAggregator(rates).aggregate(snapshot, null, null,
+            new ReportAggregator.Grouping() {
+                @Override
+                public long getKey(TransactionSnapshot snapshot, int row) {
+                    return snapshot.getPayeeId(row);
+                }
+            });
+
+        assertEquals(expected.size(), actual.size());
+        for (Long key : expected.keySet()) {
+            assertEquals(0, expected.get(key).compareTo(actual.get(key).toBigDecimal()));
+        }
+    }
+
+    @Test
+    public void rowsAreConvertedAtTheRateOfTheirDate() {
+        List<Currency> currencies = new ArrayList<>();
+        currencies.add(createCurrency(1, 1.0));
+        currencies.add(createCurrency(2, 1.25));
+        List<CurrencyHistory> history = new ArrayList<>();
+        history.add(createHistory(2, 16100, 1.1));
+        history.add(createHistory(2, 16300, 1.37));
+        history.add(createHistory(2, 16700, 0.98));
+        ExchangeRateEngine engine = new ExchangeRateEngine(UnitTestHelper.getContext()).load(currencies, history);
+        HashMap<Integer, Integer> accountCurrencies = new HashMap<>();
+        accountCurrencies.put(1, 1);
+        accountCurrencies.put(2, 2);
+
+        MatrixCursor source = createSource();
+        Random random = new Random(2);
+        HashMap<Long, BigDecimal> expected = new HashMap<>();
+        for (int i = 0; i < 50000; i++) {
+            int accountId = random.nextInt(2) + 1;
+            int payeeId = random.nextInt(20);
+            int day = 16000 + i / 50;
+            long units = random.nextInt(10000000) - 5000000;
+            source.addRow(new Object[] { i + 1, day, accountId, -1, 1, -1, payeeId,
+                TransactionSnapshot.TYPE_WITHDRAWAL, "R", units, 0 });
+
+            // each row on its own, at the rate of its date.
+            BigDecimal amount = BigDecimal.valueOf(units, TransactionSnapshot.PRECISION)
+                .multiply(engine.getRate(accountCurrencies.get(accountId), 1, day));
+            BigDecimal total = expected.get((long) payeeId);
+            expected.put((long) payeeId, total == null ? amount : total.add(amount));
+        }
+        TransactionSnapshot snapshot = TransactionSnapshot.read(source);
+
+        HashMap<Long, Money> actual = new ReportAggregator(accountCurrencies, engine, 1)
+            .aggregate(snapshot, null, null, new ReportAggregator.Grouping() {
+                @Override
+                public long getKey(TransactionSnapshot snapshot, int row) {
+                    return snapshot.getPayeeId(row);
+                }
+            });
+
+        assertEquals(expected.size(), actual.size());
+        for (Long key : expected.keySet()) {
+            assertEquals(0, expected.get(key).compareTo(actual.get(key).toBigDecimal()));
+        }
+    }
+
+    private MatrixCursor createSource() {
+        return new MatrixCursor(new String[] { "TRANSID", "EPOCHDAY", "ACCOUNTID",
+            "TOACCOUNTID", "CATEGID", "SUBCATEGID", "PAYEEID", "TRANSTYPE", "STATUS", "AMOUNTUNITS",
+            "TOAMOUNTUNITS" });
+    }
+
+    private Currency createCurrency(int id, double rate) {
+        Currency currency = new Currency();
+        currency.setCurrencyid(id);
+        currency.setConversionRate(rate);
+        return currency;
+    }
+
+    private CurrencyHistory createHistory(int currencyId, int epochDay, double rate) {
+        CurrencyHistory record = new CurrencyHistory();
+        record.setCurrencyId(currencyId);
+        record.setDate(MyDateTimeUtils.fromEpochDay(epochDay));
+        record.setValue(MoneyFactory.fromDouble(rate));
+        return record;
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.moneymanagerex.android.tests;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+
+import com.money.manager.ex.BuildConfig;
+import com.money.manager.ex.common.ReportCursorLoader;
+import com.money.manager.ex.database.Dataset;
+import com.money.manager.ex.database.QueryReportIncomeVsExpenses;
+import com.money.manager.ex.database.ReportResultCache;
+import com.money.manager.ex.datalayer.Query;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.moneymanagerex.android.testhelpers.UnitTestHelper;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the report result cache.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class ReportResultCacheTests {
+
+    private ReportResultCache testObject;
+    private String key;
+
+    @Before
+    public void setUp() {
+        testObject = new ReportResultCache(64 * 1024);
+        key = ReportResultCache.createKey(Uri.parse("content://test/report"), null, "Year=2016", null, null);
+    }
+
+    @Test
+    public void returnsCachedRows() {
+        testObject.put(key, testObject.getGeneration(), createCursor(3));
+
+        Cursor actual = testObject.get(key);
+
+        assertNotNull(actual);
+        assertEquals(3, actual.getCount());
+        actual.moveToLast();
+        assertEquals(2, actual.getInt(0));
+        assertEquals("row 2", actual.getString(1));
+        assertEquals(2.5, actual.getDouble(2), 0);
+    }
+
+    @Test
+    public void keepsTextOfFloatingPointValues() {
+        MatrixCursor source = new MatrixCursor(new String[] { "TOTAL" }) {
+            @Override
+            public String getString(int column) {
+                // as formatted by SQLite
+                return "12345678.9";
+            }
+        };
+        source.addRow(new Object[] { 12345678.9 });
+        testObject.put(key, testObject.getGeneration(), source);
+
+        Cursor actual = testObject.get(key);
+
+        assertNotNull(actual);
+        actual.moveToFirst();
+        assertEquals("12345678.9", actual.getString(0));
+        assertEquals(12345678.9, actual.getDouble(0), 0);
+    }
+
+    @Test
+    public void keepsTypesOfValues() {
+        testObject.put(key, testObject.getGeneration(), createCursor(1));
+
+        Cursor actual = testObject.get(key);
+
+        assertNotNull(actual);
+        actual.moveToFirst();
+        assertEquals(Cursor.FIELD_TYPE_INTEGER, actual.getType(0));
+        assertEquals(Cursor.FIELD_TYPE_STRING, actual.getType(1));
+        assertEquals(Cursor.FIELD_TYPE_FLOAT, actual.getType(2));
+    }
+
+    @Test
+    public void invalidatedOnDataChange() {
+        testObject.put(key, testObject.getGeneration(), createCursor(3));
+
+        testObject.bumpGeneration();
+
+        assertNull(testObject.get(key));
+        assertEquals(0, testObject.getSize());
+    }
+
+    @Test
+    public void resultReadBeforeChangeIsNotStored() {
+        long generation = testObject.getGeneration();
+        testObject.bumpGeneration();
+
+        testObject.put(key, generation, createCursor(3));
+
+        assertNull(testObject.get(key));
+    }
+
+    @Test
+    public void changeOfOtherTableKeepsResult() {
+        Set<String> tables = ReportResultCache.getDependencies("SELECT * FROM MOBILE_MONTHLYSUMMARY S " +
+            "LEFT JOIN payee_v1 P ON P.PAYEEID = S.PAYEEID");
+        testObject.put(key, testObject.getGeneration(), tables, createCursor(3));
+
+        testObject.bumpGeneration("ASSETS_V1");
+        assertNotNull(testObject.get(key));
+
+        testObject.bumpGeneration("PAYEE_V1");
+        assertNull(testObject.get(key));
+        assertEquals(0, testObject.getSize());
+    }
+
+    @Test
+    public void resultReadBeforeChangeOfTableIsNotStored() {
+        Set<String> tables = ReportResultCache.getDependencies("SELECT * FROM CHECKINGACCOUNT_V1");
+        long generation = testObject.getGeneration();
+        testObject.bumpGeneration("checkingaccount_v1");
+
+        testObject.put(key, generation, tables, createCursor(3));
+
+        assertNull(testObject.get(key));
+    }
+
+    @Test
+    public void queryDatasetDependsOnItsSource() {
+        // the selection only names columns of the report.
+        Query query = new Query().where("Year IN (2016)");
+        Set<String> tables = new TestLoader(new QueryReportIncomeVsExpenses(UnitTestHelper.getContext()), query)
+            .getDependencies();
+        testObject.put(key, testObject.getGeneration(), tables, createCursor(3));
+
+        // as the content provider after a change of the transactions.
+        testObject.bumpGeneration("CHECKINGACCOUNT_V1", "MOBILE_MONTHLYSUMMARY");
+
+        assertNull(testObject.get(key));
+    }
+
+    @Test
+    public void uriWithoutSourceDependsOnAllTables() {
+        Query query = new Query().where("Year IN (2016)");
+
+        assertNull(new TestLoader(Uri.parse("content://test/report"), query).getDependencies());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        String otherKey = ReportResultCache.createKey(Uri.parse("content://test/report"), null, "Year=2015", null, null);
+        testObject.put(key, testObject.getGeneration(), createCursor(100));
+        testObject.put(otherKey, testObject.getGeneration(), createCursor(100));
+        // touch the first one
+        assertNotNull(testObject.get(key));
+
+        for (int i = 0; i < 20; i++) {
+            String fillKey = ReportResultCache.createKey(Uri.parse("content://test/fill"), null, "i=" + i, null, null);
+            testObject.put(fillKey, testObject.getGeneration(), createCursor(100));
+            assertNotNull(testObject.get(key));
+        }
+
+        assertNull(testObject.get(otherKey));
+        assertTrue(testObject.getSize() <= 64 * 1024);
+    }
+
+    private Cursor createCursor(int rows) {
+        MatrixCursor cursor = new MatrixCursor(new String[] { "_id", "Name", "Amount" });
+        for (int i = 0; i < rows; i++) {
+            cursor.addRow(new Object[] { i, "row " + i, i + 0.5 });
+        }
+        return cursor;
+    }
+
+    /**
+     * Exposes the dependencies of the loader.
+     */
+    private static class TestLoader
+        extends ReportCursorLoader {
+
+        TestLoader(Dataset dataset, Query query) {
+            super(UnitTestHelper.getContext(), dataset, query);
+        }
+
+        TestLoader(Uri uri, Query query) {
+            super(UnitTestHelper.getContext(), uri, query);
+        }
+
+        @Override
+        public Set<String> getDependencies() {
+            return super.getDependencies();
+        }
+    }
+}
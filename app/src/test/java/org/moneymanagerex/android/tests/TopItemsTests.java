@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.moneymanagerex.android.tests;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+
+import com.money.manager.ex.BuildConfig;
+import com.money.manager.ex.reports.TopItems;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for folding report results into the top items.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class TopItemsTests {
+
+    @Test
+    public void keepsLargestAbsoluteTotalsAndFoldsTheRest() {
+        MatrixCursor source = new MatrixCursor(new String[] { "_id", "PAYEE", "TOTAL" });
+        double[] totals = { 5, -50, 1, 30, -2, 10 };
+        for (int i = 0; i < totals.length; i++) {
+            source.addRow(new Object[] { i + 1, "payee " + i, totals[i] });
+        }
+        TopItems testObject = new TopItems(3, "TOTAL").withOtherValue("PAYEE", "Other");
+
+        Cursor actual = testObject.fold(source);
+
+        assertEquals(4, actual.getCount());
+        actual.moveToPosition(0);
+        assertEquals(-50, actual.getDouble(actual.getColumnIndex("TOTAL")), 0);
+        actual.moveToPosition(1);
+        assertEquals(30, actual.getDouble(actual.getColumnIndex("TOTAL")), 0);
+        actual.moveToPosition(2);
+        assertEquals(10, actual.getDouble(actual.getColumnIndex("TOTAL")), 0);
+        assertFalse(TopItems.isOther(actual));
+
+        actual.moveToLast();
+        assertTrue(TopItems.isOther(actual));
+        assertEquals("Other", actual.getString(actual.getColumnIndex("PAYEE")));
+        assertEquals(4, actual.getDouble(actual.getColumnIndex("TOTAL")), 0);
+    }
+
+    @Test
+    public void noOtherRowWhenAllItemsFit() {
+        MatrixCursor source = new MatrixCursor(new String[] { "_id", "PAYEE", "TOTAL" });
+        source.addRow(new Object[] { 1, "payee", 10.0 });
+
+        Cursor actual = new TopItems(3, "TOTAL").fold(source);
+
+        assertEquals(1, actual.getCount());
+    }
+}
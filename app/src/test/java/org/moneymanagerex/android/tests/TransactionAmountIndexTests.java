@@ -0,0 +1,172 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.moneymanagerex.android.tests;
+
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+
+import com.money.manager.ex.BuildConfig;
+import com.money.manager.ex.database.QueryAllData;
+import com.money.manager.ex.database.TransactionAmountIndex;
+import com.money.manager.ex.database.WhereStatementGenerator;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.moneymanagerex.android.testhelpers.UnitTestHelper;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import info.javaperformance.money.MoneyFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the indexed amount units.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class TransactionAmountIndexTests {
+
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() {
+        db = SQLiteDatabase.create(null);
+        db.execSQL("CREATE TABLE CHECKINGACCOUNT_V1 (TRANSID INTEGER PRIMARY KEY, TRANSCODE TEXT, " +
+            "TRANSAMOUNT NUMERIC, TRANSDATE TEXT)");
+        db.execSQL("INSERT INTO CHECKINGACCOUNT_V1 VALUES (1, 'Withdrawal', 12.5, '2016-01-01')");
+
+        new TransactionAmountIndex().verify(db);
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void amountsAreConvertedToUnits() {
+        assertEquals(4990000L, TransactionAmountIndex.toUnits(MoneyFactory.fromString("499")));
+        assertEquals(-5010000L, TransactionAmountIndex.toUnits(MoneyFactory.fromString("-501.00")));
+        assertEquals(123L, TransactionAmountIndex.toUnits(MoneyFactory.fromString("0.0123")));
+    }
+
+    @Test
+    public void unitsAreRoundedAsInTheDatabase() {
+        // SQLite rounds half away from zero.
+        assertEquals(1235L, TransactionAmountIndex.toUnits(MoneyFactory.fromString("0.12345")));
+        assertEquals(-1235L, TransactionAmountIndex.toUnits(MoneyFactory.fromString("-0.12345")));
+    }
+
+    @Test
+    public void existingAmountsAreFilledIn() {
+        assertEquals(-125000L, getUnits(1));
+    }
+
+    @Test
+    public void changedAmountsAreMaintained() {
+        db.execSQL("INSERT INTO CHECKINGACCOUNT_V1 (TRANSID, TRANSCODE, TRANSAMOUNT, TRANSDATE) " +
+            "VALUES (2, 'Deposit', 100, '2016-01-02')");
+        assertEquals(1000000L, getUnits(2));
+
+        db.execSQL("UPDATE CHECKINGACCOUNT_V1 SET TRANSCODE = 'Transfer' WHERE TRANSID = 2");
+        assertEquals(-1000000L, getUnits(2));
+    }
+
+    @Test
+    public void rangeIsFilteredWithNumericLiterals() {
+        WhereStatementGenerator where = new WhereStatementGenerator();
+        where.addStatement(TransactionAmountIndex.COLUMN, ">=",
+            TransactionAmountIndex.toUnits(MoneyFactory.fromString("-12.5")));
+        where.addStatement(TransactionAmountIndex.COLUMN, "<=",
+            TransactionAmountIndex.toUnits(MoneyFactory.fromString("0")));
+
+        assertEquals("(MOBILE_AMOUNTUNITS>=-125000) AND (MOBILE_AMOUNTUNITS<=0)", where.getWhere());
+        assertEquals(1L, DatabaseUtils.longForQuery(db,
+            "SELECT COUNT(*) FROM CHECKINGACCOUNT_V1 WHERE " + where.getWhere(), null));
+    }
+
+    @Test
+    public void desktopTableRebuildIsRestored() {
+        rebuildTable();
+        // the index and the triggers are dropped with the table.
+        assertEquals(0L, countIndexAndTriggers());
+        // the desktop app names the columns it writes.
+        db.execSQL("INSERT INTO CHECKINGACCOUNT_V1 (TRANSID, TRANSCODE, TRANSAMOUNT, TRANSDATE) " +
+            "VALUES (2, 'Deposit', 3, '2016-01-02')");
+
+        new TransactionAmountIndex().verify(db);
+
+        assertTrue(TransactionAmountIndex.isAvailable());
+        assertEquals(3L, countIndexAndTriggers());
+        assertEquals(-125000L, getUnits(1));
+        assertEquals(30000L, getUnits(2));
+        assertTrue(new QueryAllData(UnitTestHelper.getContext()).getSource()
+            .contains("TX." + TransactionAmountIndex.COLUMN));
+    }
+
+    @Test
+    public void failedVerificationCalculatesTheAmount() {
+        rebuildTable();
+        // an object with the name of the index makes the verification fail and roll back.
+        db.execSQL("CREATE TABLE IDX_CHECKINGACCOUNT_MOBILE_AMOUNT (ID INTEGER)");
+        try {
+            new TransactionAmountIndex().verify(db);
+            fail("the verification should fail");
+        } catch (SQLiteException e) {
+            // expected
+        }
+
+        assertFalse(TransactionAmountIndex.isAvailable());
+        assertFalse(new QueryAllData(UnitTestHelper.getContext()).getSource()
+            .contains(TransactionAmountIndex.COLUMN));
+
+        String query = TransactionAmountIndex.getSource("SELECT TX.TRANSID AS ID, TX." +
+            TransactionAmountIndex.COLUMN + " AS AmountUnits FROM CHECKINGACCOUNT_V1 TX");
+        assertEquals(1L, DatabaseUtils.longForQuery(db,
+            "SELECT ID FROM (" + query + ") WHERE AmountUnits = -125000", null));
+    }
+
+    /**
+     * Recreate the transactions table without the column, as a desktop upgrade would.
+     */
+    private void rebuildTable() {
+        db.execSQL("CREATE TABLE CHECKINGACCOUNT_NEW (TRANSID INTEGER PRIMARY KEY, TRANSCODE TEXT, " +
+            "TRANSAMOUNT NUMERIC, TRANSDATE TEXT)");
+        db.execSQL("INSERT INTO CHECKINGACCOUNT_NEW SELECT TRANSID, TRANSCODE, TRANSAMOUNT, TRANSDATE " +
+            "FROM CHECKINGACCOUNT_V1");
+        db.execSQL("DROP TABLE CHECKINGACCOUNT_V1");
+        db.execSQL("ALTER TABLE CHECKINGACCOUNT_NEW RENAME TO CHECKINGACCOUNT_V1");
+    }
+
+    private long countIndexAndTriggers() {
+        return DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM sqlite_master " +
+            "WHERE type IN ('index', 'trigger') AND name LIKE '%MOBILE%'", null);
+    }
+
+    private long getUnits(int transactionId) {
+        return DatabaseUtils.longForQuery(db, "SELECT " + TransactionAmountIndex.COLUMN +
+            " FROM CHECKINGACCOUNT_V1 WHERE TRANSID = " + transactionId, null);
+    }
+}
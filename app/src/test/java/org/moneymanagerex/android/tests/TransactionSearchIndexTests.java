@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.moneymanagerex.android.tests;
+
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import com.money.manager.ex.BuildConfig;
+import com.money.manager.ex.R;
+import com.money.manager.ex.database.ChangeCounter;
+import com.money.manager.ex.database.MobileDatabase;
+import com.money.manager.ex.database.TransactionSearchIndex;
+import com.money.manager.ex.utils.MmexFileUtils;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.moneymanagerex.android.testhelpers.UnitTestHelper;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the full-text search queries.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class TransactionSearchIndexTests {
+
+    @Test
+    public void wordsBecomePrefixTerms() {
+        assertEquals("\"coffee*\" \"shop*\"", TransactionSearchIndex.getMatchQuery("  coffee   shop "));
+    }
+
+    @Test
+    public void querySyntaxIsNotInterpreted() {
+        assertEquals("\"a*\" \"b*\" \"c*\"", TransactionSearchIndex.getMatchQuery("a* \"b\" -c"));
+        assertNull(TransactionSearchIndex.getMatchQuery(" \"*\" "));
+        assertNull(TransactionSearchIndex.getMatchStatement("ID", null, ""));
+    }
+
+    @Test
+    public void tokensFollowTheIndexTokenizer() {
+        assertEquals(Arrays.asList("chk", "0012", "café"), TransactionSearchIndex.tokenize("CHK-0012 café"));
+    }
+
+    @Test
+    public void statementIsEscaped() {
+        String statement = TransactionSearchIndex.getMatchStatement("ID",
+            TransactionSearchIndex.NOTES, "o'brien");
+
+        assertEquals("ID IN (SELECT docid FROM " + TransactionSearchIndex.TABLE_NAME +
+            " WHERE NOTES MATCH '\"o brien*\"')", statement);
+    }
+
+    @Test
+    public void textIsMatchedByWordPrefixOnly() {
+        String statement = TransactionSearchIndex.getSearchStatement("ID",
+            TransactionSearchIndex.NOTES, "Notes", "market");
+
+        assertEquals("ID IN (SELECT docid FROM " + TransactionSearchIndex.TABLE_NAME +
+            " WHERE NOTES MATCH '\"market*\"')", statement);
+    }
+
+    @Test
+    public void textWithoutWordsIsOnlyMatchedInTheField() {
+        assertEquals("Notes LIKE '%-%'", TransactionSearchIndex.getSearchStatement("ID",
+            TransactionSearchIndex.NOTES, "Notes", "-"));
+        assertNull(TransactionSearchIndex.getSearchStatement("ID", TransactionSearchIndex.NOTES, "Notes", ""));
+    }
+
+    @Test
+    public void likeStatementFindsTheTextAnywhere() {
+        assertEquals("Notes LIKE '%o''brien%'", TransactionSearchIndex.getLikeStatement("Notes", "o'brien"));
+        assertNull(TransactionSearchIndex.getLikeStatement("Notes", ""));
+    }
+
+    @Test
+    public void verifyOnlyChecksTheSync() {
+        SQLiteDatabase db = SQLiteDatabase.create(null);
+        try {
+            String[] statements = MmexFileUtils.getRawAsString(UnitTestHelper.getContext(), R.raw.database_create)
+                .split(";");
+            for (String statement : statements) {
+                if (statement.replaceAll("(?m)^--.*$", "").trim().isEmpty()) continue;
+                db.execSQL(statement);
+            }
+            MobileDatabase.attach(db, ":memory:");
+            ChangeCounter.verify(db);
+            TransactionSearchIndex testObject = new TransactionSearchIndex(UnitTestHelper.getContext());
+            // i.e. by the desktop app.
+            db.execSQL("INSERT INTO CHECKINGACCOUNT_V1 (TRANSID, ACCOUNTID, PAYEEID, TRANSCODE, TRANSAMOUNT, " +
+                "NOTES) VALUES (1, 1, -1, 'Withdrawal', 10, 'supermarket')");
+
+            assertFalse(testObject.verify(db));
+            assertFalse(TransactionSearchIndex.isInSync());
+            // nothing is indexed on open.
+            assertEquals(0, countMatches(db, "super"));
+
+            testObject.rebuild(db);
+
+            assertTrue(TransactionSearchIndex.isInSync());
+            assertTrue(testObject.verify(db));
+            assertEquals(1, countMatches(db, "super"));
+        } finally {
+            db.close();
+        }
+    }
+
+    private long countMatches(SQLiteDatabase db, String text) {
+        return DatabaseUtils.longForQuery(db, "SELECT COUNT(*) FROM CHECKINGACCOUNT_V1 WHERE " +
+            TransactionSearchIndex.getMatchStatement("TRANSID", null, text), null);
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.moneymanagerex.android.tests;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+
+import com.money.manager.ex.BuildConfig;
+import com.money.manager.ex.database.MmexOpenHelper;
+import com.money.manager.ex.database.TransactionSnapshot;
+import com.money.manager.ex.database.TransactionSnapshotStore;
+import com.money.manager.ex.datalayer.AccountTransactionRepository;
+import com.money.manager.ex.datalayer.SplitCategoriesRepository;
+import com.money.manager.ex.utils.MyDateTimeUtils;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.moneymanagerex.android.testhelpers.UnitTestHelper;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the transaction snapshot, as read from the database and as patched by the content
+ * provider after the changes.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class TransactionSnapshotTests {
+
+    private Context context;
+    private TransactionSnapshotStore testObject;
+
+    @Before
+    public void setup() {
+        UnitTestHelper.setupContentProvider();
+        context = UnitTestHelper.getContext();
+        testObject = TransactionSnapshotStore.getInstance();
+        testObject.invalidate();
+    }
+
+    @After
+    public void tearDown() {
+        testObject.invalidate();
+        UnitTestHelper.teardownDatabase();
+    }
+
+    @Test
+    public void readsSplitsTransfersAndVoidRows() {
+        SQLiteDatabase db = MmexOpenHelper.getInstance(context).getWritableDatabase();
+        int withdrawal = insert(db, "Withdrawal", 1, -1, 10.5, 0, "", 2, "2016-03-02");
+        int transfer = insert(db, "Transfer", 1, 2, 20, 30, "R", -1, "2016-03-01");
+        int deposit = insert(db, "Deposit", 1, -1, 7.25, 0, null, -1, "2016-03-03T10:15:00");
+        insertSplit(db, deposit, 5, 3);
+        insertSplit(db, deposit, 6, 4.25);
+        int voided = insert(db, "Withdrawal", 1, -1, 7, 0, "V", 2, "2016-03-03");
+
+        TransactionSnapshot snapshot = testObject.get(context);
+
+        assertEquals(5, snapshot.size());
+        // ordered by date and id
+        assertEquals(transfer, snapshot.getTransactionId(0));
+        assertEquals(MyDateTimeUtils.toEpochDay("2016-03-01"), snapshot.getDate(0));
+        assertEquals(TransactionSnapshot.TYPE_TRANSFER, snapshot.getType(0));
+        assertEquals(2, snapshot.getToAccountId(0));
+        assertEquals(-200000, snapshot.getAmount(0));
+        assertEquals(300000, snapshot.getToAmount(0));
+
+        assertEquals(withdrawal, snapshot.getTransactionId(1));
+        assertEquals(-1, snapshot.getToAccountId(1));
+        assertEquals(2, snapshot.getCategoryId(1));
+        assertEquals(-105000, snapshot.getAmount(1));
+        assertEquals(0, snapshot.getToAmount(1));
+
+        // one row per split, the time is ignored
+        assertEquals(deposit, snapshot.getTransactionId(2));
+        assertEquals(deposit, snapshot.getTransactionId(3));
+        assertEquals(MyDateTimeUtils.toEpochDay("2016-03-03"), snapshot.getDate(2));
+        assertEquals(5, snapshot.getCategoryId(2));
+        assertEquals(30000, snapshot.getAmount(2));
+        assertEquals(6, snapshot.getCategoryId(3));
+        assertEquals(42500, snapshot.getAmount(3));
+
+        assertEquals(voided, snapshot.getTransactionId(4));
+        assertTrue(snapshot.isVoid(4));
+        assertFalse(snapshot.isVoid(0));
+
+        int day = MyDateTimeUtils.toEpochDay("2016-03-03");
+        assertEquals(-200000 - 105000 + 72500, snapshot.getBalance(1, day));
+        assertEquals(300000, snapshot.getBalance(2, day));
+        assertEquals(-200000, snapshot.getBalance(1, MyDateTimeUtils.toEpochDay("2016-03-01")));
+    }
+
+    @Test
+    public void patchInsertsRowsInOrder() {
+        SQLiteDatabase db = MmexOpenHelper.getInstance(context).getWritableDatabase();
+        insert(db, "Withdrawal", 1, -1, 10, 0, "", 2, "2016-03-01");
+        insert(db, "Withdrawal", 1, -1, 20, 0, "", 2, "2016-03-05");
+        testObject.get(context);
+
+        int inserted = insert("Deposit", 1, -1, 5, -1, "2016-03-03");
+        insertSplit(inserted, 5, 2);
+        insertSplit(inserted, 6, 3);
+        insert("Transfer", 1, 2, 8, -1, "2016-02-01");
+
+        TransactionSnapshot patched = testObject.peek();
+        assertEquals(5, patched.size());
+        assertEquals(inserted, patched.getTransactionId(2));
+        assertEquals(inserted, patched.getTransactionId(3));
+        assertEquals(20000, patched.getAmount(2));
+        assertSameRows(read(), patched);
+    }
+
+    @Test
+    public void patchMovesUpdatedRows() {
+        SQLiteDatabase db = MmexOpenHelper.getInstance(context).getWritableDatabase();
+        int moved = insert(db, "Withdrawal", 1, -1, 10, 0, "", 2, "2016-03-01");
+        insert(db, "Withdrawal", 1, -1, 20, 0, "", 2, "2016-03-05");
+        insert(db, "Withdrawal", 1, -1, 30, 0, "", 2, "2016-03-10");
+        testObject.get(context);
+
+        ContentValues values = new ContentValues();
+        values.put("TRANSDATE", "2016-03-07");
+        values.put("TRANSAMOUNT", 15);
+        values.put("STATUS", "V");
+        update(new AccountTransactionRepository(context).getUri(), values, moved);
+
+        TransactionSnapshot patched = testObject.peek();
+        assertEquals(3, patched.size());
+        assertEquals(moved, patched.getTransactionId(1));
+        assertEquals(MyDateTimeUtils.toEpochDay("2016-03-07"), patched.getDate(1));
+        assertEquals(-150000, patched.getAmount(1));
+        assertTrue(patched.isVoid(1));
+        assertSameRows(read(), patched);
+    }
+
+    @Test
+    public void patchRemovesDeletedRows() {
+        SQLiteDatabase db = MmexOpenHelper.getInstance(context).getWritableDatabase();
+        insert(db, "Withdrawal", 1, -1, 10, 0, "", 2, "2016-03-01");
+        int deleted = insert(db, "Deposit", 1, -1, 5, 0, "", -1, "2016-03-03");
+        insertSplit(db, deleted, 5, 2);
+        insertSplit(db, deleted, 6, 3);
+        insert(db, "Withdrawal", 1, -1, 20, 0, "", 2, "2016-03-05");
+        assertEquals(4, testObject.get(context).size());
+
+        context.getContentResolver().delete(new SplitCategoriesRepository(context).getUri(),
+            "TRANSID=?", new String[] { Integer.toString(deleted) });
+        context.getContentResolver().delete(new AccountTransactionRepository(context).getUri(),
+            "TRANSID=?", new String[] { Integer.toString(deleted) });
+
+        TransactionSnapshot patched = testObject.peek();
+        assertEquals(2, patched.size());
+        assertSameRows(read(), patched);
+    }
+
+    /**
+     * @return The snapshot read again from the database.
+     */
+    private TransactionSnapshot read() {
+        testObject.invalidate();
+        return testObject.get(context);
+    }
+
+    private void assertSameRows(TransactionSnapshot expected, TransactionSnapshot actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int row = 0; row < expected.size(); row++) {
+            assertEquals(expected.getTransactionId(row), actual.getTransactionId(row));
+            assertEquals(expected.getDate(row), actual.getDate(row));
+            assertEquals(expected.getAccountId(row), actual.getAccountId(row));
+            assertEquals(expected.getToAccountId(row), actual.getToAccountId(row));
+            assertEquals(expected.getCategoryId(row), actual.getCategoryId(row));
+            assertEquals(expected.getType(row), actual.getType(row));
+            assertEquals(expected.getStatus(row), actual.getStatus(row));
+            assertEquals(expected.getAmount(row), actual.getAmount(row));
+            assertEquals(expected.getToAmount(row), actual.getToAmount(row));
+        }
+    }
+
+    /**
+     * Insert directly into the database, without patching the snapshot.
+     */
+    private int insert(SQLiteDatabase db, String code, int accountId, int toAccountId, double amount,
+                       double toAmount, String status, int categoryId, String date) {
+        ContentValues values = getTransactionValues(code, accountId, toAccountId, amount, categoryId, date);
+        values.put("TOTRANSAMOUNT", toAmount);
+        values.put("STATUS", status);
+        return (int) db.insertOrThrow("CHECKINGACCOUNT_V1", null, values);
+    }
+
+    private void insertSplit(SQLiteDatabase db, int transactionId, int categoryId, double amount) {
+        db.insertOrThrow("SPLITTRANSACTIONS_V1", null, getSplitValues(transactionId, categoryId, amount));
+    }
+
+    /**
+     * Insert through the content provider.
+     */
+    private int insert(String code, int accountId, int toAccountId, double amount, int categoryId, String date) {
+        ContentValues values = getTransactionValues(code, accountId, toAccountId, amount, categoryId, date);
+        values.put("TOTRANSAMOUNT", amount);
+        Uri uri = context.getContentResolver().insert(new AccountTransactionRepository(context).getUri(), values);
+        return Integer.parseInt(uri.getLastPathSegment());
+    }
+
+    private void insertSplit(int transactionId, int categoryId, double amount) {
+        context.getContentResolver().insert(new SplitCategoriesRepository(context).getUri(),
+            getSplitValues(transactionId, categoryId, amount));
+    }
+
+    private void update(Uri uri, ContentValues values, int transactionId) {
+        context.getContentResolver().update(uri, values, "TRANSID=?",
+            new String[] { Integer.toString(transactionId) });
+    }
+
+    private ContentValues getTransactionValues(String code, int accountId, int toAccountId, double amount,
+                                               int categoryId, String date) {
+        ContentValues values = new ContentValues();
+        values.put("ACCOUNTID", accountId);
+        values.put("TOACCOUNTID", toAccountId);
+        values.put("PAYEEID", -1);
+        values.put("TRANSCODE", code);
+        values.put("TRANSAMOUNT", amount);
+        values.put("CATEGID", categoryId);
+        values.put("SUBCATEGID", -1);
+        values.put("TRANSDATE", date);
+        return values;
+    }
+
+    private ContentValues getSplitValues(int transactionId, int categoryId, double amount) {
+        ContentValues values = new ContentValues();
+        values.put("TRANSID", transactionId);
+        values.put("CATEGID", categoryId);
+        values.put("SUBCATEGID", -1);
+        values.put("SPLITTRANSAMOUNT", amount);
+        return values;
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2012-2016 The Android Money Manager Ex Project Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 3
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.moneymanagerex.android.tests;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.MatrixCursor;
+
+import com.money.manager.ex.BuildConfig;
+import com.money.manager.ex.database.MmexOpenHelper;
+import com.money.manager.ex.database.QueryAccountBills;
+import com.money.manager.ex.datalayer.AccountRepository;
+import com.money.manager.ex.settings.LookAndFeelSettings;
+import com.money.manager.ex.widget.WidgetSnapshot;
+import com.money.manager.ex.widget.WidgetSnapshotStore;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.moneymanagerex.android.testhelpers.UnitTestHelper;
+import org.robolectric.RobolectricGradleTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the data shared by the widgets and the DashClock extensions.
+ */
+@RunWith(RobolectricGradleTestRunner.class)
+@Config(constants = BuildConfig.class)
+public class WidgetSnapshotTests {
+
+    private static final double DELTA = 0.001;
+    /**
+     * Longer than the delay after which the store refreshes the snapshot.
+     */
+    private static final long REFRESH_TIMEOUT_MILLIS = 10000;
+
+    private Context context;
+
+    @Before
+    public void setup() {
+        context = UnitTestHelper.getContext();
+        deleteSnapshotFile();
+        UnitTestHelper.resetSingleton(WidgetSnapshotStore.class, "mInstance");
+
+        LookAndFeelSettings settings = new LookAndFeelSettings(context);
+        settings.setViewOpenAccounts(false);
+        settings.setViewFavouriteAccounts(false);
+    }
+
+    @After
+    public void tearDown() {
+        UnitTestHelper.resetSingleton(WidgetSnapshotStore.class, "mInstance");
+        deleteSnapshotFile();
+        UnitTestHelper.teardownDatabase();
+    }
+
+    @Test
+    public void buildFromTheAccountBills() {
+        MatrixCursor cursor = new MatrixCursor(new String[] { QueryAccountBills.ACCOUNTID,
+            QueryAccountBills.ACCOUNTNAME, QueryAccountBills.STATUS, QueryAccountBills.FAVORITEACCT,
+            QueryAccountBills.CURRENCYID, QueryAccountBills.TOTAL, QueryAccountBills.TOTALBASECONVRATE });
+        cursor.addRow(new Object[] { 1, "Cash", "Open", "FALSE", 1, 25.5, 25.5 });
+        cursor.addRow(new Object[] { 2, "Euro", "Open", "TRUE", 2, 100, 200 });
+        cursor.addRow(new Object[] { 3, "Old", "Closed", "TRUE", 1, 7, 7 });
+
+        WidgetSnapshot snapshot = WidgetSnapshot.from(null, cursor);
+
+        assertEquals("", snapshot.getUserName());
+        WidgetSnapshot.Account euro = snapshot.getAccount(2);
+        assertEquals("Euro", euro.name);
+        assertEquals(2, euro.currencyId);
+        assertEquals(100, euro.getTotal().toDouble(), DELTA);
+        assertEquals(200, euro.totalBaseConvRate, DELTA);
+        assertNull(snapshot.getAccount(4));
+
+        assertEquals(3, snapshot.getVisibleAccounts(context).size());
+        assertEquals(232.5, snapshot.getSummaryAccounts(context), DELTA);
+
+        LookAndFeelSettings settings = new LookAndFeelSettings(context);
+        settings.setViewOpenAccounts(true);
+        assertEquals(2, snapshot.getVisibleAccounts(context).size());
+        assertEquals(225.5, snapshot.getSummaryAccounts(context), DELTA);
+
+        // the favourite filter replaces the open one.
+        settings.setViewFavouriteAccounts(true);
+        List<WidgetSnapshot.Account> favourites = snapshot.getVisibleAccounts(context);
+        assertEquals(2, favourites.size());
+        assertEquals("Euro", favourites.get(0).name);
+        assertEquals("Old", favourites.get(1).name);
+        assertEquals(207, snapshot.getSummaryAccounts(context), DELTA);
+    }
+
+    @Test
+    public void readTheDatabaseWithoutSnapshot() {
+        UnitTestHelper.setupContentProvider();
+        int id = insertAccount("Checking");
+
+        WidgetSnapshot snapshot = WidgetSnapshotStore.getInstance().get(context);
+
+        assertNotNull(snapshot.getAccount(id));
+        assertEquals("Checking", snapshot.getAccount(id).name);
+    }
+
+    @Test
+    public void dataChangesRefreshTheSnapshot() throws InterruptedException {
+        UnitTestHelper.setupContentProvider();
+        WidgetSnapshotStore store = WidgetSnapshotStore.getInstance();
+        insertAccount("Checking");
+        store.get(context);
+
+        int id = insertAccount("Savings");
+
+        // served stale until the changes settle.
+        assertNull(store.get(context).getAccount(id));
+        assertEquals("Savings", waitForAccount(id).name);
+    }
+
+    @Test
+    public void storedSnapshotIsRevalidated() throws InterruptedException {
+        UnitTestHelper.setupContentProvider();
+        int first = insertAccount("Checking");
+        WidgetSnapshotStore.getInstance().get(context);
+
+        // a change the store is not told about, i.e. made while the process was not running.
+        MmexOpenHelper.getInstance(context).getWritableDatabase().execSQL(
+            "UPDATE ACCOUNTLIST_V1 SET ACCOUNTNAME = 'Current' WHERE ACCOUNTID = " + first);
+        UnitTestHelper.resetSingleton(WidgetSnapshotStore.class, "mInstance");
+
+        // the new process first gets the stored snapshot, then the current data.
+        assertEquals("Checking", WidgetSnapshotStore.getInstance().get(context).getAccount(first).name);
+        assertEquals("Current", waitForName(first, "Current").name);
+    }
+
+    // Private
+
+    private int insertAccount(String name) {
+        ContentValues values = new ContentValues();
+        values.put("ACCOUNTNAME", name);
+        values.put("ACCOUNTTYPE", "Checking");
+        values.put("STATUS", "Open");
+        values.put("FAVORITEACCT", "FALSE");
+        values.put("CURRENCYID", 1);
+        values.put("INITIALBAL", 10);
+        return Integer.parseInt(context.getContentResolver()
+            .insert(new AccountRepository(context).getUri(), values).getLastPathSegment());
+    }
+
+    private WidgetSnapshot.Account waitForAccount(int accountId) throws InterruptedException {
+        return waitForName(accountId, null);
+    }
+
+    /**
+     * Poll the store until the background refresh delivers the account.
+     * @param name Expected account name, or null for any.
+     */
+    private WidgetSnapshot.Account waitForName(int accountId, String name) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + REFRESH_TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            WidgetSnapshot.Account account = WidgetSnapshotStore.getInstance().get(context).getAccount(accountId);
+            if (account != null && (name == null || name.equals(account.name))) return account;
+
+            Thread.sleep(100);
+        }
+        fail("the snapshot was not refreshed");
+        return null;
+    }
+
+    private void deleteSnapshotFile() {
+        File file = new File(context.getCacheDir(), "widget_snapshot.bin");
+        if (file.exists() && !file.delete()) {
+            throw new IllegalStateException("could not delete " + file.getPath());
+        }
+    }
+}
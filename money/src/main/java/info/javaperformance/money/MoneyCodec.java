@@ -0,0 +1,173 @@
+/*
+* Copyright 2014 Mikhail Vorontsov
+*
+* Licensed under the Apache License, Version 2.0 (the "License");
+* you may not use this file except in compliance with the License.
+* You may obtain a copy of the License at
+*
+* http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing, software
+* distributed under the License is distributed on an "AS IS" BASIS,
+* WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+* See the License for the specific language governing permissions and
+* limitations under the License.
+*/
+
+package info.javaperformance.money;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+/**
+ * <p>
+ *  Compact binary encoding of Money values. Intended for Parcels and persisted caches where the
+ *  decimal String form costs both formatting/parsing time and space.
+ * </p>
+ * <p>
+ *  Layout: one header byte followed by the value.
+ *  <ul>
+ *      <li>Header bits 0-3 hold the precision, bit 7 is set for the BigDecimal form.</li>
+ *      <li>Long form: zig-zag varint of the units.</li>
+ *      <li>BigDecimal form: zig-zag varint of the scale, varint byte count, two's complement unscaled bytes.</li>
+ *  </ul>
+ *  Typical amounts (up to 6 significant digits) take no more than 4 bytes.
+ * </p>
+ */
+public class MoneyCodec {
+    private static final int FLAG_BIG_DECIMAL = 0x80;
+    private static final int PRECISION_MASK = 0x0F;
+
+    /**
+     * Calculate the number of bytes required to encode the given value.
+     * @param value Money value
+     * @return Number of bytes <code>write</code> will produce
+     */
+    public static int encodedSize( final Money value )
+    {
+        if ( value instanceof MoneyLong )
+            return 1 + varLongSize( zigZag( ( ( MoneyLong ) value ).getUnits() ) );
+
+        final BigDecimal bd = value.toBigDecimal();
+        final int length = bd.unscaledValue().bitLength() / 8 + 1;
+        return 1 + varLongSize( zigZag( bd.scale() ) ) + varLongSize( length ) + length;
+    }
+
+    /**
+     * Write the value at the current buffer position.
+     * @param value Money value
+     * @param buffer Target buffer. Must have at least <code>encodedSize(value)</code> bytes remaining.
+     * @throws java.nio.BufferOverflowException If there is not enough space in the buffer
+     */
+    public static void write( final Money value, final ByteBuffer buffer )
+    {
+        if ( value instanceof MoneyLong )
+        {
+            final MoneyLong lng = ( MoneyLong ) value;
+            buffer.put( ( byte ) lng.getPrecision() );
+            writeVarLong( zigZag( lng.getUnits() ), buffer );
+            return;
+        }
+
+        final BigDecimal bd = value.toBigDecimal();
+        final byte[] unscaled = bd.unscaledValue().toByteArray();
+        buffer.put( ( byte ) FLAG_BIG_DECIMAL );
+        writeVarLong( zigZag( bd.scale() ), buffer );
+        writeVarLong( unscaled.length, buffer );
+        buffer.put( unscaled );
+    }
+
+    /**
+     * Read a value from the current buffer position.
+     * @param buffer Source buffer
+     * @return Money object
+     * @throws java.lang.IllegalArgumentException If the data is not a valid encoded value
+     * @throws java.nio.BufferUnderflowException If the buffer ends before the value does
+     */
+    public static Money read( final ByteBuffer buffer )
+    {
+        final int header = buffer.get() & 0xFF;
+        if ( ( header & FLAG_BIG_DECIMAL ) == 0 )
+        {
+            if ( header > PRECISION_MASK )
+                throw new IllegalArgumentException( "Invalid Money header: " + header );
+            return MoneyFactory.fromUnits( unZigZag( readVarLong( buffer ) ), header );
+        }
+
+        final long scale = unZigZag( readVarLong( buffer ) );
+        final long length = readVarLong( buffer );
+        if ( scale < Integer.MIN_VALUE || scale > Integer.MAX_VALUE || length <= 0 || length > buffer.remaining() )
+            throw new IllegalArgumentException( "Invalid Money BigDecimal form, scale " + scale + ", length " + length );
+        final byte[] unscaled = new byte[ ( int ) length ];
+        buffer.get( unscaled );
+        return new MoneyBigDecimal( new BigDecimal( new BigInteger( unscaled ), ( int ) scale ) );
+    }
+
+    /**
+     * Encode the value into a new byte array.
+     * @param value Money value
+     * @return Encoded value
+     */
+    public static byte[] encode( final Money value )
+    {
+        final byte[] result = new byte[ encodedSize( value ) ];
+        write( value, ByteBuffer.wrap( result ) );
+        return result;
+    }
+
+    /**
+     * Decode a value produced by <code>encode</code>.
+     * @param bytes Encoded value
+     * @return Money object
+     * @throws java.lang.IllegalArgumentException If the data is not a valid encoded value
+     */
+    public static Money decode( final byte[] bytes )
+    {
+        return read( ByteBuffer.wrap( bytes ) );
+    }
+
+    private static long zigZag( final long value )
+    {
+        return ( value << 1 ) ^ ( value >> 63 );
+    }
+
+    private static long unZigZag( final long value )
+    {
+        return ( value >>> 1 ) ^ -( value & 1 );
+    }
+
+    private static int varLongSize( long value )
+    {
+        int size = 1;
+        while ( ( value & ~0x7FL ) != 0 )
+        {
+            value >>>= 7;
+            ++size;
+        }
+        return size;
+    }
+
+    private static void writeVarLong( long value, final ByteBuffer buffer )
+    {
+        while ( ( value & ~0x7FL ) != 0 )
+        {
+            buffer.put( ( byte ) ( ( value & 0x7F ) | 0x80 ) );
+            value >>>= 7;
+        }
+        buffer.put( ( byte ) value );
+    }
+
+    private static long readVarLong( final ByteBuffer buffer )
+    {
+        long result = 0;
+        for ( int shift = 0; shift < 64; shift += 7 )
+        {
+            final byte b = buffer.get();
+            result |= ( long ) ( b & 0x7F ) << shift;
+            if ( ( b & 0x80 ) == 0 )
+                return result;
+        }
+        throw new IllegalArgumentException( "Malformed varint in encoded Money value" );
+    }
+}
@@ -35,6 +35,16 @@ class MoneyLong extends AbstractMoney {
         m_precision = precision;
     }
 
+    /** @return Number of currency units in the current precision */
+    long getUnits() {
+        return m_units;
+    }
+
+    /** @return Number of digits after the decimal point */
+    int getPrecision() {
+        return m_precision;
+    }
+
     /**
      * Convert to the original currency - divide <code>units</code> by <code>10^precision</code>.
      * @return <code>units / (10^precision)</code>
@@ -237,7 +247,7 @@ class MoneyLong extends AbstractMoney {
         if ( origUnits != m_units )
         {
             final BigInteger res = BigInteger.valueOf( m_units ).multiply( BigInteger.valueOf( multiplier ) );
-            return MoneyFactory.fromBigDecimal( new BigDecimal( res ) );
+            return MoneyFactory.fromBigDecimal( new BigDecimal( res, m_precision ) );
         }
         return new MoneyLong( resUnits, m_precision ).normalize();
     }